@@ -25,6 +25,8 @@
 package com.sun.lwuit.io;
 
 import com.sun.lwuit.Display;
+import com.sun.lwuit.EncodedImage;
+import com.sun.lwuit.Image;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -38,6 +40,10 @@ import java.util.Vector;
  * will never be removed from a sufficiently large cache.
  * Cache can work purely in memory or swap data into storage based on user definitions.
  * Notice that this class isn't threadsafe.
+ * <p>By default the memory cache is aged by timestamp which requires a scan of all
+ * the entries once the cache is full. When LRU mode is enabled the memory cache is
+ * kept in a linked list ordered by access so promotion and eviction are constant time
+ * and the cache can also be bounded by an estimated size in bytes.
  *
  * @author Shai Almog
  */
@@ -48,6 +54,18 @@ public class CacheMap {
 
     private int storageCacheSize = 0;
     private Vector storageCacheContent = new Vector();
+    private Hashtable storageIndex = new Hashtable();
+
+    private boolean lruMode;
+    private Hashtable lruEntries = new Hashtable();
+    private Entry lruHead;
+    private Entry lruTail;
+    private int cacheSizeBytes;
+    private int memoryCacheBytes;
+
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
 
     /**
      * Indicates the size of the memory cache after which the cache won't grow further
@@ -69,6 +87,153 @@ public class CacheMap {
         this.cacheSize = cacheSize;
     }
 
+    /**
+     * Indicates whether the memory cache is maintained in access order using a linked
+     * list, this makes promotion and eviction constant time operations and enables the
+     * byte based limit of setCacheSizeBytes
+     *
+     * @return true if LRU mode is enabled
+     */
+    public boolean isLRUMode() {
+        return lruMode;
+    }
+
+    /**
+     * Indicates whether the memory cache is maintained in access order using a linked
+     * list, this makes promotion and eviction constant time operations and enables the
+     * byte based limit of setCacheSizeBytes. Entries currently in the memory cache
+     * are migrated to the new mode.
+     *
+     * @param lruMode true to enable LRU mode
+     */
+    public void setLRUMode(boolean lruMode) {
+        if(this.lruMode == lruMode) {
+            return;
+        }
+        this.lruMode = lruMode;
+        if(lruMode) {
+            Enumeration e = memoryCache.keys();
+            while(e.hasMoreElements()) {
+                Object currentKey = e.nextElement();
+                Object[] currentValue = (Object[])memoryCache.get(currentKey);
+                putLRU(currentKey, currentValue[1]);
+            }
+            memoryCache.clear();
+        } else {
+            for(Entry current = lruTail ; current != null ; current = current.previous) {
+                memoryCache.put(current.key, new Object[]{new Long(current.lastAccessed), current.value});
+            }
+            lruEntries.clear();
+            lruHead = null;
+            lruTail = null;
+            memoryCacheBytes = 0;
+        }
+    }
+
+    /**
+     * Indicates the estimated size in bytes of the memory cache after which the least
+     * recently used entries are evicted. This limit only applies in LRU mode and is
+     * enforced in addition to the element count limit, 0 means no byte limit.
+     *
+     * @return the limit in bytes
+     */
+    public int getCacheSizeBytes() {
+        return cacheSizeBytes;
+    }
+
+    /**
+     * Indicates the estimated size in bytes of the memory cache after which the least
+     * recently used entries are evicted. This limit only applies in LRU mode and is
+     * enforced in addition to the element count limit, 0 means no byte limit.
+     *
+     * @param cacheSizeBytes the limit in bytes
+     */
+    public void setCacheSizeBytes(int cacheSizeBytes) {
+        this.cacheSizeBytes = cacheSizeBytes;
+        if(lruMode) {
+            trimLRU();
+        }
+    }
+
+    /**
+     * Returns the estimated size in bytes of the entries currently held in the memory
+     * cache, this is only tracked in LRU mode
+     *
+     * @return the estimated size in bytes
+     */
+    public int getMemoryCacheBytes() {
+        return memoryCacheBytes;
+    }
+
+    /**
+     * Returns the number of get calls that found their value in one of the cache tiers
+     *
+     * @return the hit count
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of get calls that didn't find their value in the cache
+     *
+     * @return the miss count
+     */
+    public int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of entries pushed out of the memory cache due to its limits
+     *
+     * @return the eviction count
+     */
+    public int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Estimates the amount of memory taken by a cached value, this is used to enforce
+     * the byte limit in LRU mode. Subclasses can override this to provide a better
+     * estimate for their own types, unknown types are counted as 0 and are limited
+     * only by the element count.
+     *
+     * @param value the cached value
+     * @return estimated size in bytes
+     */
+    protected int sizeOf(Object value) {
+        if(value instanceof byte[]) {
+            return ((byte[])value).length;
+        }
+        if(value instanceof String) {
+            return ((String)value).length() * 2;
+        }
+        if(value instanceof int[]) {
+            return ((int[])value).length * 4;
+        }
+        if(value instanceof EncodedImage) {
+            byte[] data = ((EncodedImage)value).getImageData();
+            if(data != null) {
+                return data.length;
+            }
+            return 0;
+        }
+        if(value instanceof Image) {
+            Image img = (Image)value;
+            return img.getWidth() * img.getHeight() * 4;
+        }
+        return 0;
+    }
+
     /**
      * Puts the given key/value pair in the cache
      *
@@ -76,7 +241,12 @@ public class CacheMap {
      * @param value the value
      */
     public void put(Object key, Object value) {
-        if(cacheSize <= memoryCache.size()) {
+        if(lruMode) {
+            putLRU(key, value);
+            trimLRU();
+            return;
+        }
+        if(cacheSize <= memoryCache.size() && !memoryCache.containsKey(key)) {
             // we need to find the oldest entry
             Enumeration e = memoryCache.keys();
             long oldest = System.currentTimeMillis();
@@ -92,13 +262,77 @@ public class CacheMap {
                     oldestValue = currentValue;
                 }
             }
-            placeInStorageCache(oldestKey, oldest, oldestValue[1]);
-            weakCache.put(oldestKey, Display.getInstance().createSoftWeakRef(oldestValue[1]));
-            memoryCache.remove(oldestKey);
+            if(oldestKey != null) {
+                placeInStorageCache(oldestKey, oldest, oldestValue[1]);
+                weakCache.put(oldestKey, Display.getInstance().createSoftWeakRef(oldestValue[1]));
+                memoryCache.remove(oldestKey);
+                evictionCount++;
+            }
         }
         memoryCache.put(key, new Object[]{new Long(System.currentTimeMillis()), value});
     }
 
+    private void putLRU(Object key, Object value) {
+        Entry e = (Entry)lruEntries.get(key);
+        if(e != null) {
+            memoryCacheBytes -= e.size;
+            unlink(e);
+        } else {
+            e = new Entry();
+            e.key = key;
+            lruEntries.put(key, e);
+        }
+        e.value = value;
+        e.size = sizeOf(value);
+        e.lastAccessed = System.currentTimeMillis();
+        memoryCacheBytes += e.size;
+        linkFirst(e);
+    }
+
+    /**
+     * Evicts least recently used entries until the memory cache fits its limits, the
+     * most recently used entry is always kept
+     */
+    private void trimLRU() {
+        while(lruTail != null && lruTail != lruHead &&
+                (lruEntries.size() > cacheSize || (cacheSizeBytes > 0 && memoryCacheBytes > cacheSizeBytes))) {
+            Entry eldest = lruTail;
+            unlink(eldest);
+            lruEntries.remove(eldest.key);
+            memoryCacheBytes -= eldest.size;
+            placeInStorageCache(eldest.key, eldest.lastAccessed, eldest.value);
+            weakCache.put(eldest.key, Display.getInstance().createSoftWeakRef(eldest.value));
+            evictionCount++;
+        }
+    }
+
+    private void linkFirst(Entry e) {
+        e.previous = null;
+        e.next = lruHead;
+        if(lruHead != null) {
+            lruHead.previous = e;
+        }
+        lruHead = e;
+        if(lruTail == null) {
+            lruTail = e;
+        }
+    }
+
+    private void unlink(Entry e) {
+        if(e.previous != null) {
+            e.previous.next = e.next;
+        } else {
+            lruHead = e.next;
+        }
+        if(e.next != null) {
+            e.next.previous = e.previous;
+        } else {
+            lruTail = e.previous;
+        }
+        e.previous = null;
+        e.next = null;
+    }
+
 
     /**
      * Deletes a cached entry
@@ -108,6 +342,17 @@ public class CacheMap {
     public void delete(String key) {
         memoryCache.remove(key);
         weakCache.remove(key);
+        Entry e = (Entry)lruEntries.remove(key);
+        if(e != null) {
+            unlink(e);
+            memoryCacheBytes -= e.size;
+        }
+        Integer slot = (Integer)storageIndex.remove(key);
+        if(slot != null) {
+            // mark the slot as the first candidate for reuse
+            int offset = slot.intValue();
+            storageCacheContent.setElementAt(new Object[] {new Long(0), key}, offset);
+        }
     }
 
     /**
@@ -117,31 +362,49 @@ public class CacheMap {
      * @return value from a previous put or null
      */
     public Object get(Object key) {
-        Object[] o = (Object[])memoryCache.get(key);
-        if(o != null) {
-            return o[1];
+        if(lruMode) {
+            Entry e = (Entry)lruEntries.get(key);
+            if(e != null) {
+                e.lastAccessed = System.currentTimeMillis();
+                if(e != lruHead) {
+                    unlink(e);
+                    linkFirst(e);
+                }
+                hitCount++;
+                return e.value;
+            }
+        } else {
+            Object[] o = (Object[])memoryCache.get(key);
+            if(o != null) {
+                hitCount++;
+                return o[1];
+            }
         }
         Object ref = weakCache.get(key);
         if(ref != null) {
             ref = Display.getInstance().extractHardRef(ref);
             if(ref != null) {
                 // cache hit! Promote it to the hard cache again
+                hitCount++;
                 put(key, ref);
                 return ref;
             }
         }
         if(storageCacheSize > 0) {
-            for(int iter = 0 ; iter < storageCacheContent.size() ; iter++) {
-                Object[] obj = (Object[])storageCacheContent.elementAt(iter);
-                if(obj[1].equals(key)) {
-                    // place the object back into the memory cache and return the value
-                    Vector v = (Vector)Storage.getInstance().readObject("$CACHE$" + iter);
+            Integer slot = (Integer)storageIndex.get(key);
+            if(slot != null) {
+                // place the object back into the memory cache and return the value
+                Vector v = fetchFromStorageCache(slot.intValue());
+                if(v != null) {
                     Object val = v.elementAt(0);
+                    hitCount++;
                     put(key, val);
                     return val;
                 }
+                storageIndex.remove(key);
             }
         }
+        missCount++;
         return null;
     }
 
@@ -159,12 +422,21 @@ public class CacheMap {
     public void clearMemoryCache() {
         memoryCache.clear();
         weakCache.clear();
+        lruEntries.clear();
+        lruHead = null;
+        lruTail = null;
+        memoryCacheBytes = 0;
     }
 
     private void placeInStorageCache(Object key, long lastAccessed, Object value) {
         if(storageCacheSize < 1) {
             return;
         }
+        Integer existing = (Integer)storageIndex.get(key);
+        if(existing != null) {
+            placeInStorageCache(existing.intValue(), key, lastAccessed, value);
+            return;
+        }
         if(storageCacheContent.size() < storageCacheSize) {
             placeInStorageCache(storageCacheContent.size(), key, lastAccessed, value);
         } else {
@@ -192,10 +464,18 @@ public class CacheMap {
         v.addElement(key);
         Storage.getInstance().writeObject("$CACHE$" + offset, v);
         if(storageCacheContent.size() > offset) {
+            Object[] previous = (Object[])storageCacheContent.elementAt(offset);
+            if(previous != null && !previous[1].equals(key)) {
+                Integer previousSlot = (Integer)storageIndex.get(previous[1]);
+                if(previousSlot != null && previousSlot.intValue() == offset) {
+                    storageIndex.remove(previous[1]);
+                }
+            }
             storageCacheContent.setElementAt(new Object[] {l, key}, offset);
         } else {
             storageCacheContent.insertElementAt(new Object[] {l, key}, offset);
         }
+        storageIndex.put(key, new Integer(offset));
     }
 
     private Vector fetchFromStorageCache(int offset) {
@@ -211,6 +491,8 @@ public class CacheMap {
                 Storage.getInstance().deleteStorageFile("$CACHE$" + iter);
             }
         }
+        storageCacheContent.removeAllElements();
+        storageIndex.clear();
     }
 
     /**
@@ -235,7 +517,20 @@ public class CacheMap {
             Vector v = fetchFromStorageCache(iter);
             if(v != null) {
                 storageCacheContent.insertElementAt(new Object[] {v.elementAt(1), v.elementAt(2)}, iter);
+                storageIndex.put(v.elementAt(2), new Integer(iter));
             }
         }
     }
+
+    /**
+     * Node in the access ordered list used by the LRU mode
+     */
+    static class Entry {
+        Object key;
+        Object value;
+        int size;
+        long lastAccessed;
+        Entry previous;
+        Entry next;
+    }
 }
@@ -30,16 +30,22 @@ import com.sun.lwuit.events.ActionEvent;
 import com.sun.lwuit.events.ActionListener;
 import com.sun.lwuit.io.impl.IOImplementation;
 import com.sun.lwuit.io.util.BufferedInputStream;
+import com.sun.lwuit.io.util.GZIPInputStream;
+import com.sun.lwuit.io.util.InflaterInputStream;
 import com.sun.lwuit.io.util.BufferedOutputStream;
 import com.sun.lwuit.io.util.IOProgressListener;
 import com.sun.lwuit.io.util.Util;
 import com.sun.lwuit.util.EventDispatcher;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.Calendar;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.TimeZone;
 import java.util.Vector;
 
 /**
@@ -82,6 +88,28 @@ public class ConnectionRequest implements IOProgressListener {
 
     private EventDispatcher actionListeners;
 
+    /**
+     * Indicates the largest response that is buffered in memory so it can be shared
+     * with coalesced requests, if the response is larger the coalesced requests are
+     * sent on their own
+     *
+     * @return the size in bytes
+     */
+    public static int getMaxCoalescedResponseSize() {
+        return maxCoalescedResponseSize;
+    }
+
+    /**
+     * Indicates the largest response that is buffered in memory so it can be shared
+     * with coalesced requests, if the response is larger the coalesced requests are
+     * sent on their own
+     *
+     * @param size the size in bytes
+     */
+    public static void setMaxCoalescedResponseSize(int size) {
+        maxCoalescedResponseSize = size;
+    }
+
     /**
      * @return the defaultFollowRedirects
      */
@@ -110,6 +138,14 @@ public class ConnectionRequest implements IOProgressListener {
     private boolean paused;
     private boolean killed = false;
     private static boolean defaultFollowRedirects = true;
+    private static boolean defaultHttpCaching;
+    private boolean httpCaching = defaultHttpCaching;
+    private static boolean defaultCompression;
+    private boolean compression = defaultCompression;
+    private boolean coalescing;
+    private static int maxCoalescedResponseSize = 65536;
+    private Vector coalesced;
+    String coalescingKey;
     private boolean followRedirects = defaultFollowRedirects;
     private int timeout = 300000;
     private InputStream input;
@@ -183,6 +219,10 @@ public class ConnectionRequest implements IOProgressListener {
                 impl.setHeader(connection, k, value);
             }
         }
+
+        if(compression && (userHeaders == null || !userHeaders.containsKey("Accept-Encoding"))) {
+            impl.setHeader(connection, "Accept-Encoding", "gzip, deflate");
+        }
     }
 
     /**
@@ -198,11 +238,28 @@ public class ConnectionRequest implements IOProgressListener {
         output = null;
         try {
             String actualUrl = createRequestURL();
+            boolean caching = isHttpCachingActive();
+            HttpCache.Entry cached = null;
+            if(caching) {
+                cached = HttpCache.getInstance().lookup(actualUrl);
+                if(cached != null && cached.isFresh()) {
+                    readCachedResponse(cached, false);
+                    return;
+                }
+            }
             connection = impl.connect(actualUrl, isReadRequest(), isPost() || isWriteRequest());
             if(shouldStop()) {
                 return;
             }
             initConnection(connection);
+            if(cached != null) {
+                if(cached.etag != null) {
+                    impl.setHeader(connection, "If-None-Match", cached.etag);
+                }
+                if(cached.lastModified != null) {
+                    impl.setHeader(connection, "If-Modified-Since", cached.lastModified);
+                }
+            }
             Vector v = impl.getCookiesForURL(actualUrl);
             if(v != null) {
                 int c = v.size();
@@ -260,6 +317,15 @@ public class ConnectionRequest implements IOProgressListener {
                 impl.addCookie(arr);
             }
             
+            if(responseCode == 304 && cached != null) {
+                // the cached response is still valid
+                HttpCache.getInstance().refresh(cached, getCacheExpiry(impl.getHeaderField("Cache-Control", connection)));
+                impl.cleanup(connection);
+                connection = null;
+                readCachedResponse(cached, true);
+                return;
+            }
+
             if(responseCode != 200) {
                 // redirect to new location
                 if(followRedirects && (responseCode == 301 || responseCode == 302
@@ -308,10 +374,36 @@ public class ConnectionRequest implements IOProgressListener {
                     }
                     ((BufferedInputStream)input).setYield(getYield());
                 }
-                readResponse(input);
-                if(shouldAutoCloseResponse()) {
-                    input.close();
+                InputStream response = input;
+                int bodyLength = contentLength;
+                if(compression) {
+                    // progress is reported by the buffered stream so it counts the compressed bytes
+                    String encoding = impl.getHeaderField("Content-Encoding", connection);
+                    if(encoding != null) {
+                        encoding = encoding.trim().toLowerCase();
+                        if(encoding.equals("gzip") || encoding.equals("x-gzip")) {
+                            response = new GZIPInputStream(input);
+                            bodyLength = -1;
+                        } else if(encoding.equals("deflate")) {
+                            response = new InflaterInputStream(input);
+                            bodyLength = -1;
+                        }
+                    }
+                }
+                if(caching) {
+                    String cacheControl = impl.getHeaderField("Cache-Control", connection);
+                    String etag = impl.getHeaderField("ETag", connection);
+                    String lastModified = impl.getHeaderField("Last-Modified", connection);
+                    long expires = getCacheExpiry(cacheControl);
+                    if((cacheControl == null || cacheControl.toLowerCase().indexOf("no-store") < 0) &&
+                            (etag != null || lastModified != null || expires > System.currentTimeMillis())) {
+                        response = HttpCache.getInstance().cacheResponse(actualUrl, etag, lastModified,
+                                expires, bodyLength, response);
+                    } else {
+                        HttpCache.getInstance().remove(actualUrl);
+                    }
                 }
+                readResponseAndCoalesced(response);
                 input = null;
             }
         } finally {
@@ -326,6 +418,393 @@ public class ConnectionRequest implements IOProgressListener {
         }
     }
 
+    /**
+     * Feeds a response from the HTTP cache into readResponse
+     */
+    private void readCachedResponse(HttpCache.Entry cached, boolean revalidated) throws IOException {
+        progress = NetworkEvent.PROGRESS_TYPE_INPUT;
+        contentLength = cached.size;
+        if(!isReadRequest()) {
+            return;
+        }
+        InputStream i = HttpCache.getInstance().openBody(cached, revalidated);
+        if(i == null) {
+            // the body is gone from the storage, drop the entry and try again
+            HttpCache.getInstance().remove(cached.url);
+            retry();
+            return;
+        }
+        input = i;
+        readResponseAndCoalesced(i);
+        input = null;
+    }
+
+    /**
+     * Invokes readResponse, if identical requests were coalesced into this request the
+     * body is buffered and fed to each one of them as well. Responses larger than
+     * the maximum coalesced response size aren't buffered, the coalesced requests are
+     * sent on their own instead.
+     */
+    private void readResponseAndCoalesced(InputStream response) throws IOException {
+        Vector followers = NetworkManager.getInstance().removeCoalesced(this);
+        if(followers != null && contentLength > maxCoalescedResponseSize) {
+            NetworkManager.getInstance().requeue(followers);
+            followers = null;
+        }
+        if(followers == null) {
+            readResponse(response);
+            if(shouldAutoCloseResponse()) {
+                response.close();
+            }
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int limit = maxCoalescedResponseSize;
+        int size = 0;
+        while(size <= limit) {
+            int count = response.read(chunk, 0, Math.min(chunk.length, limit + 1 - size));
+            if(count < 0) {
+                break;
+            }
+            buffer.write(chunk, 0, count);
+            size += count;
+        }
+        if(size > limit) {
+            // the length wasn't known in advance, the buffered bytes precede the rest of the body
+            NetworkManager.getInstance().requeue(followers);
+            readResponse(new PrefixedInputStream(buffer.toByteArray(), response));
+            if(shouldAutoCloseResponse()) {
+                response.close();
+            }
+            return;
+        }
+        byte[] data = buffer.toByteArray();
+        response.close();
+        try {
+            readResponse(new ByteArrayInputStream(data));
+        } finally {
+            for(int iter = 0 ; iter < followers.size() ; iter++) {
+                ((ConnectionRequest)followers.elementAt(iter)).readCoalescedResponse(data);
+            }
+        }
+    }
+
+    /**
+     * Feeds the body of the request this request was coalesced into to readResponse,
+     * the progress events are the same ones a request sent on its own receives
+     */
+    private void readCoalescedResponse(byte[] data) {
+        NetworkManager n = NetworkManager.getInstance();
+        n.fireProgressEvent(this, NetworkEvent.PROGRESS_TYPE_INITIALIZING, data.length, 0);
+        progress = NetworkEvent.PROGRESS_TYPE_INPUT;
+        contentLength = data.length;
+        n.fireProgressEvent(this, NetworkEvent.PROGRESS_TYPE_INPUT, data.length, data.length);
+        try {
+            if(!isKilled() && isReadRequest()) {
+                readResponse(new ByteArrayInputStream(data));
+            }
+        } catch(IOException e) {
+            handleIOException(e);
+        } catch(RuntimeException e) {
+            handleRuntimeException(e);
+        } finally {
+            NetworkManager.getInstance().fireProgressEvent(this, NetworkEvent.PROGRESS_TYPE_COMPLETED,
+                    data.length, data.length);
+        }
+    }
+
+    /**
+     * Returns the bytes that were already read from a stream followed by the rest of
+     * the stream
+     */
+    private static class PrefixedInputStream extends InputStream {
+        private byte[] prefix;
+        private int position;
+        private InputStream rest;
+
+        PrefixedInputStream(byte[] prefix, InputStream rest) {
+            this.prefix = prefix;
+            this.rest = rest;
+        }
+
+        public int read() throws IOException {
+            if(position < prefix.length) {
+                return prefix[position++] & 0xff;
+            }
+            return rest.read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(position < prefix.length) {
+                len = Math.min(len, prefix.length - position);
+                System.arraycopy(prefix, position, b, off, len);
+                position += len;
+                return len;
+            }
+            return rest.read(b, off, len);
+        }
+
+        public int available() throws IOException {
+            return prefix.length - position + rest.available();
+        }
+
+        public void close() throws IOException {
+            rest.close();
+        }
+    }
+
+    /**
+     * Attaches a request that will receive the response of this request
+     */
+    void addCoalesced(ConnectionRequest r) {
+        if(coalesced == null) {
+            coalesced = new Vector();
+        }
+        coalesced.addElement(r);
+    }
+
+    /**
+     * Detaches the requests that were coalesced into this request
+     */
+    Vector removeCoalesced() {
+        Vector v = coalesced;
+        coalesced = null;
+        return v;
+    }
+
+    /**
+     * Returns true if this request can share the response of an identical request,
+     * requests that modify the server are only coalesced if they don't support duplicates
+     */
+    boolean isCoalescingActive() {
+        return coalescing && showOnInit == null && disposeOnCompletion == null &&
+                shouldAutoCloseResponse() && (!(post || writeRequest) || !duplicateSupported);
+    }
+
+    /**
+     * Identifies requests of the same class with the same method, URL and arguments, this
+     * is used to find candidates for the equals() check that detects duplicates in the
+     * queue and should be computed once when the request is added since a redirect
+     * changes the URL
+     */
+    String getQueueKey() {
+        StringBuffer b = new StringBuffer(getClass().getName());
+        b.append(' ');
+        if(post) {
+            b.append("POST ");
+        } else {
+            b.append("GET ");
+        }
+        b.append(url);
+        if(requestArguments != null) {
+            b.append(' ');
+            appendSorted(b, requestArguments);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Appends the entries of the table ordered by key, every key and value is prefixed
+     * by its length so different tables never produce the same string
+     */
+    private static void appendSorted(StringBuffer b, Hashtable h) {
+        String[] keys = new String[h.size()];
+        int count = 0;
+        Enumeration e = h.keys();
+        while(e.hasMoreElements()) {
+            String key = (String)e.nextElement();
+            int pos = count;
+            while(pos > 0 && keys[pos - 1].compareTo(key) > 0) {
+                keys[pos] = keys[pos - 1];
+                pos--;
+            }
+            keys[pos] = key;
+            count++;
+        }
+        for(int iter = 0 ; iter < count ; iter++) {
+            String value = h.get(keys[iter]).toString();
+            b.append(keys[iter].length());
+            b.append(':');
+            b.append(keys[iter]);
+            b.append(value.length());
+            b.append(':');
+            b.append(value);
+        }
+    }
+
+    /**
+     * Identifies requests with the same URL, method, arguments and request headers,
+     * the arguments and headers are included verbatim so only identical requests match
+     */
+    String getCoalescingKey() {
+        StringBuffer b = new StringBuffer();
+        if(post || writeRequest) {
+            b.append("POST ");
+        } else {
+            b.append("GET ");
+        }
+        b.append(createRequestURL());
+        if(post && requestArguments != null) {
+            b.append(' ');
+            appendSorted(b, requestArguments);
+        }
+        if(userHeaders != null) {
+            b.append(' ');
+            appendSorted(b, userHeaders);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Indicates whether identical requests added while this request is pending or running
+     * share its response instead of being sent again or being discarded as duplicates.
+     * Requests are identical if they have the same URL, method, arguments and request
+     * headers, post requests are only coalesced if they don't support duplicates. Each
+     * coalesced request receives the response in its own readResponse callback, if this
+     * request fails the coalesced requests are sent on their own. Subclasses that write
+     * a body of their own should only enable coalescing if the body is determined by the
+     * arguments.
+     *
+     * @return true if identical requests are coalesced, this is false by default
+     */
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Indicates whether identical requests added while this request is pending or running
+     * share its response instead of being sent again or being discarded as duplicates.
+     *
+     * @param coalescing false to send this request even if an identical request is in progress
+     * @see #isCoalescing()
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Returns the time until which a response is fresh based on the max-age of its
+     * Cache-Control header, responses without max-age are revalidated on every request
+     */
+    private static long getCacheExpiry(String cacheControl) {
+        long now = System.currentTimeMillis();
+        if(cacheControl == null) {
+            return now;
+        }
+        cacheControl = cacheControl.toLowerCase();
+        if(cacheControl.indexOf("no-cache") > -1) {
+            return now;
+        }
+        int pos = cacheControl.indexOf("max-age=");
+        if(pos < 0) {
+            return now;
+        }
+        pos += 8;
+        long seconds = 0;
+        while(pos < cacheControl.length()) {
+            char c = cacheControl.charAt(pos);
+            if(c < '0' || c > '9') {
+                break;
+            }
+            seconds = seconds * 10 + (c - '0');
+            pos++;
+        }
+        return now + seconds * 1000;
+    }
+
+    private boolean isHttpCachingActive() {
+        return httpCaching && !post && !isWriteRequest() && Storage.isInitialized();
+    }
+
+    /**
+     * Indicates whether GET requests use the HTTP cache by default
+     *
+     * @return true if HTTP caching is on by default
+     */
+    public static boolean isDefaultHttpCaching() {
+        return defaultHttpCaching;
+    }
+
+    /**
+     * Indicates whether GET requests use the HTTP cache by default, this affects
+     * requests created after the call
+     *
+     * @param aDefaultHttpCaching true to use HTTP caching by default
+     */
+    public static void setDefaultHttpCaching(boolean aDefaultHttpCaching) {
+        defaultHttpCaching = aDefaultHttpCaching;
+    }
+
+    /**
+     * Indicates whether this request uses the HTTP cache, when enabled for a GET request
+     * a fresh cached response is passed to readResponse without a network request and a
+     * stale one is revalidated using If-None-Match/If-Modified-Since so a 304 response
+     * replays the cached body. Notice that readHeaders isn't invoked for responses
+     * served from the cache.
+     *
+     * @return true if this request uses the HTTP cache
+     * @see HttpCache
+     */
+    public boolean isHttpCaching() {
+        return httpCaching;
+    }
+
+    /**
+     * Indicates whether this request uses the HTTP cache, when enabled for a GET request
+     * a fresh cached response is passed to readResponse without a network request and a
+     * stale one is revalidated using If-None-Match/If-Modified-Since so a 304 response
+     * replays the cached body. Notice that readHeaders isn't invoked for responses
+     * served from the cache.
+     *
+     * @param httpCaching true to use the HTTP cache
+     * @see HttpCache
+     */
+    public void setHttpCaching(boolean httpCaching) {
+        this.httpCaching = httpCaching;
+    }
+
+    /**
+     * Indicates whether requests ask the server for gzip/deflate compressed responses by default
+     *
+     * @return true if compression is requested by default
+     */
+    public static boolean isDefaultCompression() {
+        return defaultCompression;
+    }
+
+    /**
+     * Indicates whether requests ask the server for gzip/deflate compressed responses by
+     * default, this affects requests created after the call
+     *
+     * @param aDefaultCompression true to request compression by default
+     */
+    public static void setDefaultCompression(boolean aDefaultCompression) {
+        defaultCompression = aDefaultCompression;
+    }
+
+    /**
+     * Indicates whether this request sends an Accept-Encoding header for gzip and deflate,
+     * a compressed response is decoded before it reaches readResponse. Notice that
+     * getContentLength() and the progress events refer to the compressed bytes.
+     *
+     * @return true if a compressed response is requested
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Indicates whether this request sends an Accept-Encoding header for gzip and deflate,
+     * a compressed response is decoded before it reaches readResponse. Notice that
+     * getContentLength() and the progress events refer to the compressed bytes.
+     *
+     * @param compression true to request a compressed response
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
     /**
      * This mimics the behavior of browsers that convert post operations to get operations when redirecting a
      * request.
@@ -422,9 +901,94 @@ public class ConnectionRequest implements IOProgressListener {
             c.setDomain(IOImplementation.getInstance().getURLDomain(url));
         }
 
+        String lower = h.toLowerCase();
+        String path = getCookieAttribute(h, lower, "path=");
+        if(path != null && path.startsWith("/")) {
+            c.setPath(path);
+        }
+        String maxAge = getCookieAttribute(h, lower, "max-age=");
+        if(maxAge != null) {
+            try {
+                // a zero or negative max age deletes the cookie so it expires immediately
+                c.setExpires(System.currentTimeMillis() + Math.max(1, Long.parseLong(maxAge) * 1000));
+            } catch(NumberFormatException err) {
+                System.out.println("Warning: illegal cookie max-age " + maxAge);
+            }
+        } else {
+            String expires = getCookieAttribute(h, lower, "expires=");
+            if(expires != null) {
+                c.setExpires(parseCookieDate(expires));
+            }
+        }
         return c;
     }
 
+    private String getCookieAttribute(String h, String lower, String name) {
+        int index = lower.indexOf(name);
+        if(index < 0) {
+            return null;
+        }
+        String value = h.substring(index + name.length());
+        index = value.indexOf(';');
+        if(index > -1) {
+            value = value.substring(0, index);
+        }
+        return value.trim();
+    }
+
+    /**
+     * Parses a cookie date in the "Wdy, DD-Mon-YYYY HH:MM:SS GMT" format (or the
+     * RFC 1123 variant with spaces instead of dashes)
+     *
+     * @param date the date string
+     * @return the date in milliseconds or 0 if the date couldn't be parsed which
+     * results in a session cookie
+     */
+    private long parseCookieDate(String date) {
+        try {
+            int comma = date.indexOf(',');
+            String d = date.substring(comma + 1).trim().replace('-', ' ');
+            Vector tokens = new Vector();
+            int pos = 0;
+            int len = d.length();
+            while(pos < len) {
+                int next = d.indexOf(' ', pos);
+                if(next < 0) {
+                    next = len;
+                }
+                if(next > pos) {
+                    tokens.addElement(d.substring(pos, next));
+                }
+                pos = next + 1;
+            }
+            int day = Integer.parseInt((String)tokens.elementAt(0));
+            // a match that isn't on a month boundary such as "anf" isn't a month
+            int month = "janfebmaraprmayjunjulaugsepoctnovdec".indexOf(((String)tokens.elementAt(1)).toLowerCase().substring(0, 3));
+            if(month < 0 || month % 3 != 0) {
+                System.out.println("Warning: illegal cookie expiry date " + date);
+                return 0;
+            }
+            month /= 3;
+            int year = Integer.parseInt((String)tokens.elementAt(2));
+            if(year < 100) {
+                year += year < 70 ? 2000 : 1900;
+            }
+            String time = (String)tokens.elementAt(3);
+            Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+            cal.set(Calendar.YEAR, year);
+            cal.set(Calendar.MONTH, Calendar.JANUARY + month);
+            cal.set(Calendar.DAY_OF_MONTH, day);
+            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(time.substring(0, 2)));
+            cal.set(Calendar.MINUTE, Integer.parseInt(time.substring(3, 5)));
+            cal.set(Calendar.SECOND, Integer.parseInt(time.substring(6, 8)));
+            cal.set(Calendar.MILLISECOND, 0);
+            return cal.getTime().getTime();
+        } catch(RuntimeException err) {
+            System.out.println("Warning: illegal cookie expiry date " + date);
+            return 0;
+        }
+    }
+
     /**
      * Handles IOException thrown when performing a network operation
      * 
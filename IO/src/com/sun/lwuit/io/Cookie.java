@@ -24,6 +24,7 @@
 
 package com.sun.lwuit.io;
 
+import com.sun.lwuit.io.impl.IOImplementation;
 import com.sun.lwuit.io.util.Util;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -38,6 +39,7 @@ public class Cookie implements Externalizable {
     private String name;
     private String value;
     private String domain;
+    private String path;
     private long expires;
 
     private static boolean autoStored = true;
@@ -89,6 +91,20 @@ public class Cookie implements Externalizable {
         this.domain = domain;
     }
 
+    /**
+     * @return the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @param path the path to set
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
     /**
      * @return the expires
      */
@@ -107,7 +123,7 @@ public class Cookie implements Externalizable {
      * @inheritDoc
      */
     public int getVersion() {
-        return 1;
+        return 2;
     }
 
     /**
@@ -128,6 +144,12 @@ public class Cookie implements Externalizable {
             out.writeBoolean(false);
         }
         out.writeLong(expires);
+        if(path != null) {
+            out.writeBoolean(true);
+            out.writeUTF(path);
+        } else {
+            out.writeBoolean(false);
+        }
     }
 
     /**
@@ -142,6 +164,9 @@ public class Cookie implements Externalizable {
             domain = in.readUTF();
         }
         expires = in.readLong();
+        if(version > 1 && in.readBoolean()) {
+            path = in.readUTF();
+        }
     }
 
     /**
@@ -180,8 +205,6 @@ public class Cookie implements Externalizable {
      * Clears all cookies history from storage
      */
     public static void clearCookiesFromStorage() {
-        if (Storage.getInstance().exists(Cookie.STORAGE_NAME)) {
-            Storage.getInstance().deleteStorageFile(Cookie.STORAGE_NAME);
-        }
+        IOImplementation.getInstance().clearCookies();
     }
 }
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.lwuit.io;
+
+import com.sun.lwuit.io.impl.IOImplementation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Persistent cache of HTTP GET responses used by connection requests that enable
+ * HTTP caching. Responses are saved to the Storage along with their ETag,
+ * Last-Modified and Cache-Control max-age headers, fresh responses are served without
+ * touching the network and stale responses are revalidated with a conditional request
+ * so an unchanged resource costs a 304 response instead of its full body.
+ * The cache is bounded by the total size of the cached bodies and the least recently
+ * used responses are evicted first.
+ *
+ * @see ConnectionRequest#setHttpCaching(boolean)
+ */
+public class HttpCache {
+    private static final String INDEX_NAME = "$HTTPCACHE$";
+    private static final String BODY_PREFIX = "$HTTP$";
+    private static HttpCache instance;
+
+    private int maxSize = 256 * 1024;
+    private int size;
+    private int nextId;
+
+    /**
+     * Maps URLs to entries
+     */
+    private Hashtable entries = new Hashtable();
+
+    /**
+     * URLs in access order, the least recently used is first
+     */
+    private Vector order = new Vector();
+
+    private int hitCount;
+    private int revalidatedCount;
+    private int missCount;
+
+    private HttpCache() {
+        load();
+    }
+
+    /**
+     * Returns the HTTP cache instance, the storage must be initialized before the
+     * cache is used
+     *
+     * @return the HTTP cache
+     */
+    public static synchronized HttpCache getInstance() {
+        if(instance == null) {
+            instance = new HttpCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Indicates the maximum total size in bytes of the cached response bodies
+     *
+     * @return the maximum size in bytes
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Indicates the maximum total size in bytes of the cached response bodies, least
+     * recently used responses are evicted once the size is exceeded
+     *
+     * @param maxSize the maximum size in bytes
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        if(evict(0)) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Returns the total size in bytes of the cached response bodies
+     *
+     * @return the size in bytes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of requests answered from the cache without a network request
+     *
+     * @return the hit count
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of requests answered from the cache after the server
+     * responded with 304 (not modified)
+     *
+     * @return the revalidated count
+     */
+    public int getRevalidatedCount() {
+        return revalidatedCount;
+    }
+
+    /**
+     * Returns the number of cacheable requests that weren't found in the cache
+     *
+     * @return the miss count
+     */
+    public int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Removes all the cached responses
+     */
+    public synchronized void clear() {
+        Storage s = Storage.getInstance();
+        for(int iter = 0 ; iter < order.size() ; iter++) {
+            Entry e = (Entry)entries.get(order.elementAt(iter));
+            s.deleteStorageFile(e.storageName);
+        }
+        entries.clear();
+        order.removeAllElements();
+        size = 0;
+        saveIndex();
+    }
+
+    /**
+     * Removes the cached response for the given URL
+     *
+     * @param url the URL of the request
+     */
+    public synchronized void remove(String url) {
+        Entry e = (Entry)entries.remove(url);
+        if(e != null) {
+            order.removeElement(url);
+            size -= e.size;
+            Storage.getInstance().deleteStorageFile(e.storageName);
+            saveIndex();
+        }
+    }
+
+    private void load() {
+        Vector index = (Vector)Storage.getInstance().readObject(INDEX_NAME);
+        if(index == null) {
+            return;
+        }
+        for(int iter = 0 ; iter < index.size() ; iter++) {
+            Vector v = (Vector)index.elementAt(iter);
+            Entry e = new Entry();
+            e.url = (String)v.elementAt(0);
+            e.storageName = (String)v.elementAt(1);
+            e.etag = (String)v.elementAt(2);
+            e.lastModified = (String)v.elementAt(3);
+            e.expires = ((Long)v.elementAt(4)).longValue();
+            e.size = ((Integer)v.elementAt(5)).intValue();
+            entries.put(e.url, e);
+            order.addElement(e.url);
+            size += e.size;
+            int id = Integer.parseInt(e.storageName.substring(BODY_PREFIX.length()));
+            if(id >= nextId) {
+                nextId = id + 1;
+            }
+        }
+    }
+
+    private void saveIndex() {
+        Vector index = new Vector();
+        for(int iter = 0 ; iter < order.size() ; iter++) {
+            Entry e = (Entry)entries.get(order.elementAt(iter));
+            Vector v = new Vector();
+            v.addElement(e.url);
+            v.addElement(e.storageName);
+            v.addElement(e.etag);
+            v.addElement(e.lastModified);
+            v.addElement(new Long(e.expires));
+            v.addElement(new Integer(e.size));
+            index.addElement(v);
+        }
+        Storage.getInstance().writeObject(INDEX_NAME, index);
+    }
+
+    /**
+     * Evicts least recently used entries until the given number of bytes fits
+     *
+     * @return true if an entry was evicted
+     */
+    private boolean evict(int required) {
+        boolean evicted = false;
+        while(order.size() > 0 && size + required > maxSize) {
+            Entry e = (Entry)entries.remove(order.elementAt(0));
+            order.removeElementAt(0);
+            size -= e.size;
+            Storage.getInstance().deleteStorageFile(e.storageName);
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the cached entry for the given URL and marks it as recently used
+     */
+    synchronized Entry lookup(String url) {
+        Entry e = (Entry)entries.get(url);
+        if(e == null) {
+            missCount++;
+            return null;
+        }
+        order.removeElement(url);
+        order.addElement(url);
+        return e;
+    }
+
+    /**
+     * Opens the cached body of the given entry
+     */
+    InputStream openBody(Entry e, boolean revalidated) throws IOException {
+        if(revalidated) {
+            revalidatedCount++;
+        } else {
+            hitCount++;
+        }
+        return Storage.getInstance().createInputStream(e.storageName);
+    }
+
+    /**
+     * Updates the freshness of an entry after the server indicated it wasn't modified
+     */
+    synchronized void refresh(Entry e, long expires) {
+        e.expires = expires;
+        saveIndex();
+    }
+
+    /**
+     * Wraps the response stream so the body is saved into the cache as it is read by
+     * the request, the entry is added only if the body was read entirely. A response
+     * whose content length exceeds the maximum size is returned as is since it can't
+     * be cached
+     */
+    InputStream cacheResponse(String url, String etag, String lastModified, long expires, int contentLength, InputStream response) throws IOException {
+        if(contentLength > maxSize) {
+            remove(url);
+            return response;
+        }
+        Entry e = new Entry();
+        e.url = url;
+        e.etag = etag;
+        e.lastModified = lastModified;
+        e.expires = expires;
+        synchronized(this) {
+            e.storageName = BODY_PREFIX + nextId;
+            nextId++;
+        }
+        return new CachingInputStream(e, contentLength, response, Storage.getInstance().createOutputStream(e.storageName));
+    }
+
+    synchronized void commit(Entry e) {
+        Entry previous = (Entry)entries.remove(e.url);
+        if(previous != null) {
+            order.removeElement(e.url);
+            size -= previous.size;
+            Storage.getInstance().deleteStorageFile(previous.storageName);
+        }
+        if(e.size > maxSize) {
+            Storage.getInstance().deleteStorageFile(e.storageName);
+            saveIndex();
+            return;
+        }
+        evict(e.size);
+        entries.put(e.url, e);
+        order.addElement(e.url);
+        size += e.size;
+        saveIndex();
+    }
+
+    /**
+     * Meta data of a cached response
+     */
+    static class Entry {
+        String url;
+        String storageName;
+        String etag;
+        String lastModified;
+        long expires;
+        int size;
+
+        boolean isFresh() {
+            return expires > System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Copies the bytes read from the response into the storage
+     */
+    class CachingInputStream extends InputStream {
+        private Entry entry;
+        private int contentLength;
+        private InputStream source;
+        private OutputStream body;
+        private boolean completed;
+
+        CachingInputStream(Entry entry, int contentLength, InputStream source, OutputStream body) {
+            this.entry = entry;
+            this.contentLength = contentLength;
+            this.source = source;
+            this.body = body;
+        }
+
+        private void finish() {
+            if(body == null) {
+                return;
+            }
+            try {
+                body.close();
+                body = null;
+                if(completed) {
+                    commit(entry);
+                    return;
+                }
+            } catch(IOException err) {
+                err.printStackTrace();
+                IOImplementation.getInstance().cleanup(body);
+                body = null;
+            }
+            Storage.getInstance().deleteStorageFile(entry.storageName);
+        }
+
+        private void discard() {
+            IOImplementation.getInstance().cleanup(body);
+            body = null;
+            Storage.getInstance().deleteStorageFile(entry.storageName);
+        }
+
+        /**
+         * Stops caching a body that exceeds the maximum size, the previously cached
+         * response is outdated so it is removed as well
+         */
+        private void discardOversized() {
+            discard();
+            remove(entry.url);
+        }
+
+        public int read() throws IOException {
+            int b = source.read();
+            if(body != null) {
+                if(b < 0) {
+                    completed = true;
+                    finish();
+                } else if(entry.size + 1 > maxSize) {
+                    // the body can't fit the cache, stop writing it to the storage
+                    discardOversized();
+                } else {
+                    try {
+                        body.write(b);
+                        entry.size++;
+                    } catch(IOException err) {
+                        discard();
+                    }
+                }
+            }
+            return b;
+        }
+
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = source.read(b, off, len);
+            if(body != null) {
+                if(count < 0) {
+                    completed = true;
+                    finish();
+                } else if(entry.size + count > maxSize) {
+                    discardOversized();
+                } else {
+                    try {
+                        body.write(b, off, count);
+                        entry.size += count;
+                    } catch(IOException err) {
+                        discard();
+                    }
+                }
+            }
+            return count;
+        }
+
+        public int available() throws IOException {
+            return source.available();
+        }
+
+        public void close() throws IOException {
+            if(contentLength > -1 && entry.size == contentLength) {
+                completed = true;
+            }
+            finish();
+            source.close();
+        }
+    }
+}
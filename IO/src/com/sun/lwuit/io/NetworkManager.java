@@ -75,7 +75,7 @@ public class NetworkManager {
 
     private static final Object LOCK = new Object();
     private static final NetworkManager INSTANCE = new NetworkManager();
-    private Vector pending = new Vector();
+    private RequestQueue pending = new RequestQueue();
     private boolean running;
     private int threadCount = 1;
     private NetworkThread[] networkThreads;
@@ -85,6 +85,12 @@ public class NetworkManager {
     private Hashtable threadAssignements = new Hashtable();
     private Hashtable userHeaders;
 
+    /**
+     * Pending and running requests that accept coalesced requests keyed by their
+     * coalescing key
+     */
+    private Hashtable inFlight = new Hashtable();
+
     private NetworkManager() {
     }
 
@@ -120,9 +126,12 @@ public class NetworkManager {
 
     class NetworkThread implements Runnable {
         private ConnectionRequest currentRequest;
+        private RequestQueue.Node currentNode;
         private Thread threadInstance;
+        private int offset;
 
-        public NetworkThread() {
+        public NetworkThread(int offset) {
+            this.offset = offset;
         }
 
         public ConnectionRequest getCurrentRequest() {
@@ -143,133 +152,130 @@ public class NetworkManager {
             return threadInstance;
         }
 
+        /**
+         * Invoked when the thread is replaced by a new thread while it's stuck in a
+         * request, the connection slot of the request is released so requests to its
+         * host aren't blocked by the abandoned thread
+         */
+        void abandon() {
+            synchronized(LOCK) {
+                if(currentNode != null) {
+                    pending.finished(currentNode);
+                    LOCK.notifyAll();
+                }
+            }
+        }
+
         public void run() {
             threadInstance = Thread.currentThread();
             while(running) {
-                if(pending.size() > 0) {
-                    // the synchronization here isn't essential, only for good measure
-                    synchronized(LOCK) {
-                        //double lock to prevent a potential exception
-                        if(pending.size() == 0){
-                            continue;
-                        }
-                        currentRequest = (ConnectionRequest)pending.elementAt(0);
-                        pending.removeElementAt(0);
-                        currentRequest.prepare();
-                        if(currentRequest.isKilled()){
-                            continue;
+                RequestQueue.Node node;
+                synchronized(LOCK) {
+                    node = pending.next(offset);
+                    if(node == null) {
+                        // requests are added with notifyAll so waiting here is safe even
+                        // if the pending requests belong to another thread or host
+                        try {
+                            LOCK.wait();
+                        } catch (InterruptedException ex) {
+                            ex.printStackTrace();
                         }
+                        continue;
                     }
-                    if(userHeaders != null) {
-                        Enumeration e = userHeaders.keys();
-                        while(e.hasMoreElements()) {
-                            String key = (String)e.nextElement();
-                            String value = (String)userHeaders.get(key);
-                            currentRequest.addRequestHeaderDontRepleace(key, value);
-                        }
+                    currentRequest = node.request;
+                    currentNode = node;
+                    currentRequest.prepare();
+                    if(currentRequest.isKilled()){
+                        pending.finished(node);
+                        currentRequest = null;
+                        currentNode = null;
+                        requeueCoalesced(node.request);
+                        LOCK.notifyAll();
+                        continue;
                     }
-                    if(threadAssignements.size() > 0) {
-                        String n = currentRequest.getClass().getName();
-                        Integer threadOffset = (Integer)threadAssignements.get(n);
-                        if(threadOffset != null && networkThreads[threadOffset.intValue()] != this) {
-                            synchronized(LOCK) {
-                                if(pending.size() > 0) {
-                                    pending.insertElementAt(currentRequest, 1);
-                                    continue;
-                                }
-                                pending.addElement(currentRequest);
-                                LOCK.notify();
-                                try {
-                                    LOCK.wait(30);
-                                } catch (InterruptedException ex) {
-                                    ex.printStackTrace();
-                                }
-                            }
-                        }
+                }
+                if(userHeaders != null) {
+                    Enumeration e = userHeaders.keys();
+                    while(e.hasMoreElements()) {
+                        String key = (String)e.nextElement();
+                        String value = (String)userHeaders.get(key);
+                        currentRequest.addRequestHeaderDontRepleace(key, value);
                     }
+                }
 
-                    int frameRate = -1;
-                    try {
-                        // for higher priority tasks increase the thread priority, for lower
-                        // prioirty tasks decrease it. In critical priority reduce the LWUIT
-                        // rendering thread speed for even faster download
-                        switch(currentRequest.getPriority()) {
-                            case ConnectionRequest.PRIORITY_CRITICAL:
-                                frameRate = Display.getInstance().getFrameRate();
-                                Display.getInstance().setFramerate(4);
-                                Thread.currentThread().setPriority(Thread.MAX_PRIORITY - 1);
-                                break;
-                            case ConnectionRequest.PRIORITY_HIGH:
-                                Thread.currentThread().setPriority(Thread.NORM_PRIORITY + 2);
-                                break;
-                            case ConnectionRequest.PRIORITY_NORMAL:
-                                break;
-                            case ConnectionRequest.PRIORITY_LOW:
-                                Thread.currentThread().setPriority(Thread.MIN_PRIORITY + 2);
-                                break;
-                            case ConnectionRequest.PRIORITY_REDUNDANT:
-                                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-                                break;
-                        }
-                        
-                        if(progressListeners != null) {
-                            progressListeners.fireActionEvent(new NetworkEvent(currentRequest, NetworkEvent.PROGRESS_TYPE_INITIALIZING));
-                        }
-                        if(currentRequest.getShowOnInit() != null) {
-                            currentRequest.getShowOnInit().showModeless();
-                        }
-
-                        currentRequest.performOperation();
-                    } catch(IOException e) {
-                        if(!handleException(currentRequest, e)) {
-                            currentRequest.handleIOException(e);
-                        }
-                    } catch(RuntimeException er) {
-                        if(!handleException(currentRequest, er)) {
-                            currentRequest.handleRuntimeException(er);
-                        }
-                    } finally {
-                        Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
-                        if(frameRate > -1) {
-                            Display.getInstance().setFramerate(frameRate);
-                        }
+                int frameRate = -1;
+                try {
+                    // for higher priority tasks increase the thread priority, for lower
+                    // prioirty tasks decrease it. In critical priority reduce the LWUIT
+                    // rendering thread speed for even faster download
+                    switch(currentRequest.getPriority()) {
+                        case ConnectionRequest.PRIORITY_CRITICAL:
+                            frameRate = Display.getInstance().getFrameRate();
+                            Display.getInstance().setFramerate(4);
+                            Thread.currentThread().setPriority(Thread.MAX_PRIORITY - 1);
+                            break;
+                        case ConnectionRequest.PRIORITY_HIGH:
+                            Thread.currentThread().setPriority(Thread.NORM_PRIORITY + 2);
+                            break;
+                        case ConnectionRequest.PRIORITY_NORMAL:
+                            break;
+                        case ConnectionRequest.PRIORITY_LOW:
+                            Thread.currentThread().setPriority(Thread.MIN_PRIORITY + 2);
+                            break;
+                        case ConnectionRequest.PRIORITY_REDUNDANT:
+                            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                            break;
+                    }
+                    
+                    if(progressListeners != null) {
+                        progressListeners.fireActionEvent(new NetworkEvent(currentRequest, NetworkEvent.PROGRESS_TYPE_INITIALIZING));
+                    }
+                    if(currentRequest.getShowOnInit() != null) {
+                        currentRequest.getShowOnInit().showModeless();
+                    }
 
-                        if(progressListeners != null) {
-                            progressListeners.fireActionEvent(new NetworkEvent(currentRequest, NetworkEvent.PROGRESS_TYPE_COMPLETED));
-                        }
-                        if(currentRequest.getDisposeOnCompletion() != null) {
-                            // there may be a race condition where the dialog hasn't yet appeared but the
-                            // network request completed
-                            while(Display.getInstance().getCurrent() != currentRequest.getDisposeOnCompletion()) {
-                                try {
-                                    Thread.sleep(10);
-                                } catch (InterruptedException ex) {
-                                    ex.printStackTrace();
-                                }
-                            }
-                            currentRequest.getDisposeOnCompletion().dispose();
-                        }
+                    currentRequest.performOperation();
+                } catch(IOException e) {
+                    if(!handleException(currentRequest, e)) {
+                        currentRequest.handleIOException(e);
+                    }
+                } catch(RuntimeException er) {
+                    if(!handleException(currentRequest, er)) {
+                        currentRequest.handleRuntimeException(er);
+                    }
+                } finally {
+                    Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
+                    if(frameRate > -1) {
+                        Display.getInstance().setFramerate(frameRate);
                     }
-                    currentRequest = null;
 
-                    // wakeup threads waiting for the completion of this network operation
-                    synchronized(LOCK) {
-                        LOCK.notifyAll();
+                    if(progressListeners != null) {
+                        progressListeners.fireActionEvent(new NetworkEvent(currentRequest, NetworkEvent.PROGRESS_TYPE_COMPLETED));
                     }
-                } else {
-                    synchronized(LOCK) {
-                        try {
-                            // prevent waiting when there is still a pending request
-                            // this can occur with a race condition since the synchronize
-                            // scope is limited to prevent blocking on add...
-                            if(pending.size() == 0) {
-                                LOCK.wait();
+                    if(currentRequest.getDisposeOnCompletion() != null) {
+                        // there may be a race condition where the dialog hasn't yet appeared but the
+                        // network request completed
+                        while(Display.getInstance().getCurrent() != currentRequest.getDisposeOnCompletion()) {
+                            try {
+                                Thread.sleep(10);
+                            } catch (InterruptedException ex) {
+                                ex.printStackTrace();
                             }
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
                         }
+                        currentRequest.getDisposeOnCompletion().dispose();
                     }
                 }
+                currentRequest = null;
+
+                requeueCoalesced(node.request);
+
+                // wakeup threads waiting for the completion of this network operation
+                // or for a connection to the same host
+                synchronized(LOCK) {
+                    pending.finished(node);
+                    currentNode = null;
+                    LOCK.notifyAll();
+                }
             }
         }
     }
@@ -289,8 +295,8 @@ public class NetworkManager {
         }
     }
 
-    private NetworkThread createNetworkThread() {
-        return new NetworkThread();
+    private NetworkThread createNetworkThread(int offset) {
+        return new NetworkThread(offset);
     }
 
     /**
@@ -304,7 +310,7 @@ public class NetworkManager {
         running = true;
         networkThreads = new NetworkThread[getThreadCount()];
         for(int iter = 0 ; iter < getThreadCount() ; iter++) {
-            networkThreads[iter] = createNetworkThread();
+            networkThreads[iter] = createNetworkThread(iter);
             networkThreads[iter].start();
         }
         // we need to implement a timeout thread of our own for this case...
@@ -339,7 +345,8 @@ public class NetworkManager {
                                         if(c.getTimeSinceLastActivity() > cTimeout) {
                                             // we need to create a whole new network thread and abandon this one!
                                             if(running) {
-                                                networkThreads[iter] = createNetworkThread();
+                                                networkThreads[iter].abandon();
+                                                networkThreads[iter] = createNetworkThread(iter);
                                                 networkThreads[iter].start();
                                             }
                                         }
@@ -358,6 +365,10 @@ public class NetworkManager {
      */
     public void shutdown() {
         running = false;
+        IOImplementation.getInstance().flushCookies();
+        synchronized(LOCK) {
+            LOCK.notifyAll();
+        }
     }
 
     /**
@@ -369,15 +380,57 @@ public class NetworkManager {
         return INSTANCE;
     }
 
-    private void addSortedToQueue(ConnectionRequest request, int priority) {
-        for(int iter = 0 ; iter < pending.size() ; iter++) {
-            ConnectionRequest r = (ConnectionRequest)pending.elementAt(iter);
-            if(r.getPriority() < priority) {
-                pending.insertElementAt(request, iter);
-                return;
+    /**
+     * Stops coalescing requests into the given request and returns the requests that
+     * were already coalesced into it
+     *
+     * @param request the request whose response is about to be read
+     * @return the coalesced requests or null
+     */
+    Vector removeCoalesced(ConnectionRequest request) {
+        synchronized(LOCK) {
+            if(request.coalescingKey != null) {
+                if(inFlight.get(request.coalescingKey) == request) {
+                    inFlight.remove(request.coalescingKey);
+                }
+                request.coalescingKey = null;
             }
+            return request.removeCoalesced();
         }
-        pending.addElement(request);
+    }
+
+    /**
+     * Requests coalesced into a request that failed, was killed or was redirected are
+     * sent on their own
+     */
+    private void requeueCoalesced(ConnectionRequest request) {
+        Vector coalesced = removeCoalesced(request);
+        if(coalesced != null) {
+            requeue(coalesced);
+        }
+    }
+
+    /**
+     * Sends requests that were detached from the request they were coalesced into
+     */
+    void requeue(Vector requests) {
+        for(int iter = 0 ; iter < requests.size() ; iter++) {
+            addToQueue((ConnectionRequest)requests.elementAt(iter));
+        }
+    }
+
+    /**
+     * Returns the lane of the request based on the thread assignments, 0 is the lane
+     * shared by all threads
+     */
+    private int getLane(ConnectionRequest request) {
+        if(threadAssignements.size() > 0) {
+            Integer threadOffset = (Integer)threadAssignements.get(request.getClass().getName());
+            if(threadOffset != null && threadOffset.intValue() < threadCount) {
+                return threadOffset.intValue() + 1;
+            }
+        }
+        return 0;
     }
 
     /**
@@ -480,41 +533,50 @@ public class NetworkManager {
         synchronized(LOCK) {
             int i = request.getPriority();
             if(!retry) {
+                String key = null;
+                if(request.isCoalescingActive()) {
+                    key = request.getCoalescingKey();
+                    ConnectionRequest leader = (ConnectionRequest)inFlight.get(key);
+                    if(leader != null && leader != request) {
+                        // the response of the identical request will be fed to this request
+                        leader.addCoalesced(request);
+                        return;
+                    }
+                    if(leader == request) {
+                        key = null;
+                    }
+                }
                 if(!request.isDuplicateSupported()) {
+                    // pending requests are hashed so this doesn't scan the queue
                     if(pending.contains(request)) {
                         System.out.println("Duplicate entry in the queue: " + request.getClass().getName() + ": " + request);
                         return;
                     }
-                    ConnectionRequest currentRequest = networkThreads[0].getCurrentRequest();
-                    if(currentRequest != null && currentRequest.equals(request)) {
-                        System.out.println("Duplicate entry detected");
-                        return;
-                    }
+                }
+
+                // the request only becomes a leader once it's certain to run
+                if(key != null) {
+                    request.coalescingKey = key;
+                    inFlight.put(key, request);
                 }
             } else {
                 i = ConnectionRequest.PRIORITY_HIGH;
             }
-            switch(i) {
-                case ConnectionRequest.PRIORITY_CRITICAL:
-                    pending.insertElementAt(request, 0);
-                    ConnectionRequest currentRequest = networkThreads[0].getCurrentRequest();
-                    if(currentRequest != null && currentRequest.getPriority() < ConnectionRequest.PRIORITY_CRITICAL) {
-                        if(currentRequest.isPausable()) {
-                            currentRequest.pause();
-                            pending.insertElementAt(currentRequest, 1);
-                        } else {
-                            currentRequest.kill();
-                        }
+            int lane = getLane(request);
+            pending.add(request, i, lane, false);
+            if(i == ConnectionRequest.PRIORITY_CRITICAL && networkThreads != null) {
+                NetworkThread t = networkThreads[Math.max(0, lane - 1)];
+                ConnectionRequest currentRequest = t.getCurrentRequest();
+                if(currentRequest != null && currentRequest.getPriority() < ConnectionRequest.PRIORITY_CRITICAL) {
+                    if(currentRequest.isPausable()) {
+                        currentRequest.pause();
+                        pending.add(currentRequest, currentRequest.getPriority(), getLane(currentRequest), true);
+                    } else {
+                        currentRequest.kill();
                     }
-                    break;
-                case ConnectionRequest.PRIORITY_HIGH:
-                case ConnectionRequest.PRIORITY_NORMAL:
-                case ConnectionRequest.PRIORITY_LOW:
-                case ConnectionRequest.PRIORITY_REDUNDANT:
-                    addSortedToQueue(request, i);
-                    break;
+                }
             }
-            LOCK.notify();
+            LOCK.notifyAll();
         }
     }
 
@@ -611,17 +673,59 @@ public class NetworkManager {
         threadAssignements.put(requestType.getName(), new Integer(offset));
     }
 
+    /**
+     * Limits the number of connections that run concurrently to the same host, requests
+     * beyond the limit wait without occupying a network thread so requests to other
+     * hosts can run in the meantime. This is only meaningful with more than one thread.
+     *
+     * @param max the maximum number of connections per host, 0 for no limit
+     */
+    public void setMaxConnectionsPerHost(int max) {
+        synchronized(LOCK) {
+            pending.setMaxConnectionsPerHost(max);
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections that run concurrently to the same host
+     *
+     * @return the maximum number of connections per host, 0 for no limit
+     */
+    public int getMaxConnectionsPerHost() {
+        return pending.getMaxConnectionsPerHost();
+    }
+
+    /**
+     * Low priority requests that wait longer than this period take turns with normal
+     * priority requests so a constant flow of requests can't starve them
+     *
+     * @param millis the aging period in milliseconds
+     */
+    public void setLowPriorityAging(int millis) {
+        synchronized(LOCK) {
+            pending.setLowPriorityAging(millis);
+        }
+    }
+
+    /**
+     * Returns the period after which low priority requests take turns with normal
+     * priority requests
+     *
+     * @return the aging period in milliseconds
+     */
+    public int getLowPriorityAging() {
+        return pending.getLowPriorityAging();
+    }
+
     /**
      * This method returns all pending ConnectioRequest connections.
      * @return the queue elements
      */
     public Enumeration enumurateQueue(){
-        Vector elements = new Vector();
+        Vector elements;
         synchronized(LOCK) {
-            Enumeration e = pending.elements();
-            while(e.hasMoreElements()){
-                elements.addElement(e.nextElement());
-            }
+            elements = pending.elements();
         }
         return elements.elements();
     }
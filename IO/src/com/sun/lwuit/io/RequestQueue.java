@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.io;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The pending requests of the network manager, requests are kept in priority heaps
+ * per lane where lane 0 is shared by all the network threads and every thread has
+ * a lane of its own for requests assigned to it. Low priority requests are kept
+ * apart so they can age and a per host limit can park requests until a connection
+ * to their host completes. This class isn't thread safe, all access is guarded by
+ * the network manager lock.
+ */
+class RequestQueue {
+    private Lane[] lanes = new Lane[] {new Lane()};
+
+    /**
+     * Vectors of the pending nodes keyed by the queue key of their request so duplicates
+     * are found without scanning the queue, running requests aren't included
+     */
+    private Hashtable active = new Hashtable();
+
+    /**
+     * Number of running requests per host
+     */
+    private Hashtable hostConnections = new Hashtable();
+
+    /**
+     * Vectors of nodes waiting for a connection to their host to complete
+     */
+    private Hashtable parked = new Hashtable();
+    private int parkedCount;
+
+    private long sequence;
+    private int size;
+    private int maxConnectionsPerHost;
+    private int lowPriorityAging = 3000;
+    private boolean agedServed;
+
+    /**
+     * A pending request with the order in which it was added
+     */
+    static class Node {
+        ConnectionRequest request;
+        int priority;
+        long sequence;
+        long time;
+        int lane;
+        String host;
+        String key;
+        boolean finished;
+
+        boolean before(Node n) {
+            if(priority != n.priority) {
+                return priority > n.priority;
+            }
+            return sequence < n.sequence;
+        }
+    }
+
+    /**
+     * Binary heap of nodes with the highest priority at the top, equal priorities
+     * are in the order of insertion
+     */
+    static class Heap {
+        private Node[] nodes = new Node[16];
+        private int size;
+
+        void add(Node n) {
+            if(size == nodes.length) {
+                Node[] arr = new Node[size * 2];
+                System.arraycopy(nodes, 0, arr, 0, size);
+                nodes = arr;
+            }
+            int pos = size;
+            size++;
+            while(pos > 0) {
+                int parent = (pos - 1) >> 1;
+                if(!n.before(nodes[parent])) {
+                    break;
+                }
+                nodes[pos] = nodes[parent];
+                pos = parent;
+            }
+            nodes[pos] = n;
+        }
+
+        Node peek() {
+            if(size == 0) {
+                return null;
+            }
+            return nodes[0];
+        }
+
+        Node poll() {
+            if(size == 0) {
+                return null;
+            }
+            Node top = nodes[0];
+            size--;
+            Node last = nodes[size];
+            nodes[size] = null;
+            if(size > 0) {
+                int pos = 0;
+                int half = size >> 1;
+                while(pos < half) {
+                    int child = (pos << 1) + 1;
+                    if(child + 1 < size && nodes[child + 1].before(nodes[child])) {
+                        child++;
+                    }
+                    if(!nodes[child].before(last)) {
+                        break;
+                    }
+                    nodes[pos] = nodes[child];
+                    pos = child;
+                }
+                nodes[pos] = last;
+            }
+            return top;
+        }
+
+        void addTo(Vector v) {
+            for(int iter = 0 ; iter < size ; iter++) {
+                v.addElement(nodes[iter]);
+            }
+        }
+    }
+
+    /**
+     * The queues of a lane, low priority requests are in a separate heap so the oldest
+     * one is available for aging
+     */
+    static class Lane {
+        Heap main = new Heap();
+        Heap low = new Heap();
+    }
+
+    /**
+     * Extracts the host and port portion of the URL
+     */
+    static String getHost(String url) {
+        int start = url.indexOf("://");
+        if(start < 0) {
+            start = 0;
+        } else {
+            start += 3;
+        }
+        int end = url.indexOf('/', start);
+        if(end < 0) {
+            end = url.length();
+        }
+        int q = url.indexOf('?', start);
+        if(q > -1 && q < end) {
+            end = q;
+        }
+        return url.substring(start, end).toLowerCase();
+    }
+
+    private Lane getLane(int lane) {
+        if(lane >= lanes.length) {
+            Lane[] arr = new Lane[lane + 1];
+            System.arraycopy(lanes, 0, arr, 0, lanes.length);
+            for(int iter = lanes.length ; iter < arr.length ; iter++) {
+                arr[iter] = new Lane();
+            }
+            lanes = arr;
+        }
+        return lanes[lane];
+    }
+
+    private void insert(Node n) {
+        Lane l = getLane(n.lane);
+        if(n.priority == ConnectionRequest.PRIORITY_LOW) {
+            l.low.add(n);
+        } else {
+            l.main.add(n);
+        }
+        size++;
+    }
+
+    /**
+     * Adds a request to the queue
+     *
+     * @param request the request
+     * @param priority the priority used for ordering
+     * @param lane 0 for the shared lane or the thread offset + 1
+     * @param first true to place the request ahead of other requests with the same priority
+     */
+    void add(ConnectionRequest request, int priority, int lane, boolean first) {
+        Node n = new Node();
+        n.request = request;
+        n.priority = priority;
+        sequence++;
+        if(first) {
+            n.sequence = -sequence;
+        } else {
+            n.sequence = sequence;
+        }
+        n.time = System.currentTimeMillis();
+        n.lane = lane;
+        String url = request.getUrl();
+        if(url != null) {
+            n.host = getHost(url);
+        }
+        n.key = request.getQueueKey();
+        insert(n);
+        Vector v = (Vector)active.get(n.key);
+        if(v == null) {
+            v = new Vector();
+            active.put(n.key, v);
+        }
+        v.addElement(n);
+    }
+
+    /**
+     * Returns true if a request equal to the given request is pending, only requests
+     * with the same queue key are compared
+     */
+    boolean contains(ConnectionRequest request) {
+        Vector v = (Vector)active.get(request.getQueueKey());
+        if(v != null) {
+            for(int iter = 0 ; iter < v.size() ; iter++) {
+                if(((Node)v.elementAt(iter)).request.equals(request)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a node that is about to run from the pending nodes
+     */
+    private void deactivate(Node n) {
+        Vector v = (Vector)active.get(n.key);
+        if(v != null) {
+            v.removeElement(n);
+            if(v.size() == 0) {
+                active.remove(n.key);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pending requests including parked requests
+     */
+    int size() {
+        return size + parkedCount;
+    }
+
+    /**
+     * Picks the lane heap whose top should run next
+     */
+    private Heap select(Heap current, Heap candidate, long now) {
+        Node c = candidate.peek();
+        if(c == null) {
+            return current;
+        }
+        if(current == null) {
+            return candidate;
+        }
+        return before(c, current.peek(), now) ? candidate : current;
+    }
+
+    private boolean before(Node a, Node b, long now) {
+        int pa = effectivePriority(a, now);
+        int pb = effectivePriority(b, now);
+        if(pa != pb) {
+            return pa > pb;
+        }
+        return a.sequence < b.sequence;
+    }
+
+    /**
+     * Low priority requests that waited longer than the aging period compete with
+     * normal priority requests, the turn alternates so a large backlog of aged requests
+     * can't block new requests either
+     */
+    private int effectivePriority(Node n, long now) {
+        if(n.priority == ConnectionRequest.PRIORITY_LOW && !agedServed &&
+                now - n.time > lowPriorityAging) {
+            return ConnectionRequest.PRIORITY_NORMAL + 1;
+        }
+        return n.priority;
+    }
+
+    private boolean isHostAvailable(Node n) {
+        if(maxConnectionsPerHost < 1 || n.host == null) {
+            return true;
+        }
+        Integer count = (Integer)hostConnections.get(n.host);
+        return count == null || count.intValue() < maxConnectionsPerHost;
+    }
+
+    /**
+     * Removes the next request for the thread with the given offset and marks it as
+     * running
+     *
+     * @param thread the offset of the network thread
+     * @return the node of the request or null if no request can run on this thread
+     */
+    Node next(int thread) {
+        long now = System.currentTimeMillis();
+        Lane own = getLane(thread + 1);
+        Lane shared = lanes[0];
+        while(true) {
+            Heap h = select(null, own.main, now);
+            h = select(h, own.low, now);
+            h = select(h, shared.main, now);
+            h = select(h, shared.low, now);
+            if(h == null) {
+                return null;
+            }
+            Node n = h.poll();
+            size--;
+            if(!isHostAvailable(n)) {
+                Vector v = (Vector)parked.get(n.host);
+                if(v == null) {
+                    v = new Vector();
+                    parked.put(n.host, v);
+                }
+                v.addElement(n);
+                parkedCount++;
+                continue;
+            }
+            deactivate(n);
+            agedServed = n.priority == ConnectionRequest.PRIORITY_LOW &&
+                    now - n.time > lowPriorityAging && !agedServed;
+            if(n.host != null) {
+                Integer count = (Integer)hostConnections.get(n.host);
+                if(count == null) {
+                    hostConnections.put(n.host, new Integer(1));
+                } else {
+                    hostConnections.put(n.host, new Integer(count.intValue() + 1));
+                }
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Invoked when a request returned by next() completes or its thread is abandoned,
+     * this releases the connection slot of its host and the requests parked on it.
+     * Additional calls for the same node are ignored.
+     *
+     * @param n the node returned by next()
+     */
+    void finished(Node n) {
+        if(n.finished) {
+            return;
+        }
+        n.finished = true;
+        String host = n.host;
+        if(host != null) {
+            Integer count = (Integer)hostConnections.get(host);
+            if(count != null) {
+                if(count.intValue() > 1) {
+                    hostConnections.put(host, new Integer(count.intValue() - 1));
+                } else {
+                    hostConnections.remove(host);
+                }
+            }
+            Vector v = (Vector)parked.remove(host);
+            if(v != null) {
+                int s = v.size();
+                parkedCount -= s;
+                for(int iter = 0 ; iter < s ; iter++) {
+                    insert((Node)v.elementAt(iter));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the pending requests in the order in which they would run
+     */
+    Vector elements() {
+        Vector nodes = new Vector();
+        for(int iter = 0 ; iter < lanes.length ; iter++) {
+            lanes[iter].main.addTo(nodes);
+            lanes[iter].low.addTo(nodes);
+        }
+        Enumeration e = parked.elements();
+        while(e.hasMoreElements()) {
+            Vector v = (Vector)e.nextElement();
+            for(int iter = 0 ; iter < v.size() ; iter++) {
+                nodes.addElement(v.elementAt(iter));
+            }
+        }
+        int s = nodes.size();
+        Node[] arr = new Node[s];
+        nodes.copyInto(arr);
+        for(int iter = 1 ; iter < s ; iter++) {
+            Node n = arr[iter];
+            int pos = iter - 1;
+            while(pos >= 0 && n.before(arr[pos])) {
+                arr[pos + 1] = arr[pos];
+                pos--;
+            }
+            arr[pos + 1] = n;
+        }
+        Vector result = new Vector(s);
+        for(int iter = 0 ; iter < s ; iter++) {
+            result.addElement(arr[iter].request);
+        }
+        return result;
+    }
+
+    int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    int getLowPriorityAging() {
+        return lowPriorityAging;
+    }
+
+    void setLowPriorityAging(int lowPriorityAging) {
+        this.lowPriorityAging = lowPriorityAging;
+    }
+}
@@ -50,6 +50,17 @@ public class Storage {
         cache.setCacheSize(size);
     }
 
+    /**
+     * Returns the cache used for objects read and written through this storage,
+     * allowing it to be tuned e.g. by enabling LRU mode with a byte limit or by
+     * reading its hit/miss statistics
+     *
+     * @return the cache map used by the storage
+     */
+    public CacheMap getHardCache() {
+        return cache;
+    }
+
     /**
      * This method must be invoked before using the storage otherwise some platforms
      * might fail without the application data.
@@ -84,7 +95,9 @@ public class Storage {
     
     /**
      * Flush the storage cache allowing implementations that cache storage objects
-     * to store
+     * to store. On MIDP changes to the list of storage files are kept in memory and
+     * saved in batches, this should be invoked before the application exits to save
+     * them immediately.
      */
     public void flushStorageCache() {
         IOImplementation.getInstance().flushStorageCache();
@@ -118,6 +131,30 @@ public class Storage {
         return IOImplementation.getInstance().createStorageOutputStream(name);
     }
 
+    /**
+     * Creates an output stream that overwrites the storage file with the given name
+     * starting at the given offset while preserving the rest of its content, to
+     * append to a file pass its current size as the offset
+     *
+     * @param name the storage file name
+     * @param offset the offset within the file at which writing starts
+     * @return an output stream of limited capcity
+     */
+    public OutputStream createOutputStream(String name, int offset) throws IOException {
+        cache.delete(name);
+        return IOImplementation.getInstance().createStorageOutputStream(name, offset);
+    }
+
+    /**
+     * Returns the size in bytes of the given storage file
+     *
+     * @param name the storage file name
+     * @return the size in bytes or -1 if the file doesn't exist
+     */
+    public int getEntrySize(String name) {
+        return IOImplementation.getInstance().getStorageFileSize(name);
+    }
+
     /**
      * Creates an input stream to the given storage source file
      *
@@ -31,7 +31,9 @@ import com.sun.lwuit.io.Cookie;
 import com.sun.lwuit.io.FileSystemStorage;
 import com.sun.lwuit.io.NetworkManager;
 import com.sun.lwuit.io.Storage;
+import com.sun.lwuit.io.util.Util;
 import com.sun.lwuit.util.EventDispatcher;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -56,6 +58,16 @@ public abstract class IOImplementation {
 
     private Object storageData;
     private Hashtable cookies;
+    private boolean cookiesLoaded;
+    private boolean cookiesDirty;
+    private boolean cookiePersistPending;
+    private final Object cookieLock = new Object();
+
+    /**
+     * The delay in milliseconds between a change to the cookie jar and its
+     * persistence to storage, changes arriving within this window are written once
+     */
+    private static final int COOKIE_PERSIST_DELAY = 2000;
     private ActionListener logger;
 
     /**
@@ -65,28 +77,20 @@ public abstract class IOImplementation {
         INSTANCE = this;
     }
 
+    /**
+     * Adds/replaces the given cookies, storage is only updated if one of the
+     * cookies actually changed
+     *
+     * @param cookiesArray cookies to add
+     */
     public void addCookie(Cookie [] cookiesArray) {
-        if(cookies == null){
-            cookies = new Hashtable();
-        }
-        for (int i = 0; i < cookiesArray.length; i++) {
-            Cookie cookie = cookiesArray[i];
-            Hashtable h = (Hashtable)cookies.get(cookie.getDomain());
-            if(h == null){
-                h = new Hashtable();
-                cookies.put(cookie.getDomain(), h);
+        synchronized(cookieLock) {
+            boolean changed = false;
+            for (int i = 0; i < cookiesArray.length; i++) {
+                changed = putCookie(cookiesArray[i]) || changed;
             }
-            h.put(cookie.getName(), cookie);
-        }
-        
-        if(Cookie.isAutoStored()){
-            if(Storage.isInitialized()){
-                if(Storage.getInstance().exists(Cookie.STORAGE_NAME)){
-                    Storage.getInstance().deleteStorageFile(Cookie.STORAGE_NAME);
-                }
-                Storage.getInstance().writeObject(Cookie.STORAGE_NAME, cookies);
-            }else{
-               System.out.println("Warning: Storage is not initialized");
+            if(changed) {
+                cookiesChanged();
             }
         }
     }
@@ -97,23 +101,136 @@ public abstract class IOImplementation {
      * @param c cookie to add
      */
     public void addCookie(Cookie c) {
-        if(cookies == null){
-            cookies = new Hashtable();
+        synchronized(cookieLock) {
+            if(putCookie(c)) {
+                cookiesChanged();
+            }
         }
-        Hashtable h = (Hashtable)cookies.get(c.getDomain());
+    }
+
+    /**
+     * Places the cookie in the per domain table returning true if the jar changed
+     */
+    private boolean putCookie(Cookie c) {
+        Hashtable jar = getCookieJar();
+        Hashtable h = (Hashtable)jar.get(c.getDomain());
         if(h == null){
             h = new Hashtable();
-            cookies.put(c.getDomain(), h);
+            jar.put(c.getDomain(), h);
         }
-        h.put(c.getName(), c);
-        if(Cookie.isAutoStored()){
-            if(Storage.isInitialized()){
-                if(Storage.getInstance().exists(Cookie.STORAGE_NAME)){
-                    Storage.getInstance().deleteStorageFile(Cookie.STORAGE_NAME);
+        String key = c.getName();
+        if(c.getPath() != null) {
+            key += ";" + c.getPath();
+        }
+        Cookie old = (Cookie)h.put(key, c);
+        if(old == null || old.getExpires() != c.getExpires()) {
+            return true;
+        }
+        String value = old.getValue();
+        if(value == null) {
+            return c.getValue() != null;
+        }
+        return !value.equals(c.getValue());
+    }
+
+    /**
+     * Returns the in memory cookie jar mapping a domain to a table of its cookies,
+     * when cookies are auto stored the jar is read from storage once. Cookies that
+     * were added before storage was initialized are newer than the stored ones and
+     * take precedence over them.
+     */
+    private Hashtable getCookieJar() {
+        if(!cookiesLoaded) {
+            if(Cookie.isAutoStored()) {
+                if(Storage.isInitialized()) {
+                    Hashtable stored = (Hashtable)Storage.getInstance().readObject(Cookie.STORAGE_NAME);
+                    cookiesLoaded = true;
+                    if(cookies == null) {
+                        cookies = stored;
+                    } else if(stored != null) {
+                        Enumeration domains = stored.keys();
+                        while(domains.hasMoreElements()) {
+                            Object domain = domains.nextElement();
+                            Hashtable storedDomain = (Hashtable)stored.get(domain);
+                            Hashtable h = (Hashtable)cookies.get(domain);
+                            if(h == null) {
+                                cookies.put(domain, storedDomain);
+                                continue;
+                            }
+                            Enumeration keys = storedDomain.keys();
+                            while(keys.hasMoreElements()) {
+                                Object key = keys.nextElement();
+                                if(!h.containsKey(key)) {
+                                    h.put(key, storedDomain.get(key));
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    System.out.println("Warning: Storage is not initialized");
                 }
-                Storage.getInstance().writeObject(Cookie.STORAGE_NAME, cookies);
-            }else{
-               System.out.println("Warning: Storage is not initialized");
+            }
+            if(cookies == null) {
+                cookies = new Hashtable();
+            }
+        }
+        return cookies;
+    }
+
+    /**
+     * Marks the jar as dirty and schedules a single write to storage after
+     * a short delay so a burst of Set-Cookie headers results in one write
+     */
+    private void cookiesChanged() {
+        if(!Cookie.isAutoStored()) {
+            return;
+        }
+        cookiesDirty = true;
+        if(cookiePersistPending) {
+            return;
+        }
+        cookiePersistPending = true;
+        startThread("Cookie persistence", new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(COOKIE_PERSIST_DELAY);
+                } catch(InterruptedException err) {
+                }
+                flushCookies();
+            }
+        });
+    }
+
+    /**
+     * Writes pending cookie changes to storage immediately, this is invoked
+     * automatically shortly after a change and when the network manager shuts down
+     */
+    public void flushCookies() {
+        synchronized(cookieLock) {
+            cookiePersistPending = false;
+            if(!cookiesDirty || cookies == null) {
+                return;
+            }
+            if(Storage.isInitialized()){
+                // merges the stored cookies if they weren't read yet so they aren't overwritten
+                Storage.getInstance().writeObject(Cookie.STORAGE_NAME, getCookieJar());
+                cookiesDirty = false;
+            } else {
+                System.out.println("Warning: Storage is not initialized");
+            }
+        }
+    }
+
+    /**
+     * Removes all the cookies from memory and from storage
+     */
+    public void clearCookies() {
+        synchronized(cookieLock) {
+            cookies = new Hashtable();
+            cookiesLoaded = true;
+            cookiesDirty = false;
+            if(Storage.isInitialized() && Storage.getInstance().exists(Cookie.STORAGE_NAME)) {
+                Storage.getInstance().deleteStorageFile(Cookie.STORAGE_NAME);
             }
         }
     }
@@ -140,37 +257,98 @@ public abstract class IOImplementation {
      * @return the cookies to submit to the given URL
      */
     public Vector getCookiesForURL(String url) {
-        Vector response = null;
-        if (Cookie.isAutoStored()) {
-            if (Storage.isInitialized()) {
-                cookies = (Hashtable) Storage.getInstance().readObject(Cookie.STORAGE_NAME);
-            } else {
-                System.out.println("Warning: Storage is not initialized");
+        synchronized(cookieLock) {
+            Hashtable jar = getCookieJar();
+            if(jar.size() == 0) {
+                return null;
             }
-        }
-
-        if(cookies != null && cookies.size() > 0) {
             String domain = getURLDomain(url);
-            Enumeration e = cookies.keys();
-            while (e.hasMoreElements()) {
-                String domainKey = (String) e.nextElement();
-                if (domain.indexOf(domainKey) > -1) {
-                    Hashtable h = (Hashtable) cookies.get(domainKey);
-                    if (h != null) {
-                        Enumeration enumCookies = h.elements();
-                        if(response == null){
-                            response = new Vector();
-                        }
-                        while (enumCookies.hasMoreElements()) {
-                            response.addElement(enumCookies.nextElement());
-                        }
+            String path = getURLPath(url);
+            Vector response = null;
+            long now = System.currentTimeMillis();
+
+            // the cookies are indexed by domain so only the suffixes of the host
+            // need to be checked e.g. a.b.com, .b.com, b.com, .com and com
+            String host = domain;
+            int port = host.indexOf(':');
+            if(port > -1) {
+                response = addCookiesForDomain(jar, domain, path, now, response);
+                host = host.substring(0, port);
+            }
+            int len = host.length();
+            for(int iter = 0 ; iter < len ; iter++) {
+                if(iter == 0 || host.charAt(iter - 1) == '.') {
+                    if(iter > 0) {
+                        response = addCookiesForDomain(jar, host.substring(iter - 1), path, now, response);
                     }
+                    response = addCookiesForDomain(jar, host.substring(iter), path, now, response);
+                }
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Adds the cookies stored under the given domain key that match the path,
+     * expired cookies are purged from the jar
+     */
+    private Vector addCookiesForDomain(Hashtable jar, String domainKey, String path, long now, Vector response) {
+        Hashtable h = (Hashtable)jar.get(domainKey);
+        if(h == null) {
+            return response;
+        }
+        Vector expired = null;
+        Enumeration enumCookies = h.keys();
+        while (enumCookies.hasMoreElements()) {
+            Object key = enumCookies.nextElement();
+            Cookie c = (Cookie)h.get(key);
+            if(c.getExpires() > 0 && c.getExpires() <= now) {
+                if(expired == null) {
+                    expired = new Vector();
                 }
+                expired.addElement(key);
+                continue;
             }
+            String cookiePath = c.getPath();
+            if(cookiePath != null && !path.startsWith(cookiePath)) {
+                continue;
+            }
+            if(response == null){
+                response = new Vector();
+            }
+            response.addElement(c);
+        }
+        if(expired != null) {
+            for(int iter = 0 ; iter < expired.size() ; iter++) {
+                h.remove(expired.elementAt(iter));
+            }
+            if(h.size() == 0) {
+                jar.remove(domainKey);
+            }
+            cookiesChanged();
         }
         return response;
     }
 
+    /**
+     * Returns the path portion of the given URL without the query string
+     *
+     * @param url a url
+     * @return the path, "/" if the url has no path
+     */
+    private String getURLPath(String url) {
+        int start = url.indexOf("//");
+        start = url.indexOf('/', start < 0 ? 0 : start + 2);
+        if(start < 0) {
+            return "/";
+        }
+        int end = url.indexOf('?', start);
+        if(end < 0) {
+            return url.substring(start);
+        }
+        return url.substring(start, end);
+    }
+
     /**
      * Returns the instance of the IO implementation
      *
@@ -400,6 +578,82 @@ public abstract class IOImplementation {
      */
     public abstract OutputStream createStorageOutputStream(String name) throws IOException;
 
+    /**
+     * Creates an output stream that overwrites the given storage file starting at the
+     * given offset, content that isn't overwritten is preserved. Passing the current
+     * size of the file appends to it. The default implementation rewrites the whole
+     * file when the stream is closed, implementations should override this to write
+     * only the changed data.
+     *
+     * @param name the storage file name
+     * @param offset the offset within the file at which writing starts
+     * @return an output stream of limited capcity
+     */
+    public OutputStream createStorageOutputStream(final String name, final int offset) throws IOException {
+        final byte[] existing;
+        if(storageFileExists(name)) {
+            existing = Util.readInputStream(createStorageInputStream(name));
+        } else {
+            existing = new byte[0];
+        }
+        if(offset < 0 || offset > existing.length) {
+            throw new IOException("Offset " + offset + " is outside of storage file " + name);
+        }
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+            public void close() throws IOException {
+                if(closed) {
+                    return;
+                }
+                closed = true;
+                byte[] written = toByteArray();
+                OutputStream out = createStorageOutputStream(name);
+                try {
+                    out.write(existing, 0, offset);
+                    out.write(written);
+                    int end = offset + written.length;
+                    if(end < existing.length) {
+                        out.write(existing, end, existing.length - end);
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the size in bytes of the given storage file, the default implementation
+     * reads the whole file to find out its size
+     *
+     * @param name the storage file name
+     * @return the size in bytes or -1 if the file doesn't exist
+     */
+    public int getStorageFileSize(String name) {
+        if(!storageFileExists(name)) {
+            return -1;
+        }
+        InputStream i = null;
+        try {
+            i = createStorageInputStream(name);
+            int size = 0;
+            long s = i.skip(Integer.MAX_VALUE);
+            while(s > 0) {
+                size += s;
+                s = i.skip(Integer.MAX_VALUE);
+            }
+            while(i.read() > -1) {
+                size++;
+            }
+            return size;
+        } catch(IOException err) {
+            err.printStackTrace();
+            return -1;
+        } finally {
+            cleanup(i);
+        }
+    }
+
     /**
      * Creates an input stream to the given storage source file
      *
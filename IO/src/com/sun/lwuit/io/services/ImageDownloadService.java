@@ -48,6 +48,8 @@ import java.util.Hashtable;
  * For the case of a Label this is seamless, in case of a List renderer the model
  * or the renderer must register itself as a listener and update the data when
  * the response arrives.
+ * <p>Downloads of the same URL that are in progress at the same time share a single
+ * connection, e.g. when several list cells show the same image.
  *
  * @author Shai Almog
  */
@@ -74,6 +76,7 @@ public class ImageDownloadService extends ConnectionRequest {
         setUrl(url);
         addResponseListener(l);
         setPost(false);
+        setCoalescing(true);
     }
 
     /**
@@ -92,6 +95,7 @@ public class ImageDownloadService extends ConnectionRequest {
         this.targetOffset = targetOffset;
         setUrl(url);
         setPost(false);
+        setCoalescing(true);
     }
 
     /**
@@ -105,6 +109,7 @@ public class ImageDownloadService extends ConnectionRequest {
         setUrl(url);
         this.parentLabel = parentLabel;
         setPost(false);
+        setCoalescing(true);
     }
 
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a gzip (RFC 1952) stream such as an HTTP response with a gzip content
+ * encoding, the header is parsed when the stream is created and the content is
+ * decoded on demand by the pure Java inflater.
+ */
+public class GZIPInputStream extends InflaterInputStream {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * Creates a gzip decoder reading the header from the given stream
+     *
+     * @param in the gzip stream
+     * @throws IOException if the stream isn't in the gzip format
+     */
+    public GZIPInputStream(InputStream in) throws IOException {
+        super(in, false);
+        if(readInputByte() != 0x1f || readInputByte() != 0x8b) {
+            throw new IOException("Not in gzip format");
+        }
+        if(readInputByte() != 8) {
+            throw new IOException("Unsupported gzip compression method");
+        }
+        int flags = readInputByte();
+
+        // modification time, extra flags and OS
+        skipInput(6);
+        if((flags & FEXTRA) != 0) {
+            int len = readInputByte() | (readInputByte() << 8);
+            skipInput(len);
+        }
+        if((flags & FNAME) != 0) {
+            skipString();
+        }
+        if((flags & FCOMMENT) != 0) {
+            skipString();
+        }
+        if((flags & FHCRC) != 0) {
+            skipInput(2);
+        }
+    }
+
+    private void skipInput(int count) throws IOException {
+        for(int iter = 0 ; iter < count ; iter++) {
+            if(readInputByte() < 0) {
+                throw new IOException("Truncated gzip header");
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        int b = readInputByte();
+        while(b > 0) {
+            b = readInputByte();
+        }
+        if(b < 0) {
+            throw new IOException("Truncated gzip header");
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void finished() throws IOException {
+        // CRC32 and size of the uncompressed data
+        for(int iter = 0 ; iter < 8 ; iter++) {
+            readInputByte();
+        }
+    }
+}
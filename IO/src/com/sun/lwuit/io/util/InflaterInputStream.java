@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pure Java decoder for deflate (RFC 1951) compressed streams, used to decode HTTP
+ * responses sent with a gzip or deflate content encoding on platforms that have no
+ * native inflater. Data is decoded on demand as the stream is read so the memory
+ * overhead is the 32KB history window regardless of the size of the content.
+ *
+ * @see GZIPInputStream
+ */
+public class InflaterInputStream extends InputStream {
+    private static final int WINDOW_SIZE = 32768;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+    private static final int MAX_BITS = 15;
+
+    private static final short[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+        35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final short[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+        3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    private static final short[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+        257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145,
+        8193, 12289, 16385, 24577};
+    private static final short[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+        7, 7, 8, 8, 9, 9, 10, 10, 11, 11,
+        12, 12, 13, 13};
+    private static final byte[] CODE_LENGTH_ORDER = {
+        16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static Huffman fixedLiterals;
+    private static Huffman fixedDistances;
+
+    private static final int STATE_HEADER = 0;
+    private static final int STATE_STORED = 1;
+    private static final int STATE_HUFFMAN = 2;
+    private static final int STATE_DONE = 3;
+
+    private InputStream in;
+    private byte[] inputBuffer = new byte[512];
+    private int inputPosition;
+    private int inputLength;
+    private int pushback = -1;
+
+    private int bitBuffer;
+    private int bitCount;
+
+    private byte[] window = new byte[WINDOW_SIZE];
+    private int writePosition;
+    private int available;
+    private int readPosition;
+
+    private int state = STATE_HEADER;
+    private boolean lastBlock;
+    private int storedRemaining;
+    private Huffman literals;
+    private Huffman distances;
+    private int copyLength;
+    private int copyDistance;
+    private boolean zlibChecked;
+    private boolean zlib;
+
+    /**
+     * Canonical Huffman decoding table made of the number of codes of every length
+     * and the symbols ordered by their code
+     */
+    static class Huffman {
+        short[] count = new short[MAX_BITS + 1];
+        short[] symbol;
+
+        Huffman(byte[] lengths, int offset, int n) throws IOException {
+            symbol = new short[n];
+            for(int iter = 0 ; iter < n ; iter++) {
+                count[lengths[offset + iter]]++;
+            }
+            int left = 1;
+            for(int len = 1 ; len <= MAX_BITS ; len++) {
+                left <<= 1;
+                left -= count[len];
+                if(left < 0) {
+                    throw new IOException("Invalid deflate code lengths");
+                }
+            }
+            short[] offs = new short[MAX_BITS + 1];
+            for(int len = 1 ; len < MAX_BITS ; len++) {
+                offs[len + 1] = (short)(offs[len] + count[len]);
+            }
+            for(int iter = 0 ; iter < n ; iter++) {
+                int l = lengths[offset + iter];
+                if(l != 0) {
+                    symbol[offs[l]] = (short)iter;
+                    offs[l]++;
+                }
+            }
+            count[0] = 0;
+        }
+    }
+
+    /**
+     * Creates an inflater for raw deflate data or for deflate data wrapped in a zlib
+     * header (RFC 1950), the format is detected automatically since servers use both
+     * for the deflate content encoding
+     *
+     * @param in the compressed stream
+     */
+    public InflaterInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Creates an inflater for raw deflate data
+     *
+     * @param in the compressed stream
+     * @param detectZlibHeader true to detect and skip a zlib header
+     */
+    InflaterInputStream(InputStream in, boolean detectZlibHeader) {
+        this.in = in;
+        zlibChecked = !detectZlibHeader;
+    }
+
+    /**
+     * Reads a single byte of compressed input bypassing the bit buffer
+     *
+     * @return the byte or -1 at the end of the input
+     */
+    protected int readInputByte() throws IOException {
+        if(pushback > -1) {
+            int b = pushback;
+            pushback = -1;
+            return b;
+        }
+        if(inputPosition >= inputLength) {
+            inputLength = in.read(inputBuffer, 0, inputBuffer.length);
+            inputPosition = 0;
+            if(inputLength <= 0) {
+                inputLength = 0;
+                return -1;
+            }
+        }
+        return inputBuffer[inputPosition++] & 0xff;
+    }
+
+    private int needByte() throws IOException {
+        int b = readInputByte();
+        if(b < 0) {
+            throw new IOException("Unexpected end of compressed data");
+        }
+        return b;
+    }
+
+    private int bits(int need) throws IOException {
+        int val = bitBuffer;
+        while(bitCount < need) {
+            val |= needByte() << bitCount;
+            bitCount += 8;
+        }
+        bitBuffer = val >>> need;
+        bitCount -= need;
+        return val & ((1 << need) - 1);
+    }
+
+    private int decode(Huffman h) throws IOException {
+        int code = 0;
+        int first = 0;
+        int index = 0;
+        short[] count = h.count;
+        for(int len = 1 ; len <= MAX_BITS ; len++) {
+            if(bitCount == 0) {
+                bitBuffer = needByte();
+                bitCount = 8;
+            }
+            code |= bitBuffer & 1;
+            bitBuffer >>>= 1;
+            bitCount--;
+            int c = count[len];
+            if(code - c < first) {
+                return h.symbol[index + (code - first)];
+            }
+            index += c;
+            first += c;
+            first <<= 1;
+            code <<= 1;
+        }
+        throw new IOException("Invalid deflate code");
+    }
+
+    private static synchronized void initFixedTables() throws IOException {
+        if(fixedLiterals == null) {
+            byte[] lengths = new byte[288];
+            int iter = 0;
+            for( ; iter < 144 ; iter++) {
+                lengths[iter] = 8;
+            }
+            for( ; iter < 256 ; iter++) {
+                lengths[iter] = 9;
+            }
+            for( ; iter < 280 ; iter++) {
+                lengths[iter] = 7;
+            }
+            for( ; iter < 288 ; iter++) {
+                lengths[iter] = 8;
+            }
+            fixedLiterals = new Huffman(lengths, 0, 288);
+            for(iter = 0 ; iter < 30 ; iter++) {
+                lengths[iter] = 5;
+            }
+            fixedDistances = new Huffman(lengths, 0, 30);
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        int nlen = bits(5) + 257;
+        int ndist = bits(5) + 1;
+        int ncode = bits(4) + 4;
+        if(nlen > 286 || ndist > 30) {
+            throw new IOException("Invalid deflate table sizes");
+        }
+        byte[] lengths = new byte[320];
+        for(int iter = 0 ; iter < ncode ; iter++) {
+            lengths[CODE_LENGTH_ORDER[iter]] = (byte)bits(3);
+        }
+        Huffman lencode = new Huffman(lengths, 0, 19);
+        int index = 0;
+        while(index < nlen + ndist) {
+            int symbol = decode(lencode);
+            if(symbol < 16) {
+                lengths[index++] = (byte)symbol;
+            } else {
+                int len = 0;
+                if(symbol == 16) {
+                    if(index == 0) {
+                        throw new IOException("Invalid deflate repeat");
+                    }
+                    len = lengths[index - 1];
+                    symbol = 3 + bits(2);
+                } else if(symbol == 17) {
+                    symbol = 3 + bits(3);
+                } else {
+                    symbol = 11 + bits(7);
+                }
+                if(index + symbol > nlen + ndist) {
+                    throw new IOException("Invalid deflate repeat");
+                }
+                while(symbol-- > 0) {
+                    lengths[index++] = (byte)len;
+                }
+            }
+        }
+        literals = new Huffman(lengths, 0, nlen);
+        byte[] dist = new byte[ndist];
+        System.arraycopy(lengths, nlen, dist, 0, ndist);
+        distances = new Huffman(dist, 0, ndist);
+    }
+
+    private void checkZlibHeader() throws IOException {
+        zlibChecked = true;
+        int cmf = readInputByte();
+        if(cmf < 0) {
+            return;
+        }
+        int flg = readInputByte();
+        if(flg < 0) {
+            pushback = cmf;
+            return;
+        }
+        if((cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0) {
+            zlib = true;
+            if((flg & 0x20) != 0) {
+                // preset dictionaries aren't used by HTTP servers
+                throw new IOException("Unsupported zlib dictionary");
+            }
+            return;
+        }
+        // raw deflate, the first byte is data and the second needs to be read again
+        bitBuffer = cmf | (flg << 8);
+        bitCount = 16;
+    }
+
+    /**
+     * Invoked once the final deflate block was decoded, this allows subclasses to
+     * read a trailer
+     */
+    protected void finished() throws IOException {
+    }
+
+    private void output(byte b) {
+        window[writePosition] = b;
+        writePosition = (writePosition + 1) & WINDOW_MASK;
+        available++;
+    }
+
+    /**
+     * Decodes more data into the window, the window is only filled while the
+     * consumer has read everything so the history isn't overwritten
+     */
+    private void fill() throws IOException {
+        if(!zlibChecked) {
+            checkZlibHeader();
+        }
+        int limit = WINDOW_SIZE / 2;
+        while(available < limit) {
+            if(copyLength > 0) {
+                int from = (writePosition - copyDistance) & WINDOW_MASK;
+                while(copyLength > 0 && available < limit) {
+                    output(window[from]);
+                    from = (from + 1) & WINDOW_MASK;
+                    copyLength--;
+                }
+                continue;
+            }
+            switch(state) {
+                case STATE_HEADER:
+                    lastBlock = bits(1) == 1;
+                    int type = bits(2);
+                    if(type == 0) {
+                        // stored blocks start at a byte boundary
+                        bits(bitCount & 7);
+                        int len = bits(16);
+                        int nlen = bits(16);
+                        if(len != (~nlen & 0xffff)) {
+                            throw new IOException("Invalid stored block length");
+                        }
+                        storedRemaining = len;
+                        state = STATE_STORED;
+                    } else if(type == 1) {
+                        initFixedTables();
+                        literals = fixedLiterals;
+                        distances = fixedDistances;
+                        state = STATE_HUFFMAN;
+                    } else if(type == 2) {
+                        readDynamicTables();
+                        state = STATE_HUFFMAN;
+                    } else {
+                        throw new IOException("Invalid deflate block type");
+                    }
+                    break;
+                case STATE_STORED:
+                    while(storedRemaining > 0 && available < limit) {
+                        if(bitCount > 0) {
+                            output((byte)bits(8));
+                        } else {
+                            output((byte)needByte());
+                        }
+                        storedRemaining--;
+                    }
+                    if(storedRemaining == 0) {
+                        endBlock();
+                    }
+                    break;
+                case STATE_HUFFMAN:
+                    int symbol = decode(literals);
+                    if(symbol < 256) {
+                        output((byte)symbol);
+                    } else if(symbol == 256) {
+                        endBlock();
+                    } else {
+                        symbol -= 257;
+                        if(symbol >= 29) {
+                            throw new IOException("Invalid deflate length code");
+                        }
+                        copyLength = LENGTH_BASE[symbol] + bits(LENGTH_EXTRA[symbol]);
+                        symbol = decode(distances);
+                        if(symbol >= 30) {
+                            throw new IOException("Invalid deflate distance code");
+                        }
+                        copyDistance = DISTANCE_BASE[symbol] + bits(DISTANCE_EXTRA[symbol]);
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    private void endBlock() throws IOException {
+        if(lastBlock) {
+            state = STATE_DONE;
+            literals = null;
+            distances = null;
+            // discard the remaining bits of the last byte
+            bitBuffer = 0;
+            bitCount = 0;
+            if(zlib) {
+                // adler32 checksum
+                for(int iter = 0 ; iter < 4 ; iter++) {
+                    readInputByte();
+                }
+            }
+            finished();
+        } else {
+            state = STATE_HEADER;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int read() throws IOException {
+        if(available == 0) {
+            if(state == STATE_DONE) {
+                return -1;
+            }
+            fill();
+            if(available == 0) {
+                return -1;
+            }
+        }
+        int b = window[readPosition] & 0xff;
+        readPosition = (readPosition + 1) & WINDOW_MASK;
+        available--;
+        return b;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(available == 0) {
+            if(state == STATE_DONE) {
+                return -1;
+            }
+            fill();
+            if(available == 0) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, available);
+        int first = Math.min(count, WINDOW_SIZE - readPosition);
+        System.arraycopy(window, readPosition, b, off, first);
+        if(first < count) {
+            System.arraycopy(window, 0, b, off + first, count - first);
+        }
+        readPosition = (readPosition + count) & WINDOW_MASK;
+        available -= count;
+        return count;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int available() throws IOException {
+        return available;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -32,6 +32,12 @@ import java.util.Vector;
  * Fast and dirty parser for JSON content on the web, it essentially returns
  * a Hashtable object mapping the object fields to their values. If the value is
  * a nester object a nested hashtable is returned.
+ * <p>When paths are registered using addPath only the values matching these paths
+ * are placed in the returned tree and everything else is skipped without being
+ * materialized. A path is a dot separated list of field names where [*] matches every
+ * element of an array, [n] matches a specific element and * matches any field name
+ * e.g. <code>data.children[*].data.title</code>. When the root of the JSON is an
+ * array it is named root as in <code>root[*].id</code>.
  *
  * @author Shai Almog
  */
@@ -40,6 +46,7 @@ public class JSONParser implements JSONParseCallback {
     private Hashtable state;
     private Vector parseStack;
     private String currentKey;
+    private Vector paths;
 
     /**
      * Static method! Parses the given input stream and fires the data into the given callback.
@@ -286,6 +293,17 @@ public class JSONParser implements JSONParseCallback {
      * @throws IOException if thrown by the stream
      */
     public Hashtable parse(Reader i) throws IOException {
+        if(paths != null && paths.size() > 0) {
+            Vector patterns = new Vector();
+            for(int iter = 0 ; iter < paths.size() ; iter++) {
+                patterns.addElement(parsePath((String)paths.elementAt(iter)));
+            }
+            Hashtable result = (Hashtable)parseFiltered(new JSONTokenizer(i), patterns, null);
+            if(result == null) {
+                result = new Hashtable();
+            }
+            return result;
+        }
         state = new Hashtable();
         parseStack = new Vector();
         currentKey = null;
@@ -293,6 +311,250 @@ public class JSONParser implements JSONParseCallback {
         return state;
     }
 
+    /**
+     * Registers a path for the path filtered mode, once a path is registered parse(Reader)
+     * returns only the values matching the registered paths
+     *
+     * @param path a path such as data.children[*].data.title
+     */
+    public void addPath(String path) {
+        if(paths == null) {
+            paths = new Vector();
+        }
+        paths.addElement(path);
+    }
+
+    /**
+     * Removes all the paths registered with addPath so parse(Reader) returns the full tree
+     */
+    public void clearPaths() {
+        paths = null;
+    }
+
+    /**
+     * Static method! Parses the given reader and delivers only the values matching the
+     * given paths to the callback, everything else is skipped without being materialized
+     * so the memory used is bounded by the size of the largest matching value.
+     *
+     * @param i the reader
+     * @param paths paths such as data.children[*].data.title
+     * @param callback receives the matching values
+     * @throws IOException if thrown by the stream
+     */
+    public static void parse(Reader i, String[] paths, JSONPathCallback callback) throws IOException {
+        Vector patterns = new Vector();
+        for(int iter = 0 ; iter < paths.length ; iter++) {
+            patterns.addElement(parsePath(paths[iter]));
+        }
+        parseFiltered(new JSONTokenizer(i), patterns, callback);
+    }
+
+    /**
+     * Splits a path into its segments, array elements become separate segments so
+     * a.b[*] becomes a, b, [*]. The original path is kept as the last element.
+     */
+    private static String[] parsePath(String path) {
+        Vector segments = new Vector();
+        int len = path.length();
+        int start = 0;
+        for(int iter = 0 ; iter <= len ; iter++) {
+            char c;
+            if(iter == len) {
+                c = '.';
+            } else {
+                c = path.charAt(iter);
+            }
+            if(c == '.' || c == '[') {
+                if(iter > start) {
+                    segments.addElement(path.substring(start, iter));
+                }
+                if(c == '[') {
+                    int end = path.indexOf(']', iter);
+                    if(end < 0) {
+                        end = len - 1;
+                    }
+                    segments.addElement(path.substring(iter, end + 1));
+                    iter = end;
+                }
+                start = iter + 1;
+            }
+        }
+        String[] result = new String[segments.size() + 1];
+        segments.copyInto(result);
+        result[result.length - 1] = path;
+        return result;
+    }
+
+    private static Object parseFiltered(JSONTokenizer t, Vector patterns, JSONPathCallback callback) throws IOException {
+        int token = t.nextToken();
+        if(token == JSONTokenizer.TOKEN_START_ARRAY) {
+            // the root of the JSON is an array, we need to wrap it in an assignment
+            Vector candidates = null;
+            for(int iter = 0 ; iter < patterns.size() ; iter++) {
+                String[] p = (String[])patterns.elementAt(iter);
+                if(p[0].equals("root") || p[0].equals("*")) {
+                    if(candidates == null) {
+                        candidates = new Vector();
+                    }
+                    candidates.addElement(p);
+                }
+            }
+            Hashtable root = new Hashtable();
+            if(candidates == null) {
+                t.skipValue();
+                return root;
+            }
+            Object value = readFiltered(t, token, candidates, 1, callback);
+            if(value != null) {
+                root.put("root", value);
+            }
+            return root;
+        }
+        return readFiltered(t, token, patterns, 0, callback);
+    }
+
+    /**
+     * Returns the patterns whose segment at the given level matches the current field
+     * name of the tokenizer or null if none matches
+     */
+    private static Vector matchName(Vector patterns, int level, JSONTokenizer t) {
+        Vector result = null;
+        for(int iter = 0 ; iter < patterns.size() ; iter++) {
+            String[] p = (String[])patterns.elementAt(iter);
+            String segment = p[level];
+            if(t.textEquals(segment) || segment.equals("*")) {
+                if(result == null) {
+                    result = new Vector();
+                }
+                result.addElement(p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the patterns whose segment at the given level matches the array index or
+     * null if none matches
+     */
+    private static Vector matchIndex(Vector patterns, int level, int index) {
+        Vector result = null;
+        for(int iter = 0 ; iter < patterns.size() ; iter++) {
+            String[] p = (String[])patterns.elementAt(iter);
+            String segment = p[level];
+            if(segment.startsWith("[") && (segment.equals("[*]") ||
+                    segment.equals("[" + index + "]"))) {
+                if(result == null) {
+                    result = new Vector();
+                }
+                result.addElement(p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the value starting with the given token keeping only the parts matched by
+     * the patterns, all of which match the path up to the given level
+     */
+    private static Object readFiltered(JSONTokenizer t, int token, Vector patterns, int level, JSONPathCallback callback) throws IOException {
+        for(int iter = 0 ; iter < patterns.size() ; iter++) {
+            String[] p = (String[])patterns.elementAt(iter);
+            if(p.length - 1 == level) {
+                // the path ends here, the entire value is selected
+                Object value = readValue(t, token);
+                if(callback != null) {
+                    callback.pathValue(p[level], value);
+                    return null;
+                }
+                return value;
+            }
+        }
+        switch(token) {
+            case JSONTokenizer.TOKEN_START_OBJECT:
+                Hashtable h = null;
+                token = t.nextToken();
+                while(token == JSONTokenizer.TOKEN_NAME && (callback == null || callback.isAlive())) {
+                    Vector candidates = matchName(patterns, level, t);
+                    if(candidates == null) {
+                        t.skipValue();
+                    } else {
+                        String name = t.readString();
+                        Object value = readFiltered(t, t.nextToken(), candidates, level + 1, callback);
+                        if(value != null) {
+                            if(h == null) {
+                                h = new Hashtable();
+                            }
+                            h.put(name, value);
+                        }
+                    }
+                    token = t.nextToken();
+                }
+                return h;
+            case JSONTokenizer.TOKEN_START_ARRAY:
+                Vector v = null;
+                int index = 0;
+                token = t.nextToken();
+                while(token != JSONTokenizer.TOKEN_END_ARRAY && token != JSONTokenizer.TOKEN_END_DOCUMENT &&
+                        (callback == null || callback.isAlive())) {
+                    Vector candidates = matchIndex(patterns, level, index);
+                    if(candidates == null) {
+                        if(token == JSONTokenizer.TOKEN_START_OBJECT || token == JSONTokenizer.TOKEN_START_ARRAY) {
+                            t.skipValue();
+                        }
+                    } else {
+                        Object value = readFiltered(t, token, candidates, level + 1, callback);
+                        if(value != null) {
+                            if(v == null) {
+                                v = new Vector();
+                            }
+                            v.addElement(value);
+                        }
+                    }
+                    index++;
+                    token = t.nextToken();
+                }
+                return v;
+        }
+
+        // a scalar where the path expects an object or an array
+        return null;
+    }
+
+    /**
+     * Materializes the value starting with the given token into the same structure
+     * produced by parse(Reader)
+     */
+    private static Object readValue(JSONTokenizer t, int token) throws IOException {
+        switch(token) {
+            case JSONTokenizer.TOKEN_START_OBJECT:
+                Hashtable h = new Hashtable();
+                token = t.nextToken();
+                while(token == JSONTokenizer.TOKEN_NAME) {
+                    String name = t.readString();
+                    Object value = readValue(t, t.nextToken());
+                    if(value != null) {
+                        h.put(name, value);
+                    }
+                    token = t.nextToken();
+                }
+                return h;
+            case JSONTokenizer.TOKEN_START_ARRAY:
+                Vector v = new Vector();
+                token = t.nextToken();
+                while(token != JSONTokenizer.TOKEN_END_ARRAY && token != JSONTokenizer.TOKEN_END_DOCUMENT) {
+                    v.addElement(readValue(t, token));
+                    token = t.nextToken();
+                }
+                return v;
+            case JSONTokenizer.TOKEN_NUMBER:
+                return new Double(t.readDouble());
+            case JSONTokenizer.TOKEN_END_DOCUMENT:
+                return null;
+            default:
+                return t.readString();
+        }
+    }
+
     private boolean isStackHash() {
         return parseStack.elementAt(parseStack.size() - 1) instanceof Hashtable;
     }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.io.util;
+
+/**
+ * Receives the values matching the paths requested from the path filtered mode of
+ * the JSONParser, everything that doesn't match one of the paths is skipped without
+ * being materialized.
+ */
+public interface JSONPathCallback {
+    /**
+     * Invoked for every value matching one of the requested paths in document order.
+     * The value is a String, a Double, null, "true"/"false" for booleans or a
+     * Hashtable/Vector tree when the path points at an object or array.
+     *
+     * @param path the requested path that matched e.g. data.children[*].data.title
+     * @param value the value found at that path
+     */
+    public void pathValue(String path, Object value);
+
+    /**
+     * This method indicates to the Parser if this Callback is still alive
+     *
+     * @return true if the Callback is still interested to get values
+     */
+    public boolean isAlive();
+}
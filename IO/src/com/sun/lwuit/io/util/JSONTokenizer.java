@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.io.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser for JSON content, unlike the JSONParser the caller drives the parsing by
+ * requesting the next token and reading its value. Token text is decoded into a
+ * reusable character buffer so names can be compared and numbers converted without
+ * allocating strings, and whole values can be skipped without decoding them. This
+ * makes it possible to extract a few fields from a large response without producing
+ * garbage for the rest of it.
+ * <p>A typical loop looks like this:
+ * <pre>
+ * JSONTokenizer t = new JSONTokenizer(reader);
+ * t.nextToken(); // TOKEN_START_OBJECT
+ * while(t.nextToken() == JSONTokenizer.TOKEN_NAME) {
+ *     if(t.textEquals("count")) {
+ *         t.nextToken();
+ *         count = t.readInt();
+ *     } else {
+ *         t.skipValue();
+ *     }
+ * }
+ * </pre>
+ */
+public class JSONTokenizer {
+    /**
+     * Token returned for an opening bracket {
+     */
+    public static final int TOKEN_START_OBJECT = 1;
+
+    /**
+     * Token returned for a closing bracket }
+     */
+    public static final int TOKEN_END_OBJECT = 2;
+
+    /**
+     * Token returned for an opening bracket [
+     */
+    public static final int TOKEN_START_ARRAY = 3;
+
+    /**
+     * Token returned for a closing bracket ]
+     */
+    public static final int TOKEN_END_ARRAY = 4;
+
+    /**
+     * Token returned for the name of an object field
+     */
+    public static final int TOKEN_NAME = 5;
+
+    /**
+     * Token returned for a string value
+     */
+    public static final int TOKEN_STRING = 6;
+
+    /**
+     * Token returned for a numeric value
+     */
+    public static final int TOKEN_NUMBER = 7;
+
+    /**
+     * Token returned for the literal true
+     */
+    public static final int TOKEN_TRUE = 8;
+
+    /**
+     * Token returned for the literal false
+     */
+    public static final int TOKEN_FALSE = 9;
+
+    /**
+     * Token returned for the literal null
+     */
+    public static final int TOKEN_NULL = 10;
+
+    /**
+     * Token returned when the end of the input is reached
+     */
+    public static final int TOKEN_END_DOCUMENT = 11;
+
+    private static final byte CONTEXT_OBJECT = 1;
+    private static final byte CONTEXT_ARRAY = 2;
+
+    private Reader reader;
+    private char[] input;
+    private int inputPosition;
+    private int inputLength;
+
+    private char[] text = new char[64];
+    private int textLength;
+
+    private byte[] contextStack = new byte[16];
+    private int depth;
+    private boolean expectName;
+    private int currentToken;
+
+    /**
+     * Creates a tokenizer reading from the given reader
+     *
+     * @param reader the source of the JSON data
+     */
+    public JSONTokenizer(Reader reader) {
+        this(reader, 1024);
+    }
+
+    /**
+     * Creates a tokenizer reading from the given reader
+     *
+     * @param reader the source of the JSON data
+     * @param bufferSize the number of characters read from the reader at once
+     */
+    public JSONTokenizer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        input = new char[bufferSize];
+    }
+
+    private int peek() throws IOException {
+        if(inputPosition >= inputLength) {
+            inputLength = reader.read(input, 0, input.length);
+            inputPosition = 0;
+            if(inputLength <= 0) {
+                inputLength = 0;
+                return -1;
+            }
+        }
+        return input[inputPosition];
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if(c > -1) {
+            inputPosition++;
+        }
+        return c;
+    }
+
+    private void appendText(char c) {
+        if(textLength == text.length) {
+            char[] n = new char[text.length * 2];
+            System.arraycopy(text, 0, n, 0, textLength);
+            text = n;
+        }
+        text[textLength] = c;
+        textLength++;
+    }
+
+    private void push(byte context) {
+        if(depth == contextStack.length) {
+            byte[] n = new byte[depth * 2];
+            System.arraycopy(contextStack, 0, n, 0, depth);
+            contextStack = n;
+        }
+        contextStack[depth] = context;
+        depth++;
+    }
+
+    private void pop() {
+        if(depth > 0) {
+            depth--;
+        }
+        expectName = false;
+    }
+
+    private boolean inObject() {
+        return depth > 0 && contextStack[depth - 1] == CONTEXT_OBJECT;
+    }
+
+    /**
+     * Returns the nesting depth of the current position, 0 is outside of any object
+     * or array
+     *
+     * @return the nesting depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the token returned by the last call to nextToken
+     *
+     * @return one of the TOKEN constants or 0 if nextToken wasn't invoked
+     */
+    public int getCurrentToken() {
+        return currentToken;
+    }
+
+    /**
+     * Reads the next token from the input
+     *
+     * @return one of the TOKEN constants
+     * @throws IOException if thrown by the reader or for malformed input
+     */
+    public int nextToken() throws IOException {
+        textLength = 0;
+        while(true) {
+            int c = read();
+            switch(c) {
+                case -1:
+                    currentToken = TOKEN_END_DOCUMENT;
+                    return currentToken;
+                case ' ':
+                case '\r':
+                case '\t':
+                case '\n':
+                    continue;
+                case ',':
+                    expectName = inObject();
+                    continue;
+                case ':':
+                    expectName = false;
+                    continue;
+                case '{':
+                    push(CONTEXT_OBJECT);
+                    expectName = true;
+                    currentToken = TOKEN_START_OBJECT;
+                    return currentToken;
+                case '}':
+                    pop();
+                    currentToken = TOKEN_END_OBJECT;
+                    return currentToken;
+                case '[':
+                    push(CONTEXT_ARRAY);
+                    expectName = false;
+                    currentToken = TOKEN_START_ARRAY;
+                    return currentToken;
+                case ']':
+                    pop();
+                    currentToken = TOKEN_END_ARRAY;
+                    return currentToken;
+                case '"':
+                    decodeString();
+                    if(expectName && inObject()) {
+                        currentToken = TOKEN_NAME;
+                    } else {
+                        currentToken = TOKEN_STRING;
+                    }
+                    return currentToken;
+                case 't':
+                    expectLiteral("rue");
+                    currentToken = TOKEN_TRUE;
+                    return currentToken;
+                case 'f':
+                    expectLiteral("alse");
+                    currentToken = TOKEN_FALSE;
+                    return currentToken;
+                case 'n':
+                    expectLiteral("ull");
+                    currentToken = TOKEN_NULL;
+                    return currentToken;
+                default:
+                    if(c == '-' || (c >= '0' && c <= '9')) {
+                        appendText((char)c);
+                        readNumber();
+                        currentToken = TOKEN_NUMBER;
+                        return currentToken;
+                    }
+                    throw new IOException("Unexpected character in JSON: " + (char)c);
+            }
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        int len = rest.length();
+        for(int iter = 0 ; iter < len ; iter++) {
+            if(read() != rest.charAt(iter)) {
+                throw new IOException("Malformed JSON literal");
+            }
+        }
+    }
+
+    private void readNumber() throws IOException {
+        while(true) {
+            int c = peek();
+            if((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                appendText((char)c);
+                inputPosition++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void decodeString() throws IOException {
+        while(true) {
+            int c = read();
+            switch(c) {
+                case -1:
+                    throw new IOException("Unterminated JSON string");
+                case '"':
+                    return;
+                case '\\':
+                    c = read();
+                    switch(c) {
+                        case 'n':
+                            appendText('\n');
+                            break;
+                        case 't':
+                            appendText('\t');
+                            break;
+                        case 'r':
+                            appendText('\r');
+                            break;
+                        case 'b':
+                            appendText('\b');
+                            break;
+                        case 'f':
+                            appendText('\f');
+                            break;
+                        case 'u':
+                            int value = 0;
+                            for(int iter = 0 ; iter < 4 ; iter++) {
+                                value = (value << 4) | hexValue(read());
+                            }
+                            appendText((char)value);
+                            break;
+                        case -1:
+                            throw new IOException("Unterminated JSON string");
+                        default:
+                            appendText((char)c);
+                            break;
+                    }
+                    break;
+                default:
+                    appendText((char)c);
+                    break;
+            }
+        }
+    }
+
+    private static int hexValue(int c) throws IOException {
+        if(c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if(c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if(c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IOException("Malformed \\u escape in JSON string");
+    }
+
+    /**
+     * Skips the next value in the input, if the value is an object or an array its
+     * entire content is skipped without decoding it. When invoked after a TOKEN_NAME
+     * this skips the value of that field, when the current token is the start of an
+     * object or array the rest of that object or array is skipped.
+     *
+     * @throws IOException if thrown by the reader or for malformed input
+     */
+    public void skipValue() throws IOException {
+        int token = currentToken;
+        if(token != TOKEN_START_OBJECT && token != TOKEN_START_ARRAY) {
+            token = nextToken();
+            if(token != TOKEN_START_OBJECT && token != TOKEN_START_ARRAY) {
+                return;
+            }
+        }
+        textLength = 0;
+        int nesting = 1;
+        while(nesting > 0) {
+            int c = read();
+            switch(c) {
+                case -1:
+                    throw new IOException("Unexpected end of JSON input");
+                case '{':
+                case '[':
+                    nesting++;
+                    break;
+                case '}':
+                case ']':
+                    nesting--;
+                    break;
+                case '"':
+                    // skip the string without decoding it
+                    c = read();
+                    while(c != '"') {
+                        if(c == -1) {
+                            throw new IOException("Unterminated JSON string");
+                        }
+                        if(c == '\\') {
+                            read();
+                        }
+                        c = read();
+                    }
+                    break;
+            }
+        }
+        pop();
+        if(token == TOKEN_START_OBJECT) {
+            currentToken = TOKEN_END_OBJECT;
+        } else {
+            currentToken = TOKEN_END_ARRAY;
+        }
+    }
+
+    /**
+     * Returns the buffer holding the text of the current name, string or number token,
+     * the buffer is reused by the next call to nextToken
+     *
+     * @return the text buffer, only the first getTextLength() characters are valid
+     */
+    public char[] getTextCharacters() {
+        return text;
+    }
+
+    /**
+     * Returns the length of the text of the current token within the text buffer
+     *
+     * @return the number of valid characters in getTextCharacters()
+     */
+    public int getTextLength() {
+        return textLength;
+    }
+
+    /**
+     * Compares the text of the current token to the given string without allocating
+     *
+     * @param s the string to compare to
+     * @return true if the text of the current token equals s
+     */
+    public boolean textEquals(String s) {
+        int len = s.length();
+        if(len != textLength) {
+            return false;
+        }
+        for(int iter = 0 ; iter < len ; iter++) {
+            if(text[iter] != s.charAt(iter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the text of the current token as a string, this allocates a new string
+     * on every call. Returns null for a null token and "true"/"false" for booleans.
+     *
+     * @return the text of the current token
+     */
+    public String readString() {
+        switch(currentToken) {
+            case TOKEN_NULL:
+                return null;
+            case TOKEN_TRUE:
+                return "true";
+            case TOKEN_FALSE:
+                return "false";
+        }
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * Returns the value of the current boolean token
+     *
+     * @return true if the current token is TOKEN_TRUE
+     */
+    public boolean readBoolean() {
+        return currentToken == TOKEN_TRUE;
+    }
+
+    /**
+     * Converts the current number token to an int without allocating, fractions are
+     * truncated
+     *
+     * @return the value of the current token
+     * @throws NumberFormatException if the current token isn't a number
+     */
+    public int readInt() {
+        return (int)readLong();
+    }
+
+    /**
+     * Converts the current number token to a long without allocating, fractions are
+     * truncated
+     *
+     * @return the value of the current token
+     * @throws NumberFormatException if the current token isn't a number
+     */
+    public long readLong() {
+        if(textLength == 0) {
+            throw new NumberFormatException("Current token isn't a number");
+        }
+        int iter = 0;
+        boolean negative = false;
+        if(text[0] == '-') {
+            negative = true;
+            iter++;
+        }
+        long value = 0;
+        for( ; iter < textLength ; iter++) {
+            char c = text[iter];
+            if(c < '0' || c > '9') {
+                if(c == 'e' || c == 'E') {
+                    // exponent notation, fall back to the slow path
+                    return (long)readDouble();
+                }
+                if(c != '.') {
+                    throw new NumberFormatException(new String(text, 0, textLength));
+                }
+
+                // the fraction is truncated unless an exponent follows it e.g. 1.5e3
+                for(iter++ ; iter < textLength ; iter++) {
+                    c = text[iter];
+                    if(c == 'e' || c == 'E') {
+                        return (long)readDouble();
+                    }
+                    if(c < '0' || c > '9') {
+                        throw new NumberFormatException(new String(text, 0, textLength));
+                    }
+                }
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if(negative) {
+            return -value;
+        }
+        return value;
+    }
+
+    /**
+     * Converts the current number token to a double, integral values are converted
+     * without allocating
+     *
+     * @return the value of the current token
+     * @throws NumberFormatException if the current token isn't a number
+     */
+    public double readDouble() {
+        for(int iter = 0 ; iter < textLength ; iter++) {
+            char c = text[iter];
+            if(c == '.' || c == 'e' || c == 'E') {
+                return Double.parseDouble(new String(text, 0, textLength));
+            }
+        }
+        return readLong();
+    }
+}
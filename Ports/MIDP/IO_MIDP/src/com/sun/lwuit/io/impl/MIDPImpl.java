@@ -25,6 +25,7 @@ package com.sun.lwuit.io.impl;
 
 import com.sun.lwuit.io.util.BufferedInputStream;
 import com.sun.lwuit.io.util.BufferedOutputStream;
+import com.sun.lwuit.io.util.Util;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -34,6 +35,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.Vector;
 import javax.microedition.io.Connection;
 import javax.microedition.io.Connector;
@@ -57,6 +60,27 @@ public class MIDPImpl extends IOImplementation {
      */
     private Hashtable fat = new Hashtable();
 
+    /**
+     * FAT changes that weren't yet appended to the journal store, each element is an
+     * Object array of the operation, name and key
+     */
+    private Vector fatJournal = new Vector();
+
+    /**
+     * Indicates that the FAT store is out of date and needs to be compacted
+     */
+    private boolean fatDirty;
+
+    private Timer fatJournalTimer;
+    private TimerTask fatJournalTask;
+    private int fatFlushDelay = 3000;
+
+    private static final byte FAT_ADD = 1;
+    private static final byte FAT_DELETE = 2;
+    private static final int FAT_JOURNAL_BATCH = 32;
+
+    private int storageRecordSize = 4096;
+
 
     /**
      * Initializes various internal states
@@ -64,6 +88,7 @@ public class MIDPImpl extends IOImplementation {
     protected MIDPImpl() {
         RecordEnumeration e = null;
         RecordStore r = null;
+        Hashtable allocated = new Hashtable();
         try {
             r = RecordStore.openRecordStore("FAT", true);
             if (r.getNumRecords() > 0) {
@@ -76,10 +101,9 @@ public class MIDPImpl extends IOImplementation {
                     short key = di.readShort();
                     di.close();
                     bi.close();
-                    fat.put(name, new Short(key));
-                    if(key >= currentKey) {
-                        currentKey += key;
-                    }
+                    Short k = new Short(key);
+                    fat.put(name, k);
+                    allocated.put(k, k);
                 }
                 e.destroy();
                 e = null;
@@ -95,6 +119,173 @@ public class MIDPImpl extends IOImplementation {
             cleanup(r);
             cleanup(e);
         }
+        replayFatJournal(allocated);
+        recoverFat(allocated);
+        if(fatDirty) {
+            compactFat();
+        }
+    }
+
+    /**
+     * Applies the changes recorded in the journal since the last compaction of the FAT
+     *
+     * @param allocated receives the keys of all the entries mentioned by the journal
+     */
+    private void replayFatJournal(Hashtable allocated) {
+        RecordStore r = null;
+        try {
+            r = RecordStore.openRecordStore("FATJ", false);
+        } catch(RecordStoreException err) {
+            // no journal, the FAT was compacted on the last run
+            return;
+        }
+        fatDirty = true;
+        try {
+            int[] ids = listRecordIds(r);
+            for(int iter = 0 ; iter < ids.length ; iter++) {
+                DataInputStream di = new DataInputStream(new ByteArrayInputStream(r.getRecord(ids[iter])));
+                int count = di.readInt();
+                for(int op = 0 ; op < count ; op++) {
+                    byte type = di.readByte();
+                    String name = di.readUTF();
+                    Short key = new Short(di.readShort());
+                    allocated.put(key, key);
+                    if(type == FAT_ADD) {
+                        fat.put(name, key);
+                    } else {
+                        fat.remove(name);
+                    }
+                }
+                di.close();
+            }
+            r.closeRecordStore();
+        } catch(Exception err) {
+            // a partially written journal record might be lost, recoverFat fixes the result
+            err.printStackTrace();
+            cleanup(r);
+        }
+    }
+
+    /**
+     * Makes the FAT consistent with the stores that actually exist since journal
+     * entries that weren't flushed before the application exited are lost. Entries
+     * whose store is gone are removed and the stores of keys that the FAT or the
+     * journal allocated but that no entry points to anymore are deleted. Other
+     * stores might belong to the application and are never touched, however keys
+     * are only allocated past every existing store that looks like an entry since
+     * an entry written just before the application exited might be in neither the
+     * FAT nor the journal.
+     *
+     * @param allocated the keys found in the FAT and the journal
+     */
+    private void recoverFat(Hashtable allocated) {
+        String[] stores = RecordStore.listRecordStores();
+        Hashtable existing = new Hashtable();
+        if(stores != null) {
+            for(int iter = 0 ; iter < stores.length ; iter++) {
+                existing.put(stores[iter], stores[iter]);
+                short key = parseStoreKey(stores[iter]);
+                if(key >= currentKey) {
+                    currentKey = (short)(key + 1);
+                }
+            }
+        }
+        Hashtable keys = new Hashtable();
+        Vector names = new Vector();
+        Enumeration e = fat.keys();
+        while(e.hasMoreElements()) {
+            names.addElement(e.nextElement());
+        }
+        for(int iter = 0 ; iter < names.size() ; iter++) {
+            String name = (String)names.elementAt(iter);
+            Short key = (Short)fat.get(name);
+            if(existing.containsKey("A" + key)) {
+                keys.put(key, name);
+            } else {
+                fat.remove(name);
+                fatDirty = true;
+            }
+        }
+        e = allocated.keys();
+        while(e.hasMoreElements()) {
+            Short key = (Short)e.nextElement();
+            if(!keys.containsKey(key) && existing.containsKey("A" + key)) {
+                deleteStores(key.shortValue(), 'A');
+            }
+        }
+    }
+
+    /**
+     * Returns the key of an entry store name e.g. A12 or -1 if the name doesn't have
+     * the form of an entry store
+     */
+    private static short parseStoreKey(String store) {
+        int len = store.length();
+        if(len < 2 || len > 6 || store.charAt(0) != 'A') {
+            return -1;
+        }
+        int key = 0;
+        for(int iter = 1 ; iter < len ; iter++) {
+            char c = store.charAt(iter);
+            if(c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        if(key > Short.MAX_VALUE) {
+            return -1;
+        }
+        return (short)key;
+    }
+
+    /**
+     * Indicates the delay in milliseconds after a change to the storage directory
+     * before the change is appended to the FAT journal. Directory changes are kept in
+     * memory until then, Storage.flushStorageCache() saves them immediately and
+     * compacts the journal. 0 disables the delayed save so changes are saved only
+     * when enough of them accumulate or when the storage cache is flushed.
+     *
+     * @return the delay in milliseconds
+     */
+    public int getFatFlushDelay() {
+        return fatFlushDelay;
+    }
+
+    /**
+     * Indicates the delay in milliseconds after a change to the storage directory
+     * before the change is appended to the FAT journal. Directory changes are kept in
+     * memory until then, Storage.flushStorageCache() saves them immediately and
+     * compacts the journal. 0 disables the delayed save so changes are saved only
+     * when enough of them accumulate or when the storage cache is flushed.
+     *
+     * @param fatFlushDelay the delay in milliseconds
+     */
+    public void setFatFlushDelay(int fatFlushDelay) {
+        this.fatFlushDelay = fatFlushDelay;
+    }
+
+    /**
+     * Indicates the size of the RMS records into which storage entries are split, an
+     * update to an entry rewrites only the records it touches so smaller records make
+     * partial updates cheaper while larger records reduce the per record overhead.
+     * Existing entries keep the record size they were created with.
+     *
+     * @return the record size in bytes
+     */
+    public int getStorageRecordSize() {
+        return storageRecordSize;
+    }
+
+    /**
+     * Indicates the size of the RMS records into which storage entries are split, an
+     * update to an entry rewrites only the records it touches so smaller records make
+     * partial updates cheaper while larger records reduce the per record overhead.
+     * Existing entries keep the record size they were created with.
+     *
+     * @param storageRecordSize the record size in bytes
+     */
+    public void setStorageRecordSize(int storageRecordSize) {
+        this.storageRecordSize = storageRecordSize;
     }
 
     /**
@@ -302,17 +493,102 @@ public class MIDPImpl extends IOImplementation {
     public void deleteStorageFile(String name) {
         Short key = (Short)fat.get(name);
         fat.remove(name);
-        resaveFat();
         if(key != null) {
+            journalFat(FAT_DELETE, name, key);
+            deleteStores(key.shortValue(), 'A');
+        }
+    }
+
+    /**
+     * Records a change to the FAT, changes are saved in batches to the journal store
+     */
+    private void journalFat(byte type, String name, Short key) {
+        synchronized(fatJournal) {
+            fatJournal.addElement(new Object[] {new Byte(type), name, key});
+            fatDirty = true;
+            if(fatJournal.size() >= FAT_JOURNAL_BATCH) {
+                flushFatJournal();
+                return;
+            }
+            if(fatJournalTask == null && fatFlushDelay > 0) {
+                fatJournalTask = new TimerTask() {
+                    public void run() {
+                        flushFatJournal();
+                    }
+                };
+                if(fatJournalTimer == null) {
+                    fatJournalTimer = new Timer();
+                }
+                fatJournalTimer.schedule(fatJournalTask, fatFlushDelay);
+            }
+        }
+    }
+
+    /**
+     * Appends the pending FAT changes to the journal store as a single record
+     */
+    private void flushFatJournal() {
+        synchronized(fatJournal) {
+            if(fatJournalTask != null) {
+                fatJournalTask.cancel();
+                fatJournalTask = null;
+            }
+            if(fatJournal.size() == 0) {
+                return;
+            }
+            RecordStore r = null;
             try {
-                for(char c = 'A' ; c < 'Z' ; c++) {
-                    RecordStore.deleteRecordStore("" + c + key);
+                ByteArrayOutputStream bo = new ByteArrayOutputStream();
+                DataOutputStream d = new DataOutputStream(bo);
+                d.writeInt(fatJournal.size());
+                for(int iter = 0 ; iter < fatJournal.size() ; iter++) {
+                    Object[] op = (Object[])fatJournal.elementAt(iter);
+                    d.writeByte(((Byte)op[0]).byteValue());
+                    d.writeUTF((String)op[1]);
+                    d.writeShort(((Short)op[2]).shortValue());
                 }
-            } catch(RecordStoreException e) {}
+                d.close();
+                byte[] data = bo.toByteArray();
+                r = RecordStore.openRecordStore("FATJ", true);
+                r.addRecord(data, 0, data.length);
+                r.closeRecordStore();
+                fatJournal.removeAllElements();
+            } catch(Exception err) {
+                err.printStackTrace();
+                cleanup(r);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the FAT store from the in memory table and discards the journal
+     */
+    private void compactFat() {
+        synchronized(fatJournal) {
+            if(fatJournalTask != null) {
+                fatJournalTask.cancel();
+                fatJournalTask = null;
+            }
+            if(!fatDirty) {
+                return;
+            }
+            try {
+                resaveFat();
+            } catch(Exception err) {
+                // the journal is still needed to restore the FAT, keep the pending changes in it
+                err.printStackTrace();
+                flushFatJournal();
+                return;
+            }
+            try {
+                RecordStore.deleteRecordStore("FATJ");
+            } catch(RecordStoreException err) {}
+            fatJournal.removeAllElements();
+            fatDirty = false;
         }
     }
 
-    private void resaveFat() {
+    private void resaveFat() throws IOException, RecordStoreException {
         RecordStore r = null;
         RecordEnumeration e = null;
         try {
@@ -356,11 +632,14 @@ public class MIDPImpl extends IOImplementation {
                 r.addRecord(bd, 0, bd.length);
             }
             r.closeRecordStore();
-        } catch(Exception err) {
-            // This might be a valid exception and some platforms (e..g. RIM) don't respond well to PST
-            //err.printStackTrace();
+        } catch(IOException err) {
             cleanup(e);
             cleanup(r);
+            throw err;
+        } catch(RecordStoreException err) {
+            cleanup(e);
+            cleanup(r);
+            throw err;
         }
     }
 
@@ -388,145 +667,414 @@ public class MIDPImpl extends IOImplementation {
         return openInputStream(file);
     }
 
+    private static boolean storeExists(String name) {
+        try {
+            RecordStore.openRecordStore(name, false).closeRecordStore();
+            return true;
+        } catch(RecordStoreException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the lettered stores of the given entry starting with the given letter
+     */
+    private static void deleteStores(short key, char letter) {
+        try {
+            while(letter <= 'z') {
+                RecordStore.deleteRecordStore("" + letter + key);
+                letter = nextStoreLetter(letter);
+            }
+        } catch(RecordStoreException e) {}
+    }
+
+    /**
+     * Older versions split entries into several stores, this converts such an entry
+     * to the single store layout so it can be updated in place
+     */
+    private void convertLegacyEntry(short key) throws IOException {
+        byte[] data = Util.readInputStream(new RMSInputStream(key));
+        deleteStores(key, 'A');
+        RMSOutputStream out = new RMSOutputStream(key, 0, true);
+        out.write(data);
+        out.close();
+    }
+
+    /**
+     * Writes an entry into a single store made of fixed size records, only the records
+     * touched by the written bytes are rewritten so appending to or patching an entry
+     * costs in proportion to the changed data
+     */
     private class RMSOutputStream extends OutputStream {
         private short key;
-        private char letter = 'A';
-        private ByteArrayOutputStream cache;
-        private int offset;
-        public RMSOutputStream(short key) {
-            this.key =  key;
+        private RecordStore store;
+        private int[] recordIds;
+        private int recordCount;
+        private int recordSize;
+        private byte[] buffer;
+        private int bufferLength;
+        private int bufferPosition;
+        private int recordIndex;
+        private boolean loaded;
+        private boolean dirty;
+        private boolean truncate;
 
-            // first we need to cleanup existing files
+        /**
+         * @param key the key of the entry
+         * @param offset the offset at which writing starts
+         * @param truncate true to discard the content following the written bytes
+         */
+        public RMSOutputStream(short key, int offset, boolean truncate) throws IOException {
+            this.key =  key;
+            this.truncate = truncate;
+            if(storeExists("B" + key)) {
+                if(truncate) {
+                    deleteStores(key, 'B');
+                } else {
+                    convertLegacyEntry(key);
+                }
+            }
             try {
-                for(char c = 'A' ; c < 'Z' ; c++) {
-                    RecordStore.deleteRecordStore("" + c + key);
+                store = RecordStore.openRecordStore("A" + key, true);
+                recordIds = listRecordIds(store);
+                recordCount = recordIds.length;
+                recordSize = storageRecordSize;
+                int size = 0;
+                if(!truncate && recordCount > 0) {
+                    int first = store.getRecordSize(recordIds[0]);
+                    if(recordCount > 1) {
+                        recordSize = first;
+                    } else {
+                        recordSize = Math.max(first, recordSize);
+                    }
+                    size = (recordCount - 1) * recordSize + store.getRecordSize(recordIds[recordCount - 1]);
+                }
+                if(offset < 0 || offset > size) {
+                    throw new IOException("Offset " + offset + " is outside of storage entry of size " + size);
+                }
+                recordIndex = offset / recordSize;
+                bufferPosition = offset % recordSize;
+            } catch (RecordStoreException ex) {
+                cleanup(store);
+                store = null;
+                throw new IOException(ex.toString());
+            }
+        }
+
+        private void load(boolean overwriteRecord) throws RecordStoreException {
+            if(buffer == null) {
+                buffer = new byte[recordSize];
+            }
+            if(!overwriteRecord && !truncate && recordIndex < recordCount) {
+                bufferLength = store.getRecord(recordIds[recordIndex], buffer, 0);
+            } else {
+                bufferLength = bufferPosition;
+            }
+            loaded = true;
+        }
+
+        private void saveRecord() throws RecordStoreException {
+            if(dirty) {
+                if(recordIndex < recordCount) {
+                    store.setRecord(recordIds[recordIndex], buffer, 0, bufferLength);
+                } else {
+                    int id = store.addRecord(buffer, 0, bufferLength);
+                    if(recordCount == recordIds.length) {
+                        int[] n = new int[recordIds.length * 2 + 4];
+                        System.arraycopy(recordIds, 0, n, 0, recordCount);
+                        recordIds = n;
+                    }
+                    recordIds[recordCount] = id;
+                    recordCount++;
                 }
-            } catch(RecordStoreException e) {}
+                dirty = false;
+            }
+        }
 
-            cache = new ByteArrayOutputStream();
+        private void nextRecord() throws RecordStoreException {
+            saveRecord();
+            recordIndex++;
+            bufferPosition = 0;
+            loaded = false;
         }
 
         public void close() throws IOException {
-            flush();
-            cache = null;
+            if(store == null) {
+                return;
+            }
+            try {
+                saveRecord();
+                if(truncate) {
+                    // drop the records following the last written byte
+                    int keep = recordIndex;
+                    if(bufferPosition > 0) {
+                        keep++;
+                    }
+                    for(int iter = keep ; iter < recordCount ; iter++) {
+                        store.deleteRecord(recordIds[iter]);
+                    }
+                    recordCount = Math.min(keep, recordCount);
+                }
+                store.closeRecordStore();
+                store = null;
+                buffer = null;
+            } catch (RecordStoreException ex) {
+                ex.printStackTrace();
+                cleanup(store);
+                store = null;
+                throw new IOException(ex.toString());
+            }
         }
 
         public void flush() throws IOException {
-            if(cache != null) {
-                byte[] data = cache.toByteArray();
-                if(data.length > 0) {
-                    RecordStore r = null;
-                    try {
-                        r = RecordStore.openRecordStore("" + letter + key, true);
-                        r.addRecord(data, 0, data.length);
-                        r.closeRecordStore();
-                        if(letter == 'Z') {
-                            letter = 'a';
-                        } else {
-                            letter++;
-                        }
-                        cache.reset();
-                    } catch (RecordStoreException ex) {
-                        ex.printStackTrace();
-                        cleanup(r);
-                        throw new IOException(ex.toString());
-                    }
+            if(store != null) {
+                try {
+                    saveRecord();
+                } catch (RecordStoreException ex) {
+                    ex.printStackTrace();
+                    throw new IOException(ex.toString());
                 }
             }
         }
 
         public void write(byte[] arg0) throws IOException {
-            cache.write(arg0);
-            if(cache.size() > 32536) {
-                flush();
-            }
+            write(arg0, 0, arg0.length);
         }
 
         public void write(byte[] arg0, int arg1, int arg2) throws IOException {
-            cache.write(arg0, arg1, arg2);
-            if(cache.size() > 32536) {
-                flush();
+            try {
+                while(arg2 > 0) {
+                    if(!loaded) {
+                        // a record that is replaced entirely needn't be read
+                        load(bufferPosition == 0 && arg2 >= recordSize);
+                    }
+                    int count = Math.min(arg2, recordSize - bufferPosition);
+                    System.arraycopy(arg0, arg1, buffer, bufferPosition, count);
+                    bufferPosition += count;
+                    bufferLength = Math.max(bufferLength, bufferPosition);
+                    dirty = true;
+                    arg1 += count;
+                    arg2 -= count;
+                    if(bufferPosition == recordSize) {
+                        nextRecord();
+                    }
+                }
+            } catch (RecordStoreException ex) {
+                ex.printStackTrace();
+                throw new IOException(ex.toString());
             }
         }
 
         public void write(int arg0) throws IOException {
-            cache.write(arg0);
-            if(cache.size() > 32536) {
-                flush();
+            try {
+                if(!loaded) {
+                    load(false);
+                }
+                buffer[bufferPosition] = (byte)arg0;
+                bufferPosition++;
+                bufferLength = Math.max(bufferLength, bufferPosition);
+                dirty = true;
+                if(bufferPosition == recordSize) {
+                    nextRecord();
+                }
+            } catch (RecordStoreException ex) {
+                ex.printStackTrace();
+                throw new IOException(ex.toString());
             }
         }
     }
 
+    /**
+     * Returns the ids of the records in the given store in ascending order which is
+     * also the order in which they were added
+     */
+    private static int[] listRecordIds(RecordStore r) throws RecordStoreException {
+        RecordEnumeration e = r.enumerateRecords(null, null, false);
+        try {
+            int[] ids = new int[e.numRecords()];
+            for(int iter = 0 ; iter < ids.length ; iter++) {
+                ids[iter] = e.nextRecordId();
+            }
+            // enumeration order is undefined but usually close to sorted
+            for(int iter = 1 ; iter < ids.length ; iter++) {
+                int current = ids[iter];
+                int pos = iter - 1;
+                while(pos >= 0 && ids[pos] > current) {
+                    ids[pos + 1] = ids[pos];
+                    pos--;
+                }
+                ids[pos + 1] = current;
+            }
+            return ids;
+        } finally {
+            e.destroy();
+        }
+    }
+
+    /**
+     * Returns the letter of the store following the given store letter for an entry
+     */
+    private static char nextStoreLetter(char letter) {
+        if(letter == 'Z') {
+            return 'a';
+        }
+        return (char)(letter + 1);
+    }
+
+    /**
+     * Reads an entry one record at a time, the stores making up the entry are opened
+     * only when the reader reaches them so the memory overhead is a single record
+     * regardless of the size of the entry
+     */
     private class RMSInputStream extends InputStream {
-        private InputStream current;
-        private int offset;
         private short key;
-        public RMSInputStream(short key) throws IOException {
+        private char letter = 'A';
+        private RecordStore store;
+        private int[] recordIds;
+        private int recordOffset;
+        private byte[] chunk;
+        private int chunkPosition;
+        private int chunkLength;
+        private boolean eof;
+
+        public RMSInputStream(short key) {
             this.key = key;
-            RecordStore r = null;
-            RecordEnumeration e = null;
-            char letter = 'A';
+        }
+
+        private RecordStore open(String s) {
             try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                r = open("" + letter + key);
-                while(r != null) {
-                    e = r.enumerateRecords(null, null, false);
-                    while(e.hasNextElement()) {
-                        byte[] data = e.nextRecord();
-                        os.write(data);
+                return RecordStore.openRecordStore(s, false);
+            } catch (RecordStoreException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * Moves to the next record, opening the next store if necessary
+         *
+         * @return false when there are no more records
+         */
+        private boolean nextRecord(boolean load) throws IOException {
+            try {
+                while(!eof) {
+                    if(store == null) {
+                        if(letter > 'z') {
+                            eof = true;
+                            return false;
+                        }
+                        store = open("" + letter + key);
+                        if(store == null) {
+                            eof = true;
+                            return false;
+                        }
+                        recordIds = listRecordIds(store);
+                        recordOffset = 0;
                     }
-                    e.destroy();
-                    r.closeRecordStore();
-                    letter++;
-                    r = open("" + letter + key);
-                    if(letter == 'Z') {
-                        letter = 'a' - ((char)1);
+                    if(recordOffset < recordIds.length) {
+                        if(load) {
+                            int id = recordIds[recordOffset];
+                            int size = store.getRecordSize(id);
+                            if(chunk == null || chunk.length < size) {
+                                chunk = new byte[size];
+                            }
+                            chunkLength = store.getRecord(id, chunk, 0);
+                            chunkPosition = 0;
+                            recordOffset++;
+                        }
+                        return true;
                     }
+                    store.closeRecordStore();
+                    store = null;
+                    letter = nextStoreLetter(letter);
                 }
-                os.close();
-                current = new ByteArrayInputStream(os.toByteArray());
+                return false;
             } catch (RecordStoreException ex) {
                 //#ifndef RIM
                 ex.printStackTrace();
                 //#else
-//#                 System.out.println("Exception in object store input stream constructor: " + ex);
+//#                 System.out.println("Exception in object store input stream: " + ex);
                 //#endif
-                cleanup(r);
-                cleanup(e);
+                cleanup(store);
+                store = null;
+                eof = true;
                 throw new IOException(ex.toString());
             }
         }
-        private RecordStore open(String s) {
-            try {
-                return RecordStore.openRecordStore(s, false);
-            } catch (RecordStoreException ex) {
-                return null;
+
+        public long skip(long n) throws IOException {
+            if(n <= 0) {
+                return 0;
+            }
+            long remaining = n;
+            int available = chunkLength - chunkPosition;
+            if(available > 0) {
+                int s = (int)Math.min(available, remaining);
+                chunkPosition += s;
+                remaining -= s;
             }
+
+            // skip entire records without reading their content
+            while(remaining > 0 && nextRecord(false)) {
+                try {
+                    int size = store.getRecordSize(recordIds[recordOffset]);
+                    if(size > remaining) {
+                        break;
+                    }
+                    remaining -= size;
+                    recordOffset++;
+                } catch (RecordStoreException ex) {
+                    throw new IOException(ex.toString());
+                }
+            }
+            if(remaining > 0 && nextRecord(true)) {
+                int s = (int)Math.min(chunkLength, remaining);
+                chunkPosition = s;
+                remaining -= s;
+            }
+            return n - remaining;
         }
 
-        public long skip(long n) throws IOException {
-            return super.skip(n);
+        public int available() throws IOException {
+            return chunkLength - chunkPosition;
         }
 
         public void close() throws IOException {
-            current.close();
+            eof = true;
+            chunk = null;
+            chunkLength = 0;
+            chunkPosition = 0;
+            if(store != null) {
+                cleanup(store);
+                store = null;
+            }
         }
 
         public int read(byte[] arg0) throws IOException {
-            int r  = current.read(arg0);
-            offset += r;
-            return r;
+            return read(arg0, 0, arg0.length);
         }
 
         public int read(byte[] arg0, int arg1, int arg2) throws IOException {
-            int r = current.read(arg0, arg1, arg2);
-            offset += r;
+            if(arg2 == 0) {
+                return 0;
+            }
+            while(chunkPosition >= chunkLength) {
+                if(!nextRecord(true)) {
+                    return -1;
+                }
+            }
+            int r = Math.min(arg2, chunkLength - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, arg0, arg1, r);
+            chunkPosition += r;
             return r;
         }
 
         public int read() throws IOException {
-            offset++;
-            return current.read();
+            while(chunkPosition >= chunkLength) {
+                if(!nextRecord(true)) {
+                    return -1;
+                }
+            }
+            return chunk[chunkPosition++] & 0xff;
         }
 
     }
@@ -535,30 +1083,81 @@ public class MIDPImpl extends IOImplementation {
      * @inheritDoc
      */
     public OutputStream createStorageOutputStream(String name) throws IOException {
+        return createStorageOutputStream(name, 0, true);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public OutputStream createStorageOutputStream(String name, int offset) throws IOException {
+        return createStorageOutputStream(name, offset, false);
+    }
+
+    private OutputStream createStorageOutputStream(String name, int offset, boolean truncate) throws IOException {
+        Short key = (Short)fat.get(name);
+        boolean added = false;
+        if(key == null) {
+            key = new Short(currentKey);
+            currentKey++;
+            fat.put(name, key);
+            added = true;
+        }
+        try {
+            if(added) {
+                // stores left by an entry that was never journaled must not show through
+                deleteStores(key.shortValue(), 'A');
+            }
+            RMSOutputStream out = new RMSOutputStream(key.shortValue(), offset, truncate);
+            if(added) {
+                journalFat(FAT_ADD, name, key);
+            }
+            return out;
+        } catch(IOException err) {
+            if(added) {
+                fat.remove(name);
+            }
+            throw err;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int getStorageFileSize(String name) {
+        Short key = (Short)fat.get(name);
+        if(key == null) {
+            return -1;
+        }
+        int size = 0;
+        char letter = 'A';
         RecordStore r = null;
-        RMSOutputStream os = null;
-        DataOutputStream out = null;
         try {
-            Short key = (Short)fat.get(name);
-            if(key == null) {
-                // need to add a key to the FAT
-                key = new Short(currentKey);
-                fat.put(name, key);
-                r = RecordStore.openRecordStore("FAT", true);
-                byte[] data = toRecord(name, currentKey);
-                currentKey++;
-                r.addRecord(data, 0, data.length);
+            while(letter <= 'z') {
+                try {
+                    r = RecordStore.openRecordStore("" + letter + key, false);
+                } catch(RecordStoreException e) {
+                    break;
+                }
+                int[] ids = listRecordIds(r);
+                for(int iter = 0 ; iter < ids.length ; iter++) {
+                    size += r.getRecordSize(ids[iter]);
+                }
                 r.closeRecordStore();
                 r = null;
+                letter = nextStoreLetter(letter);
             }
-            os = new RMSOutputStream(key.shortValue());
-            return os;
-        } catch(Exception err) {
+        } catch(RecordStoreException err) {
+            err.printStackTrace();
             cleanup(r);
-            cleanup(os);
-            cleanup(out);
-            throw new IOException(err.getMessage());
         }
+        return size;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void flushStorageCache() {
+        compactFat();
     }
 
     /**
@@ -30,6 +30,7 @@ import com.sun.lwuit.Display;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Image;
 import com.sun.lwuit.M3G;
+import com.sun.lwuit.OffscreenImagePool;
 import javax.microedition.m3g.AnimationController;
 import javax.microedition.m3g.AnimationTrack;
 import javax.microedition.m3g.Appearance;
@@ -622,7 +623,7 @@ public final class Transition3D extends Transition implements M3G.Callback {
             textureW = Math.min(M3G.closestLowerPowerOf2(w + 1), maxTextureResolution);
             textureH = Math.min(M3G.closestLowerPowerOf2(h + 1), maxTextureResolution);
         }
-        Image mutable = Image.createImage(w, h);
+        Image mutable = OffscreenImagePool.acquire(w, h);
         Graphics g = mutable.getGraphics();
         if(c instanceof Dialog) {
             c = dlg.getContentPane();
@@ -639,8 +640,11 @@ public final class Transition3D extends Transition implements M3G.Callback {
             }
             c.paintComponent(g);
         }
-        mutable = mutable.scaled(textureW, textureH);
-        return M3G.getInstance().createImage2D(Image2D.RGB, mutable);
+        Image2D img = M3G.getInstance().createImage2D(Image2D.RGB, mutable.scaled(textureW, textureH));
+
+        // the image 2D holds a copy of the pixels
+        OffscreenImagePool.release(mutable);
+        return img;
     }
     
     private Mesh createMesh(Component c) {
@@ -630,6 +630,14 @@ public class GameCanvasImplementation extends LWUITImplementation {
         return canvas;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public boolean isPartialFlushSupported() {
+        Form current = getCurrentForm();
+        return !flushGraphicsBug || (current != null && current.hasMedia());
+    }
+
     /**
      * @inheritDoc
      */
@@ -1282,6 +1290,21 @@ public class GameCanvasImplementation extends LWUITImplementation {
         return ((javax.microedition.lcdui.Image) image).getGraphics();
     }
 
+    /**
+     * @inheritDoc
+     */
+    public boolean isScrollBlitSupported() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void copyArea(Object graphics, int x, int y, int width, int height, int dx, int dy) {
+        ((javax.microedition.lcdui.Graphics) graphics).copyArea(x, y, width, height, x + dx, y + dy,
+                javax.microedition.lcdui.Graphics.TOP | javax.microedition.lcdui.Graphics.LEFT);
+    }
+
     /**
      * @inheritDoc
      */
@@ -50,6 +50,16 @@ public class Container extends Component {
     private Component leadComponent;
     private Layout layout;
     private java.util.Vector components = new java.util.Vector();
+
+    /**
+     * Containers with fewer children check every child on hit testing
+     */
+    private static final int HIT_INDEX_THRESHOLD = 16;
+    private boolean spatialIndexEnabled = true;
+    private int[] hitIndex;
+    private int[] hitIndexStart;
+    private int[] hitIndexEndMax;
+    private boolean hitIndexVertical;
     private boolean shouldLayout = true;
     boolean scrollableX;
     boolean scrollableY;
@@ -375,6 +385,7 @@ public class Container extends Component {
         }
         cmp.setParent(this);
         components.insertElementAt(cmp, index);
+        hitIndex = null;
         setShouldCalcPreferredSize(true);
         if (isInitialized()) {
             cmp.initComponentImpl();
@@ -638,6 +649,7 @@ public class Container extends Component {
         layout.removeLayoutComponent(cmp);
         cmp.deinitializeImpl();
         components.removeElement(cmp);
+        hitIndex = null;
         cmp.setParent(null);
         if (parentForm != null) {
             if (parentForm.getFocused() == cmp || cmp instanceof Container && ((Container) cmp).contains(parentForm.getFocused())) {
@@ -729,8 +741,20 @@ public class Container extends Component {
         g.translate(getX(), getY());
         int size = components.size();
         LWUITImplementation impl = Display.getInstance().getImplementation();
+
+        // children outside of the clip would paint nothing, skip them up front
+        int clipX = g.getClipX();
+        int clipY = g.getClipY();
+        int clipX2 = clipX + g.getClipWidth();
+        int clipY2 = clipY + g.getClipHeight();
         for (int i = 0; i < size; i++) {
             Component cmp = (Component)components.elementAt(i);
+            int cmpX = cmp.getX();
+            int cmpY = cmp.getY();
+            if(cmpX >= clipX2 || cmpY >= clipY2 || cmpX + cmp.getWidth() <= clipX ||
+                    cmpY + cmp.getHeight() <= clipY) {
+                continue;
+            }
             cmp.paintInternal(impl.getComponentScreenGraphics(this, g), false);
         }
         int tx = g.getTranslateX();
@@ -811,6 +835,7 @@ public class Container extends Component {
      */
     void doLayout() {
         layout.layoutContainer(this);
+        hitIndex = null;
         int count = getComponentCount();
         for (int i = 0; i < count; i++) {
             Component c = getComponentAt(i);
@@ -1039,8 +1064,18 @@ public class Container extends Component {
         int count = getComponentCount();
         boolean overlaps = getLayout().isOverlapSupported();
         Component component = null;
-        for (int i = count - 1; i >= 0; i--) {
-            Component cmp = getComponentAt(i);
+        int[] candidates = null;
+        if (spatialIndexEnabled && count >= HIT_INDEX_THRESHOLD) {
+            candidates = findHitCandidates(x, y);
+            count = candidates[0];
+        }
+        for (int iter = count - 1; iter >= 0; iter--) {
+            Component cmp;
+            if (candidates != null) {
+                cmp = getComponentAt(candidates[iter + 1]);
+            } else {
+                cmp = getComponentAt(iter);
+            }
             if (cmp.contains(x, y)) {
                 component = cmp;
                 if (!overlaps && component.isFocusable()) {
@@ -1063,6 +1098,158 @@ public class Container extends Component {
         return null;
     }
 
+    /**
+     * Invoked when the bounds of a child change or children are added/removed so the
+     * hit test index is rebuilt on the next hit test
+     */
+    void invalidateHitIndex() {
+        hitIndex = null;
+    }
+
+    /**
+     * Builds the hit test index, children are sorted by their start position on the axis
+     * along which they overlap less (e.g. Y for a BoxLayout Y) and the largest end position
+     * seen so far is kept for every entry so the children containing a point are found with
+     * a binary search followed by a short backwards scan
+     */
+    private void buildHitIndex() {
+        int count = components.size();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        long sumW = 0;
+        long sumH = 0;
+        for (int i = 0; i < count; i++) {
+            Component c = (Component)components.elementAt(i);
+            minX = Math.min(minX, c.getX());
+            minY = Math.min(minY, c.getY());
+            maxX = Math.max(maxX, c.getX() + c.getWidth());
+            maxY = Math.max(maxY, c.getY() + c.getHeight());
+            sumW += c.getWidth();
+            sumH += c.getHeight();
+        }
+        // the ratio of the total size to the extent is the average overlap on the axis
+        hitIndexVertical = sumH * Math.max(1, maxX - minX) <= sumW * Math.max(1, maxY - minY);
+
+        int[] order = new int[count];
+        int[] start = new int[count];
+        for (int i = 0; i < count; i++) {
+            Component c = (Component)components.elementAt(i);
+            int pos;
+            if (hitIndexVertical) {
+                pos = c.getY();
+            } else {
+                pos = c.getX();
+            }
+            // insertion sort, children of most layouts are already in order
+            int j = i - 1;
+            while (j >= 0 && start[j] > pos) {
+                start[j + 1] = start[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            start[j + 1] = pos;
+            order[j + 1] = i;
+        }
+        int[] endMax = new int[count];
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            Component c = (Component)components.elementAt(order[i]);
+            if (hitIndexVertical) {
+                max = Math.max(max, c.getY() + c.getHeight());
+            } else {
+                max = Math.max(max, c.getX() + c.getWidth());
+            }
+            endMax[i] = max;
+        }
+        hitIndexStart = start;
+        hitIndexEndMax = endMax;
+        hitIndex = order;
+    }
+
+    /**
+     * Returns the offsets of the children whose bounds contain the given absolute point
+     * in ascending order, the first entry of the array is the number of offsets
+     */
+    private int[] findHitCandidates(int x, int y) {
+        if (hitIndex == null || hitIndex.length != components.size()) {
+            buildHitIndex();
+        }
+        int[] order = hitIndex;
+        int[] start = hitIndexStart;
+        int[] endMax = hitIndexEndMax;
+
+        // children contain a point if it's within their bounds relative to this container
+        int relX = x - getAbsoluteX();
+        int relY = y - getAbsoluteY();
+        int pos = relX;
+        if (hitIndexVertical) {
+            pos = relY;
+        }
+
+        // the last entry that starts at or before the position
+        int low = 0;
+        int high = order.length - 1;
+        int last = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (start[mid] <= pos) {
+                last = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int[] result = new int[5];
+        int resultCount = 0;
+        for (int i = last; i >= 0 && endMax[i] > pos; i--) {
+            int offset = order[i];
+            Component c = (Component)components.elementAt(offset);
+            int cx = c.getX();
+            int cy = c.getY();
+            if (relX >= cx && relX < cx + c.getWidth() && relY >= cy && relY < cy + c.getHeight()) {
+                if (resultCount + 1 == result.length) {
+                    int[] arr = new int[result.length * 2];
+                    System.arraycopy(result, 0, arr, 0, result.length);
+                    result = arr;
+                }
+                // keep the offsets sorted so the topmost child is checked first
+                int j = resultCount;
+                while (j > 0 && result[j] > offset) {
+                    result[j + 1] = result[j];
+                    j--;
+                }
+                result[j + 1] = offset;
+                resultCount++;
+            }
+        }
+        result[0] = resultCount;
+        return result;
+    }
+
+    /**
+     * Indicates whether hit testing in containers with many children uses an index of
+     * the child bounds instead of checking every child. The index assumes children
+     * don't override contains(int, int) to accept points outside of their bounds.
+     *
+     * @return true if the index is used, this is true by default
+     */
+    public boolean isSpatialIndexEnabled() {
+        return spatialIndexEnabled;
+    }
+
+    /**
+     * Indicates whether hit testing in containers with many children uses an index of
+     * the child bounds instead of checking every child. The index assumes children
+     * don't override contains(int, int) to accept points outside of their bounds.
+     *
+     * @param spatialIndexEnabled false to check every child on hit testing
+     */
+    public void setSpatialIndexEnabled(boolean spatialIndexEnabled) {
+        this.spatialIndexEnabled = spatialIndexEnabled;
+    }
+
     /**
      * @inheritDoc
      */
@@ -449,6 +449,7 @@ public class Image {
             // an OOM with no reason. A system.gc followed by the same call over
             // solves the problem. This has something to do with the fact that 
             // there is no Image.dispose method in existance.
+            OffscreenImagePool.clear();
             System.gc();System.gc();
             return new Image(Display.getInstance().getImplementation().createImage(path));
         }
@@ -479,6 +480,7 @@ public class Image {
             // an OOM with no reason. A system.gc followed by the same call over
             // solves the problem. This has something to do with the fact that 
             // there is no Image.dispose method in existance.
+            OffscreenImagePool.clear();
             System.gc();System.gc();
             return new Image(Display.getInstance().getImplementation().createImage(stream));
         }
@@ -501,6 +503,7 @@ public class Image {
             // an OOM with no reason. A system.gc followed by the same call over
             // solves the problem. This has something to do with the fact that 
             // there is no Image.dispose method in existance.
+            OffscreenImagePool.clear();
             System.gc();System.gc();
             return new Image(Display.getInstance().getImplementation().createImage(rgb, width, height));
         }
@@ -542,6 +545,7 @@ public class Image {
             // an OOM with no reason. A system.gc followed by the same call over
             // solves the problem. This has something to do with the fact that 
             // there is no Image.dispose method in existance.
+            OffscreenImagePool.clear();
             System.gc();System.gc();
             return new Image(Display.getInstance().getImplementation().createMutableImage(width, height, fillColor));
         }
@@ -568,6 +572,7 @@ public class Image {
             // an OOM with no reason. A system.gc followed by the same call over
             // solves the problem. This has something to do with the fact that 
             // there is no Image.dispose method in existance.
+            OffscreenImagePool.clear();
             System.gc();System.gc();
             return new Image(Display.getInstance().getImplementation().createImage(bytes, offset, len));
         }
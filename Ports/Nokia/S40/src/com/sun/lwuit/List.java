@@ -349,6 +349,15 @@ public class List extends Component {
                 orientation != HORIZONTAL;
     }
 
+    /**
+     * @inheritDoc
+     */
+    boolean canScrollBlit() {
+        // the fixed selection animation moves the entries rather than the scroll position
+        return fixedSelection < FIXED_NONE_BOUNDRY && animationPosition == 0 && fixedDraggedAnimationPosition == 0 &&
+                super.canScrollBlit();
+    }
+
     /**
      * @inheritDoc
      */
@@ -27,6 +27,8 @@ import com.sun.lwuit.*;
 import com.sun.lwuit.animations.Animation;
 import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.geom.Rectangle;
+import com.sun.lwuit.plaf.Border;
+import com.sun.lwuit.plaf.Style;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -54,8 +56,7 @@ public abstract class LWUITImplementation {
 
     private Object lightweightClipboard;
 
-    private Hashtable linearGradientCache;
-    private Hashtable radialGradientCache;
+    private final GradientCache gradientCache = new GradientCache();
 
     private boolean builtinSoundEnabled = true;
     private int dragEventCounter = 0;
@@ -64,10 +65,10 @@ public abstract class LWUITImplementation {
     private boolean dragStarted = false;
     private Form currentForm;
     private static Object displayLock;
-    private Animation[] paintQueue = new Animation[50];
-    private Animation[] paintQueueTemp = new Animation[50];
-    private int paintQueueFill = 0;
+    private DirtyRegionManager paintQueue = new DirtyRegionManager();
     private Graphics lwuitGraphics;
+    private Painter overlayPainter;
+    private Rectangle overlayBounds;
 
     private static boolean bidi;
 
@@ -182,7 +183,16 @@ public abstract class LWUITImplementation {
      * @return false by default
      */
     public boolean hasPendingPaints() {
-        return paintQueueFill != 0;
+        return paintQueue.size() != 0;
+    }
+
+    /**
+     * Returns the number of components and animations waiting to be painted
+     *
+     * @return the size of the paint queue
+     */
+    public int getPendingPaintCount() {
+        return paintQueue.size();
     }
 
     /**
@@ -229,11 +239,48 @@ public abstract class LWUITImplementation {
 
     /**
      * Allows for painting an overlay on top of the implementation for notices during
-     * testing etc.
+     * testing etc. By default this paints the overlay painter over the whole display.
      * 
      * @param g graphics context on which to draw the overlay
      */
     protected void paintOverlay(Graphics g) {
+        if(overlayPainter != null) {
+            int displayWidth = getDisplayWidth();
+            int displayHeight = getDisplayHeight();
+            if(overlayBounds == null) {
+                overlayBounds = new Rectangle();
+            }
+            overlayBounds.setX(0);
+            overlayBounds.setY(0);
+            overlayBounds.getSize().setWidth(displayWidth);
+            overlayBounds.getSize().setHeight(displayHeight);
+            g.translate(-g.getTranslateX(), -g.getTranslateY());
+            g.setClip(0, 0, displayWidth, displayHeight);
+            overlayPainter.paint(g, overlayBounds);
+
+            // the painter might draw anywhere
+            paintQueue.addRegion(0, 0, displayWidth, displayHeight, displayWidth, displayHeight);
+        }
+    }
+
+    /**
+     * Installs a painter that is drawn on top of everything whenever the screen is
+     * painted e.g. for diagnostic information. Since areas that aren't repainted keep
+     * the previous overlay the painter should paint an opaque background.
+     *
+     * @param p the overlay painter or null to remove it
+     */
+    public void setOverlayPainter(Painter p) {
+        overlayPainter = p;
+    }
+
+    /**
+     * Returns the painter drawn on top of everything when the screen is painted
+     *
+     * @return the overlay painter or null
+     */
+    public Painter getOverlayPainter() {
+        return overlayPainter;
     }
 
     /**
@@ -242,54 +289,168 @@ public abstract class LWUITImplementation {
     public void paintDirty() {
         int size = 0;
         synchronized (displayLock) {
-            size = paintQueueFill;
-            System.arraycopy(paintQueue, 0, paintQueueTemp, 0, paintQueueFill);
-            paintQueue = new Animation[50];
-            paintQueueFill = 0;
+            size = paintQueue.swap();
         }
         if (size > 0) {
             Graphics wrapper = getLWUITGraphics();
-            int topX = getDisplayWidth();
-            int topY = getDisplayHeight();
-            int bottomX = 0;
-            int bottomY = 0;
+            Animation[] painting = paintQueue.getPainting();
+            int displayWidth = getDisplayWidth();
+            int displayHeight = getDisplayHeight();
+
+            // scrolled components are handled first while the screen still holds the pixels
+            // of the previous frame, entries that can't be copied are painted normally below
+            if(paintQueue.hasScrolls()) {
+                for (int iter = 0; iter < size; iter++) {
+                    Animation ani = painting[iter];
+                    if (ani instanceof Component) {
+                        Component cmp = (Component) ani;
+                        int[] offset = paintQueue.getScroll(cmp);
+                        if(offset != null && paintScrolled(wrapper, cmp, offset[0], offset[1], displayWidth, displayHeight)) {
+                            painting[iter] = null;
+                        }
+                    }
+                }
+            }
             for (int iter = 0; iter < size; iter++) {
-                Animation ani = paintQueueTemp[iter];
+                Animation ani = painting[iter];
                 
                 // might happen due to paint queue removal
                 if(ani == null) {
                     continue;
                 }
-                paintQueueTemp[iter] = null;
                 wrapper.translate(-wrapper.getTranslateX(), -wrapper.getTranslateY());
-                wrapper.setClip(0, 0, getDisplayWidth(), getDisplayHeight());
+                wrapper.setClip(0, 0, displayWidth, displayHeight);
                 if (ani instanceof Component) {
                     Component cmp = (Component) ani;
+
+                    // the component is painted as part of an ancestor in this batch
+                    if(paintQueue.isCoveredByAncestor(cmp)) {
+                        cmp.setDirtyRegion(null);
+                        continue;
+                    }
                     Rectangle dirty = cmp.getDirtyRegion();
                     if (dirty != null) {
-                        wrapper.setClip(dirty.getX(), dirty.getY(), dirty.getSize().getWidth(), dirty.getSize().getHeight());
+                        int dirtyX = dirty.getX();
+                        int dirtyY = dirty.getY();
+                        int dirtyW = dirty.getSize().getWidth();
+                        int dirtyH = dirty.getSize().getHeight();
+                        wrapper.setClip(dirtyX, dirtyY, dirtyW, dirtyH);
                         cmp.setDirtyRegion(null);
+                        cmp.paintComponent(wrapper);
+                        paintQueue.addRegion(dirtyX, dirtyY, dirtyW, dirtyH, displayWidth, displayHeight);
+                    } else {
+                        cmp.paintComponent(wrapper);
+                        paintQueue.addRegion(cmp.getAbsoluteX() + cmp.getScrollX(), cmp.getAbsoluteY() + cmp.getScrollY(),
+                                cmp.getWidth(), cmp.getHeight(), displayWidth, displayHeight);
                     }
-
-                    cmp.paintComponent(wrapper);
-                    int cmpAbsX = cmp.getAbsoluteX() + cmp.getScrollX();
-                    topX = Math.min(cmpAbsX, topX);
-                    bottomX = Math.max(cmpAbsX + cmp.getWidth(), bottomX);
-                    int cmpAbsY = cmp.getAbsoluteY() + cmp.getScrollY();
-                    topY = Math.min(cmpAbsY, topY);
-                    bottomY = Math.max(cmpAbsY + cmp.getHeight(), bottomY);
                 } else {
-                    bottomX = getDisplayWidth();
-                    bottomY = getDisplayHeight();
-                    topX = 0;
-                    topY = 0;
                     ani.paint(wrapper);
+                    paintQueue.addRegion(0, 0, displayWidth, displayHeight, displayWidth, displayHeight);
                 }
             }
+            paintQueue.paintingDone(size);
 
             paintOverlay(wrapper);
 
-            flushGraphics(topX, topY, bottomX - topX, bottomY - topY);
+            paintQueue.flush(this);
+        }
+    }
+
+    /**
+     * Moves the pixels of a scrolled component that remain visible and paints the
+     * areas exposed by the scroll along with the padding, border and scrollbars
+     * which don't move with the content
+     *
+     * @return false if the component should be painted normally
+     */
+    private boolean paintScrolled(Graphics wrapper, Component cmp, int dx, int dy, int displayWidth, int displayHeight) {
+        if(cmp.getDirtyRegion() != null || paintQueue.isCoveredByAncestor(cmp) || paintQueue.hasScrollingAncestor(cmp)) {
+            paintQueue.clearScroll(cmp);
+            return false;
+        }
+
+        // the visible bounds clipped by the ancestors the same way paintComponent clips them
+        boolean rtl = cmp.isRTL();
+        int cmpX = cmp.getAbsoluteX() + cmp.getScrollX();
+        int cmpY = cmp.getAbsoluteY() + cmp.getScrollY();
+        int x = Math.max(cmpX, 0);
+        int y = Math.max(cmpY, 0);
+        int x2 = Math.min(cmpX + cmp.getWidth(), displayWidth);
+        int y2 = Math.min(cmpY + cmp.getHeight(), displayHeight);
+        Component parent = cmp.getParent();
+        while(parent != null) {
+            int parentX = parent.getAbsoluteX() + parent.getScrollX();
+            int parentY = parent.getAbsoluteY() + parent.getScrollY();
+            if(rtl) {
+                parentX += parent.getSideGap();
+            }
+            x = Math.max(x, parentX);
+            y = Math.max(y, parentY);
+            x2 = Math.min(x2, parentX + parent.getWidth() - parent.getSideGap());
+            y2 = Math.min(y2, parentY + parent.getHeight() - parent.getBottomGap());
+            parent = parent.getParent();
+        }
+
+        // only the content area moves, the scrollbars are drawn within the border
+        Style s = cmp.getStyle();
+        int thickness = 0;
+        Border b = s.getBorder();
+        if(b != null) {
+            thickness = b.getThickness();
+        }
+        int left = Math.max(s.getPadding(rtl, Component.LEFT), thickness);
+        int right = Math.max(s.getPadding(rtl, Component.RIGHT), thickness);
+        int top = Math.max(s.getPadding(Component.TOP), thickness);
+        int bottom = Math.max(s.getPadding(Component.BOTTOM), thickness + cmp.getBottomGap());
+        if(rtl) {
+            left = Math.max(left, thickness + cmp.getSideGap());
+        } else {
+            right = Math.max(right, thickness + cmp.getSideGap());
+        }
+        int contentX = Math.max(x, cmpX + left);
+        int contentY = Math.max(y, cmpY + top);
+        int contentX2 = Math.min(x2, cmpX + cmp.getWidth() - right);
+        int contentY2 = Math.min(y2, cmpY + cmp.getHeight() - bottom);
+        int contentW = contentX2 - contentX;
+        int contentH = contentY2 - contentY;
+        int absDX = Math.abs(dx);
+        int absDY = Math.abs(dy);
+        if(absDX >= contentW || absDY >= contentH) {
+            paintQueue.clearScroll(cmp);
+            return false;
+        }
+
+        Object nativeGraphics = wrapper.beginNativeGraphicsAccess();
+        copyArea(nativeGraphics, contentX + Math.max(dx, 0), contentY + Math.max(dy, 0), contentW - absDX,
+                contentH - absDY, -dx, -dy);
+        wrapper.endNativeGraphicsAccess();
+        wrapper.translate(-wrapper.getTranslateX(), -wrapper.getTranslateY());
+
+        // the frame around the content
+        paintScrolledArea(wrapper, cmp, x, y, x2 - x, contentY - y);
+        paintScrolledArea(wrapper, cmp, x, contentY2, x2 - x, y2 - contentY2);
+        paintScrolledArea(wrapper, cmp, x, contentY, contentX - x, contentH);
+        paintScrolledArea(wrapper, cmp, contentX2, contentY, x2 - contentX2, contentH);
+
+        // the content exposed by the scroll
+        if(dy > 0) {
+            paintScrolledArea(wrapper, cmp, contentX, contentY2 - dy, contentW, dy);
+        } else {
+            paintScrolledArea(wrapper, cmp, contentX, contentY, contentW, -dy);
+        }
+        if(dx > 0) {
+            paintScrolledArea(wrapper, cmp, contentX2 - dx, contentY, dx, contentH);
+        } else {
+            paintScrolledArea(wrapper, cmp, contentX, contentY, -dx, contentH);
+        }
+        paintQueue.addRegion(x, y, x2 - x, y2 - y, displayWidth, displayHeight);
+        return true;
+    }
+
+    private void paintScrolledArea(Graphics wrapper, Component cmp, int x, int y, int width, int height) {
+        if(width > 0 && height > 0) {
+            wrapper.setClip(x, y, width, height);
+            cmp.paintComponent(wrapper);
         }
     }
 
@@ -317,6 +478,17 @@ public abstract class LWUITImplementation {
      */
     public abstract void flushGraphics();
 
+    /**
+     * Indicates whether flushGraphics(x, y, width, height) flushes only the given
+     * area, implementations that flush the whole screen regardless should return false
+     * so the areas painted in a frame are flushed with a single call
+     *
+     * @return true by default
+     */
+    public boolean isPartialFlushSupported() {
+        return true;
+    }
+
     /**
      * Returns a graphics object for use by the painting
      * 
@@ -367,37 +539,72 @@ public abstract class LWUITImplementation {
      */
     public void cancelRepaint(Animation cmp) {
         synchronized (displayLock) {
-            for (int iter = 0; iter < paintQueueFill; iter++) {
-                if (paintQueue[iter] == cmp) {
-                    paintQueue[iter] = null;
-                    return;
-                }
+            paintQueue.remove(cmp);
+        }
+    }
+
+    /**
+     * Indicates whether the implementation can copy areas of the screen buffer, this allows
+     * a scrolled component to move the pixels that remain visible and paint only the
+     * area exposed by the scroll. Implementations that don't paint into a buffer that
+     * persists between frames or that paint an overlay should return false.
+     *
+     * @return false by default
+     */
+    public boolean isScrollBlitSupported() {
+        return false;
+    }
+
+    /**
+     * Copies an area of the screen buffer to a position offset by the given amount, this
+     * is invoked only when isScrollBlitSupported returns true. The graphics is untranslated
+     * and unclipped and the source and destination areas might overlap.
+     *
+     * @param graphics the native screen graphics
+     * @param x the x position of the source area
+     * @param y the y position of the source area
+     * @param width the width of the area
+     * @param height the height of the area
+     * @param dx the horizontal distance to move the area
+     * @param dy the vertical distance to move the area
+     */
+    public void copyArea(Object graphics, int x, int y, int width, int height, int dx, int dy) {
+    }
+
+    /**
+     * Invoked to repaint a component whose content scrolled by the given offset, when
+     * the implementation supports copying areas of the screen the pixels that remain
+     * visible are moved and only the exposed area is painted
+     *
+     * @param cmp the scrolled component
+     * @param dx the change in the scroll x position
+     * @param dy the change in the scroll y position
+     * @return false if the component should be repainted normally
+     */
+    public boolean repaintScrolled(Component cmp, int dx, int dy) {
+        // the copied area would move the overlay as well
+        if(!isScrollBlitSupported() || overlayPainter != null) {
+            return false;
+        }
+        synchronized (displayLock) {
+            if(paintQueue.addScroll(cmp, dx, dy)) {
+                displayLock.notify();
             }
         }
+        return true;
     }
 
     /**
-     * Invoked to add an element to the paintQueue
+     * Invoked to add an element to the paintQueue, the queue grows as needed and
+     * components whose ancestor is painted anyway are skipped when painting
      * 
      * @param cmp component or animation to push into the paint queue
      */
     public void repaint(Animation cmp) {
         synchronized (displayLock) {
-            for (int iter = 0; iter < paintQueueFill; iter++) {
-                Animation ani = paintQueue[iter];
-                if (ani == cmp) {
-                    return;
-                }
-            }
-            // overcrowding the queue don't try to grow the array!
-            if (paintQueueFill >= paintQueue.length) {
-                System.out.println("Warning paint queue size exceeded, please watch the amount of repaint calls");
-                return;
+            if(paintQueue.add(cmp)) {
+                displayLock.notify();
             }
-
-            paintQueue[paintQueueFill] = cmp;
-            paintQueueFill++;
-            displayLock.notify();
         }
     }
 
@@ -1493,51 +1700,6 @@ public abstract class LWUITImplementation {
         Display.getInstance().showNotify();
     }
 
-    private Object findCachedGradient(Hashtable cache, int startColor, int endColor, int x, int y, int width, int height, boolean horizontal, int centerX, int centerY, int size) {
-        if(cache != null) {
-            Enumeration e = cache.keys();
-            while(e.hasMoreElements()) {
-                int[] current = (int[])e.nextElement();
-                Object currentRef = cache.get(current);
-                if(currentRef == null) {
-                    cache.remove(current);
-                    e = cache.keys();
-                    continue;
-                }
-                Object currentImage = extractHardRef(currentRef);
-                if(currentImage == null) {
-                    cache.remove(current);
-                    e = cache.keys();
-                    continue;
-                }
-                if(current[0] == startColor &&
-                        current[1] == endColor &&
-                        current[2] == x &&
-                        current[3] == y &&
-                        current[5] == centerX &&
-                        current[6] == centerY &&
-                        current[7] == size &&
-                        getImageWidth(currentImage) == width &&
-                        getImageHeight(currentImage) == height) {
-                    if((horizontal && current[4] == 1) || ((!horizontal) && current[4] == 0)) {
-                        return currentImage;
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
-    private void storeCachedGradient(Object img, Hashtable cache, int startColor, int endColor, int x, int y, boolean horizontal, int centerX, int centerY, int size) {
-        int[] key;
-        if(horizontal) {
-            key = new int[] {startColor, endColor, x, y, 1, centerX, centerY, size};
-        } else {
-            key = new int[] {startColor, endColor, x, y, 0, centerX, centerY, size};
-        }
-        cache.put(key, createSoftWeakRef(img));
-    }
-
     /**
      * Draws a radial gradient in the given coordinates with the given colors,
      * doesn't take alpha into consideration when drawing the gradient.
@@ -1556,16 +1718,14 @@ public abstract class LWUITImplementation {
      * @param relativeSize  indicates the relative size of the gradient within the drawing region
      */
     public void fillRectRadialGradient(Object graphics, int startColor, int endColor, int x, int y, int width, int height, float relativeX, float relativeY, float relativeSize) {
-        int centerX = (int) (width * (1 - relativeX));
-        int centerY = (int) (height * (1 - relativeY));
         int size = (int)(Math.min(width, height) * relativeSize);
         int x2 = (int)(width / 2 - (size * relativeX));
         int y2 = (int)(height / 2 - (size * relativeY));
         boolean aa = isAntiAliased(graphics);
         setAntiAliased(graphics, false);
 
-        if(cacheRadialGradients()) {
-            Object r = findCachedGradient(radialGradientCache, startColor, endColor, x, y, width, height, true, centerX, centerY, size);
+        if(cacheRadialGradients() && gradientCache.fits(width * height * 4)) {
+            Object r = gradientCache.get(GradientCache.RADIAL, startColor, endColor, width, height, x2, y2, size);
             if(r != null) {
                 drawImage(graphics, r, x, y);
             } else {
@@ -1575,10 +1735,7 @@ public abstract class LWUITImplementation {
                 fillRect(imageGraphics, 0, 0, width, height);
                 fillRadialGradientImpl(imageGraphics, startColor, endColor, x2, y2, size, size);
                 drawImage(graphics, r, x, y);
-                if(radialGradientCache == null) {
-                    radialGradientCache = new Hashtable();
-                }
-                storeCachedGradient(r, radialGradientCache, startColor, endColor, x, y, true, centerX, centerY, size);
+                gradientCache.put(r, width * height * 4, GradientCache.RADIAL, startColor, endColor, width, height, x2, y2, size);
             }
         } else {
             setColor(graphics, endColor);
@@ -1678,18 +1835,21 @@ public abstract class LWUITImplementation {
     public void fillLinearGradient(Object graphics, int startColor, int endColor, int x, int y, int width, int height, boolean horizontal) {
         boolean aa = isAntiAliased(graphics);
         setAntiAliased(graphics, false);
-        if(cacheLinearGradients()) {
-            Object r = findCachedGradient(linearGradientCache, startColor, endColor, x, y, width, height, horizontal, 0, 0, 0);
+        if(cacheLinearGradients() && gradientCache.fits(width * height * 4)) {
+            int type;
+            if(horizontal) {
+                type = GradientCache.LINEAR_HORIZONTAL;
+            } else {
+                type = GradientCache.LINEAR_VERTICAL;
+            }
+            Object r = gradientCache.get(type, startColor, endColor, width, height, 0, 0, 0);
             if(r != null) {
                 drawImage(graphics, r, x, y);
             } else {
                 r = createMutableImage(width, height, 0xffffffff);
                 fillLinearGradientImpl(getNativeGraphics(r), startColor, endColor, 0, 0, width, height, horizontal);
                 drawImage(graphics, r, x, y);
-                if(linearGradientCache == null) {
-                    linearGradientCache = new Hashtable();
-                }
-                storeCachedGradient(r, linearGradientCache, startColor, endColor, x, y, horizontal, 0, 0, 0);
+                gradientCache.put(r, width * height * 4, type, startColor, endColor, width, height, 0, 0, 0);
             }
         } else {
             fillLinearGradientImpl(graphics, startColor, endColor, x, y, width, height, horizontal);
@@ -2240,6 +2400,49 @@ public abstract class LWUITImplementation {
         return true;
     }
 
+    /**
+     * Sets the amount of memory in bytes available for caching rendered gradients,
+     * the least recently used gradients are discarded first and gradients larger
+     * than the budget are drawn directly without caching
+     *
+     * @param bytes the memory budget of the gradient cache
+     */
+    public void setGradientCacheSize(int bytes) {
+        gradientCache.setBudget(bytes);
+    }
+
+    /**
+     * Returns the amount of memory in bytes available for caching rendered gradients
+     *
+     * @return the memory budget of the gradient cache
+     */
+    public int getGradientCacheSize() {
+        return gradientCache.getBudget();
+    }
+
+    /**
+     * Returns statistics of the gradient cache useful for tuning its size
+     *
+     * @return an array with the hits, misses and bytes in use, in this order
+     */
+    public int[] getGradientCacheStatistics() {
+        return new int[] {gradientCache.getHits(), gradientCache.getMisses(), gradientCache.getUsed()};
+    }
+
+    /**
+     * Resets the hit and miss counters of the gradient cache
+     */
+    public void resetGradientCacheStatistics() {
+        gradientCache.resetStatistics();
+    }
+
+    /**
+     * Discards all the cached gradient images e.g. when memory runs low
+     */
+    public void clearGradientCache() {
+        gradientCache.clear();
+    }
+
     /**
      * Indicates the default status to apply to the 3rd softbutton variable
      *
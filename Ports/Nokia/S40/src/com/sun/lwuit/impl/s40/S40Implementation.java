@@ -843,6 +843,14 @@ public class S40Implementation extends LWUITImplementation {
         this.flushGraphicsBug = flushGraphicsBug;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public boolean isPartialFlushSupported() {
+        com.sun.lwuit.Form current = getCurrentForm();
+        return !flushGraphicsBug || (current != null && current.hasMedia());
+    }
+
     /**
      * @inheritDoc
      */
@@ -1513,6 +1521,21 @@ public class S40Implementation extends LWUITImplementation {
         return ((javax.microedition.lcdui.Image) image).getGraphics();
     }
 
+    /**
+     * @inheritDoc
+     */
+    public boolean isScrollBlitSupported() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void copyArea(Object graphics, int x, int y, int width, int height, int dx, int dy) {
+        ((javax.microedition.lcdui.Graphics) graphics).copyArea(x, y, width, height, x + dx, y + dy,
+                javax.microedition.lcdui.Graphics.TOP | javax.microedition.lcdui.Graphics.LEFT);
+    }
+
     /**
      * @inheritDoc
      */
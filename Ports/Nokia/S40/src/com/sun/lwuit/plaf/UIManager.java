@@ -46,7 +46,15 @@ public class UIManager {
     private LookAndFeel current = new DefaultLookAndFeel();
     private Hashtable styles = new Hashtable();
     private Hashtable selectedStyles = new Hashtable();
+    private Hashtable customStyles = new Hashtable();
     private Hashtable themeProps;
+
+    /**
+     * The theme properties pre-parsed into one entry per style key (e.g. "Button.sel#"),
+     * this is rebuilt lazily after the theme properties change so creating a style
+     * requires a single lookup rather than parsing every attribute
+     */
+    private Hashtable compiledStyles;
     private Hashtable themeConstants = new Hashtable();
     static UIManager instance; // = new UIManager();
     private Style defaultStyle = new Style();
@@ -217,7 +225,13 @@ public class UIManager {
                         styles.put(id, style);
                     }
                 } else {
-                    return createStyle(id, prefix, false);
+                    String key = id + prefix;
+                    style = (Style) customStyles.get(key);
+
+                    if (style == null) {
+                        style = createStyle(id, prefix, false);
+                        customStyles.put(key, style);
+                    }
                 }
             }
             
@@ -258,6 +272,7 @@ public class UIManager {
      */
     private void resetThemeProps(Hashtable installedTheme) {
         themeProps = new Hashtable();
+        compiledStyles = null;
 
         String disabledColor = Integer.toHexString(getLookAndFeel().getDisableColor());
         Integer centerAlign = new Integer(Component.CENTER);
@@ -834,7 +849,9 @@ public class UIManager {
         styles.clear();
         themeConstants.clear();
         selectedStyles.clear();
+        customStyles.clear();
         imageCache.clear();
+        BorderImageCache.INSTANCE.clear();
         if (themelisteners != null) {
             themelisteners.fireActionEvent(new ActionEvent(themeProps));
         }
@@ -928,6 +945,7 @@ public class UIManager {
             }
             this.themeProps.put(key, themeProps.get(key));
         }
+        compiledStyles = null;
 
         // necessary to clear up the style so we don't get resedue from the previous UI
         defaultStyle = new Style();
@@ -944,7 +962,11 @@ public class UIManager {
         if (prefix != null && prefix.length() > 0) {
             id += prefix;
         }
-        String baseStyle = (String) themeProps.get(id + "derive");
+        CompiledStyle compiled = getCompiledStyle(id);
+        String baseStyle = null;
+        if (compiled != null) {
+            baseStyle = compiled.derive;
+        }
         if (baseStyle != null) {
             if(baseStyle.indexOf('.') > -1 && baseStyle.indexOf('#') < 0) {
                 baseStyle += "#";
@@ -974,81 +996,58 @@ public class UIManager {
                 style = new Style(defaultStyle);
             }
         }
-        if (themeProps != null) {
-            String bgColor;
-            String fgColor;
-            Object border;
-
-            bgColor = (String) themeProps.get(id + Style.BG_COLOR);
-            fgColor = (String) themeProps.get(id + Style.FG_COLOR);
-            border = themeProps.get(id + Style.BORDER);
-            Object bgImage = themeProps.get(id + Style.BG_IMAGE);
-            String transperency = (String) themeProps.get(id + Style.TRANSPARENCY);
-            String margin = (String) themeProps.get(id + Style.MARGIN);
-            String padding = (String) themeProps.get(id + Style.PADDING);
-            Object font = themeProps.get(id + Style.FONT);
-            Integer alignment = (Integer) themeProps.get(id + Style.ALIGNMENT);
-            Integer textDecoration = (Integer) themeProps.get(id + Style.TEXT_DECORATION);
-
-            Byte backgroundType = (Byte) themeProps.get(id + Style.BACKGROUND_TYPE);
-            Byte backgroundAlignment = (Byte) themeProps.get(id + Style.BACKGROUND_ALIGNMENT);
-            Object[] backgroundGradient = (Object[]) themeProps.get(id + Style.BACKGROUND_GRADIENT);
-            byte[] paddingUnit = (byte[])themeProps.get(id + Style.PADDING_UNIT);
-            byte[] marginUnit = (byte[])themeProps.get(id + Style.MARGIN_UNIT);
-
-            if (bgColor != null) {
-                
-                style.setBgColor(Integer.valueOf(bgColor, 16).intValue());
+        if (compiled != null) {
+            if (compiled.error != null) {
+                throw compiled.error;
             }
-            if (fgColor != null) {
-                
-                style.setFgColor(Integer.valueOf(fgColor, 16).intValue());
+            if ((compiled.flags & CompiledStyle.BG_COLOR) != 0) {
+                style.setBgColor(compiled.bgColor);
+            }
+            if ((compiled.flags & CompiledStyle.FG_COLOR) != 0) {
+                style.setFgColor(compiled.fgColor);
             }
-            if (transperency != null) {
-                style.setBgTransparency(Integer.valueOf(transperency).intValue());
+            if ((compiled.flags & CompiledStyle.TRANSPARENCY) != 0) {
+                style.setBgTransparency(compiled.transparency);
             } else {
                 if (selected) {
-                    transperency = (String) themeProps.get(originalId + Style.TRANSPARENCY);
-                    if (transperency != null) {
-                        style.setBgTransparency(Integer.valueOf(transperency).intValue());
+                    CompiledStyle unselected = getCompiledStyle(originalId);
+                    if (unselected != null && (unselected.flags & CompiledStyle.TRANSPARENCY) != 0) {
+                        style.setBgTransparency(unselected.transparency);
                     }
                 }
             }
-            if (margin != null) {
-                int[] marginArr = toIntArray(margin.trim());
+            if (compiled.margin != null) {
+                int[] marginArr = compiled.margin;
                 style.setMargin(marginArr[0], marginArr[1], marginArr[2], marginArr[3]);
             }
-            if (padding != null) {
-                int[] paddingArr = toIntArray(padding.trim());
+            if (compiled.padding != null) {
+                int[] paddingArr = compiled.padding;
                 style.setPadding(paddingArr[0], paddingArr[1], paddingArr[2], paddingArr[3]);
             }
-            if(paddingUnit != null) {
-                style.setPaddingUnit(paddingUnit);
+            if(compiled.paddingUnit != null) {
+                style.setPaddingUnit(compiled.paddingUnit);
             }
-            if(marginUnit != null) {
-                style.setMarginUnit(marginUnit);
+            if(compiled.marginUnit != null) {
+                style.setMarginUnit(compiled.marginUnit);
             }
-            if (alignment != null) {
-                style.setAlignment(alignment.intValue());
+            if (compiled.alignment != null) {
+                style.setAlignment(compiled.alignment.intValue());
             }
-            if (textDecoration != null) {
-                style.setTextDecoration(textDecoration.intValue());
+            if (compiled.textDecoration != null) {
+                style.setTextDecoration(compiled.textDecoration.intValue());
             }
-            if (backgroundType != null) {
-                style.setBackgroundType(backgroundType.byteValue());
+            if (compiled.backgroundType != null) {
+                style.setBackgroundType(compiled.backgroundType.byteValue());
             }
-            if (backgroundAlignment != null) {
-                style.setBackgroundAlignment(backgroundAlignment.byteValue());
+            if (compiled.backgroundAlignment != null) {
+                style.setBackgroundAlignment(compiled.backgroundAlignment.byteValue());
             }
-            if (backgroundGradient != null) {
-                if (backgroundGradient.length < 5) {
-                    Object[] a = new Object[5];
-                    System.arraycopy(backgroundGradient, 0, a, 0, backgroundGradient.length);
-                    backgroundGradient = a;
-                    backgroundGradient[4] = new Float(1);
-                }
-                style.setBackgroundGradient(backgroundGradient);
+            if (compiled.backgroundGradient != null) {
+                style.setBackgroundGradient(compiled.backgroundGradient);
             }
+            Object bgImage = compiled.bgImage;
+            Object font = compiled.font;
+            Object border = compiled.border;
             if (bgImage != null) {
                 Image im = null;
                 if (bgImage instanceof String) {
@@ -1065,6 +1064,7 @@ public class UIManager {
                             imageCache.put(bgImageStr, im);
                         }
                         themeProps.put(id + Style.BG_IMAGE, im);
+                        compiled.bgImage = im;
                     } catch (IOException ex) {
                         System.out.println("failed to parse image for id = " + id + Style.BG_IMAGE);
                     }
@@ -1100,6 +1100,46 @@ public class UIManager {
         return style;
     }
 
+    /**
+     * Returns the pre-parsed attributes for the given style key compiling the
+     * theme properties first if necessary
+     *
+     * @param key the style id including the state prefix e.g. "Button.sel#"
+     * @return the compiled entry or null if the theme defines nothing for the key
+     */
+    private CompiledStyle getCompiledStyle(String key) {
+        if (compiledStyles == null) {
+            compiledStyles = compileTheme(themeProps);
+        }
+        return (CompiledStyle) compiledStyles.get(key);
+    }
+
+    /**
+     * Groups the theme properties by style key and parses their values once, a
+     * malformed value is recorded in the entry and thrown when the style is created
+     * so an illegal style still fails gracefully
+     */
+    private Hashtable compileTheme(Hashtable props) {
+        Hashtable result = new Hashtable();
+        Enumeration e = props.keys();
+        while (e.hasMoreElements()) {
+            String key = (String) e.nextElement();
+            int pos = Math.max(key.lastIndexOf('.'), key.lastIndexOf('#')) + 1;
+            String styleKey = key.substring(0, pos);
+            CompiledStyle c = (CompiledStyle) result.get(styleKey);
+            if (c == null) {
+                c = new CompiledStyle();
+                result.put(styleKey, c);
+            }
+            try {
+                c.set(key.substring(pos), props.get(key));
+            } catch (RuntimeException err) {
+                c.error = err;
+            }
+        }
+        return result;
+    }
+
     /**
      * This method is used to parse the margin and the padding
      * @param str
@@ -1403,4 +1443,78 @@ public class UIManager {
             setResourceBundle(h);
         }
     }
+
+    /**
+     * The parsed attributes of a single style key within the theme
+     */
+    class CompiledStyle {
+        static final int BG_COLOR = 1;
+        static final int FG_COLOR = 2;
+        static final int TRANSPARENCY = 4;
+
+        int flags;
+        int bgColor;
+        int fgColor;
+        int transparency;
+        int[] margin;
+        int[] padding;
+        byte[] paddingUnit;
+        byte[] marginUnit;
+        Integer alignment;
+        Integer textDecoration;
+        Byte backgroundType;
+        Byte backgroundAlignment;
+        Object[] backgroundGradient;
+        Object bgImage;
+        Object font;
+        Object border;
+        String derive;
+        RuntimeException error;
+
+        void set(String attribute, Object value) {
+            if (attribute.equals(Style.BG_COLOR)) {
+                bgColor = Integer.parseInt((String) value, 16);
+                flags |= BG_COLOR;
+            } else if (attribute.equals(Style.FG_COLOR)) {
+                fgColor = Integer.parseInt((String) value, 16);
+                flags |= FG_COLOR;
+            } else if (attribute.equals(Style.TRANSPARENCY)) {
+                transparency = Integer.parseInt((String) value);
+                flags |= TRANSPARENCY;
+            } else if (attribute.equals(Style.MARGIN)) {
+                margin = toIntArray(((String) value).trim());
+            } else if (attribute.equals(Style.PADDING)) {
+                padding = toIntArray(((String) value).trim());
+            } else if (attribute.equals(Style.PADDING_UNIT)) {
+                paddingUnit = (byte[]) value;
+            } else if (attribute.equals(Style.MARGIN_UNIT)) {
+                marginUnit = (byte[]) value;
+            } else if (attribute.equals(Style.ALIGNMENT)) {
+                alignment = (Integer) value;
+            } else if (attribute.equals(Style.TEXT_DECORATION)) {
+                textDecoration = (Integer) value;
+            } else if (attribute.equals(Style.BACKGROUND_TYPE)) {
+                backgroundType = (Byte) value;
+            } else if (attribute.equals(Style.BACKGROUND_ALIGNMENT)) {
+                backgroundAlignment = (Byte) value;
+            } else if (attribute.equals(Style.BACKGROUND_GRADIENT)) {
+                Object[] gradient = (Object[]) value;
+                if (gradient.length < 5) {
+                    Object[] a = new Object[5];
+                    System.arraycopy(gradient, 0, a, 0, gradient.length);
+                    gradient = a;
+                    gradient[4] = new Float(1);
+                }
+                backgroundGradient = gradient;
+            } else if (attribute.equals(Style.BG_IMAGE)) {
+                bgImage = value;
+            } else if (attribute.equals(Style.FONT)) {
+                font = value;
+            } else if (attribute.equals(Style.BORDER)) {
+                border = value;
+            } else if (attribute.equals("derive")) {
+                derive = (String) value;
+            }
+        }
+    }
 }
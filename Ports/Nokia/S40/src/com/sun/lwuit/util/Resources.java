@@ -47,6 +47,8 @@ import java.util.Vector;
  * A resource is loaded entirely into memory since random file access is not supported
  * in Java ME, any other approach would be inefficient. This means that memory must
  * be made available to accommodate the resource file. 
+ * <p>Resources opened by name can be loaded lazily (see {@link #setLazyLoading(boolean)})
+ * in which case images, data and UI entries are only decoded when first requested.
  * 
  * @author Shai Almog
  */
@@ -104,6 +106,21 @@ public class Resources {
      */
     private static Object cachedResource;
     private static String lastLoadedName;
+
+    private static boolean lazyLoading;
+    private static boolean lazyEviction;
+
+    /**
+     * The name used to reopen the resource file when decoding lazy entries, null when
+     * the resource isn't loaded lazily
+     */
+    private String lazyName;
+
+    /**
+     * Entries of a lazily loaded file that weren't decoded yet (or were decoded but are
+     * only softly referenced) mapped to their LazyEntry
+     */
+    private Hashtable lazyEntries = new Hashtable();
     
     // Object for synchronizing Resources.open
     private final static Object lock = new Object();
@@ -133,12 +150,18 @@ public class Resources {
     Resources(InputStream input) throws IOException {
         openFile(input);
     }
+
+    Resources(InputStream input, String lazyName) throws IOException {
+        this.lazyName = lazyName;
+        openFile(input);
+    }
     
     void clear() {
         majorVersion = 0;
         minorVersion = 0;
         resourceTypes.clear();
         resources.clear();
+        lazyEntries.clear();
         input = null;
     }
     
@@ -150,6 +173,11 @@ public class Resources {
 
     void openFile(InputStream input) throws IOException {
         clear();
+        CountingInputStream counter = null;
+        if(lazyName != null) {
+            counter = new CountingInputStream(input);
+            input = counter;
+        }
         this.input = new DataInputStream(input);
         int resourceCount = this.input.readShort();
         if(resourceCount < 0) {
@@ -183,15 +211,28 @@ public class Resources {
                     setResource(id, MAGIC_THEME, loadTheme(id, magic == MAGIC_THEME));
                     continue;
                 case MAGIC_IMAGE:
+                    if(counter != null && (majorVersion != 0 || minorVersion != 0)) {
+                        int offset = counter.getPosition();
+                        int type = this.input.readByte() & 0xff;
+                        if(skipImage(type)) {
+                            setLazyResource(id, magic, offset);
+                        } else {
+                            setResource(id, magic, createImage(type));
+                        }
+                        continue;
+                    }
                     setResource(id, magic, createImage());
                     continue;
                 case MAGIC_FONT:
                     setResource(id, magic, loadFont(this.input, id, false));
                     continue;
                 case MAGIC_DATA:
-                    setResource(id, magic, createData());
-                    continue;
                 case MAGIC_UI:
+                    if(counter != null) {
+                        setLazyResource(id, magic, counter.getPosition());
+                        skipFully(this.input.readInt());
+                        continue;
+                    }
                     setResource(id, magic, createData());
                     continue;
                 case MAGIC_L10N:
@@ -223,6 +264,144 @@ public class Resources {
         }
     }
 
+    /**
+     * Skips the image whose type byte was read if its size is known without decoding it
+     *
+     * @return true if the image was skipped
+     */
+    private boolean skipImage(int type) throws IOException {
+        switch(type) {
+            // PNG/JPEG file
+            case 0xf1:
+            case 0xf2:
+                skipFully(input.readInt());
+                return true;
+
+            // mutli image
+            case 0xF6:
+                int dpiCount = input.readInt();
+                int size = 0;
+                for(int iter = 0 ; iter < dpiCount ; iter++) {
+                    input.readInt();
+                    size += input.readInt();
+                }
+                skipFully(size);
+                return true;
+        }
+        return false;
+    }
+
+    private void skipFully(int size) throws IOException {
+        while(size > 0) {
+            long skipped = input.skip(size);
+            if(skipped <= 0) {
+                // some streams refuse to skip, reading is always supported
+                input.readByte();
+                skipped = 1;
+            }
+            size -= skipped;
+        }
+    }
+
+    private void setLazyResource(String id, byte type, int offset) {
+        resources.remove(id);
+        resourceTypes.put(id, new Byte(type));
+        lazyEntries.put(id, new LazyEntry(type, offset));
+    }
+
+    /**
+     * Decodes an entry of a lazily loaded resource file by reopening the file and
+     * skipping to the offset of the entry
+     */
+    private synchronized Object loadLazyResource(String id) {
+        LazyEntry e = (LazyEntry)lazyEntries.get(id);
+        if(e == null) {
+            return null;
+        }
+        if(e.value != null) {
+            Object o = Display.getInstance().extractHardRef(e.value);
+            if(o != null) {
+                return o;
+            }
+        }
+        DataInputStream previous = input;
+        InputStream is = null;
+        try {
+            is = Display.getInstance().getResourceAsStream(classLoader, lazyName);
+            if(is == null) {
+                throw new IOException(lazyName + " not found");
+            }
+            input = new DataInputStream(is);
+            skipFully(e.offset);
+            Object o;
+            if(e.type == MAGIC_IMAGE) {
+                o = createImage();
+            } else {
+                o = createData();
+            }
+            if(lazyEviction) {
+                e.value = Display.getInstance().createSoftWeakRef(o);
+            } else {
+                lazyEntries.remove(id);
+                resources.put(id, o);
+            }
+            return o;
+        } catch(IOException err) {
+            err.printStackTrace();
+            throw new RuntimeException("Failed to load resource " + id + ": " + err.getMessage());
+        } finally {
+            input = previous;
+            if(is != null) {
+                try {
+                    is.close();
+                } catch(IOException err) {
+                    err.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether resource files opened by name should be loaded lazily, in this
+     * mode opening the file only builds an index of the image, data and UI entries which
+     * are decoded when they are first requested. Themes, fonts and localization bundles
+     * are still decoded when the file is opened.
+     *
+     * @param lazy true to decode entries on first access
+     */
+    public static void setLazyLoading(boolean lazy) {
+        lazyLoading = lazy;
+    }
+
+    /**
+     * Indicates whether resource files opened by name are loaded lazily
+     *
+     * @return true if entries are decoded on first access
+     */
+    public static boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Indicates whether entries decoded lazily are held with soft/weak references, this
+     * allows the platform to reclaim them when they are no longer used at the cost of
+     * decoding them again when they are requested
+     *
+     * @param eviction true to only softly reference lazily decoded entries
+     */
+    public static void setLazyEviction(boolean eviction) {
+        lazyEviction = eviction;
+    }
+
+    /**
+     * Indicates whether entries decoded lazily are held with soft/weak references
+     *
+     * @return true if lazily decoded entries can be reclaimed
+     */
+    public static boolean isLazyEviction() {
+        return lazyEviction;
+    }
+
     /**
      * Sets the password to use for password protected resource files
      * 
@@ -343,6 +522,7 @@ public class Resources {
      * For internal use only
      */
     void setResource(String id, byte type, Object value) {
+        lazyEntries.remove(id);
         if(value == null) {
             resources.remove(id);
             resourceTypes.remove(id);
@@ -550,7 +730,11 @@ public class Resources {
                 if (is == null) {
                     throw new IOException(resource + " not found");
                 }
-                r = new Resources(is);
+                if(lazyLoading) {
+                    r = new Resources(is, resource);
+                } else {
+                    r = new Resources(is);
+                }
                 
                 lastLoadedName = resource;
                 cachedResource = Display.getInstance().createSoftWeakRef(r);
@@ -589,7 +773,7 @@ public class Resources {
      * @return cached image instance
      */
     public Image getImage(String id) {
-        return (Image)resources.get(id);
+        return (Image)getResourceObject(id);
     }
 
     /**
@@ -600,7 +784,7 @@ public class Resources {
      * @deprecated use getImage(String) instead
      */
     public StaticAnimation getAnimation(String id) {
-        return (StaticAnimation)resources.get(id);
+        return (StaticAnimation)getResourceObject(id);
     }
     
     /**
@@ -610,7 +794,7 @@ public class Resources {
      * @return newly created input stream that allows reading the data of the resource
      */
     public InputStream getData(String id) {
-        return new ByteArrayInputStream((byte[])resources.get(id));
+        return new ByteArrayInputStream((byte[])getResourceObject(id));
     }
     
     /**
@@ -620,7 +804,7 @@ public class Resources {
      * @return newly created input stream that allows reading the ui of the resource
      */
     InputStream getUi(String id) {
-        byte[] d = (byte[])resources.get(id);
+        byte[] d = (byte[])getResourceObject(id);
         if(d == null) {
             throw new RuntimeException("UI Resource Not Found: " + id);
         }
@@ -635,7 +819,7 @@ public class Resources {
      * @return Hashtable containing key value pairs for localized data
      */
     public Hashtable getL10N(String id, String locale) {
-        return (Hashtable)((Hashtable)resources.get(id)).get(locale);
+        return (Hashtable)((Hashtable)getResourceObject(id)).get(locale);
     }
 
     /**
@@ -645,7 +829,7 @@ public class Resources {
      * @return enumeration of strings containing bundle names
      */
     public Enumeration listL10NLocales(String id) {
-        return ((Hashtable)resources.get(id)).keys();
+        return ((Hashtable)getResourceObject(id)).keys();
     }
 
     /**
@@ -655,7 +839,7 @@ public class Resources {
      * @return cached font instance
      */
     public Font getFont(String id) {
-        return (Font)resources.get(id);
+        return (Font)getResourceObject(id);
     }
 
     /**
@@ -665,7 +849,7 @@ public class Resources {
      * @return cached theme instance
      */
     public Hashtable getTheme(String id) {
-        Hashtable h = (Hashtable)resources.get(id);
+        Hashtable h = (Hashtable)getResourceObject(id);
         
         // theme can be null in valid use cases such as the resource editor
         if(h != null && h.containsKey("uninitialized")) {
@@ -687,7 +871,7 @@ public class Resources {
                         if(key.endsWith("Image")) {
                             o = getImage((String)value);
                         } else {
-                            o = resources.get(value);
+                            o = getResourceObject((String)value);
                         }
                         if(o == null) {
                             throw new IllegalArgumentException("Theme entry for " + key + " could not be found: " + value);
@@ -761,7 +945,11 @@ public class Resources {
     }
     
     Object getResourceObject(String res) {
-        return resources.get(res);
+        Object o = resources.get(res);
+        if(o == null && lazyName != null) {
+            return loadLazyResource(res);
+        }
+        return o;
     }
     
     Image createImage() throws IOException {
@@ -769,134 +957,139 @@ public class Resources {
             byte[] data = new byte[input.readInt()];
             input.readFully(data, 0, data.length);
             return Image.createImage(data, 0, data.length);
-        } else {
-            int type = input.readByte() & 0xff;
-            switch(type) {
-                // PNG file
-                case 0xf1:
-
-                // JPEG File
-                case 0xf2:
-                    byte[] data = new byte[input.readInt()];
-                    input.readFully(data, 0, data.length);
-                    return Image.createImage(data, 0, data.length);
-                // Indexed image
-                case 0xF3:
-                    return createPackedImage8();
-
-                // animation
-                case 0xF4:
-                    return loadAnimation(input);
-
-                // SVG
-                case 0xF5: {
-                    int svgSize = input.readInt();
-                    if(Image.isSVGSupported()) {
-                        byte[] s = new byte[svgSize];
-                        input.readFully(s);
-                        String baseURL = input.readUTF();
-                        boolean animated = input.readBoolean();
-                        loadSVGRatios(input);
-                        byte[] fallback = new byte[input.readInt()];
-                        if(fallback.length > 0) {
-                            input.readFully(fallback, 0, fallback.length);
-                        }
-                        return Image.createSVG(baseURL, animated, s);
-                    } else {
-                        svgSize -= input.skip(svgSize);
-                        while(svgSize > 0) {
-                            svgSize -= input.skip(svgSize);
-                        }
-                        // read the base url, the animated property and screen ratios to skip them as well...
-                        input.readUTF();
-                        input.readBoolean();
-                        input.readFloat();
-                        input.readFloat();
+        }
+        return createImage(input.readByte() & 0xff);
+    }
 
-                        byte[] fallback = new byte[input.readInt()];
+    /**
+     * Creates the image whose type byte was already read
+     */
+    private Image createImage(int type) throws IOException {
+        switch(type) {
+            // PNG file
+            case 0xf1:
+
+            // JPEG File
+            case 0xf2:
+                byte[] data = new byte[input.readInt()];
+                input.readFully(data, 0, data.length);
+                return Image.createImage(data, 0, data.length);
+            // Indexed image
+            case 0xF3:
+                return createPackedImage8();
+
+            // animation
+            case 0xF4:
+                return loadAnimation(input);
+
+            // SVG
+            case 0xF5: {
+                int svgSize = input.readInt();
+                if(Image.isSVGSupported()) {
+                    byte[] s = new byte[svgSize];
+                    input.readFully(s);
+                    String baseURL = input.readUTF();
+                    boolean animated = input.readBoolean();
+                    loadSVGRatios(input);
+                    byte[] fallback = new byte[input.readInt()];
+                    if(fallback.length > 0) {
                         input.readFully(fallback, 0, fallback.length);
-                        return EncodedImage.create(fallback);
                     }
-                }
-                
-                // SVG with multi-image
-                case 0xf7: {
-                    int svgSize = input.readInt();
-                    if(Image.isSVGSupported()) {
-                        byte[] s = new byte[svgSize];
-                        input.readFully(s);
-                        String baseURL = input.readUTF();
-                        boolean animated = input.readBoolean();
-                        readMultiImage(input, true);
-                        return createSVG(animated, s);
-                    } else {
+                    return Image.createSVG(baseURL, animated, s);
+                } else {
+                    svgSize -= input.skip(svgSize);
+                    while(svgSize > 0) {
                         svgSize -= input.skip(svgSize);
-                        while(svgSize > 0) {
-                            svgSize -= input.skip(svgSize);
-                        }
-                        String baseURL = input.readUTF();
-
-                        // read the animated property to skip it as well...
-                        input.readBoolean();
-                        return readMultiImage(input);
                     }
+                    // read the base url, the animated property and screen ratios to skip them as well...
+                    input.readUTF();
+                    input.readBoolean();
+                    input.readFloat();
+                    input.readFloat();
+
+                    byte[] fallback = new byte[input.readInt()];
+                    input.readFully(fallback, 0, fallback.length);
+                    return EncodedImage.create(fallback);
                 }
+            }
+            
+            // SVG with multi-image
+            case 0xf7: {
+                int svgSize = input.readInt();
+                if(Image.isSVGSupported()) {
+                    byte[] s = new byte[svgSize];
+                    input.readFully(s);
+                    String baseURL = input.readUTF();
+                    boolean animated = input.readBoolean();
+                    readMultiImage(input, true);
+                    return createSVG(animated, s);
+                } else {
+                    svgSize -= input.skip(svgSize);
+                    while(svgSize > 0) {
+                        svgSize -= input.skip(svgSize);
+                    }
+                    String baseURL = input.readUTF();
 
-                // mutli image
-                case 0xF6:
+                    // read the animated property to skip it as well...
+                    input.readBoolean();
                     return readMultiImage(input);
+                }
+            }
 
-                case 0xEF:
-                    int duration = input.readInt();
-                    int width = input.readInt();
-                    int height = input.readInt();
-                    AnimationObject[] animations = new AnimationObject[input.readShort()];
-                    for(int iter = 0 ; iter < animations.length ; iter++) {
-                        String name = input.readUTF();
-                        int startTime = input.readInt();
-                        int animDuration = input.readInt();
-                        int x = input.readInt();
-                        int y = input.readInt();
-                        Image i = getImage(name);
-                        if(i == null) {
-                            animations[iter] = AnimationObject.createAnimationImage(name, this, x, y);
-                        } else {
-                            animations[iter] = AnimationObject.createAnimationImage(i, x, y);
-                        }
-                        animations[iter].setStartTime(startTime);
-                        animations[iter].setEndTime(startTime + animDuration);
-                        int frameDelay = input.readInt();
-                        if(frameDelay > -1) {
-                            int frameWidth = input.readInt();
-                            int frameHeight = input.readInt();
-                            animations[iter].defineFrames(frameWidth, frameHeight, frameDelay);
-                        }
-                        if(input.readBoolean()) {
-                            animations[iter].defineMotionX(input.readInt(), startTime, animDuration, x, input.readInt());
-                        }
-                        if(input.readBoolean()) {
-                            animations[iter].defineMotionY(input.readInt(), startTime, animDuration, y, input.readInt());
-                        }
-                        if(input.readBoolean()) {
-                            animations[iter].defineWidth(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
-                        }
-                        if(input.readBoolean()) {
-                            animations[iter].defineHeight(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
-                        }
-                        if(input.readBoolean()) {
-                            animations[iter].defineOpacity(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
-                        }
-                        if(input.readBoolean()) {
-                            animations[iter].defineOrientation(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
-                        }
+            // mutli image
+            case 0xF6:
+                return readMultiImage(input);
+
+            case 0xEF:
+                int duration = input.readInt();
+                int width = input.readInt();
+                int height = input.readInt();
+                AnimationObject[] animations = new AnimationObject[input.readShort()];
+                for(int iter = 0 ; iter < animations.length ; iter++) {
+                    String name = input.readUTF();
+                    int startTime = input.readInt();
+                    int animDuration = input.readInt();
+                    int x = input.readInt();
+                    int y = input.readInt();
+                    Image i = getImage(name);
+                    if(i == null) {
+                        animations[iter] = AnimationObject.createAnimationImage(name, this, x, y);
+                    } else {
+                        animations[iter] = AnimationObject.createAnimationImage(i, x, y);
+                    }
+                    animations[iter].setStartTime(startTime);
+                    animations[iter].setEndTime(startTime + animDuration);
+                    int frameDelay = input.readInt();
+                    if(frameDelay > -1) {
+                        int frameWidth = input.readInt();
+                        int frameHeight = input.readInt();
+                        animations[iter].defineFrames(frameWidth, frameHeight, frameDelay);
+                    }
+                    if(input.readBoolean()) {
+                        animations[iter].defineMotionX(input.readInt(), startTime, animDuration, x, input.readInt());
+                    }
+                    if(input.readBoolean()) {
+                        animations[iter].defineMotionY(input.readInt(), startTime, animDuration, y, input.readInt());
+                    }
+                    if(input.readBoolean()) {
+                        animations[iter].defineWidth(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
                     }
-                    Timeline tl = Timeline.createTimeline(duration, animations, new Dimension(width, height));
-                    return tl;
+                    if(input.readBoolean()) {
+                        animations[iter].defineHeight(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
+                    }
+                    if(input.readBoolean()) {
+                        animations[iter].defineOpacity(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
+                    }
+                    if(input.readBoolean()) {
+                        animations[iter].defineOrientation(input.readInt(), startTime, animDuration, input.readInt(), input.readInt());
+                    }
+                }
+                Timeline tl = Timeline.createTimeline(duration, animations, new Dimension(width, height));
+                return tl;
 
-                // Fail this is the wrong data type
-                default:
-                    throw new IOException("Illegal type while creating image: " + Integer.toHexString(type));
-            }
+            // Fail this is the wrong data type
+            default:
+                throw new IOException("Illegal type while creating image: " + Integer.toHexString(type));
         }
     }
 
@@ -1121,7 +1314,7 @@ public class Resources {
                 // is this a new font?
                 if(input.readBoolean()) {
                     String fontId = input.readUTF();
-                    f = (Font)resources.get(fontId);
+                    f = (Font)getResourceObject(fontId);
                     
                     // if the font is not yet loaded
                     if(f == null) {
@@ -1454,4 +1647,66 @@ public class Resources {
         input.readFully(data, 0, data.length);
         return Image.createIndexed(width, height, palette, data);
     }
+
+    /**
+     * Stream wrapper tracking the offset of the data read from the resource file
+     */
+    static class CountingInputStream extends InputStream {
+        private InputStream in;
+        private int position;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if(b > -1) {
+                position++;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int r = in.read(b, off, len);
+            if(r > 0) {
+                position += r;
+            }
+            return r;
+        }
+
+        public long skip(long n) throws IOException {
+            long r = in.skip(n);
+            if(r > 0) {
+                position += (int)r;
+            }
+            return r;
+        }
+
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * A lazily loaded entry and its soft/weak reference once decoded with eviction
+     */
+    static class LazyEntry {
+        byte type;
+        int offset;
+        Object value;
+
+        LazyEntry(byte type, int offset) {
+            this.type = type;
+            this.offset = offset;
+        }
+    }
 }
@@ -1059,6 +1059,20 @@ public class AwtImpl extends LWUITImplementation {
         return ((BufferedImage)image).getGraphics();
     }
 
+    /**
+     * @inheritDoc
+     */
+    public boolean isScrollBlitSupported() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void copyArea(Object graphics, int x, int y, int width, int height, int dx, int dy) {
+        getGraphics(graphics).copyArea(x, y, width, height, dx, dy);
+    }
+
     /**
      * @inheritDoc
      */
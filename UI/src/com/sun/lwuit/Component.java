@@ -147,6 +147,12 @@ public class Component implements Animation, StyleListener {
     private boolean focusable = true;
     private boolean isScrollVisible = true;
     private boolean repaintPending;
+
+    /**
+     * Indicates the scrolled pixels of the component will be moved rather than painted
+     * so a repaint of a region must repaint the whole component
+     */
+    private boolean scrollPending;
     private boolean snapToGrid;
 
     private boolean hideInPortrait;
@@ -397,6 +403,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setX(int x) {
         bounds.setX(x);
+        if(parent != null) {
+            parent.invalidateHitIndex();
+        }
     }
 
     /**
@@ -408,6 +417,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setY(int y) {
         bounds.setY(y);
+        if(parent != null) {
+            parent.invalidateHitIndex();
+        }
     }
 
     /**
@@ -561,6 +573,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setWidth(int width) {
         bounds.getSize().setWidth(width);
+        if(parent != null) {
+            parent.invalidateHitIndex();
+        }
     }
 
     /**
@@ -574,6 +589,9 @@ public class Component implements Animation, StyleListener {
      */
     public void setHeight(int height) {
         bounds.getSize().setHeight(height);
+        if(parent != null) {
+            parent.invalidateHitIndex();
+        }
     }
 
     /**
@@ -589,6 +607,9 @@ public class Component implements Animation, StyleListener {
         Dimension d2 = bounds.getSize();
         d2.setWidth(d.getWidth());
         d2.setHeight(d.getHeight());
+        if(parent != null) {
+            parent.invalidateHitIndex();
+        }
     }
 
     /**
@@ -890,7 +911,7 @@ public class Component implements Animation, StyleListener {
             } else {
                 Image i = (Image)Display.getInstance().extractHardRef(paintLockImage);
                 if(i == null) {
-                    i = Image.createImage(getWidth(), getHeight());
+                    i = OffscreenImagePool.acquire(getWidth(), getHeight());
                     int x = getX();
                     int y = getY();
                     setX(0);
@@ -1051,6 +1072,7 @@ public class Component implements Animation, StyleListener {
      */
     final public void paintComponent(Graphics g) {
         repaintPending = false;
+        scrollPending = false;
         paintComponent(g, true);
     }
 
@@ -1306,6 +1328,7 @@ public class Component implements Animation, StyleListener {
      * @param scrollX the X position of the scrolling
      */
     protected void setScrollX(int scrollX) {
+        int oldScrollX = this.scrollX;
         // the setter must always update the value regardless...
         this.scrollX = scrollX;
         if(!isSmoothScrolling() || !isTensileDragEnabled()) {
@@ -1313,7 +1336,7 @@ public class Component implements Animation, StyleListener {
             this.scrollX = Math.max(this.scrollX, 0);
         }
         if (isScrollableX()) {
-            repaint();
+            repaintScrolled(this.scrollX - oldScrollX, 0);
         }
     }
 
@@ -1325,6 +1348,7 @@ public class Component implements Animation, StyleListener {
      * @param scrollY the Y position of the scrolling
      */
     protected void setScrollY(int scrollY) {
+        int oldScrollY = this.scrollY;
         // the setter must always update the value regardless... 
         this.scrollY = scrollY;
         if(!isSmoothScrolling() || !isTensileDragEnabled()) {
@@ -1336,10 +1360,124 @@ public class Component implements Animation, StyleListener {
         }
         
         if (isScrollableY()) {
+            repaintScrolled(0, this.scrollY - oldScrollY);
+        }
+    }
+
+    /**
+     * Repaints the component after its scroll position changed by the given offset,
+     * when the implementation can copy areas of the screen the pixels that remain
+     * visible are moved and only the exposed area is painted otherwise this is
+     * a regular repaint
+     *
+     * @param dx the change in the scroll x position
+     * @param dy the change in the scroll y position
+     */
+    private void repaintScrolled(int dx, int dy) {
+        if((dx == 0 && dy == 0) || repaintPending || dirtyRegion != null || getWidth() <= 0 || getHeight() <= 0 ||
+                !canScrollBlit()) {
+            repaint();
+            return;
+        }
+        Form f = getComponentForm();
+        if(f == null || f != Display.getInstance().getCurrent() || !f.isVisible() || f.getGlassPane() != null) {
+            repaint();
+            return;
+        }
+        Component cmp = this;
+        while(cmp != null) {
+            if(cmp.isCellRenderer() || cmp.paintLockImage != null) {
+                repaint();
+                return;
+            }
+            cmp = cmp.getParent();
+        }
+        if(isOverlappedAbove()) {
+            repaint();
+            return;
+        }
+        scrollPending = true;
+        if(!Display.getInstance().repaintScrolled(this, dx, dy)) {
+            scrollPending = false;
             repaint();
         }
     }
 
+    /**
+     * Indicates whether the pixels of the component can be moved when it scrolls, this
+     * requires the background behind the content to be a solid color either of this
+     * component or of the first ancestor that isn't fully transparent and no native
+     * media on the form
+     *
+     * @return true if the pixels of the component can be moved when it scrolls
+     */
+    boolean canScrollBlit() {
+        if(isFlatten() || tensileHighlightIntensity > 0 || UIManager.getInstance().getLookAndFeel().isFadeScrollEdge()) {
+            return false;
+        }
+
+        // native media such as video is only moved when its component is painted
+        Form f = getComponentForm();
+        if(f != null && f.hasMedia()) {
+            return false;
+        }
+        Component cmp = this;
+        while(cmp != null) {
+            Border b = cmp.getBorder();
+            if(b != null && b.isBackgroundPainter()) {
+                return false;
+            }
+            Style s = cmp.getStyle();
+            Painter p = s.getBgPainter();
+            if(!(p instanceof BGPainter) || ((BGPainter)p).painter != null || s.getBgImage() != null ||
+                    s.getBackgroundType() >= Style.BACKGROUND_GRADIENT_LINEAR_VERTICAL) {
+                return false;
+            }
+            int alpha = s.getBgTransparency() & 0xff;
+            if(alpha == 0xff) {
+                return true;
+            }
+            if(alpha != 0) {
+                return false;
+            }
+            cmp = cmp.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if a component painted after this component overlaps it, such pixels
+     * can't be moved with the content
+     */
+    private boolean isOverlappedAbove() {
+        int x = getAbsoluteX() + getScrollX();
+        int y = getAbsoluteY() + getScrollY();
+        int x2 = x + getWidth();
+        int y2 = y + getHeight();
+        Component cmp = this;
+        Container parent = getParent();
+        while(parent != null) {
+            // Form.getComponentIndex refers to the content pane so the children are scanned directly
+            int count = parent.getComponentCount();
+            boolean above = false;
+            for(int iter = 0 ; iter < count ; iter++) {
+                Component c = parent.getComponentAt(iter);
+                if(!above) {
+                    above = c == cmp;
+                } else if(c.isVisible()) {
+                    int cx = c.getAbsoluteX() + c.getScrollX();
+                    int cy = c.getAbsoluteY() + c.getScrollY();
+                    if(cx < x2 && x < cx + c.getWidth() && cy < y2 && y < cy + c.getHeight()) {
+                        return true;
+                    }
+                }
+            }
+            cmp = parent;
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
     private void updateTensileHighlightIntensity() {
         if(tensileHighlightEnabled) {
             int h = getScrollDimension().getHeight() - getHeight();
@@ -1594,6 +1732,11 @@ public class Component implements Animation, StyleListener {
      * @param h boundry of the region to repaint
      */
     public void repaint(int x, int y, int w, int h) {
+        if(scrollPending) {
+            // the region might be within the pixels that are moved by the scroll
+            repaint();
+            return;
+        }
         Rectangle rect;
         synchronized (dirtyRegionLock) {
             if (dirtyRegion == null) {
@@ -3256,6 +3399,10 @@ public class Component implements Animation, StyleListener {
      * for details
      */
     public void paintLockRelease() {
+        // the image of a hard lock was handed to the caller so only soft lock images are pooled
+        if(paintLockImage != null && !(paintLockImage instanceof Image)) {
+            OffscreenImagePool.release((Image)Display.getInstance().extractHardRef(paintLockImage));
+        }
         paintLockImage = null;
     }
 
@@ -3278,7 +3425,7 @@ public class Component implements Animation, StyleListener {
             return null;
         }
         if(paintLockImage == null) {
-            paintLockImage = Image.createImage(getWidth(), getHeight());
+            paintLockImage = OffscreenImagePool.acquire(getWidth(), getHeight());
             int x = getX();
             int y = getY();
             setX(0);
@@ -3671,125 +3818,121 @@ public class Component implements Animation, StyleListener {
                             g.drawImage(s.getBgImage(), x, y);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_BOTH:
-                            for (int xPos = 0; xPos <= width; xPos += iW) {
-                                for (int yPos = 0; yPos <= height; yPos += iH) {
-                                    g.drawImage(s.getBgImage(), x + xPos, y + yPos);
-                                }
-                            }
+                            g.tileImage(s.getBgImage(), x, y, width, height);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_HORIZONTAL_ALIGN_TOP:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            for (int xPos = 0; xPos <= width; xPos += iW) {
-                                g.drawImage(s.getBgImage(), x + xPos, y);
-                            }
+                            g.tileImage(s.getBgImage(), x, y, width, iH);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_HORIZONTAL_ALIGN_CENTER:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            for (int xPos = 0; xPos <= width; xPos += iW) {
-                                g.drawImage(s.getBgImage(), x + xPos, y + (height / 2 - iH / 2));
-                            }
+                            g.tileImage(s.getBgImage(), x, y + (height / 2 - iH / 2), width, iH);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_HORIZONTAL_ALIGN_BOTTOM:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            for (int xPos = 0; xPos <= width; xPos += iW) {
-                                g.drawImage(s.getBgImage(), x + xPos, y + (height - iH));
-                            }
+                            g.tileImage(s.getBgImage(), x, y + (height - iH), width, iH);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_VERTICAL_ALIGN_LEFT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            for (int yPos = 0; yPos <= height; yPos += iH) {
-                                g.drawImage(s.getBgImage(), x, y + yPos);
-                            }
+                            g.tileImage(s.getBgImage(), x, y, iW, height);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_VERTICAL_ALIGN_CENTER:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            for (int yPos = 0; yPos <= height; yPos += iH) {
-                                g.drawImage(s.getBgImage(), x + (width / 2 - iW / 2), y + yPos);
-                            }
+                            g.tileImage(s.getBgImage(), x + (width / 2 - iW / 2), y, iW, height);
                             return;
                         case Style.BACKGROUND_IMAGE_TILE_VERTICAL_ALIGN_RIGHT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            for (int yPos = 0; yPos <= height; yPos += iH) {
-                                g.drawImage(s.getBgImage(), x + width - iW, y + yPos);
-                            }
+                            g.tileImage(s.getBgImage(), x + width - iW, y, iW, height);
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
                             switch (s.getBackgroundAlignment()) {
                                 case Style.BACKGROUND_IMAGE_ALIGN_BOTTOM:
-                                    g.drawImage(s.getBgImage(), x + width - iW, y + (height - iH));
+                                    drawAligned(g, s.getBgImage(), x + width - iW, y + (height - iH));
                                     return;
                                 case Style.BACKGROUND_IMAGE_ALIGN_TOP:
-                                    g.drawImage(s.getBgImage(), x + width - iW, y);
+                                    drawAligned(g, s.getBgImage(), x + width - iW, y);
                                     return;
                                 case Style.BACKGROUND_IMAGE_ALIGN_LEFT:
-                                    g.drawImage(s.getBgImage(), x, y + (height / 2 - iH / 2));
+                                    drawAligned(g, s.getBgImage(), x, y + (height / 2 - iH / 2));
                                     return;
                                 case Style.BACKGROUND_IMAGE_ALIGN_RIGHT:
-                                    g.drawImage(s.getBgImage(), x + width - iW, y + (height / 2 - iH / 2));
+                                    drawAligned(g, s.getBgImage(), x + width - iW, y + (height / 2 - iH / 2));
                                     return;
                                 case Style.BACKGROUND_IMAGE_ALIGN_CENTER:
-                                    g.drawImage(s.getBgImage(), x + (width / 2 - iW / 2), y + (height / 2 - iH / 2));
+                                    drawAligned(g, s.getBgImage(), x + (width / 2 - iW / 2), y + (height / 2 - iH / 2));
                                     return;
                             }
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_TOP:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x + (width / 2 - iW / 2), y);
+                            drawAligned(g, s.getBgImage(), x + (width / 2 - iW / 2), y);
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_BOTTOM:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x + (width / 2 - iW / 2), y + (height - iH));
+                            drawAligned(g, s.getBgImage(), x + (width / 2 - iW / 2), y + (height - iH));
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_LEFT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x, y + (height / 2 - iH / 2));
+                            drawAligned(g, s.getBgImage(), x, y + (height / 2 - iH / 2));
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_RIGHT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x + width - iW, y + (height / 2 - iH / 2));
+                            drawAligned(g, s.getBgImage(), x + width - iW, y + (height / 2 - iH / 2));
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_CENTER:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x + (width / 2 - iW / 2), y + (height / 2 - iH / 2));
+                            drawAligned(g, s.getBgImage(), x + (width / 2 - iW / 2), y + (height / 2 - iH / 2));
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_TOP_LEFT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x, y);
+                            drawAligned(g, s.getBgImage(), x, y);
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_TOP_RIGHT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x + width - iW, y);
+                            drawAligned(g, s.getBgImage(), x + width - iW, y);
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_BOTTOM_LEFT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x, y + (height - iH));
+                            drawAligned(g, s.getBgImage(), x, y + (height - iH));
                             return;
                         case Style.BACKGROUND_IMAGE_ALIGNED_BOTTOM_RIGHT:
                             g.setColor(s.getBgColor());
                             g.fillRect(x, y, width, height, s.getBgTransparency());
-                            g.drawImage(s.getBgImage(), x + width - iW, y + (height - iH));
+                            drawAligned(g, s.getBgImage(), x + width - iW, y + (height - iH));
                             return;
                     }
                 }
             }
         }
 
+        /**
+         * Draws an aligned background image unless it's outside of the clip
+         */
+        private void drawAligned(Graphics g, Image img, int x, int y) {
+            int clipX = g.getClipX();
+            int clipY = g.getClipY();
+            if(x < clipX + g.getClipWidth() && y < clipY + g.getClipHeight() &&
+                    x + img.getWidth() > clipX && y + img.getHeight() > clipY) {
+                g.drawImage(img, x, y);
+            }
+        }
+
         public boolean animate() {
             if(wMotion.isFinished() && hMotion.isFinished()) {
                 getComponentForm().deregisterAnimated(this);
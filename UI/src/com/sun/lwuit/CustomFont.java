@@ -23,10 +23,6 @@
  */
 package com.sun.lwuit;
 
-import java.util.Hashtable;
-
-
-
 /**
  * Implements a bitmap font that uses an image and sets of offsets to draw a font
  * with a given character set.
@@ -34,13 +30,6 @@ import java.util.Hashtable;
  * @author Shai Almog
  */
 class CustomFont extends Font {
-    /**
-     * Keep two colors in cache by default to allow faster selection colors
-     */
-    private static final int COLOR_CACHE_SIZE = 20;
-    
-    private Hashtable colorCache = new Hashtable();
-
     private String charsets;
     private int color;
     
@@ -64,6 +53,19 @@ class CustomFont extends Font {
     private int imageWidth;
     private int imageHeight;
     private Object imageArrayRef;
+
+    /**
+     * Glyph offsets of the characters below LATIN_INDEX_SIZE indexed by character, -1
+     * for characters missing from the charset
+     */
+    private static final int LATIN_INDEX_SIZE = 256;
+    private short[] latinIndex;
+
+    /**
+     * Sorted characters beyond the latin range and the matching glyph offsets
+     */
+    private char[] extendedChars;
+    private short[] extendedIndex;
     
     
     private int[] getImageArray() {
@@ -110,13 +112,87 @@ class CustomFont extends Font {
         }
         cache = Image.createImage(imageArray, imageWidth, imageHeight);
         imageArrayRef = Display.getInstance().createSoftWeakRef(imageArray);
+        GlyphAtlasCache.INSTANCE.put(this, color, cache, imageWidth * imageHeight * 4);
+        initGlyphIndex();
+    }
+
+    /**
+     * Builds the character to glyph lookup tables replacing a linear search of the charset
+     */
+    private void initGlyphIndex() {
+        latinIndex = new short[LATIN_INDEX_SIZE];
+        for(int iter = 0 ; iter < LATIN_INDEX_SIZE ; iter++) {
+            latinIndex[iter] = -1;
+        }
+        int length = charsets.length();
+        int extended = 0;
+        for(int iter = 0 ; iter < length ; iter++) {
+            char c = charsets.charAt(iter);
+            if(c < LATIN_INDEX_SIZE) {
+                // the first occurrence wins just like indexOf
+                if(latinIndex[c] < 0) {
+                    latinIndex[c] = (short)iter;
+                }
+            } else {
+                extended++;
+            }
+        }
+        extendedChars = new char[extended];
+        extendedIndex = new short[extended];
+        int count = 0;
+        for(int iter = 0 ; iter < length ; iter++) {
+            char c = charsets.charAt(iter);
+            if(c >= LATIN_INDEX_SIZE) {
+                // insertion sort, charsets are mostly ordered and duplicates are dropped
+                int pos = count;
+                while(pos > 0 && extendedChars[pos - 1] > c) {
+                    pos--;
+                }
+                if(pos > 0 && extendedChars[pos - 1] == c) {
+                    continue;
+                }
+                System.arraycopy(extendedChars, pos, extendedChars, pos + 1, count - pos);
+                System.arraycopy(extendedIndex, pos, extendedIndex, pos + 1, count - pos);
+                extendedChars[pos] = c;
+                extendedIndex[pos] = (short)iter;
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of the glyph for the given character in the charset
+     *
+     * @param c the character
+     * @return the glyph offset or -1 if the character isn't a part of the font
+     */
+    private int glyphIndex(char c) {
+        if(c < LATIN_INDEX_SIZE) {
+            return latinIndex[c];
+        }
+        int low = 0;
+        int high = extendedChars.length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            char current = extendedChars[mid];
+            if(current < c) {
+                low = mid + 1;
+            } else {
+                if(current > c) {
+                    high = mid - 1;
+                } else {
+                    return extendedIndex[mid];
+                }
+            }
+        }
+        return -1;
     }
     
     /**
      * @inheritDoc
      */
     public int charWidth(char ch) {
-        int i = charsets.indexOf(ch);
+        int i = glyphIndex(ch);
         if(i < 0) {
             return 0;
         }
@@ -130,47 +206,23 @@ class CustomFont extends Font {
         return imageHeight;
     }
 
-    private boolean checkCacheCurrentColor(int newColor) {
-        Integer currentColor = new Integer(color);
-        Integer newColorKey = new Integer(newColor);
-        if(colorCache.get(currentColor) == null){
-            colorCache.put(currentColor, Display.getInstance().createSoftWeakRef(cache));
-        }
-        color = newColor;
-        Object newCache = Display.getInstance().extractHardRef(colorCache.get(newColorKey));
-        if(newCache != null) {
-            Image i = (Image)newCache;
-            if(i != null) {
-                cache = i;
-                if(colorCache.size() > COLOR_CACHE_SIZE) {
-                    // remove a random cache element
-                    colorCache.remove(colorCache.keys().nextElement());
-                }
-                return true;
-            }else{
-                colorCache.remove(newColorKey);
-            }
-        }
-        if(colorCache.size() > COLOR_CACHE_SIZE) {
-            // remove a random cache element
-            colorCache.remove(colorCache.keys().nextElement());
-        }        
-        return false;
-    }
-    
     private void initColor(Graphics g) {
-        int newColor = g.getColor();
-        
-        if(newColor != color && !checkCacheCurrentColor(newColor)) {
-            color = newColor & 0xffffff;
-            int[] imageArray = getImageArray();
-            for(int iter = 0 ; iter < imageArray.length ; iter++) {
-                // extract the red component from the font image
-                // shift the alpha 8 bits to the left
-                // apply the alpha to the image
-                imageArray[iter] = color | (imageArray[iter] & 0xff000000);
+        int newColor = g.getColor() & 0xffffff;
+        if(newColor != color) {
+            color = newColor;
+            Image i = GlyphAtlasCache.INSTANCE.get(this, color);
+            if(i == null) {
+                int[] imageArray = getImageArray();
+                for(int iter = 0 ; iter < imageArray.length ; iter++) {
+                    // extract the red component from the font image
+                    // shift the alpha 8 bits to the left
+                    // apply the alpha to the image
+                    imageArray[iter] = color | (imageArray[iter] & 0xff000000);
+                }
+                i = Image.createImage(imageArray, imageWidth, imageHeight);
+                GlyphAtlasCache.INSTANCE.put(this, color, i, imageWidth * imageHeight * 4);
             }
-            cache = Image.createImage(imageArray, imageWidth, imageHeight);
+            cache = i;
         }
     }
     
@@ -183,7 +235,7 @@ class CustomFont extends Font {
         int clipWidth = g.getClipWidth();
         int clipHeight = g.getClipHeight();
 
-        int i = charsets.indexOf(character);
+        int i = glyphIndex(character);
         if(i > -1) {
             initColor(g);
             
@@ -209,6 +261,11 @@ class CustomFont extends Font {
                 imageArray[iter] = ((alpha << 24) & 0xff000000) | color;
             }
         }
+
+        // atlases tinted before the change no longer match the glyphs, force the
+        // next draw to tint again
+        GlyphAtlasCache.INSTANCE.removeFont(this);
+        color = -1;
     }
 
     /**
@@ -233,28 +290,73 @@ class CustomFont extends Font {
                 }
             }
         }
-        initColor(g);
+        drawGlyphs(g, data, null, offset, length, x, y);
+    }
+
+    /**
+     * Draws the string without copying it to a char array unless the bidi algorithm
+     * needs to reorder it
+     *
+     * @param g the component graphics
+     * @param str the string to draw
+     * @param x the x coordinate to draw the string
+     * @param y the y coordinate to draw the string
+     */
+    void drawString(Graphics g, String str, int x, int y) {
+        if(Display.getInstance().isBidiAlgorithm()) {
+            int length = str.length();
+            for(int i = 0 ; i < length ; i++) {
+                if(Display.getInstance().isRTL(str.charAt(i))) {
+                    char[] data = str.toCharArray();
+                    drawChars(g, data, 0, data.length, x, y);
+                    return;
+                }
+            }
+        }
+        drawGlyphs(g, null, str, 0, str.length(), x, y);
+    }
+
+    /**
+     * Draws a run of glyphs from either the char array or the string, glyphs outside of
+     * the clip are skipped and the clip is saved and restored once for the whole run
+     */
+    private void drawGlyphs(Graphics g, char[] data, String str, int offset, int length, int x, int y) {
         int clipX = g.getClipX();
         int clipY = g.getClipY();
         int clipWidth = g.getClipWidth();
         int clipHeight = g.getClipHeight();
-
-        if(clipY <= y + getHeight() && clipY + clipHeight >= y) {
+        int clipX2 = clipX + clipWidth;
+        int glyphY = Math.max(y, clipY);
+        int glyphHeight = Math.min(y + imageHeight, clipY + clipHeight) - glyphY;
+        if(glyphHeight <= 0 || clipWidth <= 0) {
+            return;
+        }
+        initColor(g);
+        boolean clipModified = false;
+        for(int i = 0 ; i < length && x < clipX2 ; i++) {
             char c;
-            for ( int i = 0; i < length; i++ ) {
-                c = data[offset+i];
-                int position = charsets.indexOf(c);
-                if(position < 0) {
-                    continue;
-                }
+            if(data != null) {
+                c = data[offset + i];
+            } else {
+                c = str.charAt(offset + i);
+            }
+            int position = glyphIndex(c);
+            if(position < 0) {
+                continue;
+            }
+            int w = charWidth[position];
+            int glyphX = Math.max(x, clipX);
+            int glyphWidth = Math.min(x + w, clipX2) - glyphX;
+            if(glyphWidth > 0) {
                 // draw region is flaky on some devices, use setClip instead
-                g.clipRect(x, y, charWidth[position], imageHeight);
-                if(g.getClipWidth() > 0 && g.getClipHeight() > 0) {
-                    g.drawImage(cache, x - cutOffsets[position], y);
-                }
-                x += charWidth[position];
-                g.setClip(clipX, clipY, clipWidth, clipHeight);
+                g.setClip(glyphX, glyphY, glyphWidth, glyphHeight);
+                g.drawImage(cache, x - cutOffsets[position], y);
+                clipModified = true;
             }
+            x += w;
+        }
+        if(clipModified) {
+            g.setClip(clipX, clipY, clipWidth, clipHeight);
         }
     }
 
@@ -271,7 +373,10 @@ class CustomFont extends Font {
     public int charsWidth(char[] ch, int offset, int length){
         int retVal = 0;
         for(int i=0; i<length; i++){
-            retVal += charWidth(ch[i + offset]);
+            int position = glyphIndex(ch[i + offset]);
+            if(position > -1) {
+                retVal += charWidth[position];
+            }
         }
         return retVal;
     }
@@ -281,7 +386,14 @@ class CustomFont extends Font {
      * @inheritDoc
      */
     public int substringWidth(String str, int offset, int len){
-        return charsWidth(str.toCharArray(), offset, len);
+        int retVal = 0;
+        for(int i=0; i<len; i++){
+            int position = glyphIndex(str.charAt(i + offset));
+            if(position > -1) {
+                retVal += charWidth[position];
+            }
+        }
+        return retVal;
     }
 
     /**
@@ -298,6 +298,17 @@ public final class Display {
      */
     private Vector inputEvents = new Vector();
 
+    /**
+     * Frame statistics recorded by the EDT, null unless timing is enabled
+     */
+    private FrameTiming frameTiming;
+
+    /**
+     * The time in which the oldest pending input event was added, only tracked while
+     * frame timing is enabled
+     */
+    private long inputEventTime;
+
     private boolean longPointerCharged;
     private boolean pointerPressedAndNotReleasedOrDragged;
     private int pointerX, pointerY;
@@ -575,6 +586,58 @@ public final class Display {
         return 1000 / framerateLock;
     }
 
+    /**
+     * Enables recording the timing of the frames processed by the EDT into a ring
+     * buffer of the most recent frames, see FrameTiming. Timing is disabled by default
+     * since it adds a few system calls to every frame.
+     *
+     * @param enabled true to record frame timing
+     * @param frames the number of frames kept by the ring buffer
+     */
+    public void setFrameTimingEnabled(boolean enabled, int frames) {
+        if(enabled) {
+            if(frameTiming == null || frameTiming.getCapacity() != frames) {
+                frameTiming = new FrameTiming(frames);
+            }
+        } else {
+            frameTiming = null;
+        }
+    }
+
+    /**
+     * Returns the frame statistics recorded by the EDT
+     *
+     * @return the frame timing or null if timing isn't enabled
+     */
+    public FrameTiming getFrameTiming() {
+        return frameTiming;
+    }
+
+    /**
+     * Installs a painter that is drawn on top of everything whenever the screen is
+     * painted, this is useful for diagnostic information such as the FrameTiming
+     * statistics. Since areas that aren't repainted keep the previous overlay the
+     * painter should paint an opaque background.
+     *
+     * @param p the overlay painter or null to remove it
+     */
+    public void setOverlayPainter(Painter p) {
+        impl.setOverlayPainter(p);
+        Form current = getCurrent();
+        if(current != null) {
+            current.repaint();
+        }
+    }
+
+    /**
+     * Returns the painter drawn on top of everything when the screen is painted
+     *
+     * @return the overlay painter or null
+     */
+    public Painter getOverlayPainter() {
+        return impl.getOverlayPainter();
+    }
+
     /**
      * Returns true if we are currently in the event dispatch thread.
      * This is useful for generic code that can be used both with the
@@ -814,22 +877,44 @@ public final class Display {
             } else {
                 // paint transition or intro animations and don't do anything else if such
                 // animations are in progress...
-                paintTransitionAnimation();
+                FrameTiming timing = frameTiming;
+                if(timing != null) {
+                    timing.beginFrame(System.currentTimeMillis(), 0, impl.getPendingPaintCount(), pendingSerialCalls.size());
+                    paintTransitionAnimation();
+                    timing.endPhase(FrameTiming.PAINT);
+                    timing.endFrame(framerateLock);
+                } else {
+                    paintTransitionAnimation();
+                }
                 return;
             }
         } catch(Exception ignor) {
             ignor.printStackTrace();
         }
         long currentTime = System.currentTimeMillis();
+        FrameTiming timing = frameTiming;
+        if(timing != null) {
+            int inputLatency = 0;
+            if(inputEvents.size() > 0 && inputEventTime > 0) {
+                inputLatency = (int)(currentTime - inputEventTime);
+            }
+            timing.beginFrame(currentTime, inputLatency, impl.getPendingPaintCount(), pendingSerialCalls.size());
+        }
 
         while(inputEvents.size() > 0) {
             int[] i = (int[])inputEvents.elementAt(0);
             inputEvents.removeElementAt(0);
             handleEvent(i);
         }
+        if(timing != null) {
+            timing.endPhase(FrameTiming.INPUT);
+        }
 
         lwuitGraphics.setGraphics(impl.getNativeGraphics());
         impl.paintDirty();
+        if(timing != null) {
+            timing.endPhase(FrameTiming.PAINT);
+        }
 
         // draw the animations
         Form current = impl.getCurrentForm();
@@ -849,9 +934,18 @@ public final class Display {
                 longPointerCharged = false;
                 current.longPointerPress(pointerX, pointerY);
             }
+            if(timing != null) {
+                timing.endPhase(FrameTiming.ANIMATIONS);
+            }
             processSerialCalls();
+            if(timing != null) {
+                timing.endPhase(FrameTiming.SERIAL_CALLS);
+            }
         }
         time = System.currentTimeMillis() - currentTime;
+        if(timing != null) {
+            timing.endFrame(framerateLock);
+        }
     }
 
     boolean hasNoSerialCallsPending() {
@@ -1251,6 +1345,9 @@ public final class Display {
                     || ev[0] == POINTER_DRAGGED || ev[0] == POINTER_HOVER)) {
                 return;
             }
+            if(frameTiming != null && inputEvents.size() == 0) {
+                inputEventTime = System.currentTimeMillis();
+            }
             inputEvents.addElement(ev);
             lock.notify();
         }
@@ -1732,6 +1829,18 @@ public final class Display {
         impl.repaint(cmp);
     }
 
+    /**
+     * Causes the given component to repaint after its content scrolled, used internally by Component
+     *
+     * @param cmp the scrolled component
+     * @param dx the change in the scroll x position
+     * @param dy the change in the scroll y position
+     * @return false if the implementation can't move the scrolled pixels
+     */
+    boolean repaintScrolled(Component cmp, int dx, int dy) {
+        return impl.repaintScrolled(cmp, dx, dy);
+    }
+
     /**
      * Converts the dips count to pixels, dips are roughly 1mm in length. This is a very rough estimate and not
      * to be relied upon
@@ -152,6 +152,43 @@ public class Font {
      */
     public static void clearBitmapCache() {
         bitmapCache.clear();
+        GlyphAtlasCache.INSTANCE.clear();
+    }
+
+    /**
+     * Sets the amount of memory in bytes available for caching bitmap font images tinted
+     * to the colors in use, the least recently used tints are discarded first. The
+     * cache is shared by all bitmap fonts.
+     *
+     * @param bytes the memory budget of the cache
+     */
+    public static void setBitmapFontColorCacheSize(int bytes) {
+        GlyphAtlasCache.INSTANCE.setBudget(bytes);
+    }
+
+    /**
+     * Returns the amount of memory in bytes available for caching tinted bitmap font images
+     *
+     * @return the memory budget of the cache
+     */
+    public static int getBitmapFontColorCacheSize() {
+        return GlyphAtlasCache.INSTANCE.getBudget();
+    }
+
+    /**
+     * Returns statistics of the bitmap font color cache useful for tuning its size
+     *
+     * @return an array with the hits, misses and bytes in use, in this order
+     */
+    public static int[] getBitmapFontColorCacheStatistics() {
+        return new int[] {GlyphAtlasCache.INSTANCE.getHits(), GlyphAtlasCache.INSTANCE.getMisses(), GlyphAtlasCache.INSTANCE.getUsed()};
+    }
+
+    /**
+     * Resets the hit and miss counters of the bitmap font color cache
+     */
+    public static void resetBitmapFontColorCacheStatistics() {
+        GlyphAtlasCache.INSTANCE.resetStatistics();
     }
 
     /**
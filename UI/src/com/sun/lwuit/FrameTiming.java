@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import com.sun.lwuit.geom.Rectangle;
+
+/**
+ * Records the timing of the frames processed by the EDT into a ring buffer of the
+ * most recent frames, this allows diagnosing jank on a device without a profiler.
+ * Timing is enabled using Display.setFrameTimingEnabled and doesn't allocate while
+ * frames are recorded.
+ * <p>Every frame records the time spent in each phase of the EDT loop along with the
+ * state of the queues when the frame started. Frames are numbered from 0 which is the
+ * most recent frame, values are updated by the EDT and might change while they are read.
+ * <p>The class is also a painter that draws a summary of the statistics, it can be
+ * installed using Display.setOverlayPainter.
+ */
+public final class FrameTiming implements Painter {
+    /**
+     * Milliseconds spent handling the input events of the frame
+     */
+    public static final int INPUT = 0;
+
+    /**
+     * Milliseconds spent painting the dirty components, for frames of a transition
+     * this is the time spent painting the transition
+     */
+    public static final int PAINT = 1;
+
+    /**
+     * Milliseconds spent in the animations of the current form including key repeat
+     * and long press events
+     */
+    public static final int ANIMATIONS = 2;
+
+    /**
+     * Milliseconds spent running the calls submitted with callSerially
+     */
+    public static final int SERIAL_CALLS = 3;
+
+    /**
+     * Milliseconds spent in the whole frame
+     */
+    public static final int TOTAL = 4;
+
+    /**
+     * Milliseconds the oldest input event of the frame waited before it was handled
+     */
+    public static final int INPUT_LATENCY = 5;
+
+    /**
+     * Number of components and animations waiting to be painted when the frame started
+     */
+    public static final int PAINT_QUEUE = 6;
+
+    /**
+     * Number of calls submitted with callSerially waiting when the frame started
+     */
+    public static final int SERIAL_BACKLOG = 7;
+
+    /**
+     * Bytes of heap consumed during the frame, this is an estimate based on the free
+     * memory reported by the VM and is 0 when a garbage collection ran during the frame
+     */
+    public static final int ALLOCATED = 8;
+
+    /**
+     * 1 if the free memory grew during the frame which indicates a garbage collection ran
+     */
+    public static final int GC = 9;
+
+    private static final int FIELDS = 10;
+
+    private final int[] frames;
+    private final int capacity;
+    private int next;
+    private int count;
+    private int frameCount;
+    private int lateFrames;
+    private int droppedFrames;
+    private int collections;
+
+    private long frameStart;
+    private long phaseStart;
+    private long freeMemory;
+
+    /**
+     * Creates a ring buffer holding the given number of frames
+     *
+     * @param capacity the number of frames kept
+     */
+    FrameTiming(int capacity) {
+        this.capacity = capacity;
+        frames = new int[capacity * FIELDS];
+    }
+
+    /**
+     * Invoked by the EDT when a frame starts
+     */
+    void beginFrame(long time, int inputLatency, int paintQueue, int serialBacklog) {
+        int offset = next * FIELDS;
+        for(int iter = 0 ; iter < FIELDS ; iter++) {
+            frames[offset + iter] = 0;
+        }
+        frames[offset + INPUT_LATENCY] = inputLatency;
+        frames[offset + PAINT_QUEUE] = paintQueue;
+        frames[offset + SERIAL_BACKLOG] = serialBacklog;
+        frameStart = time;
+        phaseStart = time;
+        freeMemory = Runtime.getRuntime().freeMemory();
+    }
+
+    /**
+     * Invoked by the EDT when a phase of the frame ends, the phase started when the
+     * previous phase ended
+     */
+    void endPhase(int phase) {
+        long time = System.currentTimeMillis();
+        frames[next * FIELDS + phase] = (int)(time - phaseStart);
+        phaseStart = time;
+    }
+
+    /**
+     * Invoked by the EDT when the frame ends
+     *
+     * @param frameBudget the milliseconds a frame may take at the current frame rate
+     */
+    void endFrame(int frameBudget) {
+        int offset = next * FIELDS;
+        int total = (int)(System.currentTimeMillis() - frameStart);
+        frames[offset + TOTAL] = total;
+        long free = Runtime.getRuntime().freeMemory();
+        if(free > freeMemory) {
+            frames[offset + GC] = 1;
+            collections++;
+        } else {
+            frames[offset + ALLOCATED] = (int)(freeMemory - free);
+        }
+        if(frameBudget > 0 && total > frameBudget) {
+            lateFrames++;
+            droppedFrames += total / frameBudget;
+        }
+        frameCount++;
+        next = (next + 1) % capacity;
+        if(count < capacity) {
+            count++;
+        }
+    }
+
+    /**
+     * Returns the number of frames held by the ring buffer
+     *
+     * @return the number of frames that can be queried
+     */
+    public int getFrameCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of frames the ring buffer can hold
+     *
+     * @return the capacity of the ring buffer
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a value recorded for a frame
+     *
+     * @param frame the frame number where 0 is the most recent frame
+     * @param field one of the field constants of this class e.g. PAINT
+     * @return the recorded value
+     */
+    public int getValue(int frame, int field) {
+        if(frame < 0 || frame >= count) {
+            throw new IllegalArgumentException("Illegal frame: " + frame);
+        }
+        int offset = (next - 1 - frame + capacity) % capacity;
+        return frames[offset * FIELDS + field];
+    }
+
+    /**
+     * Returns the average of a value over the frames held by the ring buffer
+     *
+     * @param field one of the field constants of this class e.g. PAINT
+     * @return the average value or 0 if no frame was recorded
+     */
+    public int getAverage(int field) {
+        if(count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for(int iter = 0 ; iter < count ; iter++) {
+            sum += frames[iter * FIELDS + field];
+        }
+        return (int)(sum / count);
+    }
+
+    /**
+     * Returns the maximum of a value over the frames held by the ring buffer
+     *
+     * @param field one of the field constants of this class e.g. PAINT
+     * @return the maximum value or 0 if no frame was recorded
+     */
+    public int getMax(int field) {
+        int max = 0;
+        for(int iter = 0 ; iter < count ; iter++) {
+            max = Math.max(max, frames[iter * FIELDS + field]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of frames recorded since timing was enabled or reset
+     *
+     * @return the total number of frames
+     */
+    public int getTotalFrames() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of frames that took longer than a frame at the current
+     * frame rate since timing was enabled or reset
+     *
+     * @return the number of late frames
+     */
+    public int getLateFrames() {
+        return lateFrames;
+    }
+
+    /**
+     * Returns the number of frames that couldn't be drawn at the current frame rate
+     * because of late frames since timing was enabled or reset
+     *
+     * @return the number of dropped frames
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Returns the number of frames during which a garbage collection ran since timing
+     * was enabled or reset
+     *
+     * @return the number of frames with a garbage collection
+     */
+    public int getCollections() {
+        return collections;
+    }
+
+    /**
+     * Empties the ring buffer and zeroes the counters
+     */
+    public void reset() {
+        next = 0;
+        count = 0;
+        frameCount = 0;
+        lateFrames = 0;
+        droppedFrames = 0;
+        collections = 0;
+    }
+
+    /**
+     * Paints a summary of the statistics at the top left corner of the given
+     * rectangle on an opaque background
+     *
+     * @param g graphics context
+     * @param rect the area of the overlay
+     */
+    public void paint(Graphics g, Rectangle rect) {
+        String[] lines = new String[] {
+            "frame " + (count > 0 ? getValue(0, TOTAL) : 0) + " avg " + getAverage(TOTAL) + " max " + getMax(TOTAL),
+            "paint " + getAverage(PAINT) + " anim " + getAverage(ANIMATIONS) + " serial " + getAverage(SERIAL_CALLS),
+            "late " + lateFrames + " dropped " + droppedFrames + " gc " + collections
+        };
+        Font f = Font.getDefaultFont();
+        int width = 0;
+        for(int iter = 0 ; iter < lines.length ; iter++) {
+            width = Math.max(width, f.stringWidth(lines[iter]));
+        }
+        int lineHeight = f.getHeight();
+        int x = rect.getX();
+        int y = rect.getY();
+        Font oldFont = g.getFont();
+        int oldColor = g.getColor();
+        g.setFont(f);
+        g.setColor(0);
+        g.fillRect(x, y, width + 4, lineHeight * lines.length + 4);
+        g.setColor(0xffffff);
+        for(int iter = 0 ; iter < lines.length ; iter++) {
+            g.drawString(lines[iter], x + 2, y + 2 + iter * lineHeight);
+        }
+        g.setFont(oldFont);
+        g.setColor(oldColor);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import com.sun.lwuit.util.LRUCache;
+import java.util.Vector;
+
+/**
+ * Least recently used cache of bitmap font atlases tinted to a specific color, the
+ * cache is shared by all bitmap fonts and bounded by the amount of memory the tinted
+ * images occupy.
+ */
+class GlyphAtlasCache extends LRUCache {
+    static final GlyphAtlasCache INSTANCE = new GlyphAtlasCache();
+
+    private GlyphAtlasCache() {
+        super(256 * 1024);
+    }
+
+    /**
+     * Returns the atlas of the font tinted to the given color if it's cached
+     *
+     * @param font the bitmap font
+     * @param color the RGB color of the atlas
+     * @return the tinted atlas or null
+     */
+    Image get(CustomFont font, int color) {
+        return (Image)get(new Key(font, color));
+    }
+
+    /**
+     * Adds the tinted atlas of the font to the cache, least recently used atlases
+     * are evicted to stay within the budget
+     *
+     * @param font the bitmap font
+     * @param color the RGB color of the atlas
+     * @param image the tinted atlas
+     * @param size the memory occupied by the atlas in bytes
+     */
+    void put(CustomFont font, int color, Image image, int size) {
+        put(new Key(font, color), image, size);
+    }
+
+    /**
+     * Removes all the atlases of the given font e.g. when its glyphs are modified
+     *
+     * @param font the bitmap font
+     */
+    void removeFont(CustomFont font) {
+        Vector keys = keys();
+        for(int iter = 0 ; iter < keys.size() ; iter++) {
+            Key k = (Key)keys.elementAt(iter);
+            if(k.font == font) {
+                remove(k);
+            }
+        }
+    }
+
+    static class Key {
+        CustomFont font;
+        int color;
+
+        Key(CustomFont font, int color) {
+            this.font = font;
+            this.color = color;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(font) * 31 + color;
+        }
+
+        public boolean equals(Object o) {
+            Key k = (Key)o;
+            return k.font == font && k.color == color;
+        }
+    }
+}
@@ -370,8 +370,7 @@ public final class Graphics {
         if(!(current instanceof CustomFont)) {
             impl.drawString(nativeGraphics, str, x + xTranslate, y + yTranslate);
         } else {
-            char[] data = str.toCharArray();
-            current.drawChars(this, data, 0, data.length, x, y);
+            ((CustomFont)current).drawString(this, str, x, y);
         }
     }
 
@@ -480,6 +479,42 @@ public final class Graphics {
         img.drawImage(this, nativeGraphics, x, y);
     }
 
+    /**
+     * Draws the image repeatedly so the tiles starting at x/y cover the given area,
+     * tiles that fall outside of the current clip aren't drawn so the cost depends
+     * on the clipped area rather than on the size of the area
+     *
+     * @param img the image to tile
+     * @param x the x coordinate of the first tile
+     * @param y the y coordinate of the first tile
+     * @param w the width of the area to cover
+     * @param h the height of the area to cover
+     */
+    public void tileImage(Image img, int x, int y, int w, int h) {
+        int iW = img.getWidth();
+        int iH = img.getHeight();
+        if(iW <= 0 || iH <= 0) {
+            return;
+        }
+        int clipX = getClipX();
+        int clipY = getClipY();
+        int endX = Math.min(x + w, clipX + getClipWidth());
+        int endY = Math.min(y + h, clipY + getClipHeight());
+        int startX = x;
+        if(clipX > x) {
+            startX += (clipX - x) / iW * iW;
+        }
+        int startY = y;
+        if(clipY > y) {
+            startY += (clipY - y) / iH * iH;
+        }
+        for(int yPos = startY ; yPos < endY ; yPos += iH) {
+            for(int xPos = startX ; xPos < endX ; xPos += iW) {
+                img.drawImage(this, nativeGraphics, xPos, yPos);
+            }
+        }
+    }
+
     /**
      * Draws the image so its top left coordinate corresponds to x/y and scales it to width/height
      *
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Vector;
+
+/**
+ * Pool of mutable images that transitions, paint locks and animations borrow for
+ * offscreen rendering rather than allocating a display sized image every time. On
+ * devices with a small heap such allocations trigger a full garbage collection right
+ * as the animation starts.
+ * <p>Released images are held until they are acquired again, the pool never holds
+ * more than getMaxSize() bytes and by default it holds up to two display sized
+ * images. The pool is emptied when an image allocation runs out of memory and
+ * images aren't pooled while the free heap is low.
+ */
+public final class OffscreenImagePool {
+    private static final Object LOCK = new Object();
+
+    /**
+     * Released native images, the last element is the most recently released
+     */
+    private static final Vector entries = new Vector();
+    private static int maxSize = -1;
+    private static int used;
+    private static int hits;
+    private static int misses;
+
+    /**
+     * Released images aren't pooled while the free heap is below this fraction of
+     * the total heap
+     */
+    private static final int LOW_MEMORY_DIVISOR = 8;
+
+    private OffscreenImagePool() {}
+
+    /**
+     * Returns a mutable image of the given size filled with opaque white the same way
+     * as Image.createImage(int, int), the image is taken from the pool if one of that
+     * size was released and allocated otherwise.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return a mutable image that should be returned to the pool using release
+     */
+    public static Image acquire(int width, int height) {
+        Object nativeImage = take(width, height);
+        if(nativeImage != null) {
+            Image i = new Image(nativeImage);
+            Graphics g = i.getGraphics();
+            g.setColor(0xffffff);
+            g.fillRect(0, 0, width, height);
+            return i;
+        }
+        // the pool is emptied by createImage if the allocation runs out of memory
+        return Image.createImage(width, height);
+    }
+
+    /**
+     * Returns an image to the pool so it can be reused by a future acquire call, the
+     * caller must not use the image after releasing it. Images larger than the pool
+     * size are discarded.
+     *
+     * @param img a mutable image returned by acquire or Image.createImage(int, int),
+     * null is ignored
+     */
+    public static void release(Image img) {
+        if(img == null) {
+            return;
+        }
+        Object nativeImage = img.getImage();
+        if(nativeImage == null) {
+            return;
+        }
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int size = width * height * 4;
+        int max = getMaxSize();
+        if(size > max) {
+            return;
+        }
+        if(isLowMemory()) {
+            clear();
+            return;
+        }
+        synchronized(LOCK) {
+            for(int iter = entries.size() - 1 ; iter >= 0 ; iter--) {
+                if(((Entry)entries.elementAt(iter)).image == nativeImage) {
+                    return;
+                }
+            }
+            while(used + size > max && entries.size() > 0) {
+                removeEntry(0);
+            }
+            Entry e = new Entry();
+            e.image = nativeImage;
+            e.width = width;
+            e.height = height;
+            entries.addElement(e);
+            used += size;
+        }
+    }
+
+    private static boolean isLowMemory() {
+        Runtime r = Runtime.getRuntime();
+        return r.freeMemory() < r.totalMemory() / LOW_MEMORY_DIVISOR;
+    }
+
+    private static Object take(int width, int height) {
+        synchronized(LOCK) {
+            for(int iter = entries.size() - 1 ; iter >= 0 ; iter--) {
+                Entry e = (Entry)entries.elementAt(iter);
+                if(e.width == width && e.height == height) {
+                    removeEntry(iter);
+                    hits++;
+                    return e.image;
+                }
+            }
+            misses++;
+            return null;
+        }
+    }
+
+    private static void removeEntry(int offset) {
+        Entry e = (Entry)entries.elementAt(offset);
+        entries.removeElementAt(offset);
+        used -= e.width * e.height * 4;
+    }
+
+    /**
+     * Discards all the pooled images, this is invoked when an image allocation runs
+     * out of memory and can be invoked by applications that free memory on their own
+     */
+    public static void clear() {
+        synchronized(LOCK) {
+            entries.removeAllElements();
+            used = 0;
+        }
+    }
+
+    /**
+     * Sets the maximum amount of memory held by pooled images in bytes, 0 disables
+     * pooling and -1 restores the default of two display sized images
+     *
+     * @param bytes the maximum memory held by the pool
+     */
+    public static void setMaxSize(int bytes) {
+        synchronized(LOCK) {
+            maxSize = bytes;
+            int max = getMaxSize();
+            while(used > max && entries.size() > 0) {
+                removeEntry(0);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum amount of memory held by pooled images in bytes
+     *
+     * @return the maximum memory held by the pool
+     */
+    public static int getMaxSize() {
+        if(maxSize < 0) {
+            Display d = Display.getInstance();
+            return d.getDisplayWidth() * d.getDisplayHeight() * 8;
+        }
+        return maxSize;
+    }
+
+    /**
+     * Returns the pool statistics allowing to tune the size of the pool
+     *
+     * @return array of the number of acquired images that were taken from the pool,
+     * the number that were allocated and the bytes held by the pool
+     */
+    public static int[] getStatistics() {
+        synchronized(LOCK) {
+            return new int[] {hits, misses, used};
+        }
+    }
+
+    /**
+     * Zeroes the counters returned by getStatistics
+     */
+    public static void resetStatistics() {
+        synchronized(LOCK) {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    static class Entry {
+        Object image;
+        int width;
+        int height;
+    }
+}
@@ -30,6 +30,7 @@ import com.sun.lwuit.Display;
 import com.sun.lwuit.Form;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Image;
+import com.sun.lwuit.OffscreenImagePool;
 import com.sun.lwuit.Painter;
 import com.sun.lwuit.RGBImage;
 import com.sun.lwuit.plaf.UIManager;
@@ -284,6 +285,7 @@ public final class CommonTransitions extends Transition {
             motion2.start();
             Container sourcePane = ((Form)getSource()).getContentPane();
             Container destPane = ((Form)getDestination()).getContentPane();
+            OffscreenImagePool.release(buffer);
             buffer = createMutableImage(sourcePane.getWidth(), sourcePane.getHeight());
             paint(buffer.getGraphics(), sourcePane, -sourcePane.getAbsoluteX() -sourcePane.getScrollX(), -sourcePane.getAbsoluteY() -sourcePane.getScrollY(), true);
             secondaryBuffer = createMutableImage(destPane.getWidth(), destPane.getHeight());
@@ -316,6 +318,7 @@ public final class CommonTransitions extends Transition {
             // this might happen when screen orientation changes or a MIDlet moves
             // to an external screen
             if(buffer.getWidth() != w || buffer.getHeight() != h) {
+                OffscreenImagePool.release(buffer);
                 buffer = createMutableImage(w, h);
                 rgbBuffer = null;
                 
@@ -487,7 +490,7 @@ public final class CommonTransitions extends Transition {
 
     private Image createMutableImage(int w, int h) {
         Display d = Display.getInstance();
-        return Image.createImage(Math.min(d.getDisplayWidth(), w), Math.min(d.getDisplayHeight(), h));
+        return OffscreenImagePool.acquire(Math.min(d.getDisplayWidth(), w), Math.min(d.getDisplayHeight(), h));
     }
 
     /**
@@ -735,6 +738,8 @@ public final class CommonTransitions extends Transition {
             removeConstant((Container)getDestination());
         }
         super.cleanup();
+        OffscreenImagePool.release(buffer);
+        OffscreenImagePool.release(secondaryBuffer);
         buffer = null;
         rgbBuffer = null;
         secondaryBuffer = null;
@@ -26,6 +26,7 @@ package com.sun.lwuit.animations;
 
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Image;
+import com.sun.lwuit.OffscreenImagePool;
 import com.sun.lwuit.Painter;
 import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.geom.Rectangle;
@@ -85,9 +86,11 @@ public final class Timeline extends Image implements Animation, Painter {
      * @inheritDoc
      */
     public int[] getRGB() {
-        Image i = Image.createImage(getWidth(), getHeight());
+        Image i = OffscreenImagePool.acquire(getWidth(), getHeight());
         paint(i.getGraphics(), new Rectangle(0, 0, getWidth(), getHeight()));
-        return i.getRGB();
+        int[] rgb = i.getRGB();
+        OffscreenImagePool.release(i);
+        return rgb;
     }
 
     /**
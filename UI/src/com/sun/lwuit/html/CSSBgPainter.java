@@ -179,23 +179,22 @@ class CSSBgPainter implements Painter {
             case 0:
                 g.drawImage(s.getBgImage(), x+offsetX, y+offsetY);
                 return;
-            case Style.BACKGROUND_IMAGE_TILE_BOTH:
-                for (int xPos = getTiledPosition(offsetX, iW); xPos <= width; xPos += iW) {
-                    for (int yPos = getTiledPosition(offsetY, iH); yPos <= height; yPos += iH) {
-                        g.drawImage(s.getBgImage(), x + xPos, y + yPos);
-                    }
-                }
+            case Style.BACKGROUND_IMAGE_TILE_BOTH: {
+                int xPos = getTiledPosition(offsetX, iW);
+                int yPos = getTiledPosition(offsetY, iH);
+                g.tileImage(s.getBgImage(), x + xPos, y + yPos, width - xPos, height - yPos);
                 return;
-            case Style.BACKGROUND_IMAGE_TILE_HORIZONTAL:
-                for (int xPos=getTiledPosition(offsetX, iW); xPos <= width; xPos += iW) {
-                    g.drawImage(s.getBgImage(), x + xPos, y+offsetY);
-                }
+            }
+            case Style.BACKGROUND_IMAGE_TILE_HORIZONTAL: {
+                int xPos = getTiledPosition(offsetX, iW);
+                g.tileImage(s.getBgImage(), x + xPos, y + offsetY, width - xPos, iH);
                 return;
-            case Style.BACKGROUND_IMAGE_TILE_VERTICAL:
-                for (int yPos = getTiledPosition(offsetY, iH); yPos <= height; yPos += iH) {
-                    g.drawImage(s.getBgImage(), x+offsetX, y + yPos);
-                }
+            }
+            case Style.BACKGROUND_IMAGE_TILE_VERTICAL: {
+                int yPos = getTiledPosition(offsetY, iH);
+                g.tileImage(s.getBgImage(), x + offsetX, y + yPos, iW, height - yPos);
                 return;
+            }
         }
 
     }
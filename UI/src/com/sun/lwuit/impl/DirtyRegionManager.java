@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl;
+
+import com.sun.lwuit.Component;
+import com.sun.lwuit.animations.Animation;
+import com.sun.lwuit.geom.Rectangle;
+import java.util.Hashtable;
+
+/**
+ * Tracks the components and animations waiting to be painted and the screen areas
+ * that need flushing after they are painted. Repaints of components whose ancestor
+ * is painted anyway are skipped and the painted areas are merged into a short list
+ * of disjoint rectangles so unrelated areas of the screen (e.g. a blinking cursor at
+ * the top and an animation at the bottom) are flushed separately.
+ * <p>The queue is guarded by the display lock while the regions are only used by the EDT.
+ */
+class DirtyRegionManager {
+    /**
+     * Beyond this number of rectangles the regions are merged into their bounding box
+     * since every flush has a fixed cost
+     */
+    private static final int MAX_REGIONS = 6;
+
+    private Animation[] queue = new Animation[50];
+    private Animation[] painting = new Animation[50];
+    private int queueFill;
+    private Hashtable queued = new Hashtable();
+    private Hashtable paintingSet = new Hashtable();
+    private Hashtable scrolls = new Hashtable();
+    private Hashtable paintingScrolls = new Hashtable();
+
+    /**
+     * The dirty regions of the components in the painting array as they were when the
+     * batch started, painting a component clears its region so coverage can't rely on it
+     */
+    private Hashtable paintingRegions = new Hashtable();
+
+    private int[] regions = new int[MAX_REGIONS * 4];
+    private int regionCount;
+
+    /**
+     * Adds an element to the queue, the queue grows as needed
+     *
+     * @param ani the component or animation
+     * @return false if the element is already queued
+     */
+    boolean add(Animation ani) {
+        if(queued.containsKey(ani)) {
+            // the full repaint covers the scroll
+            scrolls.remove(ani);
+            return false;
+        }
+        if(queueFill == queue.length) {
+            Animation[] arr = new Animation[queue.length * 2];
+            System.arraycopy(queue, 0, arr, 0, queueFill);
+            queue = arr;
+        }
+        queue[queueFill] = ani;
+        queueFill++;
+        queued.put(ani, ani);
+        return true;
+    }
+
+    /**
+     * Adds a component whose content scrolled by the given offset, the offsets of
+     * scrolls queued before the component is painted are accumulated. If the component
+     * is already queued for a regular repaint the scroll is painted as part of it.
+     *
+     * @param cmp the scrolled component
+     * @param dx the change in the scroll x position
+     * @param dy the change in the scroll y position
+     * @return false if the component is already queued
+     */
+    boolean addScroll(Component cmp, int dx, int dy) {
+        if(queued.containsKey(cmp)) {
+            int[] offset = (int[])scrolls.get(cmp);
+            if(offset != null) {
+                offset[0] += dx;
+                offset[1] += dy;
+            }
+            return false;
+        }
+        add(cmp);
+        scrolls.put(cmp, new int[] {dx, dy});
+        return true;
+    }
+
+    /**
+     * Removes an element from the queue
+     *
+     * @param ani the component or animation
+     */
+    void remove(Animation ani) {
+        scrolls.remove(ani);
+        if(queued.remove(ani) != null) {
+            for(int iter = 0 ; iter < queueFill ; iter++) {
+                if(queue[iter] == ani) {
+                    queue[iter] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queued elements
+     */
+    int size() {
+        return queueFill;
+    }
+
+    /**
+     * Moves the queued elements to the painting array and empties the queue
+     *
+     * @return the number of elements in the painting array
+     */
+    int swap() {
+        int size = queueFill;
+        Animation[] arr = painting;
+        painting = queue;
+        queue = arr;
+        if(queue.length < painting.length) {
+            queue = new Animation[painting.length];
+        }
+        Hashtable h = paintingSet;
+        paintingSet = queued;
+        queued = h;
+        queued.clear();
+        h = paintingScrolls;
+        paintingScrolls = scrolls;
+        scrolls = h;
+        scrolls.clear();
+        queueFill = 0;
+        for(int iter = 0 ; iter < size ; iter++) {
+            if(painting[iter] instanceof Component) {
+                Rectangle dirty = ((Component)painting[iter]).getDirtyRegion();
+                if(dirty != null) {
+                    paintingRegions.put(painting[iter], dirty);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the elements moved by swap(), entries may be null
+     */
+    Animation[] getPainting() {
+        return painting;
+    }
+
+    /**
+     * Empties the painting array once the elements were painted
+     */
+    void paintingDone(int size) {
+        for(int iter = 0 ; iter < size ; iter++) {
+            painting[iter] = null;
+        }
+        paintingSet.clear();
+        paintingScrolls.clear();
+        paintingRegions.clear();
+    }
+
+    /**
+     * Returns true if components in the painting array were queued by a scroll
+     */
+    boolean hasScrolls() {
+        return paintingScrolls.size() > 0;
+    }
+
+    /**
+     * Returns the accumulated scroll offset of a component in the painting array
+     *
+     * @param cmp a component from the painting array
+     * @return array of the x and y offsets or null if the component needs a regular repaint
+     */
+    int[] getScroll(Component cmp) {
+        return (int[])paintingScrolls.get(cmp);
+    }
+
+    /**
+     * Turns the scroll of a component in the painting array into a regular repaint
+     *
+     * @param cmp a component from the painting array
+     */
+    void clearScroll(Component cmp) {
+        paintingScrolls.remove(cmp);
+    }
+
+    /**
+     * Returns true if an ancestor of the component has its scrolled pixels moved in
+     * the current batch, which moves the pixels of the component as well
+     *
+     * @param cmp a component from the painting array
+     */
+    boolean hasScrollingAncestor(Component cmp) {
+        Component parent = cmp.getParent();
+        while(parent != null) {
+            if(paintingScrolls.containsKey(parent)) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if an ancestor of the component is painted in the current batch
+     * and the area it paints covers the component, an ancestor whose scroll is copied
+     * only paints the exposed area so it doesn't cover anything. The regions are the
+     * ones queued when the batch started so the order of the batch doesn't matter.
+     *
+     * @param cmp a component from the painting array
+     * @return true if painting the component is redundant
+     */
+    boolean isCoveredByAncestor(Component cmp) {
+        Component parent = cmp.getParent();
+        while(parent != null) {
+            if(paintingSet.containsKey(parent) && !paintingScrolls.containsKey(parent)) {
+                Rectangle dirty = (Rectangle)paintingRegions.get(parent);
+                if(dirty == null) {
+                    return true;
+                }
+                Rectangle own = (Rectangle)paintingRegions.get(cmp);
+                if(own != null) {
+                    if(dirty.contains(own)) {
+                        return true;
+                    }
+                } else {
+                    if(dirty.contains(cmp.getAbsoluteX() + cmp.getScrollX(), cmp.getAbsoluteY() + cmp.getScrollY(),
+                            cmp.getWidth(), cmp.getHeight())) {
+                        return true;
+                    }
+                }
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Adds a painted area to the regions, overlapping or touching regions are merged
+     * so the list always holds disjoint rectangles
+     */
+    void addRegion(int x, int y, int w, int h, int displayWidth, int displayHeight) {
+        int x2 = Math.min(x + w, displayWidth);
+        int y2 = Math.min(y + h, displayHeight);
+        x = Math.max(x, 0);
+        y = Math.max(y, 0);
+        if(x2 <= x || y2 <= y) {
+            return;
+        }
+        int iter = 0;
+        while(iter < regionCount) {
+            int offset = iter * 4;
+            int rx = regions[offset];
+            int ry = regions[offset + 1];
+            int rx2 = rx + regions[offset + 2];
+            int ry2 = ry + regions[offset + 3];
+            if(rx <= x2 && x <= rx2 && ry <= y2 && y <= ry2) {
+                // absorb the region and check the grown rectangle against all regions again
+                x = Math.min(x, rx);
+                y = Math.min(y, ry);
+                x2 = Math.max(x2, rx2);
+                y2 = Math.max(y2, ry2);
+                regionCount--;
+                System.arraycopy(regions, regionCount * 4, regions, offset, 4);
+                iter = 0;
+                continue;
+            }
+            iter++;
+        }
+        if(regionCount == MAX_REGIONS) {
+            for(iter = 0 ; iter < regionCount ; iter++) {
+                int offset = iter * 4;
+                x = Math.min(x, regions[offset]);
+                y = Math.min(y, regions[offset + 1]);
+                x2 = Math.max(x2, regions[offset] + regions[offset + 2]);
+                y2 = Math.max(y2, regions[offset + 1] + regions[offset + 3]);
+            }
+            regionCount = 0;
+        }
+        int offset = regionCount * 4;
+        regions[offset] = x;
+        regions[offset + 1] = y;
+        regions[offset + 2] = x2 - x;
+        regions[offset + 3] = y2 - y;
+        regionCount++;
+    }
+
+    /**
+     * Flushes the regions to the screen and empties the region list, if the
+     * implementation flushes the whole screen on every call the bounding box of the
+     * regions is flushed once
+     */
+    void flush(LWUITImplementation impl) {
+        if(regionCount > 1 && !impl.isPartialFlushSupported()) {
+            int x = regions[0];
+            int y = regions[1];
+            int x2 = x + regions[2];
+            int y2 = y + regions[3];
+            for(int iter = 1 ; iter < regionCount ; iter++) {
+                int offset = iter * 4;
+                x = Math.min(x, regions[offset]);
+                y = Math.min(y, regions[offset + 1]);
+                x2 = Math.max(x2, regions[offset] + regions[offset + 2]);
+                y2 = Math.max(y2, regions[offset + 1] + regions[offset + 3]);
+            }
+            regionCount = 0;
+            impl.flushGraphics(x, y, x2 - x, y2 - y);
+            return;
+        }
+        for(int iter = 0 ; iter < regionCount ; iter++) {
+            int offset = iter * 4;
+            impl.flushGraphics(regions[offset], regions[offset + 1], regions[offset + 2], regions[offset + 3]);
+        }
+        regionCount = 0;
+    }
+}
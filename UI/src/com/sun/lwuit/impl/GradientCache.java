@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.impl;
+
+import com.sun.lwuit.util.LRUCache;
+
+/**
+ * Least recently used cache of pre-rendered gradient images bounded by the amount
+ * of memory the images occupy. Gradients are keyed by their colors, size and shape
+ * but not by their position so a gradient can be reused as the component painting
+ * it scrolls.
+ */
+class GradientCache extends LRUCache {
+    static final int LINEAR_HORIZONTAL = 0;
+    static final int LINEAR_VERTICAL = 1;
+    static final int RADIAL = 2;
+
+    GradientCache() {
+        super(256 * 1024);
+    }
+
+    /**
+     * Returns the cached gradient image matching the given attributes
+     *
+     * @param type one of LINEAR_HORIZONTAL, LINEAR_VERTICAL or RADIAL
+     * @param startColor the starting RGB color
+     * @param endColor the ending RGB color
+     * @param width the width of the gradient
+     * @param height the height of the gradient
+     * @param x the x offset of a radial gradient within the image
+     * @param y the y offset of a radial gradient within the image
+     * @param size the size of a radial gradient
+     * @return the native image or null
+     */
+    Object get(int type, int startColor, int endColor, int width, int height, int x, int y, int size) {
+        return get(new Key(type, startColor, endColor, width, height, x, y, size));
+    }
+
+    /**
+     * Adds a gradient image to the cache, least recently used images are evicted
+     * to stay within the budget
+     *
+     * @param image the native image
+     * @param bytes the memory occupied by the image
+     * @param type one of LINEAR_HORIZONTAL, LINEAR_VERTICAL or RADIAL
+     * @param startColor the starting RGB color
+     * @param endColor the ending RGB color
+     * @param width the width of the gradient
+     * @param height the height of the gradient
+     * @param x the x offset of a radial gradient within the image
+     * @param y the y offset of a radial gradient within the image
+     * @param size the size of a radial gradient
+     */
+    void put(Object image, int bytes, int type, int startColor, int endColor, int width, int height, int x, int y, int size) {
+        put(new Key(type, startColor, endColor, width, height, x, y, size), image, bytes);
+    }
+
+    static class Key {
+        int type;
+        int startColor;
+        int endColor;
+        int width;
+        int height;
+        int x;
+        int y;
+        int size;
+
+        Key(int type, int startColor, int endColor, int width, int height, int x, int y, int size) {
+            this.type = type;
+            this.startColor = startColor;
+            this.endColor = endColor;
+            this.width = width;
+            this.height = height;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        public int hashCode() {
+            int h = type;
+            h = h * 31 + startColor;
+            h = h * 31 + endColor;
+            h = h * 31 + width;
+            h = h * 31 + height;
+            h = h * 31 + x;
+            h = h * 31 + y;
+            return h * 31 + size;
+        }
+
+        public boolean equals(Object o) {
+            Key k = (Key)o;
+            return k.type == type && k.startColor == startColor && k.endColor == endColor &&
+                    k.width == width && k.height == height && k.x == x && k.y == y && k.size == size;
+        }
+    }
+}
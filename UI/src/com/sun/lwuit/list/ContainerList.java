@@ -27,12 +27,16 @@ import com.sun.lwuit.Container;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Component;
 import com.sun.lwuit.Display;
+import com.sun.lwuit.Form;
 import com.sun.lwuit.events.ActionEvent;
 import com.sun.lwuit.events.ActionListener;
 import com.sun.lwuit.events.DataChangedListener;
 import com.sun.lwuit.events.SelectionListener;
 import com.sun.lwuit.geom.Dimension;
+import com.sun.lwuit.layouts.FlowLayout;
+import com.sun.lwuit.layouts.GridLayout;
 import com.sun.lwuit.layouts.Layout;
+import com.sun.lwuit.plaf.Style;
 import com.sun.lwuit.util.EventDispatcher;
 import java.util.Vector;
 
@@ -46,6 +50,9 @@ import java.util.Vector;
  * actual state other than layout information. The big advantage with this class is
  * the ability to leverage elaborate LWUIT layouts such as Grid, Table &amp; flow layout
  * to provide other ways of rendering the content of a list model.
+ * <p>In virtualized mode only the entries for the visible rows exist, they are laid out
+ * in equally sized cells and bound to other model offsets as the list scrolls which
+ * makes large models practical. See {@link #setVirtualized(boolean)}.
  *
  * @author Shai Almog
  */
@@ -55,6 +62,25 @@ public class ContainerList extends Container {
     private Listeners listener;
     private EventDispatcher dispatcher = new EventDispatcher();
 
+    /**
+     * Number of rows above and below the visible area that have entries in
+     * virtualized mode
+     */
+    private static final int OVERSCAN_ROWS = 1;
+
+    /**
+     * Number of model elements whose renderer size is sampled for the cell size
+     */
+    private static final int CELL_SAMPLE_SIZE = 5;
+    private boolean virtualized;
+    private Layout nonVirtualLayout;
+    private Dimension cellSize;
+    private Dimension sampledCellSize;
+    private int windowColumns = 1;
+    private int windowCellWidth;
+    private int windowCellHeight;
+    private boolean keyHandled;
+
     /**
      * Default constructor
      */
@@ -95,6 +121,10 @@ public class ContainerList extends Container {
      */
     public void setRenderer(CellRenderer r) {
         renderer = r;
+        sampledCellSize = null;
+        if(virtualized) {
+            setShouldCalcPreferredSize(true);
+        }
         repaint();
     }
 
@@ -106,6 +136,11 @@ public class ContainerList extends Container {
     }
 
     private void updateComponentCount() {
+        if(virtualized) {
+            setShouldCalcPreferredSize(true);
+            updateWindow();
+            return;
+        }
         int cc = getComponentCount();
         int modelCount = model.getSize();
         if(cc != modelCount) {
@@ -162,9 +197,10 @@ public class ContainerList extends Container {
      */
     protected void initComponent() {
         if(model != null) {
+            bindListeners();
             int i = model.getSelectedIndex();
             if(i > 0) {
-                getComponentAt(i).requestFocus();
+                showIndex(i);
             }
         }
     }
@@ -181,9 +217,10 @@ public class ContainerList extends Container {
             listener = null;
         }
         this.model = model;
+        sampledCellSize = null;
         updateComponentCount();
         if(model.getSelectedIndex() > 0) {
-            getComponentAt(model.getSelectedIndex()).requestFocus();
+            showIndex(model.getSelectedIndex());
         }
         if (isInitialized()) {
             bindListeners();
@@ -199,6 +236,250 @@ public class ContainerList extends Container {
         }
     }
 
+    /**
+     * Focuses the entry of the given model offset, in virtualized mode the list is
+     * scrolled so the entry exists
+     */
+    private void showIndex(int index) {
+        if(!virtualized) {
+            getComponentAt(index).requestFocus();
+            return;
+        }
+        if(windowCellHeight > 0) {
+            // the entry must exist before it can be focused so the list jumps to it
+            // instead of scrolling smoothly
+            boolean smooth = isSmoothScrolling();
+            setSmoothScrolling(false);
+            Style s = getStyle();
+            scrollRectToVisible(s.getPadding(isRTL(), LEFT) + (index % windowColumns) * windowCellWidth,
+                    s.getPadding(false, TOP) + (index / windowColumns) * windowCellHeight,
+                    windowCellWidth, windowCellHeight, this);
+            setSmoothScrolling(smooth);
+        }
+        updateWindow();
+        int count = getComponentCount();
+        for(int iter = 0 ; iter < count ; iter++) {
+            Entry e = (Entry)getComponentAt(iter);
+            if(e.offset == index) {
+                if(!e.hasFocus()) {
+                    e.requestFocus();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Indicates whether only the entries of the visible rows exist, in this mode the
+     * elements are laid out in equally sized cells: a single column unless the layout
+     * of the list is a GridLayout (its column count is used) or a FlowLayout (as many
+     * cells as fit in a row). The layout set to the list is restored when this mode is
+     * turned off.
+     *
+     * @param virtualized true to create entries only for the visible rows
+     */
+    public void setVirtualized(boolean virtualized) {
+        if(this.virtualized == virtualized) {
+            return;
+        }
+        removeAll();
+        this.virtualized = virtualized;
+        if(virtualized) {
+            nonVirtualLayout = getLayout();
+            setLayout(new VirtualLayout());
+        } else {
+            setLayout(nonVirtualLayout);
+            nonVirtualLayout = null;
+        }
+        sampledCellSize = null;
+        updateComponentCount();
+        if(isInitialized()) {
+            revalidate();
+        }
+    }
+
+    /**
+     * Indicates whether only the entries of the visible rows exist
+     *
+     * @return true if the list is virtualized
+     */
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    /**
+     * Sets the size of a cell in virtualized mode, by default the cell size is the
+     * largest renderer size among the first elements of the model. The width is
+     * ignored unless the layout is a FlowLayout since cells fill the width of the list.
+     *
+     * @param cellSize the cell size or null to sample the renderer
+     */
+    public void setCellSize(Dimension cellSize) {
+        this.cellSize = cellSize;
+        if(virtualized) {
+            setShouldCalcPreferredSize(true);
+        }
+    }
+
+    /**
+     * Returns the size of a cell in virtualized mode if it was set explicitly
+     *
+     * @return the cell size or null if it's sampled from the renderer
+     */
+    public Dimension getCellSize() {
+        return cellSize;
+    }
+
+    private Dimension getVirtualCellSize() {
+        if(cellSize != null) {
+            return cellSize;
+        }
+        if(sampledCellSize == null) {
+            int count = Math.min(model.getSize(), CELL_SAMPLE_SIZE);
+            if(count == 0) {
+                return new Dimension(1, 1);
+            }
+            int w = 1;
+            int h = 1;
+            for(int iter = 0 ; iter < count ; iter++) {
+                Dimension d = renderer.getCellRendererComponent(this, model, model.getItemAt(iter), iter, false).getPreferredSize();
+                w = Math.max(w, d.getWidth());
+                h = Math.max(h, d.getHeight());
+            }
+            sampledCellSize = new Dimension(w, h);
+        }
+        return sampledCellSize;
+    }
+
+    private int getVirtualColumns(int width, int cellWidth) {
+        if(nonVirtualLayout instanceof GridLayout) {
+            return Math.max(1, ((GridLayout)nonVirtualLayout).getColumns());
+        }
+        if(nonVirtualLayout instanceof FlowLayout) {
+            return Math.max(1, width / Math.max(1, cellWidth));
+        }
+        return 1;
+    }
+
+    /**
+     * Binds entries to the model offsets of the visible rows and positions them, entries
+     * keep their offset if it's still visible and the focused entry keeps its offset so
+     * focus and selection stay consistent
+     */
+    private void updateWindow() {
+        if(!virtualized || model == null) {
+            return;
+        }
+        Style s = getStyle();
+        int padLeft = s.getPadding(isRTL(), LEFT);
+        int padTop = s.getPadding(false, TOP);
+        int width = getLayoutWidth() - getSideGap() - padLeft - s.getPadding(isRTL(), RIGHT);
+        Dimension cell = getVirtualCellSize();
+        int columns = getVirtualColumns(width, cell.getWidth());
+        int cellWidth = cell.getWidth();
+        if(!(nonVirtualLayout instanceof FlowLayout)) {
+            cellWidth = Math.max(1, width / columns);
+        }
+        int cellHeight = Math.max(1, cell.getHeight());
+        windowColumns = columns;
+        windowCellWidth = cellWidth;
+        windowCellHeight = cellHeight;
+
+        int size = model.getSize();
+        int rows = (size + columns - 1) / columns;
+        int viewHeight = getHeight();
+        if(viewHeight <= 0) {
+            viewHeight = Display.getInstance().getDisplayHeight();
+        }
+        int scroll = Math.max(0, getScrollY() - padTop);
+        int firstRow = Math.max(0, scroll / cellHeight - OVERSCAN_ROWS);
+        int lastRow = Math.min(rows - 1, (scroll + viewHeight) / cellHeight + OVERSCAN_ROWS);
+        int first = firstRow * columns;
+        int last = Math.min(size - 1, (lastRow + 1) * columns - 1);
+
+        Component focused = null;
+        Form f = getComponentForm();
+        if(f != null) {
+            focused = f.getFocused();
+        }
+        boolean[] bound = new boolean[Math.max(0, last - first + 1)];
+        Vector free = new Vector();
+        int count = getComponentCount();
+        for(int iter = 0 ; iter < count ; iter++) {
+            Entry e = (Entry)getComponentAt(iter);
+            if(e.offset >= first && e.offset <= last && !bound[e.offset - first]) {
+                bound[e.offset - first] = true;
+            } else {
+                if(e != focused || e.offset >= size) {
+                    free.addElement(e);
+                }
+            }
+        }
+        for(int off = first ; off <= last ; off++) {
+            if(!bound[off - first]) {
+                if(free.size() > 0) {
+                    Entry e = (Entry)free.elementAt(free.size() - 1);
+                    free.removeElementAt(free.size() - 1);
+                    e.offset = off;
+                } else {
+                    addComponent(new Entry(off));
+                }
+            }
+        }
+        for(int iter = 0 ; iter < free.size() ; iter++) {
+            removeComponent((Component)free.elementAt(iter));
+        }
+
+        boolean rtl = isRTL();
+        count = getComponentCount();
+        for(int iter = 0 ; iter < count ; iter++) {
+            Entry e = (Entry)getComponentAt(iter);
+            int col = e.offset % columns;
+            if(rtl) {
+                col = columns - 1 - col;
+            }
+            e.setX(padLeft + col * cellWidth);
+            e.setY(padTop + (e.offset / columns) * cellHeight);
+            e.setWidth(cellWidth);
+            e.setHeight(cellHeight);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void setScrollY(int scrollY) {
+        super.setScrollY(scrollY);
+        if(virtualized) {
+            updateWindow();
+        }
+    }
+
+    /**
+     * Lays out the entries of the visible rows in virtualized mode, the preferred size
+     * covers the cells of the whole model so the scroll range is correct
+     */
+    class VirtualLayout extends Layout {
+        public void layoutContainer(Container parent) {
+            updateWindow();
+        }
+
+        public Dimension getPreferredSize(Container parent) {
+            Style s = getStyle();
+            int padding = s.getPadding(false, LEFT) + s.getPadding(false, RIGHT);
+            int width = getWidth();
+            if(width <= 0) {
+                width = Display.getInstance().getDisplayWidth();
+            }
+            width -= padding;
+            Dimension cell = getVirtualCellSize();
+            int columns = getVirtualColumns(width, cell.getWidth());
+            int rows = (model.getSize() + columns - 1) / columns;
+            return new Dimension(columns * cell.getWidth() + padding,
+                    rows * Math.max(1, cell.getHeight()) + s.getPadding(false, TOP) + s.getPadding(false, BOTTOM));
+        }
+    }
+
     /**
      * Returns the current/last selected item
      * @return selected item or null
@@ -271,7 +552,9 @@ public class ContainerList extends Container {
         }
 
         public void initComponent() {
-            offset = getParent().getComponentIndex(this);
+            if(!virtualized) {
+                offset = getParent().getComponentIndex(this);
+            }
         }
 
         protected void focusGained() {
@@ -303,10 +586,53 @@ public class ContainerList extends Container {
             }
         }
 
+        /**
+         * In virtualized mode the entries of rows that aren't visible don't exist so
+         * the arrow keys move the selection instead of the focus traversal of the form
+         */
+        public void keyPressed(int keyCode) {
+            keyHandled = false;
+            if(virtualized) {
+                int target = -1;
+                switch(Display.getInstance().getGameAction(keyCode)) {
+                    case Display.GAME_UP:
+                        target = offset - windowColumns;
+                        break;
+                    case Display.GAME_DOWN:
+                        target = offset + windowColumns;
+                        break;
+                    case Display.GAME_LEFT:
+                        if(windowColumns > 1 && offset % windowColumns != 0) {
+                            target = offset - 1;
+                        }
+                        break;
+                    case Display.GAME_RIGHT:
+                        if(windowColumns > 1 && (offset + 1) % windowColumns != 0) {
+                            target = offset + 1;
+                        }
+                        break;
+                }
+                if(target > -1 && target < model.getSize()) {
+                    keyHandled = true;
+                    model.setSelectedIndex(target);
+                    return;
+                }
+            }
+            super.keyPressed(keyCode);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public boolean handlesInput() {
+            return keyHandled || super.handlesInput();
+        }
+
         /**
          * @inheritDoc
          */
         public void keyReleased(int keyCode) {
+            keyHandled = false;
             super.keyReleased(keyCode);
             if(Display.getInstance().getGameAction(keyCode) == Display.GAME_FIRE) {
                 dispatcher.fireActionEvent(new ActionEvent(ContainerList.this, keyCode));
@@ -322,10 +648,15 @@ public class ContainerList extends Container {
 
         public void dataChanged(int status, int index) {
             updateComponentCount();
+            if(virtualized && isInitialized()) {
+                revalidate();
+            }
         }
 
         public void selectionChanged(int oldSelected, int newSelected) {
-            getComponentAt(newSelected).requestFocus();
+            if(newSelected > -1) {
+                showIndex(newSelected);
+            }
         }
     }
 }
@@ -70,13 +70,7 @@ public class BackgroundPainter implements Painter {
                     s.setBgImage(bgImage, true);
                 }
             } else {
-                int iW = bgImage.getWidth();
-                int iH = bgImage.getHeight();
-                for(int xPos = 0 ; xPos < width ; xPos += iW) { 
-                    for(int yPos = 0 ; yPos < height ; yPos += iH) { 
-                        g.drawImage(s.getBgImage(), x + xPos, y + yPos);
-                    }
-                }
+                g.tileImage(s.getBgImage(), x, y, width, height);
                 return;
             }
             g.drawImage(s.getBgImage(), x, y);
@@ -75,6 +75,11 @@ public class Border {
     private Image[] specialTile;
     private Component trackComponent;
 
+    /**
+     * Set while an image border is rendered into the cache to prevent a recursive lookup
+     */
+    private static boolean renderingCachedImage;
+
     /**
      * Indicates whether theme colors should be used or whether colors are specified
      * in the border
@@ -1106,6 +1111,10 @@ public class Border {
                 }
                 break;
             case TYPE_IMAGE: {
+                // an arrow depends on the position of the tracked component so it can't be cached
+                if(trackComponent == null && paintCachedImageBorder(g, x, y, width, height, c)) {
+                    break;
+                }
                 int clipX = g.getClipX();
                 int clipY = g.getClipY();
                 int clipWidth = g.getClipWidth();
@@ -1120,13 +1129,7 @@ public class Border {
                 width -= (topLeft.getWidth() + topRight.getWidth());
                 g.clipRect(x, y, width, height);
                 if(center != null){
-                    int centerWidth = center.getWidth();
-                    int centerHeight = center.getHeight();
-                    for(int xCount = x ; xCount < x + width ; xCount += centerWidth) {
-                        for(int yCount = y ; yCount < y + height ; yCount += centerHeight) {
-                            g.drawImage(center, xCount, yCount);
-                        }
-                    }
+                    g.tileImage(center, x, y, width, height);
                 }
                 Image top = images[0];  Image bottom = images[1];
                 Image left = images[2]; Image right = images[3];
@@ -1194,6 +1197,9 @@ public class Border {
                 break;
             }
             case TYPE_IMAGE_SCALED: {
+                if(paintCachedImageBorder(g, x, y, width, height, c)) {
+                    break;
+                }
                 int clipX = g.getClipX();
                 int clipY = g.getClipY();
                 int clipWidth = g.getClipWidth();
@@ -1254,10 +1260,7 @@ public class Border {
                 x += left.getWidth();
                 width -= (left.getWidth() + right.getWidth());
                 g.clipRect(x, y, width, height);
-                int centerWidth = center.getWidth();
-                for(int xCount = x ; xCount < x + width ; xCount += centerWidth) {
-                    g.drawImage(center, xCount, y);
-                }
+                g.tileImage(center, x, y, width, center.getHeight());
                 g.setClip(clipX, clipY, clipWidth, clipHeight);
                 break;
             }
@@ -1274,10 +1277,7 @@ public class Border {
                 y += top.getHeight();
                 height -= (top.getHeight() + bottom.getHeight());
                 g.clipRect(x, y, width, height);
-                int centerHeight = center.getHeight();
-                for(int yCount = y ; yCount < y + height ; yCount += centerHeight) {
-                    g.drawImage(center, x, yCount);
-                }
+                g.tileImage(center, x, y, center.getWidth(), height);
                 g.setClip(clipX, clipY, clipWidth, clipHeight);
                 break;
             }
@@ -1616,10 +1616,7 @@ public class Border {
             currentX += left.getWidth();
             int destX = currentX + currentWidth;
             g.clipRect(currentX, y, currentWidth - left.getWidth(), center.getHeight());
-            int centerWidth = center.getWidth();
-            for(; currentX < destX ; currentX += centerWidth) {
-                g.drawImage(center, currentX, y);
-            }
+            g.tileImage(center, currentX, y, destX - currentX, center.getHeight());
             if(arrow != null) {
                 imagePosition = Math.max(imagePosition, left.getWidth());
                 imagePosition = Math.min(imagePosition, destX - x - arrow.getWidth() - right.getWidth());
@@ -1634,10 +1631,7 @@ public class Border {
             int currentY = y + top.getHeight();
             int destY = currentY + currentHeight;
             g.clipRect(x, currentY, center.getWidth(), currentHeight - top.getHeight());
-            int centerHeight = center.getHeight();
-            for(; currentY < destY ; currentY += centerHeight) {
-                g.drawImage(center, x, currentY);
-            }
+            g.tileImage(center, x, currentY, center.getWidth(), destY - currentY);
             if(arrow != null) {
                 imagePosition = Math.max(imagePosition, top.getHeight());
                 imagePosition = Math.min(imagePosition, destY - y - arrow.getHeight() - bottom.getHeight());
@@ -1663,6 +1657,111 @@ public class Border {
         }
     }
     
+    /**
+     * Draws the border from the image border cache rendering it first if necessary
+     *
+     * @return false if the border can't be cached and should be painted normally
+     */
+    private boolean paintCachedImageBorder(Graphics g, int x, int y, int width, int height, Component c) {
+        if(renderingCachedImage || width <= 0 || height <= 0 || !BorderImageCache.INSTANCE.fits(width * height * 4)) {
+            return false;
+        }
+        Image i = BorderImageCache.INSTANCE.get(this, width, height);
+        if(i == null) {
+            i = renderImageBorder(width, height, c);
+            BorderImageCache.INSTANCE.put(this, width, height, i, width * height * 4);
+        }
+        g.drawImage(i, x, y);
+        return true;
+    }
+
+    /**
+     * Renders the image border into a translucent image of the given size
+     */
+    private Image renderImageBorder(int width, int height, Component c) {
+        renderingCachedImage = true;
+        try {
+            if(Image.isAlphaMutableImageSupported()) {
+                Image i = Image.createImage(width, height, 0);
+                paintBorderBackground(i.getGraphics(), 0, 0, width, height, c);
+                return i;
+            }
+
+            // without alpha in mutable images the border is rendered on black and on
+            // white, the difference between the two reveals the alpha of every pixel
+            Image black = Image.createImage(width, height, 0xff000000);
+            paintBorderBackground(black.getGraphics(), 0, 0, width, height, c);
+            Image white = Image.createImage(width, height, 0xffffffff);
+            paintBorderBackground(white.getGraphics(), 0, 0, width, height, c);
+            int[] rgb = black.getRGB();
+            int[] whiteRGB = white.getRGB();
+            for(int iter = 0 ; iter < rgb.length ; iter++) {
+                int p = rgb[iter];
+                int alpha = 255 - (((whiteRGB[iter] >> 8) & 0xff) - ((p >> 8) & 0xff));
+                if(alpha <= 0) {
+                    rgb[iter] = 0;
+                } else {
+                    if(alpha >= 255) {
+                        rgb[iter] = p | 0xff000000;
+                    } else {
+                        int red = Math.min(255, ((p >> 16) & 0xff) * 255 / alpha);
+                        int green = Math.min(255, ((p >> 8) & 0xff) * 255 / alpha);
+                        int blue = Math.min(255, (p & 0xff) * 255 / alpha);
+                        rgb[iter] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+                    }
+                }
+            }
+            return Image.createImage(rgb, width, height);
+        } finally {
+            renderingCachedImage = false;
+        }
+    }
+
+    /**
+     * Sets the amount of memory in bytes available for caching image borders rendered
+     * to the size of the components using them, a cached border is painted with a
+     * single image draw instead of tiling its images. The cache is disabled by default
+     * (a size of 0) and is cleared whenever the theme changes.
+     *
+     * @param bytes the memory budget of the cache
+     */
+    public static void setImageBorderCacheSize(int bytes) {
+        BorderImageCache.INSTANCE.setBudget(bytes);
+    }
+
+    /**
+     * Returns the amount of memory in bytes available for caching rendered image borders
+     *
+     * @return the memory budget of the cache
+     */
+    public static int getImageBorderCacheSize() {
+        return BorderImageCache.INSTANCE.getBudget();
+    }
+
+    /**
+     * Returns statistics of the image border cache useful for tuning its size
+     *
+     * @return an array with the hits, misses and bytes in use, in this order
+     */
+    public static int[] getImageBorderCacheStatistics() {
+        return new int[] {BorderImageCache.INSTANCE.getHits(), BorderImageCache.INSTANCE.getMisses(), BorderImageCache.INSTANCE.getUsed()};
+    }
+
+    /**
+     * Resets the hit and miss counters of the image border cache
+     */
+    public static void resetImageBorderCacheStatistics() {
+        BorderImageCache.INSTANCE.resetStatistics();
+    }
+
+    /**
+     * Discards all the rendered image borders, this should be invoked if the images
+     * of a border are modified after it was painted
+     */
+    public static void clearImageBorderCache() {
+        BorderImageCache.INSTANCE.clear();
+    }
+
     /**
      * Sets the default border to the given value
      * 
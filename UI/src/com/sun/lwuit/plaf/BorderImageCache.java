@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.plaf;
+
+import com.sun.lwuit.Image;
+import com.sun.lwuit.util.LRUCache;
+
+/**
+ * Least recently used cache of image borders pre-rendered to a specific size so an
+ * image bordered component can be painted with a single image draw. The cache is
+ * shared by all borders and bounded by the amount of memory the rendered images
+ * occupy, it is disabled by default.
+ */
+class BorderImageCache extends LRUCache {
+    static final BorderImageCache INSTANCE = new BorderImageCache();
+
+    private BorderImageCache() {
+        super(0);
+    }
+
+    /**
+     * Returns the border rendered at the given size if it's cached
+     *
+     * @param border the image border
+     * @param width the width of the rendered border
+     * @param height the height of the rendered border
+     * @return the rendered border or null
+     */
+    Image get(Border border, int width, int height) {
+        return (Image)get(new Key(border, width, height));
+    }
+
+    /**
+     * Adds a rendered border to the cache, least recently used images are evicted
+     * to stay within the budget
+     *
+     * @param border the image border
+     * @param width the width of the rendered border
+     * @param height the height of the rendered border
+     * @param image the rendered border
+     * @param size the memory occupied by the image in bytes
+     */
+    void put(Border border, int width, int height, Image image, int size) {
+        put(new Key(border, width, height), image, size);
+    }
+
+    static class Key {
+        Border border;
+        int width;
+        int height;
+
+        Key(Border border, int width, int height) {
+            this.border = border;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int hashCode() {
+            return (System.identityHashCode(border) * 31 + width) * 31 + height;
+        }
+
+        public boolean equals(Object o) {
+            Key k = (Key)o;
+            return k.border == border && k.width == width && k.height == height;
+        }
+    }
+}
@@ -334,8 +334,17 @@ public class Style {
     private int bgColor = 0xFFFFFF;
     private Font font = Font.getDefaultFont();
     private Image bgImage;
-    private int[] padding = new int[4];
-    private int[] margin = new int[4];
+    private int[] padding;
+    private int[] margin;
+
+    /**
+     * Copies of a style share the padding, margin and gradient arrays of the
+     * original until one of them is modified, these flags indicate that the
+     * array must be cloned before it is written to
+     */
+    private boolean paddingShared;
+    private boolean marginShared;
+    private boolean backgroundGradientShared;
 
     /**
      * Indicates the units used for padding elements, if null pixels are used if not this is a 4 element array containing values
@@ -422,6 +431,8 @@ public class Style {
      * The Default values for each Component can be changed by using the UIManager class
      */
     public Style() {
+        padding = new int[4];
+        margin = new int[4];
         setPadding(3, 3, 3, 3);
         setMargin(2, 2, 2, 2);
         modifiedFlag = 0;
@@ -435,28 +446,31 @@ public class Style {
      * @param style the style to copy
      */
     public Style(Style style) {
-        this(style.getFgColor(), style.getBgColor(), 0, 0, style.getFont(), style.getBgTransparency(),
-                style.getBgImage(), true);
-        setPadding(style.padding[Component.TOP],
-                style.padding[Component.BOTTOM],
-                style.padding[Component.LEFT],
-                style.padding[Component.RIGHT]);
-        setMargin(style.margin[Component.TOP],
-                style.margin[Component.BOTTOM],
-                style.margin[Component.LEFT],
-                style.margin[Component.RIGHT]);
-        setPaddingUnit(style.paddingUnit);
-        setMarginUnit(style.marginUnit);
-        setBorder(style.getBorder());
-        modifiedFlag = 0;
+        fgColor = style.getFgColor();
+        bgColor = style.getBgColor();
+        font = style.getFont();
+        transparency = style.getBgTransparency();
+        bgImage = style.getBgImage();
+
+        // the arrays are shared with the original style and cloned on the first write
+        padding = style.padding;
+        margin = style.margin;
+        paddingShared = true;
+        marginShared = true;
+        style.paddingShared = true;
+        style.marginShared = true;
+        if(style.backgroundGradient != null) {
+            backgroundGradient = style.backgroundGradient;
+            backgroundGradientShared = true;
+            style.backgroundGradientShared = true;
+        }
+        paddingUnit = style.paddingUnit;
+        marginUnit = style.marginUnit;
+        border = style.getBorder();
         align = style.align;
         backgroundType = style.backgroundType;
         backgroundAlignment = style.backgroundAlignment;
         textDecoration = style.textDecoration;
-        if(style.backgroundGradient != null) {
-            backgroundGradient = new Object[style.backgroundGradient.length];
-            System.arraycopy(style.backgroundGradient, 0, backgroundGradient, 0, backgroundGradient.length);
-        }
     }
 
     /**
@@ -471,27 +485,6 @@ public class Style {
         this(fgColor, bgColor, f, transparency, null, BACKGROUND_IMAGE_SCALED);
     }
 
-    /**
-     * Creates a new style with the given attributes
-     * 
-     * @param fgColor foreground color
-     * @param bgColor background color
-     * @param fgSelectionColor foreground selection color
-     * @param bgSelectionColor background selection color
-     * @param f font
-     * @param transparency transparency value
-     * @param im background image
-     * @param scaledImage whether the image should be scaled or tiled
-     */
-    private Style(int fgColor, int bgColor, int fgSelectionColor, int bgSelectionColor, Font f, byte transparency, Image im, boolean scaledImage) {
-        this();
-        this.fgColor = fgColor;
-        this.bgColor = bgColor;
-        this.font = f;
-        this.transparency = transparency;
-        this.bgImage = im;        
-    }
-
 
     /**
      * Creates a new style with the given attributes
@@ -1080,6 +1073,7 @@ public class Style {
                 padding[Component.BOTTOM] != bottom ||
                 padding[Component.LEFT] != left ||
                 padding[Component.RIGHT] != right) {
+            writablePadding();
             padding[Component.TOP] = top;
             padding[Component.BOTTOM] = bottom;
             padding[Component.LEFT] = left;
@@ -1116,6 +1110,7 @@ public class Style {
                 margin[Component.BOTTOM] != bottom ||
                 margin[Component.LEFT] != left ||
                 margin[Component.RIGHT] != right) {
+            writableMargin();
             margin[Component.TOP] = top;
             margin[Component.BOTTOM] = bottom;
             margin[Component.LEFT] = left;
@@ -1346,7 +1341,43 @@ public class Style {
      * Internal use background gradient setter
      */
     void setBackgroundGradient(Object[] backgroundGradient) {
+        // the caller retains the array (e.g. the compiled theme) so it's treated as shared
         this.backgroundGradient = backgroundGradient;
+        backgroundGradientShared = backgroundGradient != null;
+    }
+
+    /**
+     * Returns the background gradient array making sure it isn't shared with
+     * another style so it can be modified in place
+     */
+    private Object[] getWritableBackgroundGradient() {
+        Object[] g = getBackgroundGradient();
+        if(backgroundGradientShared) {
+            Object[] n = new Object[g.length];
+            System.arraycopy(g, 0, n, 0, g.length);
+            backgroundGradient = n;
+            backgroundGradientShared = false;
+            return n;
+        }
+        return g;
+    }
+
+    private void writablePadding() {
+        if(paddingShared) {
+            int[] n = new int[4];
+            System.arraycopy(padding, 0, n, 0, 4);
+            padding = n;
+            paddingShared = false;
+        }
+    }
+
+    private void writableMargin() {
+        if(marginShared) {
+            int[] n = new int[4];
+            System.arraycopy(margin, 0, n, 0, 4);
+            margin = n;
+            marginShared = false;
+        }
     }
 
     /**
@@ -1358,7 +1389,7 @@ public class Style {
      */
     public void setBackgroundGradientStartColor(int backgroundGradientStartColor, boolean override) {
         if (((Integer) getBackgroundGradient()[0]).intValue() != backgroundGradientStartColor) {
-            getBackgroundGradient()[0] = new Integer(backgroundGradientStartColor);
+            getWritableBackgroundGradient()[0] = new Integer(backgroundGradientStartColor);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1375,7 +1406,7 @@ public class Style {
      */
     public void setBackgroundGradientEndColor(int backgroundGradientEndColor, boolean override) {
         if (((Integer) getBackgroundGradient()[1]).intValue() != backgroundGradientEndColor) {
-            getBackgroundGradient()[1] = new Integer(backgroundGradientEndColor);
+            getWritableBackgroundGradient()[1] = new Integer(backgroundGradientEndColor);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1393,7 +1424,7 @@ public class Style {
      */
     public void setBackgroundGradientRelativeX(float backgroundGradientRelativeX, boolean override) {
         if (((Float) getBackgroundGradient()[2]).floatValue() != backgroundGradientRelativeX) {
-            getBackgroundGradient()[2] = new Float(backgroundGradientRelativeX);
+            getWritableBackgroundGradient()[2] = new Float(backgroundGradientRelativeX);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1410,7 +1441,7 @@ public class Style {
      */
     public void setBackgroundGradientRelativeY(float backgroundGradientRelativeY, boolean override) {
         if (((Float) getBackgroundGradient()[3]).floatValue() != backgroundGradientRelativeY) {
-            getBackgroundGradient()[3] = new Float(backgroundGradientRelativeY);
+            getWritableBackgroundGradient()[3] = new Float(backgroundGradientRelativeY);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1428,7 +1459,7 @@ public class Style {
      */
     public void setBackgroundGradientRelativeSize(float backgroundGradientRelativeSize, boolean override) {
         if (((Float) getBackgroundGradient()[4]).floatValue() != backgroundGradientRelativeSize) {
-            getBackgroundGradient()[4] = new Float(backgroundGradientRelativeSize);
+            getWritableBackgroundGradient()[4] = new Float(backgroundGradientRelativeSize);
             if (!override) {
                 modifiedFlag |= BACKGROUND_GRADIENT_MODIFIED;
             }
@@ -1511,6 +1542,7 @@ public class Style {
             throw new IllegalArgumentException("padding cannot be negative");
         }
         if (padding[orientation] != gap) {
+            writablePadding();
             padding[orientation] = gap;
 
             if (!override) {
@@ -1537,6 +1569,7 @@ public class Style {
             throw new IllegalArgumentException("margin cannot be negative");
         }
         if (margin[orientation] != gap) {
+            writableMargin();
             margin[orientation] = gap;
             if (!override) {
                 modifiedFlag |= MARGIN_MODIFIED;
@@ -31,6 +31,7 @@ import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Label;
 import com.sun.lwuit.TextArea;
 import com.sun.lwuit.TextField;
+import com.sun.lwuit.animations.Animation;
 import com.sun.lwuit.events.ActionEvent;
 import com.sun.lwuit.events.ActionListener;
 import com.sun.lwuit.events.DataChangedListener;
@@ -41,6 +42,8 @@ import com.sun.lwuit.plaf.Style;
 /**
  * The table class represents a grid of data that can be used for rendering a grid
  * of components/labels. The table reflects and updates the underlying model data.
+ * <p>Large models should use the virtualized mode (see {@link #setVirtualized(boolean)})
+ * which only creates the cells of the visible rows.
  *
  * @author Shai Almog
  */
@@ -95,6 +98,34 @@ public class Table extends Container {
      */
     private boolean potentiallyDirtyModel;
 
+    /**
+     * Number of model rows measured to determine the column widths and row height of a
+     * virtualized table
+     */
+    private static final int VIRTUAL_SAMPLE_ROWS = 20;
+
+    /**
+     * Number of rows above and below the visible area that have cells in a virtualized table
+     */
+    private static final int VIRTUAL_OVERSCAN_ROWS = 1;
+    private boolean virtualized;
+
+    /**
+     * The model row bound to every slot row of a virtualized table
+     */
+    private int[] virtualSlotRows;
+
+    /**
+     * Follows the scrolling of the ancestors of a virtualized table
+     */
+    private Animation virtualWindowTracker;
+
+    /**
+     * The absolute Y of the table when the tracker last checked it, ancestors only
+     * affect the window when they move the table
+     */
+    private int trackedAbsoluteY;
+
     /**
      * Constructor for usage by GUI builder and automated tools, normally one
      * should use the version that accepts the model
@@ -173,6 +204,10 @@ public class Table extends Container {
             }
         }
         removeAll();
+        if(virtualized) {
+            updateVirtualModel(selectionRow, selectionColumn);
+            return;
+        }
         int columnCount = model.getColumnCount();
 
         // another row for the table header
@@ -214,6 +249,310 @@ public class Table extends Container {
         }
     }
 
+    /**
+     * Builds a virtualized table: the header rows are laid out as usual while the body
+     * consists of enough slot rows to cover the display, column widths and the row height
+     * are measured from the first rows of the model and the constraints they use
+     */
+    private void updateVirtualModel(int selectionRow, int selectionColumn) {
+        int columnCount = model.getColumnCount();
+        int rowCount = model.getRowCount();
+        int headerRows = 0;
+        if(includeHeader) {
+            headerRows = 1;
+        }
+
+        // createCellConstraint expects a table layout
+        setLayout(new TableLayout(Math.max(1, headerRows), columnCount));
+        int[] widths = new int[columnCount];
+        int[] percentages = new int[columnCount];
+        for(int c = 0 ; c < columnCount ; c++) {
+            percentages[c] = -1;
+        }
+        int rowHeight = 1;
+        int sample = Math.min(rowCount, VIRTUAL_SAMPLE_ROWS);
+        for(int r = 0 ; r < sample ; r++) {
+            for(int c = 0 ; c < columnCount ; c++) {
+                Object value = getVirtualValueAt(r, c);
+                Component cell = createCellImpl(value, r, c, model.isCellEditable(r, c));
+                TableLayout.Constraint con = createCellConstraint(value, r, c);
+                Style s = cell.getStyle();
+                if(con.getWidthPercentage() > 0) {
+                    percentages[c] = Math.max(percentages[c], con.getWidthPercentage());
+                } else {
+                    widths[c] = Math.max(widths[c], cell.getPreferredW() + s.getMargin(false, LEFT) + s.getMargin(false, RIGHT));
+                }
+                rowHeight = Math.max(rowHeight, cell.getPreferredH() + s.getMargin(false, TOP) + s.getMargin(false, BOTTOM));
+            }
+        }
+
+        // the table can't show more rows than fit in the display
+        int windowRows = Math.min(rowCount, Display.getInstance().getDisplayHeight() / rowHeight + 2 + 2 * VIRTUAL_OVERSCAN_ROWS);
+        TableLayout t = new TableLayout(Math.max(1, headerRows + windowRows), columnCount);
+        setLayout(t);
+        if(includeHeader) {
+            // columns covered by a spanning header cell have no header cell of their own
+            int spannedUntil = 0;
+            for(int iter = 0 ; iter < columnCount ; iter++) {
+                if(iter < spannedUntil) {
+                    continue;
+                }
+                String name = model.getColumnName(iter);
+                Component header = createCellImpl(name, -1, iter, false);
+                TableLayout.Constraint con = createCellConstraint(name, -1, iter);
+                con.setVerticalSpan(1);
+                spannedUntil = iter + con.getHorizontalSpan();
+                addComponent(con, header);
+            }
+        }
+        t.setVirtual(headerRows, widths, percentages, rowHeight, rowCount);
+        virtualSlotRows = new int[windowRows];
+        for(int r = 0 ; r < windowRows ; r++) {
+            virtualSlotRows[r] = r;
+            for(int c = 0 ; c < columnCount ; c++) {
+                Object value = getVirtualValueAt(r, c);
+                Component cell = createCellImpl(value, r, c, model.isCellEditable(r, c));
+                TableLayout.Constraint con = TableLayout.moveConstraint(createCellConstraint(value, r, c), headerRows + r, c);
+                addComponent(con, cell);
+                if(r == selectionRow && c == selectionColumn) {
+                    cell.requestFocus();
+                }
+            }
+        }
+    }
+
+    /**
+     * Spanning isn't supported in the body of a virtualized table so spanned over
+     * (null) values are shown as empty cells
+     */
+    private Object getVirtualValueAt(int row, int column) {
+        Object value = model.getValueAt(row, column);
+        if(value == null) {
+            return "";
+        }
+        return value;
+    }
+
+    /**
+     * Moves the window of a virtualized table so it covers the visible area, slots of the
+     * rows that left the window are bound to the rows that entered it. This is invoked
+     * when the table is laid out or scrolled and when an ancestor scrolls, never while
+     * painting.
+     */
+    private void updateVirtualWindow() {
+        if(virtualSlotRows == null) {
+            return;
+        }
+        int rowCount = model.getRowCount();
+        int windowRows = virtualSlotRows.length;
+        if(windowRows == 0 || windowRows >= rowCount) {
+            return;
+        }
+        TableLayout t = (TableLayout)getLayout();
+        int headerRows = t.getRows() - windowRows;
+        int bodyTop = t.getRowPosition(headerRows);
+        if(bodyTop < 0) {
+            return;
+        }
+
+        // intersect the bounds of the table with the bounds of its ancestors
+        int absY = getAbsoluteY();
+        int left = 0;
+        int top = 0;
+        int right = Display.getInstance().getDisplayWidth();
+        int bottom = Display.getInstance().getDisplayHeight();
+        Component p = this;
+        while(p != null) {
+            int pLeft = p.getAbsoluteX() + p.getScrollX();
+            int pTop = p.getAbsoluteY() + p.getScrollY();
+            left = Math.max(left, pLeft);
+            top = Math.max(top, pTop);
+            right = Math.min(right, pLeft + p.getWidth());
+            bottom = Math.min(bottom, pTop + p.getHeight());
+            p = p.getParent();
+        }
+        if(bottom <= top || right <= left) {
+            // nothing is visible, the window moves once the table is scrolled into view
+            return;
+        }
+        int rowHeight = t.getVirtualRowHeight();
+        int first = (top - absY - bodyTop) / rowHeight - VIRTUAL_OVERSCAN_ROWS;
+        first = Math.max(0, Math.min(first, rowCount - windowRows));
+        if(first == t.getVirtualFirstRow()) {
+            return;
+        }
+        t.setVirtualFirstRow(first);
+        int columnCount = model.getColumnCount();
+        for(int slot = 0 ; slot < windowRows ; slot++) {
+            int row = t.getVirtualModelRow(headerRows + slot);
+            if(virtualSlotRows[slot] != row) {
+                virtualSlotRows[slot] = row;
+                for(int c = 0 ; c < columnCount ; c++) {
+                    bindVirtualCell(t, headerRows + slot, row, c);
+                }
+            }
+        }
+
+        // only the slots moved, there is no need to invalidate the layout of the ancestors
+        t.layoutContainer(this);
+        repaint();
+    }
+
+    /**
+     * Binds the cell at the given slot to the model value, the existing cell is reused
+     * when possible
+     */
+    private void bindVirtualCell(TableLayout t, int slot, int row, int column) {
+        Object value = getVirtualValueAt(row, column);
+        boolean editable = model.isCellEditable(row, column);
+        Component cell = t.getComponentAt(slot, column);
+        if(updateCell(cell, value, row, column, editable)) {
+            cell.putClientProperty("row", new Integer(row));
+            cell.putClientProperty("column", new Integer(column));
+            return;
+        }
+        Object con = t.getComponentConstraint(cell);
+        removeComponent(cell);
+        addComponent(con, createCellImpl(value, row, column, editable));
+    }
+
+    /**
+     * Updates a cell created by createCell to show a different value, this allows a
+     * virtualized table to reuse its cells as it scrolls. The default implementation
+     * updates the text of the labels and text areas created by createCell.
+     *
+     * @param cell cell component instance previously returned by createCell
+     * @param value the new value object
+     * @param row row number
+     * @param column column number
+     * @param editable true if the cell is editable
+     * @return true if the cell was updated, false if a new cell should be created instead
+     */
+    protected boolean updateCell(Component cell, Object value, int row, int column, boolean editable) {
+        if(editable) {
+            if(cell instanceof TextArea) {
+                ((TextArea)cell).setText("" + value);
+                return true;
+            }
+            return false;
+        }
+        if(cell instanceof Label) {
+            ((Label)cell).setText("" + value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether the table only creates the cells of the visible rows, this allows
+     * tables with a large model to layout quickly. In this mode all body rows share one
+     * height, column widths are measured from the header and the first rows of the model
+     * (or the width percentage of their constraints) and cells are reused via updateCell
+     * as the table scrolls. Spanning is only supported for the header.
+     *
+     * @param virtualized true to only create cells for the visible rows
+     */
+    public void setVirtualized(boolean virtualized) {
+        if(this.virtualized != virtualized) {
+            this.virtualized = virtualized;
+            updateModel();
+            if(!virtualized) {
+                virtualSlotRows = null;
+            }
+            if(isInitialized()) {
+                bindVirtualWindowTracker(virtualized);
+                revalidate();
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the table only creates the cells of the visible rows
+     *
+     * @return true if the table is virtualized
+     */
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void layoutContainer() {
+        super.layoutContainer();
+        if(virtualized) {
+            updateVirtualWindow();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void setScrollX(int scrollX) {
+        super.setScrollX(scrollX);
+        if(virtualized) {
+            updateVirtualWindow();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void setScrollY(int scrollY) {
+        super.setScrollY(scrollY);
+        if(virtualized) {
+            updateVirtualWindow();
+        }
+    }
+
+    /**
+     * Registers or removes the animation that moves the window of a virtualized table
+     * when one of its ancestors scrolls
+     */
+    private void bindVirtualWindowTracker(boolean bind) {
+        Form f = getComponentForm();
+        if(f == null) {
+            return;
+        }
+        if(bind) {
+            trackedAbsoluteY = getAbsoluteY();
+            if(virtualWindowTracker == null) {
+                virtualWindowTracker = new Animation() {
+                    public boolean animate() {
+                        int absY = getAbsoluteY();
+                        if(absY != trackedAbsoluteY) {
+                            trackedAbsoluteY = absY;
+                            updateVirtualWindow();
+                        }
+                        return false;
+                    }
+
+                    public void paint(Graphics g) {
+                    }
+                };
+            }
+            f.registerAnimated(virtualWindowTracker);
+        } else {
+            if(virtualWindowTracker != null) {
+                f.deregisterAnimated(virtualWindowTracker);
+            }
+        }
+    }
+
+    /**
+     * Returns the row of the table (counting the header) shown by a row of the layout, the
+     * body rows of a virtualized table are slots that are bound to arbitrary model rows
+     */
+    private int getTableRow(TableLayout t, int layoutRow) {
+        if(virtualized && virtualSlotRows != null) {
+            int headerRows = t.getRows() - virtualSlotRows.length;
+            if(layoutRow >= headerRows) {
+                return headerRows + virtualSlotRows[layoutRow - headerRows];
+            }
+        }
+        return layoutRow;
+    }
+
     /**
      * @inheritDoc
      */
@@ -229,27 +568,33 @@ public class Table extends Container {
             }
             g.setColor(getStyle().getFgColor());
             TableLayout t = (TableLayout)getLayout();
+            int layoutRows = t.getRows();
             int actualWidth = Math.max(getWidth(), getScrollDimension().getWidth());
             int actualHeight = Math.max(getHeight(), getScrollDimension().getHeight());
 
+            // cells are looked up by their layout row while positions use the table row
             if ((collapseBorder) || (innerBorder!=INNER_BORDERS_ALL) || // inner borders cols/rows are supported only in collapsed mode
                 (t.hasHorizontalSpanning()) || (t.hasVerticalSpanning())) { // TODO - We currently don't support separate borders for tables with spanned cells
                 if ((innerBorder==INNER_BORDERS_ALL) || (innerBorder==INNER_BORDERS_ROWS)) {
                     if(t.hasVerticalSpanning()) {
                         // iterate over the components and draw a line on the side of all
                         // the components other than the ones that are at the last column.
-                        for(int cellRow = 0 ; cellRow < rows - 1; cellRow++) {
+                        for(int cellRow = 0 ; cellRow < layoutRows ; cellRow++) {
+                            int tableRow = getTableRow(t, cellRow);
+                            if(tableRow >= rows - 1) {
+                                continue;
+                            }
                             for(int cellColumn = 0 ; cellColumn < cols ; cellColumn++) {
                                 // if this isn't the last row
-                                if(cellRow + t.getCellVerticalSpan(cellRow, cellColumn) - 1 != rows - 1) {
+                                if(tableRow + t.getCellVerticalSpan(cellRow, cellColumn) - 1 != rows - 1) {
                                     // if this is a spanned through cell we don't want to draw a line here
                                     if(t.isCellSpannedThroughHorizontally(cellRow, cellColumn)) {
                                         continue;
                                     }
 
                                     int x = t.getColumnPosition(cellColumn);
-                                    int y = t.getRowPosition(cellRow);
-                                    int rowHeight = t.getRowPosition(cellRow + t.getCellVerticalSpan(cellRow, cellColumn)) - y;
+                                    int y = t.getRowPosition(tableRow);
+                                    int rowHeight = t.getRowPosition(tableRow + t.getCellVerticalSpan(cellRow, cellColumn)) - y;
                                     int columnWidth;
                                     if(cellColumn < getModel().getColumnCount() - 1) {
                                         columnWidth = t.getColumnPosition(cellColumn + 1) - x;
@@ -257,7 +602,7 @@ public class Table extends Container {
                                         columnWidth = getWidth() - y;
                                     }
 
-                                    if ((innerBorder!=INNER_BORDERS_ROWS) || (shouldDrawInnerBorderAfterRow(cellRow))) {
+                                    if ((innerBorder!=INNER_BORDERS_ROWS) || (shouldDrawInnerBorderAfterRow(tableRow))) {
                                         g.drawLine(x, y + rowHeight, x + columnWidth, y + rowHeight);
                                     }
                                 }
@@ -265,7 +610,11 @@ public class Table extends Container {
                         }
                     } else {
                         // this is much faster since we don't need to check spanning
-                        for(int row = 1 ; row < rows; row++) {
+                        for(int cellRow = 0 ; cellRow < layoutRows ; cellRow++) {
+                            int row = getTableRow(t, cellRow);
+                            if(row < 1) {
+                                continue;
+                            }
                             int y = t.getRowPosition(row);
                             if ((innerBorder!=INNER_BORDERS_ROWS) || (shouldDrawInnerBorderAfterRow(row-1))) {
                                 g.drawLine(0, y, actualWidth, y);
@@ -280,7 +629,8 @@ public class Table extends Container {
                     if(t.hasHorizontalSpanning()) {
                         // iterate over the components and draw a line on the side of all
                         // the components other than the ones that are at the last column.
-                        for(int cellRow = 0 ; cellRow < rows ; cellRow++) {
+                        for(int cellRow = 0 ; cellRow < layoutRows ; cellRow++) {
+                            int tableRow = getTableRow(t, cellRow);
                             for(int cellColumn = 0 ; cellColumn < cols - 1 ; cellColumn++) {
                                 // if this isn't the last column
                                 if(cellColumn + t.getCellHorizontalSpan(cellRow, cellColumn) - 1 != cols - 1) {
@@ -290,11 +640,11 @@ public class Table extends Container {
                                     }
 
                                     int x = t.getColumnPosition(cellColumn);
-                                    int y = t.getRowPosition(cellRow);
+                                    int y = t.getRowPosition(tableRow);
                                     int rowHeight;
                                     int columnWidth = t.getColumnPosition(cellColumn + t.getCellHorizontalSpan(cellRow, cellColumn)) - x;
-                                    if(cellRow < getModel().getRowCount() - 1) {
-                                        rowHeight = t.getRowPosition(cellRow + 1) - y;
+                                    if(tableRow < getModel().getRowCount() - 1) {
+                                        rowHeight = t.getRowPosition(tableRow + 1) - y;
                                     } else {
                                         rowHeight = getHeight() - y;
                                     }
@@ -313,7 +663,8 @@ public class Table extends Container {
                 }
             } else { // separate border
                 //if ((!t.hasHorizontalSpanning()) && (!t.hasVerticalSpanning())) {
-                    for(int row = 0 ; row < rows; row++) {
+                    for(int cellRow = 0 ; cellRow < layoutRows ; cellRow++) {
+                        int row = getTableRow(t, cellRow);
                         int y = t.getRowPosition(row);
                         int h;
                         if (row+1<rows) {
@@ -329,7 +680,7 @@ public class Table extends Container {
                             } else {
                                 w=getX()+actualWidth-x-2;
                             }
-                            Component comp=t.getComponentAt(row, col);
+                            Component comp=t.getComponentAt(cellRow, col);
                             if ((comp.isVisible()) &&
                                     ((drawEmptyCellsBorder) ||
                                      ((comp.getWidth()-comp.getStyle().getPadding(false, Component.RIGHT) - comp.getStyle().getPadding(false, Component.LEFT)>0) &&
@@ -419,12 +770,18 @@ public class Table extends Container {
             potentiallyDirtyModel = false;
         }
         model.addDataChangeListener(listener);
+        if(virtualized) {
+            bindVirtualWindowTracker(true);
+        }
     }
 
     /**
      * @inheritDoc
      */
     public void deinitialize() {
+        if(virtualized) {
+            bindVirtualWindowTracker(false);
+        }
         // we unbind the listener to prevent a memory leak for the use case of keeping
         // the model while discarding the component
         // Prevent the model listener from being removed when the VKB is shown
@@ -732,6 +1089,23 @@ public class Table extends Container {
          * @inheritDoc
          */
         public final void dataChanged(int row, int column) {
+            if(virtualized) {
+                TableLayout t = (TableLayout)getLayout();
+                if(row < 0 || column < 0 || model.getRowCount() != t.getVirtualRowCount()) {
+                    updateModel();
+                    revalidate();
+                    return;
+                }
+                for(int slot = 0 ; slot < virtualSlotRows.length ; slot++) {
+                    if(virtualSlotRows[slot] == row) {
+                        bindVirtualCell(t, t.getRows() - virtualSlotRows.length + slot, row, column);
+                        layoutContainer();
+                        repaint();
+                        return;
+                    }
+                }
+                return;
+            }
             Object value = model.getValueAt(row, column);
             boolean e = model.isCellEditable(row, column);
             Component cell = createCellImpl(value, row, column, e);
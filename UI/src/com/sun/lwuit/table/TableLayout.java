@@ -61,6 +61,18 @@ public class TableLayout extends Layout {
     private boolean horizontalSpanningExists;
     private boolean verticalSpanningExists;
 
+    /**
+     * Virtual mode used by the table: rows below the header rows are a window of slots
+     * that are bound to model rows of identical height, -1 when the layout isn't virtual
+     */
+    private int virtualHeaderRows = -1;
+    private int[] virtualColumnWidths;
+    private int[] virtualColumnPercentages;
+    private int virtualRowHeight;
+    private int virtualRowCount;
+    private int virtualFirstRow;
+    private int virtualBodyTop;
+
     /**
      * A table must declare the amount of rows and columns in advance
      *
@@ -169,6 +181,12 @@ public class TableLayout extends Layout {
 
         int currentY = top;
         for(int iter = 0 ; iter < rowSizes.length ; iter++) {
+            if(virtualHeaderRows > -1 && iter >= virtualHeaderRows) {
+                // slots are placed where the model row they are bound to resides
+                rowSizes[iter] = virtualRowHeight;
+                rowPositions[iter] = currentY + getVirtualModelRow(iter) * virtualRowHeight;
+                continue;
+            }
             if(parent.isScrollableY()) {
                 rowSizes[iter] = getRowHeightPixels(iter, pHeight, -1);
             } else {
@@ -177,6 +195,7 @@ public class TableLayout extends Layout {
             rowPositions[iter] = currentY;
             currentY += rowSizes[iter];
         }
+        virtualBodyTop = currentY;
 
 
         for(int r = 0 ; r < rowSizes.length ; r++) {
@@ -230,6 +249,12 @@ public class TableLayout extends Layout {
      * @return the Y position in pixels or -1 if layout hasn't occured/row is too large etc.
      */
     public int getRowPosition(int row) {
+        if(virtualHeaderRows > -1 && rowPositions != null && row >= virtualHeaderRows) {
+            if(row - virtualHeaderRows < virtualRowCount) {
+                return virtualBodyTop + (row - virtualHeaderRows) * virtualRowHeight;
+            }
+            return -1;
+        }
         if(rowPositions != null && rowPositions.length > row) {
             return rowPositions[row];
         }
@@ -314,7 +339,11 @@ public class TableLayout extends Layout {
             modifableColumnSize = new boolean[tablePositions[0].length];
         }
 
-        for(int iter = 0 ; iter < tablePositions.length ; iter++) {
+        int rows = tablePositions.length;
+        if(virtualHeaderRows > -1) {
+            rows = virtualHeaderRows;
+        }
+        for(int iter = 0 ; iter < rows ; iter++) {
             Constraint c = tablePositions[iter][column];
 
             if(c == null || c == H_SPAN_CONSTRAINT || c == V_SPAN_CONSTRAINT || c == VH_SPAN_CONSTRAINT) {
@@ -334,6 +363,19 @@ public class TableLayout extends Layout {
                 current = Math.min(available, current);
             }
         }
+        if(virtualHeaderRows > -1) {
+            // the body rows are represented by the sample the table measured
+            if(virtualColumnPercentages[column] > 0 && available > -1) {
+                current = Math.max(current, virtualColumnPercentages[column] * percentageOf / 100);
+                modifableColumnSize[column] = false;
+            } else {
+                current = Math.max(current, virtualColumnWidths[column]);
+                modifableColumnSize[column] = true;
+            }
+            if(available > -1) {
+                current = Math.min(available, current);
+            }
+        }
         return current;
     }
 
@@ -372,13 +414,81 @@ public class TableLayout extends Layout {
             w += getColumnWidthPixels(iter, Integer.MAX_VALUE, -1);
         }
 
-        for(int iter = 0 ; iter < tablePositions.length ; iter++) {
-            h += getRowHeightPixels(iter, Integer.MAX_VALUE, -1);
+        if(virtualHeaderRows > -1) {
+            for(int iter = 0 ; iter < virtualHeaderRows ; iter++) {
+                h += getRowHeightPixels(iter, Integer.MAX_VALUE, -1);
+            }
+            h += virtualRowCount * virtualRowHeight;
+        } else {
+            for(int iter = 0 ; iter < tablePositions.length ; iter++) {
+                h += getRowHeightPixels(iter, Integer.MAX_VALUE, -1);
+            }
         }
 
         return new Dimension(w, h);
     }
 
+    /**
+     * Switches the layout to virtual mode where the rows following the header rows are
+     * slots bound to model rows, columns are sized based on the header and the given
+     * measurements rather than the slots whose content changes as the table scrolls
+     *
+     * @param headerRows the number of leading rows laid out normally
+     * @param columnWidths preferred width of every column including margins
+     * @param columnPercentages width percentage of every column or -1 for none
+     * @param rowHeight the height of a body row
+     * @param rowCount the number of body rows in the model
+     */
+    void setVirtual(int headerRows, int[] columnWidths, int[] columnPercentages, int rowHeight, int rowCount) {
+        virtualHeaderRows = headerRows;
+        virtualColumnWidths = columnWidths;
+        virtualColumnPercentages = columnPercentages;
+        virtualRowHeight = rowHeight;
+        virtualRowCount = rowCount;
+        virtualFirstRow = 0;
+    }
+
+    int getVirtualRowHeight() {
+        return virtualRowHeight;
+    }
+
+    int getVirtualRowCount() {
+        return virtualRowCount;
+    }
+
+    int getVirtualFirstRow() {
+        return virtualFirstRow;
+    }
+
+    /**
+     * Sets the first model row of the window, slots are bound to rows in a circular
+     * fashion so moving the window only changes the slots of the rows that left it
+     */
+    void setVirtualFirstRow(int virtualFirstRow) {
+        this.virtualFirstRow = virtualFirstRow;
+    }
+
+    /**
+     * Returns the model row bound to the given slot row of a virtual layout
+     */
+    int getVirtualModelRow(int row) {
+        int windowRows = tablePositions.length - virtualHeaderRows;
+        int slot = row - virtualHeaderRows;
+        return virtualFirstRow + (slot - virtualFirstRow % windowRows + windowRows) % windowRows;
+    }
+
+    /**
+     * Places a constraint at the given position without spanning, this is used for the
+     * slots of a virtual layout
+     */
+    static Constraint moveConstraint(Constraint c, int row, int column) {
+        c.row = row;
+        c.column = column;
+        c.spanHorizontal = 1;
+        c.spanVertical = 1;
+        return c;
+    }
+
     /**
      * Returns the row where the next operation of add will appear
      *
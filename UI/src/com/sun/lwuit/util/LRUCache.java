@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.util;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Least recently used cache bounded by the amount of memory its values occupy, the
+ * values are held with hard references since weak references on most platforms are
+ * discarded on the next collection. Callers supply keys implementing hashCode/equals
+ * and the size of every value, this class is thread safe.
+ */
+public class LRUCache {
+    private int budget;
+    private int used;
+    private int hits;
+    private int misses;
+    private final Hashtable entries = new Hashtable();
+
+    /**
+     * Head of the usage list is the most recently used entry
+     */
+    private Entry head;
+    private Entry tail;
+
+    /**
+     * Creates a cache with the given budget
+     *
+     * @param budget the maximum memory held by the cached values in bytes
+     */
+    public LRUCache(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the value cached for the key and marks it as the most recently used
+     *
+     * @param key the key of the value
+     * @return the cached value or null
+     */
+    public synchronized Object get(Object key) {
+        Entry e = (Entry)entries.get(key);
+        if(e != null) {
+            hits++;
+            unlink(e);
+            link(e);
+            return e.value;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Indicates whether a value of the given size would fit within the budget, larger
+     * values shouldn't be created for caching at all
+     *
+     * @param size the memory occupied by the value in bytes
+     * @return true if the value can be cached
+     */
+    public boolean fits(int size) {
+        return size <= budget;
+    }
+
+    /**
+     * Adds a value to the cache replacing the previous value of the key, least recently
+     * used values are evicted to stay within the budget
+     *
+     * @param key the key of the value
+     * @param value the value
+     * @param size the memory occupied by the value in bytes
+     */
+    public synchronized void put(Object key, Object value, int size) {
+        remove(key);
+        if(size > budget) {
+            return;
+        }
+        while(used + size > budget && tail != null) {
+            remove(tail);
+        }
+        Entry e = new Entry();
+        e.key = key;
+        e.value = value;
+        e.size = size;
+        entries.put(key, e);
+        link(e);
+        used += size;
+    }
+
+    /**
+     * Removes the value of the given key
+     *
+     * @param key the key of the value
+     */
+    public synchronized void remove(Object key) {
+        Entry e = (Entry)entries.get(key);
+        if(e != null) {
+            remove(e);
+        }
+    }
+
+    /**
+     * Returns the keys of the cached values from the most recently used
+     *
+     * @return a copy of the keys
+     */
+    public synchronized Vector keys() {
+        Vector v = new Vector(entries.size());
+        for(Entry e = head ; e != null ; e = e.next) {
+            v.addElement(e.key);
+        }
+        return v;
+    }
+
+    /**
+     * Removes all the cached values
+     */
+    public synchronized void clear() {
+        entries.clear();
+        head = null;
+        tail = null;
+        used = 0;
+    }
+
+    /**
+     * Sets the maximum memory held by the cached values, values are evicted if they
+     * exceed the new budget
+     *
+     * @param bytes the budget in bytes
+     */
+    public synchronized void setBudget(int bytes) {
+        budget = bytes;
+        while(used > budget && tail != null) {
+            remove(tail);
+        }
+    }
+
+    /**
+     * Returns the maximum memory held by the cached values
+     *
+     * @return the budget in bytes
+     */
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns the memory held by the cached values
+     *
+     * @return the memory in bytes
+     */
+    public int getUsed() {
+        return used;
+    }
+
+    /**
+     * Returns the number of lookups that found a value
+     *
+     * @return the number of hits
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a value
+     *
+     * @return the number of misses
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Zeroes the hit and miss counters
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private void remove(Entry e) {
+        entries.remove(e.key);
+        unlink(e);
+        used -= e.size;
+    }
+
+    private void link(Entry e) {
+        e.prev = null;
+        e.next = head;
+        if(head != null) {
+            head.prev = e;
+        }
+        head = e;
+        if(tail == null) {
+            tail = e;
+        }
+    }
+
+    private void unlink(Entry e) {
+        if(e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            head = e.next;
+        }
+        if(e.next != null) {
+            e.next.prev = e.prev;
+        } else {
+            tail = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+    }
+
+    static class Entry {
+        Object key;
+        Object value;
+        int size;
+        Entry prev;
+        Entry next;
+    }
+}
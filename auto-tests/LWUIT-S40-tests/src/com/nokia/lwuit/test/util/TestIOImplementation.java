@@ -0,0 +1,365 @@
+package com.nokia.lwuit.test.util;
+
+import com.sun.lwuit.io.impl.IOImplementation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * In memory IO implementation for tests of the IO library. Storage files are kept
+ * in a hashtable and HTTP responses are served from canned responses registered per
+ * URL, the connections that were made are recorded so tests can verify them.
+ * Creating an instance installs it as the IO implementation.
+ */
+public class TestIOImplementation extends IOImplementation {
+    private final Hashtable storage = new Hashtable();
+    private final Hashtable responses = new Hashtable();
+    private final Vector connections = new Vector();
+    private final Vector storageWrites = new Vector();
+    private int bytesWrittenToStorage;
+    private boolean blocked;
+
+    /**
+     * A canned response, headers are stored with lower case names
+     */
+    public static class Response {
+        int code = 200;
+        byte[] body = new byte[0];
+        Hashtable headers = new Hashtable();
+        boolean sendContentLength = true;
+
+        public Response header(String name, String value) {
+            Vector v = (Vector)headers.get(name.toLowerCase());
+            if(v == null) {
+                v = new Vector();
+                headers.put(name.toLowerCase(), v);
+            }
+            v.addElement(value);
+            return this;
+        }
+
+        public Response code(int code) {
+            this.code = code;
+            return this;
+        }
+
+        public Response body(byte[] body) {
+            this.body = body;
+            return this;
+        }
+
+        public Response withoutContentLength() {
+            sendContentLength = false;
+            return this;
+        }
+    }
+
+    /**
+     * A connection made by the code under test
+     */
+    public static class Connection {
+        private final String url;
+        private final Hashtable requestHeaders = new Hashtable();
+        private boolean post;
+        private Response response;
+        private ByteArrayOutputStream requestBody;
+
+        Connection(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getRequestHeader(String name) {
+            return (String)requestHeaders.get(name.toLowerCase());
+        }
+
+        public boolean isPost() {
+            return post;
+        }
+
+        public byte[] getRequestBody() {
+            if(requestBody == null) {
+                return null;
+            }
+            return requestBody.toByteArray();
+        }
+    }
+
+    public TestIOImplementation() {
+    }
+
+    /**
+     * Registers the response served for the URL, later registrations replace earlier ones
+     */
+    public Response respond(String url) {
+        Response r = new Response();
+        synchronized(responses) {
+            responses.put(url, r);
+        }
+        return r;
+    }
+
+    /**
+     * Returns the connections made so far in the order in which they were made
+     */
+    public Vector getConnections() {
+        synchronized(connections) {
+            Vector v = new Vector();
+            for(int iter = 0 ; iter < connections.size() ; iter++) {
+                v.addElement(connections.elementAt(iter));
+            }
+            return v;
+        }
+    }
+
+    public int getConnectionCount() {
+        synchronized(connections) {
+            return connections.size();
+        }
+    }
+
+    /**
+     * Waits until the given number of connections were made
+     *
+     * @return true if the connections were made before the timeout
+     */
+    public boolean waitForConnections(int count, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        synchronized(connections) {
+            while(connections.size() < count) {
+                long left = end - System.currentTimeMillis();
+                if(left <= 0) {
+                    return false;
+                }
+                connections.wait(left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * While blocked the connections don't return their response code so requests stay
+     * in progress
+     */
+    public void setBlocked(boolean blocked) {
+        synchronized(connections) {
+            this.blocked = blocked;
+            connections.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the names of the storage files in the order in which they were written,
+     * a name appears once for every write
+     */
+    public Vector getStorageWrites() {
+        synchronized(storage) {
+            Vector v = new Vector();
+            for(int iter = 0 ; iter < storageWrites.size() ; iter++) {
+                v.addElement(storageWrites.elementAt(iter));
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to storage files since the implementation
+     * was created
+     */
+    public int getBytesWrittenToStorage() {
+        synchronized(storage) {
+            return bytesWrittenToStorage;
+        }
+    }
+
+    public Object connect(String url, boolean read, boolean write) throws IOException {
+        Connection c = new Connection(url);
+        synchronized(responses) {
+            c.response = (Response)responses.get(url);
+        }
+        if(c.response == null) {
+            c.response = new Response().code(404);
+        }
+        synchronized(connections) {
+            connections.addElement(c);
+            connections.notifyAll();
+        }
+        return c;
+    }
+
+    public void setHeader(Object connection, String key, String val) {
+        ((Connection)connection).requestHeaders.put(key.toLowerCase(), val);
+    }
+
+    public int getContentLength(Object connection) {
+        Response r = ((Connection)connection).response;
+        if(r.sendContentLength) {
+            return r.body.length;
+        }
+        return -1;
+    }
+
+    public OutputStream openOutputStream(Object connection) throws IOException {
+        if(connection instanceof String) {
+            throw new IOException("No file system in tests");
+        }
+        Connection c = (Connection)connection;
+        c.requestBody = new ByteArrayOutputStream();
+        return c.requestBody;
+    }
+
+    public OutputStream openOutputStream(Object connection, int offset) throws IOException {
+        return openOutputStream(connection);
+    }
+
+    public InputStream openInputStream(Object connection) throws IOException {
+        if(connection instanceof String) {
+            throw new IOException("No file system in tests");
+        }
+        return new ByteArrayInputStream(((Connection)connection).response.body);
+    }
+
+    public void setPostRequest(Object connection, boolean p) {
+        ((Connection)connection).post = p;
+    }
+
+    public int getResponseCode(Object connection) throws IOException {
+        synchronized(connections) {
+            while(blocked) {
+                try {
+                    connections.wait();
+                } catch(InterruptedException ex) {
+                    throw new IOException("Interrupted");
+                }
+            }
+        }
+        return ((Connection)connection).response.code;
+    }
+
+    public String getResponseMessage(Object connection) throws IOException {
+        return "";
+    }
+
+    public String getHeaderField(String name, Object connection) throws IOException {
+        String[] values = getHeaderFields(name, connection);
+        if(values == null) {
+            return null;
+        }
+        return values[0];
+    }
+
+    public String[] getHeaderFields(String name, Object connection) throws IOException {
+        Vector v = (Vector)((Connection)connection).response.headers.get(name.toLowerCase());
+        if(v == null) {
+            return null;
+        }
+        String[] arr = new String[v.size()];
+        v.copyInto(arr);
+        return arr;
+    }
+
+    public void deleteStorageFile(String name) {
+        synchronized(storage) {
+            storage.remove(name);
+        }
+    }
+
+    public OutputStream createStorageOutputStream(final String name) throws IOException {
+        return new ByteArrayOutputStream() {
+            public void close() throws IOException {
+                synchronized(storage) {
+                    byte[] data = toByteArray();
+                    storage.put(name, data);
+                    storageWrites.addElement(name);
+                    bytesWrittenToStorage += data.length;
+                }
+            }
+        };
+    }
+
+    public InputStream createStorageInputStream(String name) throws IOException {
+        byte[] data;
+        synchronized(storage) {
+            data = (byte[])storage.get(name);
+        }
+        if(data == null) {
+            throw new IOException("No storage file " + name);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    public boolean storageFileExists(String name) {
+        synchronized(storage) {
+            return storage.containsKey(name);
+        }
+    }
+
+    public String[] listStorageEntries() {
+        synchronized(storage) {
+            String[] arr = new String[storage.size()];
+            int offset = 0;
+            Enumeration e = storage.keys();
+            while(e.hasMoreElements()) {
+                arr[offset] = (String)e.nextElement();
+                offset++;
+            }
+            return arr;
+        }
+    }
+
+    public String[] listFilesystemRoots() {
+        return new String[0];
+    }
+
+    public String[] listFiles(String directory) throws IOException {
+        return new String[0];
+    }
+
+    public long getRootSizeBytes(String root) {
+        return 0;
+    }
+
+    public long getRootAvailableSpace(String root) {
+        return 0;
+    }
+
+    public void mkdir(String directory) {
+    }
+
+    public void deleteFile(String file) {
+    }
+
+    public boolean isHidden(String file) {
+        return false;
+    }
+
+    public void setHidden(String file, boolean h) {
+    }
+
+    public long getFileLength(String file) {
+        return -1;
+    }
+
+    public boolean isDirectory(String file) {
+        return false;
+    }
+
+    public boolean exists(String file) {
+        return false;
+    }
+
+    public void rename(String file, String newName) {
+    }
+
+    public char getFileSystemSeparator() {
+        return '/';
+    }
+}
@@ -0,0 +1,156 @@
+package com.nokia.lwuit.test;
+
+import com.sun.lwuit.io.util.GZIPInputStream;
+import com.sun.lwuit.io.util.InflaterInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Round trips data compressed by the JDK through the pure Java inflater
+ */
+public class InflaterInputStreamTest {
+
+    public InflaterInputStreamTest() {
+    }
+
+    private static byte[] text(int size) {
+        byte[] words = "the quick brown fox jumps over the lazy dog ".getBytes();
+        byte[] b = new byte[size];
+        for(int iter = 0 ; iter < size ; iter++) {
+            b[iter] = words[iter % words.length];
+        }
+        return b;
+    }
+
+    private static byte[] random(int size) {
+        byte[] b = new byte[size];
+        new Random(size).nextBytes(b);
+        return b;
+    }
+
+    private static byte[] deflate(byte[] data, int level, boolean zlibHeader) {
+        Deflater d = new Deflater(level, !zlibHeader);
+        d.setInput(data);
+        d.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while(!d.finished()) {
+            out.write(buffer, 0, d.deflate(buffer));
+        }
+        d.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream g = new GZIPOutputStream(out);
+        g.write(data);
+        g.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int size = in.read(buffer, 0, buffer.length);
+        while(size > -1) {
+            out.write(buffer, 0, size);
+            size = in.read(buffer, 0, buffer.length);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b = in.read();
+        while(b > -1) {
+            out.write(b);
+            b = in.read();
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertRoundTrip(byte[] data, int level, boolean zlibHeader) throws IOException {
+        byte[] compressed = deflate(data, level, zlibHeader);
+        assertArrayEquals(data, readFully(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+        assertArrayEquals(data, readBytes(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testStoredBlocks() throws IOException {
+        assertRoundTrip(text(100000), Deflater.NO_COMPRESSION, false);
+    }
+
+    @Test
+    public void testFixedHuffmanBlocks() throws IOException {
+        // short inputs are encoded with the fixed codes
+        assertRoundTrip("hello hello hello".getBytes(), Deflater.BEST_COMPRESSION, false);
+    }
+
+    @Test
+    public void testDynamicHuffmanBlocks() throws IOException {
+        assertRoundTrip(text(200000), Deflater.BEST_COMPRESSION, false);
+        assertRoundTrip(text(200000), Deflater.BEST_SPEED, false);
+    }
+
+    @Test
+    public void testIncompressibleData() throws IOException {
+        assertRoundTrip(random(70000), Deflater.DEFAULT_COMPRESSION, false);
+    }
+
+    @Test
+    public void testBackReferencesAcrossTheWindow() throws IOException {
+        // a random block repeated after 32000 bytes forces distances close to the window size
+        byte[] block = random(32000);
+        byte[] data = new byte[block.length * 3];
+        for(int iter = 0 ; iter < 3 ; iter++) {
+            System.arraycopy(block, 0, data, iter * block.length, block.length);
+        }
+        assertRoundTrip(data, Deflater.BEST_COMPRESSION, false);
+    }
+
+    @Test
+    public void testZlibHeaderIsDetected() throws IOException {
+        assertRoundTrip(text(5000), Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    @Test
+    public void testEmptyInput() throws IOException {
+        assertRoundTrip(new byte[0], Deflater.DEFAULT_COMPRESSION, false);
+        assertRoundTrip(new byte[0], Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        byte[] data = text(50000);
+        assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(gzip(data)))));
+    }
+
+    @Test
+    public void testGzipWithFileName() throws IOException {
+        byte[] data = text(1000);
+        byte[] compressed = gzip(data);
+
+        // set FNAME and insert a name after the 10 byte header
+        byte[] name = "data.txt\0".getBytes();
+        byte[] named = new byte[compressed.length + name.length];
+        System.arraycopy(compressed, 0, named, 0, 10);
+        System.arraycopy(name, 0, named, 10, name.length);
+        System.arraycopy(compressed, 10, named, 10 + name.length, compressed.length - 10);
+        named[3] |= 8;
+        assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(named))));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotGzip() throws IOException {
+        new GZIPInputStream(new ByteArrayInputStream(text(100)));
+    }
+}
@@ -0,0 +1,131 @@
+package com.nokia.lwuit.test;
+
+import com.sun.lwuit.io.util.JSONParser;
+import com.sun.lwuit.io.util.JSONPathCallback;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Hashtable;
+import java.util.Vector;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Path filtered parsing of the JSON parser
+ */
+public class JSONParserPathTest {
+    private static final String LISTING = "{\"kind\": \"Listing\", \"data\": {\"children\": ["
+            + "{\"data\": {\"title\": \"first\", \"score\": 10, \"tags\": [\"a\", \"b\"]}},"
+            + "{\"data\": {\"title\": \"second\", \"score\": 20, \"nested\": {\"title\": \"skipped\"}}},"
+            + "{\"data\": {\"title\": \"third\", \"score\": 30}}"
+            + "], \"after\": \"t3_x\"}}";
+
+    public JSONParserPathTest() {
+    }
+
+    /**
+     * Collects the path values in document order
+     */
+    static class Collector implements JSONPathCallback {
+        Vector paths = new Vector();
+        Vector values = new Vector();
+        int limit = Integer.MAX_VALUE;
+
+        public void pathValue(String path, Object value) {
+            paths.addElement(path);
+            values.addElement(value);
+        }
+
+        public boolean isAlive() {
+            return values.size() < limit;
+        }
+    }
+
+    private static Collector collect(String json, String[] paths) throws IOException {
+        Collector c = new Collector();
+        JSONParser.parse(new StringReader(json), paths, c);
+        return c;
+    }
+
+    @Test
+    public void testWildcardArrayPath() throws IOException {
+        Collector c = collect(LISTING, new String[] {"data.children[*].data.title"});
+        assertEquals(3, c.values.size());
+        assertEquals("first", c.values.elementAt(0));
+        assertEquals("second", c.values.elementAt(1));
+        assertEquals("third", c.values.elementAt(2));
+        assertEquals("data.children[*].data.title", c.paths.elementAt(0));
+    }
+
+    @Test
+    public void testIndexedArrayPath() throws IOException {
+        Collector c = collect(LISTING, new String[] {"data.children[1].data.score"});
+        assertEquals(1, c.values.size());
+        assertEquals(new Double(20), c.values.elementAt(0));
+    }
+
+    @Test
+    public void testSeveralPathsInDocumentOrder() throws IOException {
+        Collector c = collect(LISTING, new String[] {"data.after", "kind", "data.children[2].data.title"});
+        assertEquals(3, c.values.size());
+        assertEquals("Listing", c.values.elementAt(0));
+        assertEquals("third", c.values.elementAt(1));
+        assertEquals("t3_x", c.values.elementAt(2));
+        assertEquals("data.after", c.paths.elementAt(2));
+    }
+
+    @Test
+    public void testPathToAContainerMaterializesIt() throws IOException {
+        Collector c = collect(LISTING, new String[] {"data.children[0].data.tags"});
+        Vector tags = (Vector)c.values.elementAt(0);
+        assertEquals(2, tags.size());
+        assertEquals("a", tags.elementAt(0));
+    }
+
+    @Test
+    public void testWildcardFieldName() throws IOException {
+        Collector c = collect("{\"a\": {\"id\": 1}, \"b\": {\"id\": 2}, \"c\": 3}", new String[] {"*.id"});
+        assertEquals(2, c.values.size());
+    }
+
+    @Test
+    public void testRootArray() throws IOException {
+        Collector c = collect("[{\"id\": \"x\"}, {\"id\": \"y\"}]", new String[] {"root[*].id"});
+        assertEquals(2, c.values.size());
+        assertEquals("y", c.values.elementAt(1));
+    }
+
+    @Test
+    public void testScalarWhereAnObjectIsExpected() throws IOException {
+        Collector c = collect("{\"data\": 5, \"other\": {\"data\": {\"x\": 1}}}", new String[] {"data.x"});
+        assertEquals(0, c.values.size());
+    }
+
+    @Test
+    public void testCallbackStopsTheParsing() throws IOException {
+        Collector c = new Collector();
+        c.limit = 1;
+        JSONParser.parse(new StringReader(LISTING), new String[] {"data.children[*].data.title"}, c);
+        assertEquals(1, c.values.size());
+        assertEquals("first", c.values.elementAt(0));
+    }
+
+    @Test
+    public void testRegisteredPathsFilterTheTree() throws IOException {
+        JSONParser p = new JSONParser();
+        p.addPath("data.children[*].data.title");
+        Hashtable h = p.parse(new StringReader(LISTING));
+        assertEquals(1, h.size());
+        Hashtable data = (Hashtable)h.get("data");
+        assertEquals(1, data.size());
+        Vector children = (Vector)data.get("children");
+        assertEquals(3, children.size());
+        Hashtable first = (Hashtable)((Hashtable)children.elementAt(0)).get("data");
+        assertEquals(1, first.size());
+        assertEquals("first", first.get("title"));
+
+        // without paths the full tree is returned
+        p.clearPaths();
+        h = p.parse(new StringReader(LISTING));
+        assertEquals("Listing", h.get("kind"));
+    }
+}
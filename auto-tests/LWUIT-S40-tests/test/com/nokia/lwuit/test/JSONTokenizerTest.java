@@ -0,0 +1,142 @@
+package com.nokia.lwuit.test;
+
+import com.sun.lwuit.io.util.JSONTokenizer;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Number and string decoding of the pull based JSON tokenizer
+ */
+public class JSONTokenizerTest {
+
+    public JSONTokenizerTest() {
+    }
+
+    private static JSONTokenizer tokenizer(String json) {
+        // a tiny buffer forces tokens to span buffer refills
+        return new JSONTokenizer(new StringReader(json), 4);
+    }
+
+    @Test
+    public void testReadLongOfIntegers() throws IOException {
+        JSONTokenizer t = tokenizer("[0, 12, -7, 9007199254740993]");
+        assertEquals(JSONTokenizer.TOKEN_START_ARRAY, t.nextToken());
+        assertEquals(JSONTokenizer.TOKEN_NUMBER, t.nextToken());
+        assertEquals(0, t.readLong());
+        assertEquals(JSONTokenizer.TOKEN_NUMBER, t.nextToken());
+        assertEquals(12, t.readLong());
+        assertEquals(JSONTokenizer.TOKEN_NUMBER, t.nextToken());
+        assertEquals(-7, t.readLong());
+        assertEquals(JSONTokenizer.TOKEN_NUMBER, t.nextToken());
+        assertEquals(9007199254740993L, t.readLong());
+        assertEquals(JSONTokenizer.TOKEN_END_ARRAY, t.nextToken());
+        assertEquals(JSONTokenizer.TOKEN_END_DOCUMENT, t.nextToken());
+    }
+
+    @Test
+    public void testReadLongTruncatesFractions() throws IOException {
+        JSONTokenizer t = tokenizer("[1.9, -7.9, 0.5]");
+        t.nextToken();
+        t.nextToken();
+        assertEquals(1, t.readLong());
+        t.nextToken();
+        assertEquals(-7, t.readLong());
+        t.nextToken();
+        assertEquals(0, t.readInt());
+    }
+
+    @Test
+    public void testReadLongHonorsExponents() throws IOException {
+        JSONTokenizer t = tokenizer("[1.5e3, 2.0E2, 3e2, -2.5E+1, 25e-1]");
+        t.nextToken();
+        t.nextToken();
+        assertEquals(1500, t.readLong());
+        t.nextToken();
+        assertEquals(200, t.readLong());
+        t.nextToken();
+        assertEquals(300, t.readLong());
+        t.nextToken();
+        assertEquals(-25, t.readLong());
+        t.nextToken();
+        assertEquals(2, t.readLong());
+    }
+
+    @Test
+    public void testReadDouble() throws IOException {
+        JSONTokenizer t = tokenizer("[42, -0.25, 1.5e3]");
+        t.nextToken();
+        t.nextToken();
+        assertEquals(42.0, t.readDouble(), 0);
+        t.nextToken();
+        assertEquals(-0.25, t.readDouble(), 0);
+        t.nextToken();
+        assertEquals(1500.0, t.readDouble(), 0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testReadLongOfStringFails() throws IOException {
+        JSONTokenizer t = tokenizer("[\"1x\"]");
+        t.nextToken();
+        t.nextToken();
+        t.readLong();
+    }
+
+    @Test
+    public void testStringEscapes() throws IOException {
+        JSONTokenizer t = tokenizer("{\"name\":\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\\u20AC\"}");
+        assertEquals(JSONTokenizer.TOKEN_START_OBJECT, t.nextToken());
+        assertEquals(JSONTokenizer.TOKEN_NAME, t.nextToken());
+        assertTrue(t.textEquals("name"));
+        assertEquals(JSONTokenizer.TOKEN_STRING, t.nextToken());
+        assertEquals("a\"b\\c/d\n\t\u00e9\u20ac", t.readString());
+        assertEquals(JSONTokenizer.TOKEN_END_OBJECT, t.nextToken());
+    }
+
+    @Test
+    public void testLongStringGrowsTextBuffer() throws IOException {
+        StringBuffer value = new StringBuffer();
+        for(int iter = 0 ; iter < 500 ; iter++) {
+            value.append((char)('a' + iter % 26));
+        }
+        JSONTokenizer t = tokenizer("[\"" + value + "\"]");
+        t.nextToken();
+        assertEquals(JSONTokenizer.TOKEN_STRING, t.nextToken());
+        assertEquals(value.length(), t.getTextLength());
+        assertEquals(value.toString(), t.readString());
+    }
+
+    @Test
+    public void testLiterals() throws IOException {
+        JSONTokenizer t = tokenizer("[true, false, null]");
+        t.nextToken();
+        assertEquals(JSONTokenizer.TOKEN_TRUE, t.nextToken());
+        assertTrue(t.readBoolean());
+        assertEquals(JSONTokenizer.TOKEN_FALSE, t.nextToken());
+        assertFalse(t.readBoolean());
+        assertEquals(JSONTokenizer.TOKEN_NULL, t.nextToken());
+        assertNull(t.readString());
+    }
+
+    @Test
+    public void testSkipValue() throws IOException {
+        JSONTokenizer t = tokenizer("{\"skip\":{\"a\":[1,\"]}\",{}]},\"count\":3}");
+        t.nextToken();
+        assertEquals(JSONTokenizer.TOKEN_NAME, t.nextToken());
+        assertTrue(t.textEquals("skip"));
+        t.skipValue();
+        assertEquals(JSONTokenizer.TOKEN_NAME, t.nextToken());
+        assertTrue(t.textEquals("count"));
+        t.nextToken();
+        assertEquals(3, t.readInt());
+        assertEquals(JSONTokenizer.TOKEN_END_OBJECT, t.nextToken());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnterminatedString() throws IOException {
+        JSONTokenizer t = tokenizer("[\"abc");
+        t.nextToken();
+        t.nextToken();
+    }
+}
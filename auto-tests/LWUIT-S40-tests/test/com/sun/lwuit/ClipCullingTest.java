@@ -0,0 +1,133 @@
+package com.sun.lwuit;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.layouts.BoxLayout;
+import java.util.Vector;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Painting of the children and the background tiles that intersect the clip only
+ */
+public class ClipCullingTest extends LWUITTest {
+
+    public ClipCullingTest() {
+    }
+
+    /**
+     * Records the positions at which it is drawn
+     */
+    static class CountingImage extends Image {
+        Vector positions = new Vector();
+
+        CountingImage(Image source) {
+            super(source.getImage());
+        }
+
+        protected void drawImage(Graphics g, Object nativeGraphics, int x, int y) {
+            positions.addElement(new int[] {x, y});
+            super.drawImage(g, nativeGraphics, x, y);
+        }
+    }
+
+    static class CountingLabel extends Label {
+        int paints;
+
+        CountingLabel(String text) {
+            super(text);
+        }
+
+        public void paint(Graphics g) {
+            paints++;
+            super.paint(g);
+        }
+    }
+
+    private static Graphics createGraphics() {
+        return Image.createImage(100, 100).getGraphics();
+    }
+
+    private static CountingImage createTile() {
+        return new CountingImage(Image.createImage(10, 10));
+    }
+
+    @Test
+    public void testOnlyTilesInTheClipAreDrawn() {
+        Graphics g = createGraphics();
+        g.setClip(25, 25, 10, 10);
+        CountingImage tile = createTile();
+        g.tileImage(tile, 0, 0, 100, 100);
+
+        // the clip touches the tiles at 20 and 30 on both axes
+        assertEquals(4, tile.positions.size());
+        int[] first = (int[])tile.positions.elementAt(0);
+        assertEquals(20, first[0]);
+        assertEquals(20, first[1]);
+    }
+
+    @Test
+    public void testTilesCoverTheAreaOnly() {
+        Graphics g = createGraphics();
+        g.setClip(0, 0, 100, 100);
+        CountingImage tile = createTile();
+        g.tileImage(tile, 0, 0, 25, 25);
+        assertEquals(9, tile.positions.size());
+    }
+
+    @Test
+    public void testTilesStartAtTheGivenPosition() {
+        Graphics g = createGraphics();
+        g.setClip(0, 0, 100, 10);
+        CountingImage tile = createTile();
+        g.tileImage(tile, -5, 0, 200, 10);
+        assertEquals(11, tile.positions.size());
+        assertEquals(-5, ((int[])tile.positions.elementAt(0))[0]);
+        assertEquals(95, ((int[])tile.positions.elementAt(10))[0]);
+    }
+
+    @Test
+    public void testNothingIsTiledOutsideOfTheClip() {
+        Graphics g = createGraphics();
+        g.setClip(50, 50, 10, 10);
+        CountingImage tile = createTile();
+        g.tileImage(tile, 0, 0, 40, 40);
+        assertEquals(0, tile.positions.size());
+    }
+
+    @Test
+    public void testChildrenOutsideOfTheClipAreNotPainted() {
+        Container c = new Container(new BoxLayout(BoxLayout.Y_AXIS));
+        c.getStyle().setPadding(0, 0, 0, 0);
+        c.getStyle().setMargin(0, 0, 0, 0);
+        CountingLabel[] labels = new CountingLabel[10];
+        for(int iter = 0 ; iter < labels.length ; iter++) {
+            labels[iter] = new CountingLabel("" + iter);
+            labels[iter].setPreferredH(20);
+            labels[iter].getStyle().setMargin(0, 0, 0, 0);
+            c.addComponent(labels[iter]);
+        }
+        c.setX(0);
+        c.setY(50);
+        c.setWidth(100);
+        c.setHeight(200);
+        c.layoutContainer();
+
+        // in the coordinates of the container the clip spans 20 to 40 so only the
+        // second child is painted, the neighbours only touch the clip
+        Graphics g = Image.createImage(100, 300).getGraphics();
+        g.setClip(0, 70, 100, 20);
+        c.paint(g);
+        for(int iter = 0 ; iter < labels.length ; iter++) {
+            if(iter == 1) {
+                assertEquals(1, labels[iter].paints);
+            } else {
+                assertEquals("label " + iter, 0, labels[iter].paints);
+            }
+        }
+
+        g.setClip(0, 75, 100, 20);
+        c.paint(g);
+        assertEquals(2, labels[1].paints);
+        assertEquals(1, labels[2].paints);
+    }
+}
@@ -0,0 +1,148 @@
+package com.sun.lwuit;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Glyph lookup, measuring and clipped drawing of bitmap fonts
+ */
+public class CustomFontTest extends LWUITTest {
+    private static final int HEIGHT = 5;
+    private static final int INK = 0x0000ff;
+
+    /**
+     * The second occurrences of a and the cyrillic Zhe point at narrower glyphs
+     * which must be ignored
+     */
+    private static final String CHARSET = "ab\u0416a\u0416";
+
+    private Font font;
+
+    public CustomFontTest() {
+    }
+
+    /**
+     * Creates a font whose a and Zhe glyphs are solid and whose b glyph only has
+     * ink in its left half, every glyph is 4 pixels wide
+     */
+    @Before
+    public void createFont() {
+        int[] bitmap = new int[12 * HEIGHT];
+        for(int y = 0 ; y < HEIGHT ; y++) {
+            for(int x = 0 ; x < 12 ; x++) {
+                if(x < 6 || x >= 8) {
+                    bitmap[y * 12 + x] = 0xffff0000;
+                }
+            }
+        }
+        font = Font.createBitmapFont(Image.createImage(bitmap, 12, HEIGHT),
+                new int[] {0, 4, 8, 0, 8}, new int[] {4, 4, 4, 2, 2}, CHARSET);
+    }
+
+    private Graphics createGraphics(Image img) {
+        Graphics g = img.getGraphics();
+        g.setFont(font);
+        g.setColor(INK);
+        return g;
+    }
+
+    /**
+     * Returns a string with one character per column of the first row, x for ink
+     */
+    private static String row(Image img) {
+        int[] rgb = img.getRGB();
+        StringBuffer b = new StringBuffer();
+        for(int x = 0 ; x < img.getWidth() ; x++) {
+            if((rgb[x] & 0xffffff) == INK) {
+                b.append('x');
+            } else {
+                b.append('.');
+            }
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testCharWidth() {
+        assertEquals(4, font.charWidth('a'));
+        assertEquals(4, font.charWidth('b'));
+        assertEquals(4, font.charWidth('\u0416'));
+        assertEquals(0, font.charWidth('z'));
+        assertEquals(0, font.charWidth('\u0500'));
+        assertEquals(0, font.charWidth('\u0100'));
+        assertEquals(HEIGHT, font.getHeight());
+    }
+
+    @Test
+    public void testCharsetWithManyExtendedCharacters() {
+        StringBuffer charset = new StringBuffer();
+        int[] offsets = new int[100];
+        int[] widths = new int[100];
+        for(int iter = 0 ; iter < 100 ; iter++) {
+            // out of order so the index has to sort them
+            charset.append((char)(0x400 + (iter * 37) % 100));
+            widths[iter] = 1 + (iter * 37) % 100;
+        }
+        Font f = Font.createBitmapFont(Image.createImage(1, 1), offsets, widths, charset.toString());
+        for(int iter = 0 ; iter < 100 ; iter++) {
+            assertEquals(1 + iter, f.charWidth((char)(0x400 + iter)));
+        }
+        assertEquals(0, f.charWidth((char)0x3ff));
+        assertEquals(0, f.charWidth((char)(0x400 + 100)));
+    }
+
+    @Test
+    public void testStringWidthSkipsMissingCharacters() {
+        assertEquals(12, font.stringWidth("abz\u0416"));
+        assertEquals(8, font.substringWidth("zab\u0416", 1, 2));
+        assertEquals(8, font.charsWidth("zab\u0416z".toCharArray(), 2, 3));
+        assertEquals(0, font.stringWidth(""));
+    }
+
+    @Test
+    public void testDrawString() {
+        Image img = Image.createImage(12, HEIGHT);
+        createGraphics(img).drawString("ba", 1, 0);
+        assertEquals(".xx..xxxx...", row(img));
+    }
+
+    @Test
+    public void testMissingCharactersDoNotAdvance() {
+        Image img = Image.createImage(12, HEIGHT);
+        createGraphics(img).drawString("bza", 1, 0);
+        assertEquals(".xx..xxxx...", row(img));
+    }
+
+    @Test
+    public void testDrawCharsRange() {
+        Image img = Image.createImage(12, HEIGHT);
+        createGraphics(img).drawChars("zb\u0416b".toCharArray(), 1, 2, 0, 0);
+        assertEquals("xx..xxxx....", row(img));
+    }
+
+    @Test
+    public void testGlyphsAreClippedAndTheClipIsRestored() {
+        Image img = Image.createImage(12, HEIGHT);
+        Graphics g = createGraphics(img);
+        g.setClip(3, 0, 4, HEIGHT);
+        g.drawString("a\u0416a", 0, 0);
+        assertEquals("...xxxx.....", row(img));
+        assertEquals(3, g.getClipX());
+        assertEquals(0, g.getClipY());
+        assertEquals(4, g.getClipWidth());
+        assertEquals(HEIGHT, g.getClipHeight());
+    }
+
+    @Test
+    public void testNothingIsDrawnOutsideOfTheClip() {
+        Image img = Image.createImage(12, HEIGHT * 2);
+        Graphics g = createGraphics(img);
+        g.setClip(0, HEIGHT, 12, HEIGHT);
+        g.drawString("aaa", 0, 0);
+        assertEquals("............", row(img));
+        assertEquals(HEIGHT, g.getClipY());
+        assertEquals(HEIGHT, g.getClipHeight());
+    }
+}
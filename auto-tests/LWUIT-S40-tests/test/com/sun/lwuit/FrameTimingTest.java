@@ -0,0 +1,127 @@
+package com.sun.lwuit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Ring buffer bookkeeping of the frame timing statistics, this is in the package of
+ * the class since frames are recorded through package methods
+ */
+public class FrameTimingTest {
+
+    public FrameTimingTest() {
+    }
+
+    /**
+     * Records a frame that started the given number of milliseconds ago, the paint
+     * queue size identifies the frame
+     */
+    private static void frame(FrameTiming t, int id, int age, int frameBudget) {
+        t.beginFrame(System.currentTimeMillis() - age, id * 10, id, id * 100);
+        t.endPhase(FrameTiming.INPUT);
+        t.endFrame(frameBudget);
+    }
+
+    @Test
+    public void testEmptyBuffer() {
+        FrameTiming t = new FrameTiming(4);
+        assertEquals(4, t.getCapacity());
+        assertEquals(0, t.getFrameCount());
+        assertEquals(0, t.getTotalFrames());
+        assertEquals(0, t.getAverage(FrameTiming.TOTAL));
+        assertEquals(0, t.getMax(FrameTiming.TOTAL));
+    }
+
+    @Test
+    public void testMostRecentFrameIsFirst() {
+        FrameTiming t = new FrameTiming(4);
+        frame(t, 1, 0, 0);
+        frame(t, 2, 0, 0);
+        frame(t, 3, 0, 0);
+        assertEquals(3, t.getFrameCount());
+        assertEquals(3, t.getValue(0, FrameTiming.PAINT_QUEUE));
+        assertEquals(2, t.getValue(1, FrameTiming.PAINT_QUEUE));
+        assertEquals(1, t.getValue(2, FrameTiming.PAINT_QUEUE));
+        assertEquals(30, t.getValue(0, FrameTiming.INPUT_LATENCY));
+        assertEquals(300, t.getValue(0, FrameTiming.SERIAL_BACKLOG));
+    }
+
+    @Test
+    public void testOldestFramesAreOverwritten() {
+        FrameTiming t = new FrameTiming(4);
+        for(int iter = 1 ; iter <= 10 ; iter++) {
+            frame(t, iter, 0, 0);
+        }
+        assertEquals(4, t.getFrameCount());
+        assertEquals(10, t.getTotalFrames());
+        for(int iter = 0 ; iter < 4 ; iter++) {
+            assertEquals(10 - iter, t.getValue(iter, FrameTiming.PAINT_QUEUE));
+        }
+
+        // 7, 8, 9 and 10 are left in the buffer
+        assertEquals(8, t.getAverage(FrameTiming.PAINT_QUEUE));
+        assertEquals(10, t.getMax(FrameTiming.PAINT_QUEUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrameBeyondTheRecordedFrames() {
+        FrameTiming t = new FrameTiming(4);
+        frame(t, 1, 0, 0);
+        t.getValue(1, FrameTiming.TOTAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeFrame() {
+        FrameTiming t = new FrameTiming(4);
+        frame(t, 1, 0, 0);
+        t.getValue(-1, FrameTiming.TOTAL);
+    }
+
+    @Test
+    public void testBeginFrameClearsTheReusedSlot() {
+        FrameTiming t = new FrameTiming(1);
+        t.beginFrame(System.currentTimeMillis() - 50, 0, 0, 0);
+        t.endPhase(FrameTiming.INPUT);
+        t.endFrame(0);
+        assertTrue(t.getValue(0, FrameTiming.INPUT) >= 50);
+
+        // the phase isn't recorded in the next frame so its slot must read 0
+        t.beginFrame(System.currentTimeMillis(), 0, 0, 0);
+        t.endPhase(FrameTiming.PAINT);
+        t.endFrame(0);
+        assertEquals(0, t.getValue(0, FrameTiming.INPUT));
+    }
+
+    @Test
+    public void testLateAndDroppedFrames() {
+        FrameTiming t = new FrameTiming(4);
+        frame(t, 1, 0, 1000);
+        assertEquals(0, t.getLateFrames());
+        assertEquals(0, t.getDroppedFrames());
+
+        frame(t, 2, 100, 40);
+        assertTrue(t.getValue(0, FrameTiming.TOTAL) >= 100);
+        assertEquals(1, t.getLateFrames());
+        assertTrue(t.getDroppedFrames() >= 2);
+
+        // without a budget nothing is late
+        frame(t, 3, 100, 0);
+        assertEquals(1, t.getLateFrames());
+    }
+
+    @Test
+    public void testReset() {
+        FrameTiming t = new FrameTiming(4);
+        frame(t, 1, 100, 40);
+        frame(t, 2, 0, 0);
+        t.reset();
+        assertEquals(0, t.getFrameCount());
+        assertEquals(0, t.getTotalFrames());
+        assertEquals(0, t.getLateFrames());
+        assertEquals(0, t.getDroppedFrames());
+        assertEquals(0, t.getCollections());
+        frame(t, 3, 0, 0);
+        assertEquals(1, t.getFrameCount());
+        assertEquals(3, t.getValue(0, FrameTiming.PAINT_QUEUE));
+    }
+}
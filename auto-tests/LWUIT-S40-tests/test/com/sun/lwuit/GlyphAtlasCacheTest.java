@@ -0,0 +1,106 @@
+package com.sun.lwuit;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The bitmap font atlases tinted to the colors in use are shared through a memory
+ * bounded cache
+ */
+public class GlyphAtlasCacheTest extends LWUITTest {
+    private static final int ATLAS_SIZE = 4 * 4 * 4;
+
+    private int budget;
+    private Font font;
+
+    public GlyphAtlasCacheTest() {
+    }
+
+    @Before
+    public void createFont() {
+        budget = Font.getBitmapFontColorCacheSize();
+        Font.clearBitmapCache();
+        int[] bitmap = new int[4 * 4];
+        for(int iter = 0 ; iter < bitmap.length ; iter++) {
+            bitmap[iter] = 0xffff0000;
+        }
+        font = Font.createBitmapFont(Image.createImage(bitmap, 4, 4), new int[] {0}, new int[] {4}, "a");
+        Font.resetBitmapFontColorCacheStatistics();
+    }
+
+    @After
+    public void restoreBudget() {
+        Font.setBitmapFontColorCacheSize(budget);
+        Font.clearBitmapCache();
+    }
+
+    /**
+     * Draws a character with the given color and returns the color of its first pixel
+     */
+    private int draw(int color) {
+        Image img = Image.createImage(4, 4);
+        Graphics g = img.getGraphics();
+        g.setFont(font);
+        g.setColor(color);
+        g.drawString("a", 0, 0);
+        return img.getRGB()[0] & 0xffffff;
+    }
+
+    @Test
+    public void testColorsInUseAreCached() {
+        assertEquals(0xff0000, draw(0xff0000));
+        assertEquals(0x0000ff, draw(0x0000ff));
+        assertEquals(0xff0000, draw(0xff0000));
+        int[] stats = Font.getBitmapFontColorCacheStatistics();
+        assertEquals(1, stats[0]);
+        assertEquals(2, stats[1]);
+
+        // the atlas created with the font and the two tinted atlases
+        assertEquals(3 * ATLAS_SIZE, stats[2]);
+    }
+
+    @Test
+    public void testBudgetEvictsTheLeastRecentlyUsedColor() {
+        Font.setBitmapFontColorCacheSize(2 * ATLAS_SIZE);
+        assertEquals(2 * ATLAS_SIZE, Font.getBitmapFontColorCacheSize());
+        draw(0xff0000);
+        draw(0x00ff00);
+        draw(0x0000ff);
+        assertEquals(2 * ATLAS_SIZE, Font.getBitmapFontColorCacheStatistics()[2]);
+
+        // red was evicted by blue and is tinted again
+        Font.resetBitmapFontColorCacheStatistics();
+        assertEquals(0xff0000, draw(0xff0000));
+        assertEquals(0, Font.getBitmapFontColorCacheStatistics()[0]);
+        assertEquals(0x0000ff, draw(0x0000ff));
+        assertEquals(1, Font.getBitmapFontColorCacheStatistics()[0]);
+    }
+
+    @Test
+    public void testAtlasesLargerThanTheBudgetAreStillDrawn() {
+        Font.setBitmapFontColorCacheSize(ATLAS_SIZE - 1);
+        assertEquals(0xff0000, draw(0xff0000));
+        assertEquals(0x00ff00, draw(0x00ff00));
+        assertEquals(0, Font.getBitmapFontColorCacheStatistics()[2]);
+    }
+
+    @Test
+    public void testContrastChangeDropsTheAtlasesOfTheFont() {
+        draw(0xff0000);
+        assertTrue(Font.getBitmapFontColorCacheStatistics()[2] > 0);
+        font.addContrast((byte)10);
+        assertEquals(0, Font.getBitmapFontColorCacheStatistics()[2]);
+        assertEquals(0xff0000, draw(0xff0000));
+    }
+
+    @Test
+    public void testClearingTheBitmapCache() {
+        draw(0xff0000);
+        Font.clearBitmapCache();
+        assertEquals(0, Font.getBitmapFontColorCacheStatistics()[2]);
+        assertEquals(0xff0000, draw(0xff0000));
+    }
+}
@@ -0,0 +1,147 @@
+package com.sun.lwuit;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.layouts.GridLayout;
+import com.sun.lwuit.layouts.Layout;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Hit testing of containers with many children through the spatial index
+ */
+public class HitTestIndexTest extends LWUITTest {
+    private static final int CHILD_SIZE = 20;
+
+    public HitTestIndexTest() {
+    }
+
+    private static Container createContainer(Layout layout, int children, int width, int height) {
+        Container c = new Container(layout);
+        c.getStyle().setPadding(0, 0, 0, 0);
+        c.getStyle().setMargin(0, 0, 0, 0);
+        for(int iter = 0 ; iter < children ; iter++) {
+            Label l = new Label("" + iter);
+            l.setPreferredW(CHILD_SIZE);
+            l.setPreferredH(CHILD_SIZE);
+            l.getStyle().setMargin(0, 0, 0, 0);
+            c.addComponent(l);
+        }
+        c.setX(5);
+        c.setY(7);
+        c.setWidth(width);
+        c.setHeight(height);
+        c.layoutContainer();
+        return c;
+    }
+
+    /**
+     * Verifies that the index returns the same component as the linear search for
+     * every point of the container and its surroundings
+     */
+    private static void assertSameAsLinearSearch(Container c) {
+        int startX = c.getAbsoluteX() - 3;
+        int startY = c.getAbsoluteY() - 3;
+        int endX = c.getAbsoluteX() + c.getWidth() + 3;
+        int endY = c.getAbsoluteY() + c.getHeight() + 3;
+        for(int y = startY ; y < endY ; y += 3) {
+            for(int x = startX ; x < endX ; x += 3) {
+                c.setSpatialIndexEnabled(true);
+                Component indexed = c.getComponentAt(x, y);
+                c.setSpatialIndexEnabled(false);
+                Component linear = c.getComponentAt(x, y);
+                assertSame("at " + x + ", " + y, linear, indexed);
+            }
+        }
+        c.setSpatialIndexEnabled(true);
+    }
+
+    @Test
+    public void testVerticalList() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 40, 100, 40 * CHILD_SIZE);
+        for(int iter = 0 ; iter < 40 ; iter++) {
+            Component child = c.getComponentAt(iter);
+            assertSame(child, c.getComponentAt(c.getAbsoluteX() + 10, c.getAbsoluteY() + iter * CHILD_SIZE + 5));
+        }
+        assertSameAsLinearSearch(c);
+    }
+
+    @Test
+    public void testHorizontalList() {
+        Container c = createContainer(new BoxLayout(BoxLayout.X_AXIS), 30, 30 * CHILD_SIZE, 50);
+        Component child = c.getComponentAt(17);
+        assertSame(child, c.getComponentAt(c.getAbsoluteX() + 17 * CHILD_SIZE + 1, c.getAbsoluteY() + 1));
+        assertSameAsLinearSearch(c);
+    }
+
+    @Test
+    public void testGrid() {
+        Container c = createContainer(new GridLayout(5, 5), 25, 100, 100);
+        assertSameAsLinearSearch(c);
+    }
+
+    @Test
+    public void testPointOutsideOfTheContainer() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 20, 100, 20 * CHILD_SIZE);
+        assertNull(c.getComponentAt(c.getAbsoluteX() - 1, c.getAbsoluteY() + 5));
+        assertNull(c.getComponentAt(c.getAbsoluteX() + 5, c.getAbsoluteY() + c.getHeight() + 1));
+    }
+
+    @Test
+    public void testPointBelowTheChildrenReturnsTheContainer() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 20, 100, 30 * CHILD_SIZE);
+        assertSame(c, c.getComponentAt(c.getAbsoluteX() + 5, c.getAbsoluteY() + 25 * CHILD_SIZE));
+    }
+
+    @Test
+    public void testMovingAChildInvalidatesTheIndex() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 20, 100, 30 * CHILD_SIZE);
+        int x = c.getAbsoluteX() + 5;
+        int belowChildren = c.getAbsoluteY() + 25 * CHILD_SIZE;
+
+        // build the index before moving the child
+        assertSame(c, c.getComponentAt(x, belowChildren));
+        Component first = c.getComponentAt(0);
+        first.setY(24 * CHILD_SIZE + 10);
+        assertSame(first, c.getComponentAt(x, belowChildren));
+        assertSame(c, c.getComponentAt(x, c.getAbsoluteY() + 5));
+
+        first.setX(200);
+        assertSame(c, c.getComponentAt(x, belowChildren));
+    }
+
+    @Test
+    public void testAddingAndRemovingChildrenInvalidatesTheIndex() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 20, 100, 30 * CHILD_SIZE);
+        int x = c.getAbsoluteX() + 5;
+        int belowChildren = c.getAbsoluteY() + 20 * CHILD_SIZE + 5;
+        assertSame(c, c.getComponentAt(x, belowChildren));
+
+        Label added = new Label("added");
+        added.setPreferredH(CHILD_SIZE);
+        added.getStyle().setMargin(0, 0, 0, 0);
+        c.addComponent(added);
+        c.layoutContainer();
+        assertSame(added, c.getComponentAt(x, belowChildren));
+
+        c.removeComponent(added);
+        assertSame(c, c.getComponentAt(x, belowChildren));
+    }
+
+    @Test
+    public void testOverlappingChildrenReturnTheTopmost() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 20, 100, 20 * CHILD_SIZE);
+        Component bottom = c.getComponentAt(3);
+        Component top = c.getComponentAt(10);
+        top.setY(bottom.getY());
+        assertSame(top, c.getComponentAt(c.getAbsoluteX() + 5, c.getAbsoluteY() + bottom.getY() + 5));
+        assertSameAsLinearSearch(c);
+    }
+
+    @Test
+    public void testSmallContainersAreSearchedLinearly() {
+        Container c = createContainer(new BoxLayout(BoxLayout.Y_AXIS), 3, 100, 3 * CHILD_SIZE);
+        assertSame(c.getComponentAt(2), c.getComponentAt(c.getAbsoluteX() + 5, c.getAbsoluteY() + 2 * CHILD_SIZE + 5));
+        assertSameAsLinearSearch(c);
+    }
+}
@@ -0,0 +1,160 @@
+package com.sun.lwuit;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Released offscreen images are reused by acquire calls of the same size within the
+ * memory bound of the pool
+ */
+public class OffscreenImagePoolTest extends LWUITTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 10;
+    private static final int BYTES = WIDTH * HEIGHT * 4;
+
+    public OffscreenImagePoolTest() {
+    }
+
+    @Before
+    public void clearPool() {
+        OffscreenImagePool.setMaxSize(10 * BYTES);
+        OffscreenImagePool.clear();
+        OffscreenImagePool.resetStatistics();
+    }
+
+    @After
+    public void restoreSize() {
+        OffscreenImagePool.setMaxSize(-1);
+        OffscreenImagePool.clear();
+    }
+
+    private void assertStatistics(int hits, int misses, int used) {
+        int[] stats = OffscreenImagePool.getStatistics();
+        assertEquals(hits, stats[0]);
+        assertEquals(misses, stats[1]);
+        assertEquals(used, stats[2]);
+    }
+
+    @Test
+    public void testReleasedImageIsReused() {
+        Image first = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        assertEquals(WIDTH, first.getWidth());
+        assertEquals(HEIGHT, first.getHeight());
+        assertStatistics(0, 1, 0);
+        OffscreenImagePool.release(first);
+        assertStatistics(0, 1, BYTES);
+
+        Image second = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        assertStatistics(1, 1, 0);
+        assertSame(first.getImage(), second.getImage());
+
+        // a new wrapper so no caches of the previous user carry over
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testReusedImageIsFilledWhite() {
+        Image first = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        Graphics g = first.getGraphics();
+        g.setColor(0xff0000);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        OffscreenImagePool.release(first);
+        int[] rgb = OffscreenImagePool.acquire(WIDTH, HEIGHT).getRGB();
+        assertEquals(0xffffff, rgb[0] & 0xffffff);
+        assertEquals(0xffffff, rgb[rgb.length - 1] & 0xffffff);
+    }
+
+    @Test
+    public void testOnlyTheExactSizeIsReused() {
+        OffscreenImagePool.release(OffscreenImagePool.acquire(WIDTH, HEIGHT));
+        OffscreenImagePool.acquire(WIDTH, HEIGHT + 1);
+        OffscreenImagePool.acquire(HEIGHT, WIDTH);
+        assertStatistics(0, 3, BYTES);
+    }
+
+    @Test
+    public void testImagesCreatedDirectlyCanBeReleased() {
+        Image img = Image.createImage(WIDTH, HEIGHT);
+        OffscreenImagePool.release(img);
+        assertSame(img.getImage(), OffscreenImagePool.acquire(WIDTH, HEIGHT).getImage());
+    }
+
+    @Test
+    public void testNullAndDuplicateReleasesAreIgnored() {
+        OffscreenImagePool.release(null);
+        Image img = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        OffscreenImagePool.release(img);
+        OffscreenImagePool.release(img);
+        assertEquals(BYTES, OffscreenImagePool.getStatistics()[2]);
+        OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        assertStatistics(1, 2, 0);
+    }
+
+    @Test
+    public void testOldestImageIsDiscardedAboveTheMaxSize() {
+        OffscreenImagePool.setMaxSize(2 * BYTES);
+        Image first = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        Image second = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        Image third = OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        OffscreenImagePool.release(first);
+        OffscreenImagePool.release(second);
+        OffscreenImagePool.release(third);
+        assertEquals(2 * BYTES, OffscreenImagePool.getStatistics()[2]);
+
+        // the most recently released image is reused first
+        assertSame(third.getImage(), OffscreenImagePool.acquire(WIDTH, HEIGHT).getImage());
+        assertSame(second.getImage(), OffscreenImagePool.acquire(WIDTH, HEIGHT).getImage());
+        assertNotSame(first.getImage(), OffscreenImagePool.acquire(WIDTH, HEIGHT).getImage());
+    }
+
+    @Test
+    public void testImageLargerThanTheMaxSizeIsDiscarded() {
+        OffscreenImagePool.setMaxSize(BYTES - 1);
+        OffscreenImagePool.release(OffscreenImagePool.acquire(WIDTH, HEIGHT));
+        assertEquals(0, OffscreenImagePool.getStatistics()[2]);
+
+        OffscreenImagePool.setMaxSize(0);
+        OffscreenImagePool.release(OffscreenImagePool.acquire(1, 1));
+        assertEquals(0, OffscreenImagePool.getStatistics()[2]);
+    }
+
+    @Test
+    public void testShrinkingTheMaxSizeDiscardsImages() {
+        OffscreenImagePool.release(OffscreenImagePool.acquire(WIDTH, HEIGHT));
+        OffscreenImagePool.release(OffscreenImagePool.acquire(WIDTH, HEIGHT));
+        OffscreenImagePool.setMaxSize(BYTES);
+        assertEquals(BYTES, OffscreenImagePool.getStatistics()[2]);
+    }
+
+    @Test
+    public void testDefaultMaxSizeHoldsTwoDisplaySizedImages() {
+        OffscreenImagePool.setMaxSize(-1);
+        Display d = Display.getInstance();
+        assertEquals(d.getDisplayWidth() * d.getDisplayHeight() * 8, OffscreenImagePool.getMaxSize());
+    }
+
+    @Test
+    public void testClear() {
+        OffscreenImagePool.release(OffscreenImagePool.acquire(WIDTH, HEIGHT));
+        OffscreenImagePool.clear();
+        assertEquals(0, OffscreenImagePool.getStatistics()[2]);
+        OffscreenImagePool.acquire(WIDTH, HEIGHT);
+        assertStatistics(0, 2, 0);
+    }
+
+    @Test
+    public void testHardPaintLockImageIsNotPooled() {
+        Label l = new Label("lock");
+        l.getStyle().setBgTransparency(0xff);
+        l.setWidth(WIDTH);
+        l.setHeight(HEIGHT);
+        Image lock = l.paintLock(true);
+        assertNotNull(lock);
+        l.paintLockRelease();
+        assertEquals(0, OffscreenImagePool.getStatistics()[2]);
+    }
+}
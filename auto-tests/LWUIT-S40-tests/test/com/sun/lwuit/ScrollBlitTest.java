@@ -0,0 +1,142 @@
+package com.sun.lwuit;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.plaf.Border;
+import com.sun.lwuit.plaf.LookAndFeel;
+import com.sun.lwuit.plaf.Style;
+import com.sun.lwuit.plaf.UIManager;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The pixels of a scrolled component are only moved when that gives the same result
+ * as painting it, which requires a solid background behind the content
+ */
+public class ScrollBlitTest extends LWUITTest {
+    private Form form;
+    private Container scrollable;
+
+    public ScrollBlitTest() {
+    }
+
+    @Before
+    public void createForm() {
+        form = new Form();
+        setOpaque(form, false);
+        setOpaque(form.getContentPane(), false);
+        scrollable = new Container(new BoxLayout(BoxLayout.Y_AXIS));
+        scrollable.setScrollableY(true);
+        setOpaque(scrollable, true);
+        form.addComponent(scrollable);
+    }
+
+    private static void setOpaque(Component c, boolean opaque) {
+        Style s = c.getStyle();
+        s.setBorder(null);
+        s.setBgImage(null);
+        s.setBackgroundType(Style.BACKGROUND_IMAGE_SCALED);
+        s.setBgTransparency(opaque ? 0xff : 0);
+    }
+
+    @Test
+    public void testSolidBackground() {
+        assertTrue(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testSolidBackgroundOfAnAncestor() {
+        setOpaque(scrollable, false);
+        assertFalse(scrollable.canScrollBlit());
+        setOpaque(form.getContentPane(), true);
+        assertTrue(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testTranslucentBackground() {
+        scrollable.getStyle().setBgTransparency(128);
+        assertFalse(scrollable.canScrollBlit());
+
+        // a translucent component shows the ancestors through it
+        setOpaque(form.getContentPane(), true);
+        assertFalse(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testGradientBackground() {
+        scrollable.getStyle().setBackgroundType(Style.BACKGROUND_GRADIENT_LINEAR_VERTICAL);
+        assertFalse(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testGradientOfTheAncestorBehindTheContent() {
+        setOpaque(scrollable, false);
+        setOpaque(form.getContentPane(), true);
+        form.getContentPane().getStyle().setBackgroundType(Style.BACKGROUND_GRADIENT_RADIAL);
+        assertFalse(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testBackgroundImage() {
+        scrollable.getStyle().setBgImage(Image.createImage(4, 4));
+        assertFalse(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testCustomBackgroundPainter() {
+        scrollable.getStyle().setBgPainter(new Painter() {
+            public void paint(Graphics g, com.sun.lwuit.geom.Rectangle rect) {
+            }
+        });
+        assertFalse(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testBorderThatPaintsTheBackground() {
+        scrollable.getStyle().setBorder(Border.createRoundBorder(6, 6));
+        assertFalse(scrollable.canScrollBlit());
+
+        // a line border is drawn within the fixed frame
+        scrollable.getStyle().setBorder(Border.createLineBorder(1));
+        assertTrue(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testFadeScrollEdge() {
+        LookAndFeel laf = UIManager.getInstance().getLookAndFeel();
+        boolean fade = laf.isFadeScrollEdge();
+        laf.setFadeScrollEdge(true);
+        try {
+            assertFalse(scrollable.canScrollBlit());
+        } finally {
+            laf.setFadeScrollEdge(fade);
+        }
+    }
+
+    @Test
+    public void testFlattenedComponent() {
+        scrollable.setFlatten(true);
+        assertFalse(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testFormWithNativeMedia() {
+        Label media = new Label();
+        form.addComponent(media);
+        form.registerMediaComponent(media);
+        assertFalse(scrollable.canScrollBlit());
+        form.deregisterMediaComponent(media);
+        assertTrue(scrollable.canScrollBlit());
+    }
+
+    @Test
+    public void testListWithFixedSelection() {
+        List l = new List(new Object[] {"a", "b", "c"});
+        setOpaque(l, true);
+        form.addComponent(l);
+        assertTrue(l.canScrollBlit());
+        l.setFixedSelection(List.FIXED_CENTER);
+        assertFalse(l.canScrollBlit());
+    }
+}
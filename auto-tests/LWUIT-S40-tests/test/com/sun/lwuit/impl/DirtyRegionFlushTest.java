@@ -0,0 +1,118 @@
+package com.sun.lwuit.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/**
+ * Merging of the painted areas into disjoint regions and flushing them to the
+ * implementation
+ */
+public class DirtyRegionFlushTest {
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 320;
+
+    private DirtyRegionManager manager;
+    private LWUITImplementation impl;
+
+    public DirtyRegionFlushTest() {
+    }
+
+    @Before
+    public void createManager() {
+        manager = new DirtyRegionManager();
+        impl = mock(LWUITImplementation.class);
+        when(impl.isPartialFlushSupported()).thenReturn(true);
+    }
+
+    private void add(int x, int y, int w, int h) {
+        manager.addRegion(x, y, w, h, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void testOverlappingRegionsAreMerged() {
+        add(0, 0, 10, 10);
+        add(5, 5, 10, 10);
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 15, 15);
+        verify(impl, times(1)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testTouchingRegionsAreMerged() {
+        add(0, 0, 10, 10);
+        add(10, 0, 10, 10);
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 20, 10);
+        verify(impl, times(1)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testRegionBridgingTwoRegionsMergesAllOfThem() {
+        add(0, 0, 10, 10);
+        add(20, 0, 10, 10);
+        add(8, 2, 14, 4);
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 30, 10);
+        verify(impl, times(1)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testDisjointRegionsAreFlushedSeparately() {
+        add(0, 0, 10, 10);
+        add(100, 100, 10, 10);
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 10, 10);
+        verify(impl).flushGraphics(100, 100, 10, 10);
+        verify(impl, times(2)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testRegionsAreClippedToTheDisplay() {
+        add(-5, -5, 20, 20);
+        add(230, 310, 20, 20);
+        add(WIDTH, 0, 10, 10);
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 15, 15);
+        verify(impl).flushGraphics(230, 310, 10, 10);
+        verify(impl, times(2)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testRegionLimitCollapsesToTheBoundingBox() {
+        for(int iter = 0 ; iter < 7 ; iter++) {
+            add(iter * 20, iter * 20, 10, 10);
+        }
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 130, 130);
+        verify(impl, times(1)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testSixDisjointRegionsAreKept() {
+        for(int iter = 0 ; iter < 6 ; iter++) {
+            add(iter * 20, iter * 20, 10, 10);
+        }
+        manager.flush(impl);
+        verify(impl, times(6)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testUnionIsFlushedOnceWithoutPartialFlushes() {
+        when(impl.isPartialFlushSupported()).thenReturn(false);
+        add(0, 0, 10, 10);
+        add(100, 50, 10, 10);
+        add(20, 200, 10, 10);
+        manager.flush(impl);
+        verify(impl).flushGraphics(0, 0, 110, 210);
+        verify(impl, times(1)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testFlushEmptiesTheRegions() {
+        add(0, 0, 10, 10);
+        manager.flush(impl);
+        manager.flush(impl);
+        verify(impl, times(1)).flushGraphics(anyInt(), anyInt(), anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,192 @@
+package com.sun.lwuit.impl;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.Container;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.geom.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Skipping of repaints whose area is painted by an ancestor in the same batch, this
+ * is in the package of the manager since the manager isn't public
+ */
+public class DirtyRegionManagerTest extends LWUITTest {
+    private DirtyRegionManager manager;
+    private Container root;
+    private Container parent;
+    private Label child;
+
+    public DirtyRegionManagerTest() {
+    }
+
+    @Before
+    public void createHierarchy() {
+        manager = new DirtyRegionManager();
+        root = new Container();
+        root.setX(0);
+        root.setY(0);
+        root.setWidth(240);
+        root.setHeight(320);
+        parent = new Container();
+        parent.setX(0);
+        parent.setY(100);
+        parent.setWidth(240);
+        parent.setHeight(100);
+        child = new Label("child");
+        child.setX(10);
+        child.setY(10);
+        child.setWidth(50);
+        child.setHeight(20);
+        root.addComponent(parent);
+        parent.addComponent(child);
+    }
+
+    @Test
+    public void testFullRepaintOfParentCoversChild() {
+        manager.add(child);
+        manager.add(parent);
+        manager.swap();
+        assertTrue(manager.isCoveredByAncestor(child));
+        assertFalse(manager.isCoveredByAncestor(parent));
+    }
+
+    @Test
+    public void testFullRepaintOfGrandparentCoversChild() {
+        manager.add(child);
+        manager.add(root);
+        manager.swap();
+        assertTrue(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testChildOutsideTheParentRegionIsPainted() {
+        parent.setDirtyRegion(new Rectangle(0, 150, 240, 50));
+        manager.add(parent);
+        manager.add(child);
+        manager.swap();
+        assertFalse(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testChildInsideTheParentRegionIsCovered() {
+        // the child is at 10, 110 in absolute coordinates
+        parent.setDirtyRegion(new Rectangle(0, 100, 100, 40));
+        manager.add(parent);
+        manager.add(child);
+        manager.swap();
+        assertTrue(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testChildRegionInsideTheParentRegionIsCovered() {
+        parent.setDirtyRegion(new Rectangle(0, 100, 30, 20));
+        child.setDirtyRegion(new Rectangle(10, 110, 10, 10));
+        manager.add(parent);
+        manager.add(child);
+        manager.swap();
+        assertTrue(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testParentRegionIsSnapshotWhenTheBatchStarts() {
+        parent.setDirtyRegion(new Rectangle(0, 150, 240, 50));
+        manager.add(parent);
+        manager.add(child);
+        manager.swap();
+
+        // painting the parent first clears its region, the child must still be painted
+        parent.setDirtyRegion(null);
+        assertFalse(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testScrolledParentDoesNotCoverChild() {
+        manager.addScroll(parent, 0, 10);
+        manager.add(child);
+        manager.swap();
+        assertTrue(manager.hasScrolls());
+        assertTrue(manager.hasScrollingAncestor(child));
+        assertFalse(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testRepaintAfterScrollCoversChild() {
+        manager.addScroll(parent, 0, 10);
+        manager.add(parent);
+        manager.add(child);
+        manager.swap();
+        assertFalse(manager.hasScrolls());
+        assertTrue(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testScrollOffsetsAreAccumulated() {
+        assertTrue(manager.addScroll(parent, 0, 10));
+        assertFalse(manager.addScroll(parent, 0, 5));
+        assertFalse(manager.addScroll(parent, 3, -20));
+        assertEquals(1, manager.swap());
+        int[] offset = manager.getScroll(parent);
+        assertEquals(3, offset[0]);
+        assertEquals(-5, offset[1]);
+    }
+
+    @Test
+    public void testScrollOfAQueuedComponentIsPaintedWithIt() {
+        manager.add(parent);
+        assertFalse(manager.addScroll(parent, 0, 10));
+        manager.swap();
+        assertNull(manager.getScroll(parent));
+        assertFalse(manager.hasScrolls());
+    }
+
+    @Test
+    public void testClearedScrollIsARegularRepaint() {
+        manager.addScroll(parent, 0, 10);
+        manager.add(child);
+        manager.swap();
+        manager.clearScroll(parent);
+        assertNull(manager.getScroll(parent));
+        assertTrue(manager.isCoveredByAncestor(child));
+    }
+
+    @Test
+    public void testRemovedComponentLosesItsScroll() {
+        manager.addScroll(parent, 0, 10);
+        manager.remove(parent);
+        int size = manager.swap();
+        assertFalse(manager.hasScrolls());
+
+        // the next scroll starts from a zero offset
+        manager.paintingDone(size);
+        manager.addScroll(parent, 0, 4);
+        manager.swap();
+        assertEquals(4, manager.getScroll(parent)[1]);
+    }
+
+    @Test
+    public void testScrollsAreClearedAfterPaintingDone() {
+        manager.addScroll(parent, 0, 10);
+        int size = manager.swap();
+        manager.paintingDone(size);
+        assertFalse(manager.hasScrolls());
+        manager.add(parent);
+        manager.swap();
+        assertNull(manager.getScroll(parent));
+    }
+
+    @Test
+    public void testNothingIsCoveredAfterPaintingDone() {
+        manager.add(parent);
+        manager.add(child);
+        int size = manager.swap();
+        manager.paintingDone(size);
+        assertFalse(manager.isCoveredByAncestor(child));
+
+        // the next batch only holds the child
+        manager.add(child);
+        manager.swap();
+        assertFalse(manager.isCoveredByAncestor(child));
+    }
+}
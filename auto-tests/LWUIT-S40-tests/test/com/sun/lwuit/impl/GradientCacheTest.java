@@ -0,0 +1,140 @@
+package com.sun.lwuit.impl;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Graphics;
+import com.sun.lwuit.Image;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Rendered gradients are cached by their colors, size and shape regardless of the
+ * position they are drawn at
+ */
+public class GradientCacheTest extends LWUITTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 10;
+    private static final int BYTES = WIDTH * HEIGHT * 4;
+
+    private LWUITImplementation impl;
+    private int budget;
+
+    public GradientCacheTest() {
+    }
+
+    @Before
+    public void clearCache() {
+        impl = Display.getInstance().getImplementation();
+        budget = impl.getGradientCacheSize();
+        impl.clearGradientCache();
+        impl.resetGradientCacheStatistics();
+    }
+
+    @After
+    public void restoreBudget() {
+        impl.setGradientCacheSize(budget);
+        impl.clearGradientCache();
+    }
+
+    private static Graphics createGraphics() {
+        return Image.createImage(100, 100).getGraphics();
+    }
+
+    private void assertStatistics(int hits, int misses, int used) {
+        int[] stats = impl.getGradientCacheStatistics();
+        assertEquals(hits, stats[0]);
+        assertEquals(misses, stats[1]);
+        assertEquals(used, stats[2]);
+    }
+
+    @Test
+    public void testGradientIsReusedAtAnotherPosition() {
+        Graphics g = createGraphics();
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        assertStatistics(0, 1, BYTES);
+        g.fillLinearGradient(0xff0000, 0x0000ff, 30, 40, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        assertStatistics(2, 1, BYTES);
+    }
+
+    @Test
+    public void testAttributesAreAPartOfTheKey() {
+        Graphics g = createGraphics();
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, false);
+        g.fillLinearGradient(0xff0000, 0x00ff00, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0x00ff00, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT + 1, true);
+        assertEquals(0, impl.getGradientCacheStatistics()[0]);
+        assertEquals(5, impl.getGradientCacheStatistics()[1]);
+    }
+
+    @Test
+    public void testCachedGradientIsDrawnAtThePosition() {
+        Image first = Image.createImage(60, HEIGHT);
+        first.getGraphics().fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        Image second = Image.createImage(60, HEIGHT);
+        second.getGraphics().fillLinearGradient(0xff0000, 0x0000ff, 30, 0, WIDTH, HEIGHT, true);
+        assertEquals(1, impl.getGradientCacheStatistics()[0]);
+
+        int[] a = first.getRGB();
+        int[] b = second.getRGB();
+        for(int x = 0 ; x < WIDTH ; x++) {
+            assertEquals(a[x], b[x + 30]);
+        }
+        assertEquals(0xffffffff, b[29]);
+        assertEquals(0xffffffff, b[30 + WIDTH]);
+    }
+
+    @Test
+    public void testRadialGradient() {
+        Graphics g = createGraphics();
+        g.fillRectRadialGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, 0.5f, 0.5f, 1);
+        g.fillRectRadialGradient(0xff0000, 0x0000ff, 50, 50, WIDTH, HEIGHT, 0.5f, 0.5f, 1);
+        assertStatistics(1, 1, BYTES);
+
+        // a different center or size is another gradient
+        g.fillRectRadialGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, 0.2f, 0.5f, 1);
+        g.fillRectRadialGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, 0.5f, 0.5f, 0.5f);
+        assertStatistics(1, 3, 3 * BYTES);
+    }
+
+    @Test
+    public void testBudgetEvictsTheLeastRecentlyUsedGradient() {
+        impl.setGradientCacheSize(2 * BYTES);
+        assertEquals(2 * BYTES, impl.getGradientCacheSize());
+        Graphics g = createGraphics();
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0x00ff00, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0x0000ff, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        assertStatistics(1, 3, 2 * BYTES);
+
+        // the green gradient was evicted, the red one was used more recently
+        impl.resetGradientCacheStatistics();
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        g.fillLinearGradient(0x00ff00, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        assertStatistics(1, 1, 2 * BYTES);
+    }
+
+    @Test
+    public void testGradientLargerThanTheBudgetIsDrawnDirectly() {
+        impl.setGradientCacheSize(BYTES - 1);
+        Image img = Image.createImage(WIDTH, HEIGHT);
+        img.getGraphics().fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        assertStatistics(0, 0, 0);
+        assertEquals(0xff0000, img.getRGB()[0] & 0xffffff);
+    }
+
+    @Test
+    public void testClear() {
+        Graphics g = createGraphics();
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        impl.clearGradientCache();
+        assertEquals(0, impl.getGradientCacheStatistics()[2]);
+        g.fillLinearGradient(0xff0000, 0x0000ff, 0, 0, WIDTH, HEIGHT, true);
+        assertStatistics(0, 2, BYTES);
+    }
+}
@@ -0,0 +1,143 @@
+package com.sun.lwuit.io;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.nokia.lwuit.test.util.TestIOImplementation;
+import java.util.Vector;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Access ordered eviction, the byte limit and the statistics of the LRU mode of
+ * the cache map
+ */
+public class CacheMapTest extends LWUITTest {
+    private CacheMap cache;
+
+    public CacheMapTest() {
+    }
+
+    @Before
+    public void createCache() {
+        new TestIOImplementation();
+        Storage.init(null);
+        cache = new CacheMap();
+        cache.setLRUMode(true);
+        cache.setStorageCacheSize(10);
+    }
+
+    /**
+     * Returns the key swapped into the given slot of the storage cache
+     */
+    private static Object getSwappedKey(int slot) {
+        Vector v = (Vector)Storage.getInstance().readObject("$CACHE$" + slot);
+        if(v == null) {
+            return null;
+        }
+        return v.elementAt(2);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        cache.setCacheSize(3);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        assertEquals("A", cache.get("a"));
+        cache.put("d", "D");
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("b", getSwappedKey(0));
+    }
+
+    @Test
+    public void testReplacingAnEntryDoesNotEvict() {
+        cache.setCacheSize(3);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        cache.put("a", "AA");
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals("AA", cache.get("a"));
+
+        // replacing a made b the least recently used entry
+        cache.put("d", "D");
+        assertEquals("b", getSwappedKey(0));
+    }
+
+    @Test
+    public void testByteLimitEvictsTheEldestEntries() {
+        cache.setCacheSize(100);
+        cache.setCacheSizeBytes(10);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        assertEquals(8, cache.getMemoryCacheBytes());
+        cache.put("c", new byte[4]);
+        assertEquals(8, cache.getMemoryCacheBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("a", getSwappedKey(0));
+    }
+
+    @Test
+    public void testMostRecentEntryIsKeptWhenLargerThanTheLimit() {
+        cache.setCacheSizeBytes(10);
+        cache.put("a", new byte[4]);
+        cache.put("big", new byte[20]);
+        assertEquals(20, cache.getMemoryCacheBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(20, ((byte[])cache.get("big")).length);
+    }
+
+    @Test
+    public void testReplacingAndDeletingUpdateTheByteCount() {
+        cache.put("a", new byte[4]);
+        cache.put("a", new byte[6]);
+        assertEquals(6, cache.getMemoryCacheBytes());
+        cache.put("b", "bb");
+        assertEquals(10, cache.getMemoryCacheBytes());
+        cache.delete("a");
+        assertEquals(4, cache.getMemoryCacheBytes());
+        assertNull(cache.get("a"));
+        cache.clearMemoryCache();
+        assertEquals(0, cache.getMemoryCacheBytes());
+    }
+
+    @Test
+    public void testEvictedEntryIsReadBackFromStorage() {
+        cache.setCacheSize(1);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.clearMemoryCache();
+        cache.resetStatistics();
+        assertEquals("A", cache.get("a"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testStatistics() {
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("a");
+        cache.get("missing");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testSwitchingModesKeepsTheEntries() {
+        cache.setLRUMode(false);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.setLRUMode(true);
+        assertEquals("A", cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertEquals(4, cache.getMemoryCacheBytes());
+        cache.setLRUMode(false);
+        assertEquals("A", cache.get("a"));
+        assertEquals(0, cache.getMemoryCacheBytes());
+    }
+}
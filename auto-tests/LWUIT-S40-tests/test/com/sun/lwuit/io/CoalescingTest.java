@@ -0,0 +1,134 @@
+package com.sun.lwuit.io;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.nokia.lwuit.test.util.TestIOImplementation;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Sharing of a response between identical requests that are in progress at the
+ * same time
+ */
+public class CoalescingTest extends LWUITTest {
+    private TestIOImplementation io;
+
+    public CoalescingTest() {
+    }
+
+    @Before
+    public void startNetwork() {
+        io = new TestIOImplementation();
+        NetworkManager.getInstance().start();
+    }
+
+    @After
+    public void unblock() {
+        io.setBlocked(false);
+    }
+
+    /**
+     * Waits until the request read a response
+     */
+    static void waitForResponse(RecordingRequest r) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        synchronized(r) {
+            while(r.responses == 0 && System.currentTimeMillis() < end) {
+                r.wait(100);
+            }
+        }
+        assertEquals(r.getUrl(), 1, r.responses);
+    }
+
+    @Test
+    public void testIdenticalRequestsShareOneConnection() throws InterruptedException {
+        io.respond("http://example.com/shared").body("data".getBytes());
+        io.setBlocked(true);
+        RecordingRequest leader = new RecordingRequest("http://example.com/shared");
+        NetworkManager.getInstance().addToQueue(leader);
+        assertTrue(io.waitForConnections(1, 5000));
+        RecordingRequest follower = new RecordingRequest("http://example.com/shared");
+        NetworkManager.getInstance().addToQueue(follower);
+        io.setBlocked(false);
+        waitForResponse(leader);
+        waitForResponse(follower);
+        assertEquals(1, io.getConnectionCount());
+        assertEquals("data", follower.body);
+    }
+
+    @Test
+    public void testRequestsWithDifferentHeadersDontShare() throws InterruptedException {
+        io.respond("http://example.com/headers").body("data".getBytes());
+        io.setBlocked(true);
+        RecordingRequest a = new RecordingRequest("http://example.com/headers");
+        NetworkManager.getInstance().addToQueue(a);
+        assertTrue(io.waitForConnections(1, 5000));
+        RecordingRequest b = new RecordingRequest("http://example.com/headers");
+        b.addRequestHeader("Accept-Language", "fi");
+        NetworkManager.getInstance().addToQueue(b);
+        io.setBlocked(false);
+        waitForResponse(a);
+        waitForResponse(b);
+        assertEquals(2, io.getConnectionCount());
+    }
+
+    @Test
+    public void testDroppedDuplicateDoesNotBecomeALeader() throws InterruptedException {
+        io.respond("http://example.com/busy").body("busy".getBytes());
+        io.respond("http://example.com/dup").body("dup".getBytes());
+        io.setBlocked(true);
+
+        // keeps the network thread busy so the following requests stay pending
+        RecordingRequest busy = new RecordingRequest("http://example.com/busy");
+        NetworkManager.getInstance().addToQueue(busy);
+        assertTrue(io.waitForConnections(1, 5000));
+
+        // the second request is a duplicate of the first one in the queue but its
+        // headers give it a coalescing key of its own
+        RecordingRequest first = new RecordingRequest("http://example.com/dup");
+        RecordingRequest duplicate = new RecordingRequest("http://example.com/dup");
+        duplicate.addRequestHeader("Accept-Language", "fi");
+        NetworkManager.getInstance().addToQueue(first);
+        NetworkManager.getInstance().addToQueue(duplicate);
+        io.setBlocked(false);
+        waitForResponse(busy);
+        waitForResponse(first);
+
+        // a dropped duplicate left as a leader would swallow this request
+        RecordingRequest later = new RecordingRequest("http://example.com/dup");
+        later.addRequestHeader("Accept-Language", "fi");
+        NetworkManager.getInstance().addToQueue(later);
+        waitForResponse(later);
+        assertEquals(3, io.getConnectionCount());
+        assertEquals(0, duplicate.responses);
+    }
+
+    static class RecordingRequest extends ConnectionRequest {
+        int responses;
+        String body;
+
+        RecordingRequest(String url) {
+            setUrl(url);
+            setPost(false);
+            setCoalescing(true);
+        }
+
+        protected void readResponse(InputStream input) throws IOException {
+            byte[] data = new byte[100];
+            int size = 0;
+            int count = input.read(data, 0, data.length);
+            while(count > 0) {
+                size += count;
+                count = input.read(data, size, data.length - size);
+            }
+            synchronized(this) {
+                body = new String(data, 0, size);
+                responses++;
+                notifyAll();
+            }
+        }
+    }
+}
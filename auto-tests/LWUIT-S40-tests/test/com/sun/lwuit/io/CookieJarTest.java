@@ -0,0 +1,193 @@
+package com.sun.lwuit.io;
+
+import com.nokia.lwuit.test.util.TestIOImplementation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.Vector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Matching of cookies by domain, path and expiry, parsing of Set-Cookie headers
+ * and persistence of the cookie jar
+ */
+public class CookieJarTest {
+    private TestIOImplementation io;
+
+    public CookieJarTest() {
+    }
+
+    @Before
+    public void createJar() {
+        io = new TestIOImplementation();
+        Storage.init(null);
+        Cookie.setAutoStored(false);
+    }
+
+    @After
+    public void restoreAutoStore() {
+        Cookie.setAutoStored(true);
+    }
+
+    private static Cookie cookie(String name, String domain, String path, long expires) {
+        Cookie c = new Cookie();
+        c.setName(name);
+        c.setValue(name + "-value");
+        c.setDomain(domain);
+        c.setPath(path);
+        c.setExpires(expires);
+        return c;
+    }
+
+    private Vector names(String url) {
+        Vector cookies = io.getCookiesForURL(url);
+        Vector names = new Vector();
+        if(cookies != null) {
+            for(int iter = 0 ; iter < cookies.size() ; iter++) {
+                names.addElement(((Cookie)cookies.elementAt(iter)).getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Performs a request whose response sets the given cookie and returns the cookie
+     */
+    private Cookie receive(String setCookie) throws IOException {
+        io.respond("http://example.com/set").header("Set-Cookie", setCookie);
+        ConnectionRequest r = new ConnectionRequest() {
+            protected void readResponse(InputStream input) throws IOException {
+            }
+        };
+        r.setUrl("http://example.com/set");
+        r.setPost(false);
+        r.performOperation();
+        Vector cookies = io.getCookiesForURL("http://example.com/set");
+        assertEquals(1, cookies.size());
+        return (Cookie)cookies.elementAt(0);
+    }
+
+    @Test
+    public void testCookiesMatchTheDomainSuffixes() {
+        io.addCookie(cookie("host", "a.example.com", null, 0));
+        io.addCookie(cookie("dotted", ".example.com", null, 0));
+        io.addCookie(cookie("parent", "example.com", null, 0));
+        io.addCookie(cookie("other", "other.com", null, 0));
+        io.addCookie(cookie("sibling", "b.example.com", null, 0));
+        Vector names = names("http://a.example.com/index.html");
+        assertEquals(3, names.size());
+        assertTrue(names.contains("host"));
+        assertTrue(names.contains("dotted"));
+        assertTrue(names.contains("parent"));
+    }
+
+    @Test
+    public void testCookiesWithAPortMatchTheHost() {
+        io.addCookie(cookie("port", "example.com:8080", null, 0));
+        io.addCookie(cookie("host", "example.com", null, 0));
+        assertEquals(2, names("http://example.com:8080/").size());
+        assertEquals(1, names("http://example.com/").size());
+    }
+
+    @Test
+    public void testCookiesMatchThePathPrefix() {
+        io.addCookie(cookie("app", "example.com", "/app", 0));
+        io.addCookie(cookie("root", "example.com", "/", 0));
+        assertEquals(2, names("http://example.com/app/page?q=1").size());
+        Vector names = names("http://example.com/other");
+        assertEquals(1, names.size());
+        assertEquals("root", names.elementAt(0));
+    }
+
+    @Test
+    public void testSameNameWithDifferentPathsAreKept() {
+        io.addCookie(cookie("id", "example.com", "/a", 0));
+        io.addCookie(cookie("id", "example.com", "/b", 0));
+        assertEquals(1, names("http://example.com/a").size());
+        assertEquals(1, names("http://example.com/b").size());
+    }
+
+    @Test
+    public void testExpiredCookiesAreNotSent() {
+        io.addCookie(cookie("expired", "example.com", null, System.currentTimeMillis() - 1000));
+        io.addCookie(cookie("valid", "example.com", null, System.currentTimeMillis() + 60000));
+        Vector names = names("http://example.com/");
+        assertEquals(1, names.size());
+        assertEquals("valid", names.elementAt(0));
+    }
+
+    @Test
+    public void testUnchangedCookieIsNotPersistedAgain() {
+        Cookie.setAutoStored(true);
+        io.addCookie(cookie("id", "example.com", null, 0));
+        io.flushCookies();
+        assertEquals(1, io.getStorageWrites().size());
+        assertEquals(Cookie.STORAGE_NAME, io.getStorageWrites().elementAt(0));
+
+        io.addCookie(cookie("id", "example.com", null, 0));
+        io.flushCookies();
+        assertEquals(1, io.getStorageWrites().size());
+
+        Cookie changed = cookie("id", "example.com", null, 0);
+        changed.setValue("changed");
+        io.addCookie(changed);
+        io.flushCookies();
+        assertEquals(2, io.getStorageWrites().size());
+    }
+
+    @Test
+    public void testClearRemovesTheCookies() {
+        Cookie.setAutoStored(true);
+        io.addCookie(cookie("id", "example.com", null, 0));
+        io.flushCookies();
+        Cookie.clearCookiesFromStorage();
+        assertNull(io.getCookiesForURL("http://example.com/"));
+        assertFalse(io.storageFileExists(Cookie.STORAGE_NAME));
+    }
+
+    @Test
+    public void testSetCookieExpiresDate() throws IOException {
+        Cookie c = receive("id=1; expires=Wed, 09-Jun-2099 10:18:14 GMT; path=/");
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        cal.setTime(new java.util.Date(c.getExpires()));
+        assertEquals(2099, cal.get(Calendar.YEAR));
+        assertEquals(Calendar.JUNE, cal.get(Calendar.MONTH));
+        assertEquals(9, cal.get(Calendar.DAY_OF_MONTH));
+        assertEquals(10, cal.get(Calendar.HOUR_OF_DAY));
+        assertEquals(18, cal.get(Calendar.MINUTE));
+        assertEquals(14, cal.get(Calendar.SECOND));
+        assertEquals("/", c.getPath());
+    }
+
+    @Test
+    public void testSetCookieWithRfc1123Date() throws IOException {
+        Cookie c = receive("id=1; Expires=Thu, 01 Jan 2099 00:00:00 GMT");
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        cal.setTime(new java.util.Date(c.getExpires()));
+        assertEquals(2099, cal.get(Calendar.YEAR));
+        assertEquals(Calendar.JANUARY, cal.get(Calendar.MONTH));
+    }
+
+    @Test
+    public void testUnknownMonthMakesASessionCookie() throws IOException {
+        assertEquals(0, receive("id=1; expires=Wed, 09-Xyz-2099 10:18:14 GMT").getExpires());
+    }
+
+    @Test
+    public void testMonthAcrossNameBoundariesMakesASessionCookie() throws IOException {
+        // "anf" appears in "janfeb" but isn't a month
+        assertEquals(0, receive("id=1; expires=Wed, 09-Anf-2099 10:18:14 GMT").getExpires());
+    }
+
+    @Test
+    public void testMaxAgeTakesPrecedenceOverExpires() throws IOException {
+        long before = System.currentTimeMillis();
+        Cookie c = receive("id=1; max-age=60; expires=Wed, 09-Jun-2099 10:18:14 GMT");
+        assertTrue(c.getExpires() >= before + 60000);
+        assertTrue(c.getExpires() <= System.currentTimeMillis() + 60000);
+    }
+}
@@ -0,0 +1,170 @@
+package com.sun.lwuit.io;
+
+import com.nokia.lwuit.test.util.TestIOImplementation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Caching, revalidation and eviction of HTTP GET responses
+ */
+public class HttpCacheTest {
+    private static final String URL = "http://example.com/data";
+
+    private TestIOImplementation io;
+
+    public HttpCacheTest() {
+    }
+
+    @Before
+    public void createCache() throws Exception {
+        io = new TestIOImplementation();
+        Storage.init(null);
+        Field instance = HttpCache.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+    }
+
+    private CachedRequest perform(String url) throws IOException {
+        CachedRequest r = new CachedRequest(url);
+        r.performOperation();
+        return r;
+    }
+
+    private TestIOImplementation.Connection lastConnection() {
+        return (TestIOImplementation.Connection)io.getConnections().lastElement();
+    }
+
+    @Test
+    public void testFreshResponseIsServedWithoutAConnection() throws IOException {
+        io.respond(URL).header("Cache-Control", "max-age=60").body("data".getBytes());
+        assertEquals("data", perform(URL).body);
+        assertEquals("data", perform(URL).body);
+        assertEquals(1, io.getConnectionCount());
+        assertEquals(1, HttpCache.getInstance().getHitCount());
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithTheETag() throws IOException {
+        io.respond(URL).header("ETag", "\"v1\"").body("data".getBytes());
+        perform(URL);
+        assertNull(lastConnection().getRequestHeader("If-None-Match"));
+
+        io.respond(URL).code(304);
+        assertEquals("data", perform(URL).body);
+        assertEquals(2, io.getConnectionCount());
+        assertEquals("\"v1\"", lastConnection().getRequestHeader("If-None-Match"));
+        assertEquals(1, HttpCache.getInstance().getRevalidatedCount());
+    }
+
+    @Test
+    public void testLastModifiedIsSentAsIfModifiedSince() throws IOException {
+        String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        io.respond(URL).header("Last-Modified", date).body("data".getBytes());
+        perform(URL);
+        io.respond(URL).code(304);
+        assertEquals("data", perform(URL).body);
+        assertEquals(date, lastConnection().getRequestHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void testModifiedResponseReplacesTheCachedOne() throws IOException {
+        io.respond(URL).header("ETag", "\"v1\"").body("old".getBytes());
+        perform(URL);
+        io.respond(URL).header("ETag", "\"v2\"").body("new".getBytes());
+        assertEquals("new", perform(URL).body);
+
+        io.respond(URL).code(304);
+        assertEquals("new", perform(URL).body);
+        assertEquals("\"v2\"", lastConnection().getRequestHeader("If-None-Match"));
+        assertEquals(3, HttpCache.getInstance().getSize());
+    }
+
+    @Test
+    public void testNoStoreResponseIsNotCached() throws IOException {
+        io.respond(URL).header("Cache-Control", "no-store, max-age=60").header("ETag", "\"v1\"").body("data".getBytes());
+        perform(URL);
+        perform(URL);
+        assertEquals(2, io.getConnectionCount());
+        assertNull(lastConnection().getRequestHeader("If-None-Match"));
+        assertEquals(0, HttpCache.getInstance().getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResponseIsEvicted() throws IOException {
+        HttpCache.getInstance().setMaxSize(10);
+        io.respond("http://example.com/a").header("ETag", "a").body("aaaa".getBytes());
+        io.respond("http://example.com/b").header("ETag", "b").body("bbbb".getBytes());
+        io.respond("http://example.com/c").header("ETag", "c").body("cccc".getBytes());
+        perform("http://example.com/a");
+        perform("http://example.com/b");
+
+        // revalidating a makes b the least recently used response
+        io.respond("http://example.com/a").code(304);
+        assertEquals("aaaa", perform("http://example.com/a").body);
+        perform("http://example.com/c");
+        assertEquals(8, HttpCache.getInstance().getSize());
+
+        perform("http://example.com/b");
+        assertNull(lastConnection().getRequestHeader("If-None-Match"));
+        perform("http://example.com/c");
+        assertEquals("c", lastConnection().getRequestHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testResponseLargerThanTheCacheIsNotWritten() throws IOException {
+        HttpCache.getInstance().setMaxSize(10);
+        io.respond(URL).header("ETag", "\"v1\"").body(new byte[100]);
+        assertEquals(100, perform(URL).length);
+        assertEquals(0, io.getStorageWrites().size());
+        assertEquals(0, HttpCache.getInstance().getSize());
+    }
+
+    @Test
+    public void testResponseWithoutLengthStopsCachingOnceTooLarge() throws IOException {
+        HttpCache.getInstance().setMaxSize(10);
+        io.respond(URL).header("ETag", "\"v1\"").body(new byte[100]).withoutContentLength();
+        assertEquals(100, perform(URL).length);
+        assertTrue(io.getBytesWrittenToStorage() <= 10);
+        assertEquals(0, HttpCache.getInstance().getSize());
+    }
+
+    @Test
+    public void testTooLargeResponseRemovesTheOutdatedOne() throws IOException {
+        HttpCache.getInstance().setMaxSize(10);
+        io.respond(URL).header("ETag", "\"v1\"").body("data".getBytes());
+        perform(URL);
+        io.respond(URL).header("ETag", "\"v2\"").body(new byte[100]).withoutContentLength();
+        perform(URL);
+        assertEquals(0, HttpCache.getInstance().getSize());
+        perform(URL);
+        assertNull(lastConnection().getRequestHeader("If-None-Match"));
+    }
+
+    static class CachedRequest extends ConnectionRequest {
+        String body;
+        int length;
+
+        CachedRequest(String url) {
+            setUrl(url);
+            setPost(false);
+            setHttpCaching(true);
+        }
+
+        protected void readResponse(InputStream input) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] data = new byte[16];
+            int count = input.read(data, 0, data.length);
+            while(count > -1) {
+                out.write(data, 0, count);
+                count = input.read(data, 0, data.length);
+            }
+            length = out.size();
+            body = new String(out.toByteArray());
+        }
+    }
+}
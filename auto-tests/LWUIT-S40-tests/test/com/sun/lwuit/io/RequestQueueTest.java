@@ -0,0 +1,266 @@
+package com.sun.lwuit.io;
+
+import java.util.Vector;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Duplicate detection of the network manager queue, this is in the package of the
+ * queue since the queue isn't public
+ */
+public class RequestQueueTest {
+    private RequestQueue queue;
+
+    public RequestQueueTest() {
+    }
+
+    @Before
+    public void createQueue() {
+        queue = new RequestQueue();
+    }
+
+    private static ConnectionRequest request(String url) {
+        ConnectionRequest r = new ConnectionRequest();
+        r.setUrl(url);
+        return r;
+    }
+
+    @Test
+    public void testEqualRequestsAreDuplicates() {
+        queue.add(request("http://example.com/a"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        assertTrue(queue.contains(request("http://example.com/a")));
+        assertFalse(queue.contains(request("http://example.com/b")));
+    }
+
+    @Test
+    public void testArgumentOrderIsIgnored() {
+        ConnectionRequest a = request("http://example.com/a");
+        a.addArgumentNoEncoding("x", "1");
+        a.addArgumentNoEncoding("y", "2");
+        queue.add(a, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+
+        ConnectionRequest b = request("http://example.com/a");
+        b.addArgumentNoEncoding("y", "2");
+        b.addArgumentNoEncoding("x", "1");
+        assertTrue(queue.contains(b));
+    }
+
+    @Test
+    public void testDifferentArgumentsAreNotDuplicates() {
+        ConnectionRequest a = request("http://example.com/a");
+        a.addArgumentNoEncoding("x", "1");
+        queue.add(a, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+
+        ConnectionRequest b = request("http://example.com/a");
+        b.addArgumentNoEncoding("x", "2");
+        assertFalse(queue.contains(b));
+        assertFalse(queue.contains(request("http://example.com/a")));
+
+        // keys and values are length prefixed so shifting text between them doesn't collide
+        ConnectionRequest c = request("http://example.com/a");
+        c.addArgumentNoEncoding("x1", "");
+        assertFalse(queue.contains(c));
+    }
+
+    @Test
+    public void testPostAndGetAreNotDuplicates() {
+        ConnectionRequest get = request("http://example.com/a");
+        get.setPost(false);
+        queue.add(get, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        assertFalse(queue.contains(request("http://example.com/a")));
+    }
+
+    @Test
+    public void testRunningRequestsAreNotDuplicates() {
+        ConnectionRequest a = request("http://example.com/a");
+        queue.add(a, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        RequestQueue.Node n = queue.next(0);
+        assertSame(a, n.request);
+        assertEquals(0, queue.size());
+
+        // a refresh issued while the request is running must be queued
+        assertFalse(queue.contains(request("http://example.com/a")));
+        queue.finished(n);
+        assertFalse(queue.contains(request("http://example.com/a")));
+    }
+
+    @Test
+    public void testDuplicatesAreCounted() {
+        queue.add(request("http://example.com/a"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(request("http://example.com/a"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.next(0);
+        assertTrue(queue.contains(request("http://example.com/a")));
+        queue.next(0);
+        assertFalse(queue.contains(request("http://example.com/a")));
+    }
+
+    @Test
+    public void testDifferentClassesAreNotDuplicates() {
+        queue.add(request("http://example.com/a"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        ConnectionRequest other = new ConnectionRequest() {
+        };
+        other.setUrl("http://example.com/a");
+        assertFalse(queue.contains(other));
+    }
+
+    @Test
+    public void testEqualsOverrideIsHonored() {
+        queue.add(new NeverEqualRequest("http://example.com/a"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        assertFalse(queue.contains(new NeverEqualRequest("http://example.com/a")));
+    }
+
+    @Test
+    public void testRedirectDoesNotAffectPendingRequests() {
+        ConnectionRequest a = request("http://example.com/a");
+        queue.add(a, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(request("http://example.com/a"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        RequestQueue.Node n = queue.next(0);
+
+        // a redirect changes the URL of the running request
+        a.setUrl("http://example.com/moved");
+        assertTrue(queue.contains(request("http://example.com/a")));
+        assertFalse(queue.contains(request("http://example.com/moved")));
+        queue.finished(n);
+        assertTrue(queue.contains(request("http://example.com/a")));
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        ConnectionRequest low = request("http://example.com/low");
+        ConnectionRequest normal1 = request("http://example.com/n1");
+        ConnectionRequest normal2 = request("http://example.com/n2");
+        ConnectionRequest high = request("http://example.com/high");
+        ConnectionRequest critical = request("http://example.com/critical");
+        queue.add(low, ConnectionRequest.PRIORITY_LOW, 0, false);
+        queue.add(normal1, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(high, ConnectionRequest.PRIORITY_HIGH, 0, false);
+        queue.add(normal2, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(critical, ConnectionRequest.PRIORITY_CRITICAL, 0, false);
+        assertEquals(5, queue.size());
+        assertSame(critical, queue.next(0).request);
+        assertSame(high, queue.next(0).request);
+        assertSame(normal1, queue.next(0).request);
+        assertSame(normal2, queue.next(0).request);
+        assertSame(low, queue.next(0).request);
+        assertNull(queue.next(0));
+    }
+
+    @Test
+    public void testFirstIsAheadOfEqualPriorities() {
+        ConnectionRequest a = request("http://example.com/a");
+        ConnectionRequest paused = request("http://example.com/paused");
+        queue.add(a, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(paused, ConnectionRequest.PRIORITY_NORMAL, 0, true);
+        assertSame(paused, queue.next(0).request);
+        assertSame(a, queue.next(0).request);
+    }
+
+    @Test
+    public void testElementsAreInRunOrder() {
+        ConnectionRequest low = request("http://example.com/low");
+        ConnectionRequest high = request("http://example.com/high");
+        ConnectionRequest normal = request("http://example.com/normal");
+        queue.add(low, ConnectionRequest.PRIORITY_LOW, 0, false);
+        queue.add(normal, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(high, ConnectionRequest.PRIORITY_HIGH, 0, false);
+        Vector v = queue.elements();
+        assertEquals(3, v.size());
+        assertSame(high, v.elementAt(0));
+        assertSame(normal, v.elementAt(1));
+        assertSame(low, v.elementAt(2));
+    }
+
+    @Test
+    public void testThreadLanes() {
+        ConnectionRequest shared = request("http://example.com/shared");
+        ConnectionRequest own = request("http://example.com/own");
+        queue.add(shared, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(own, ConnectionRequest.PRIORITY_NORMAL, 2, false);
+
+        // thread 0 never runs requests assigned to thread 1
+        assertSame(shared, queue.next(0).request);
+        assertNull(queue.next(0));
+        assertSame(own, queue.next(1).request);
+    }
+
+    @Test
+    public void testLowPriorityRequestsAgeAndAlternate() throws InterruptedException {
+        queue.setLowPriorityAging(10);
+        ConnectionRequest low1 = request("http://example.com/low1");
+        ConnectionRequest low2 = request("http://example.com/low2");
+        queue.add(low1, ConnectionRequest.PRIORITY_LOW, 0, false);
+        queue.add(low2, ConnectionRequest.PRIORITY_LOW, 0, false);
+        Thread.sleep(50);
+        ConnectionRequest normal1 = request("http://example.com/n1");
+        ConnectionRequest normal2 = request("http://example.com/n2");
+        queue.add(normal1, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(normal2, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+
+        // aged requests compete with normal requests taking turns with them
+        assertSame(low1, queue.next(0).request);
+        assertSame(normal1, queue.next(0).request);
+        assertSame(low2, queue.next(0).request);
+        assertSame(normal2, queue.next(0).request);
+    }
+
+    @Test
+    public void testLowPriorityRequestsWaitBeforeAging() {
+        ConnectionRequest low = request("http://example.com/low");
+        ConnectionRequest normal = request("http://example.com/normal");
+        queue.add(low, ConnectionRequest.PRIORITY_LOW, 0, false);
+        queue.add(normal, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        assertSame(normal, queue.next(0).request);
+        assertSame(low, queue.next(0).request);
+    }
+
+    @Test
+    public void testConnectionsPerHost() {
+        queue.setMaxConnectionsPerHost(1);
+        ConnectionRequest a1 = request("http://a.example.com/1");
+        ConnectionRequest a2 = request("http://A.example.com/2");
+        ConnectionRequest b = request("http://b.example.com/1");
+        queue.add(a1, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(a2, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        queue.add(b, ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        RequestQueue.Node n1 = queue.next(0);
+        assertSame(a1, n1.request);
+
+        // a2 is parked until a1 completes, parked requests are still pending
+        assertSame(b, queue.next(1).request);
+        assertNull(queue.next(0));
+        assertEquals(1, queue.size());
+        assertTrue(queue.contains(request("http://A.example.com/2")));
+        queue.finished(n1);
+        RequestQueue.Node n2 = queue.next(0);
+        assertSame(a2, n2.request);
+
+        // finishing a node twice doesn't release the slot held by a2
+        queue.finished(n1);
+        queue.add(request("http://a.example.com/3"), ConnectionRequest.PRIORITY_NORMAL, 0, false);
+        assertNull(queue.next(0));
+        queue.finished(n2);
+        assertNotNull(queue.next(0));
+    }
+
+    @Test
+    public void testGetHost() {
+        assertEquals("example.com:8080", RequestQueue.getHost("http://Example.com:8080/a/b"));
+        assertEquals("example.com", RequestQueue.getHost("https://example.com?q=1"));
+        assertEquals("example.com", RequestQueue.getHost("example.com/path"));
+    }
+
+    static class NeverEqualRequest extends ConnectionRequest {
+        NeverEqualRequest(String url) {
+            setUrl(url);
+        }
+
+        public boolean equals(Object o) {
+            return false;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
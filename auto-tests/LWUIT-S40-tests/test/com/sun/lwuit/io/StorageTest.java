@@ -0,0 +1,66 @@
+package com.sun.lwuit.io;
+
+import com.nokia.lwuit.test.util.TestIOImplementation;
+import com.sun.lwuit.io.util.Util;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Partial updates and sizes of storage entries using the generic implementation
+ * that rewrites the entry
+ */
+public class StorageTest {
+
+    public StorageTest() {
+    }
+
+    @Before
+    public void initStorage() {
+        new TestIOImplementation();
+        Storage.init(null);
+    }
+
+    private static void write(OutputStream out, String data) throws IOException {
+        out.write(data.getBytes());
+        out.close();
+    }
+
+    private static String read(String name) throws IOException {
+        return new String(Util.readInputStream(Storage.getInstance().createInputStream(name)));
+    }
+
+    @Test
+    public void testWriteAtOffsetKeepsTheRest() throws IOException {
+        write(Storage.getInstance().createOutputStream("x"), "0123456789");
+        write(Storage.getInstance().createOutputStream("x", 3), "ab");
+        assertEquals("012ab56789", read("x"));
+        assertEquals(10, Storage.getInstance().getEntrySize("x"));
+    }
+
+    @Test
+    public void testWriteAtTheSizeAppends() throws IOException {
+        write(Storage.getInstance().createOutputStream("x"), "0123");
+        write(Storage.getInstance().createOutputStream("x", 4), "4567");
+        assertEquals("01234567", read("x"));
+    }
+
+    @Test
+    public void testWriteAtOffsetCreatesAMissingEntry() throws IOException {
+        write(Storage.getInstance().createOutputStream("x", 0), "new");
+        assertEquals("new", read("x"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOffsetBeyondTheEndFails() throws IOException {
+        write(Storage.getInstance().createOutputStream("x"), "0123");
+        Storage.getInstance().createOutputStream("x", 5);
+    }
+
+    @Test
+    public void testSizeOfAMissingEntry() {
+        assertEquals(-1, Storage.getInstance().getEntrySize("missing"));
+    }
+}
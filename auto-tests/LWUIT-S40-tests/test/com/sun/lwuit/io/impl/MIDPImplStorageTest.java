@@ -0,0 +1,346 @@
+package com.sun.lwuit.io.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import javax.microedition.rms.InvalidRecordIDException;
+import javax.microedition.rms.RecordStore;
+import javax.microedition.rms.RecordStoreException;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Storage entries of the MIDP port and the recovery of the FAT journal, a new
+ * implementation instance simulates the next launch of the application
+ */
+public class MIDPImplStorageTest {
+
+    public MIDPImplStorageTest() {
+    }
+
+    @Before
+    public void deleteRecordStores() throws RecordStoreException {
+        String[] stores = RecordStore.listRecordStores();
+        if(stores != null) {
+            for(int iter = 0 ; iter < stores.length ; iter++) {
+                RecordStore.deleteRecordStore(stores[iter]);
+            }
+        }
+    }
+
+    private static MIDPImpl launch() {
+        MIDPImpl impl = new MIDPImpl();
+
+        // the journal is only written when the tests flush it
+        impl.setFatFlushDelay(0);
+        return impl;
+    }
+
+    private static void flushJournal(MIDPImpl impl) throws Exception {
+        Method m = MIDPImpl.class.getDeclaredMethod("flushFatJournal");
+        m.setAccessible(true);
+        m.invoke(impl);
+    }
+
+    private static boolean storeExists(String name) {
+        String[] stores = RecordStore.listRecordStores();
+        if(stores != null) {
+            for(int iter = 0 ; iter < stores.length ; iter++) {
+                if(stores[iter].equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] data(int size, int seed) {
+        byte[] b = new byte[size];
+        for(int iter = 0 ; iter < size ; iter++) {
+            b[iter] = (byte)(iter * 31 + seed);
+        }
+        return b;
+    }
+
+    private static void write(OutputStream out, byte[] data) throws IOException {
+        out.write(data);
+        out.close();
+    }
+
+    /**
+     * Returns the sizes of the records of the given store in record id order
+     */
+    private static int[] recordSizes(String store) throws RecordStoreException {
+        RecordStore r = RecordStore.openRecordStore(store, false);
+        int[] sizes = new int[r.getNumRecords()];
+        int offset = 0;
+        for(int id = 1 ; offset < sizes.length ; id++) {
+            try {
+                sizes[offset] = r.getRecordSize(id);
+                offset++;
+            } catch(InvalidRecordIDException err) {
+                // deleted record
+            }
+        }
+        r.closeRecordStore();
+        return sizes;
+    }
+
+    private static byte[] read(MIDPImpl impl, String name) throws IOException {
+        InputStream in = impl.createStorageInputStream(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int size = in.read(buffer);
+        while(size > 0) {
+            out.write(buffer, 0, size);
+            size = in.read(buffer);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        MIDPImpl impl = launch();
+        byte[] d = data(20000, 1);
+        write(impl.createStorageOutputStream("x"), d);
+        assertArrayEquals(d, read(impl, "x"));
+        assertEquals(d.length, impl.getStorageFileSize("x"));
+
+        // rewriting a shorter body truncates the entry
+        write(impl.createStorageOutputStream("x"), data(10, 2));
+        assertArrayEquals(data(10, 2), read(impl, "x"));
+    }
+
+    @Test
+    public void testWriteAtOffset() throws IOException {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(1000, 1));
+        write(impl.createStorageOutputStream("x", 950), data(100, 2));
+        byte[] expected = new byte[1050];
+        System.arraycopy(data(1000, 1), 0, expected, 0, 950);
+        System.arraycopy(data(100, 2), 0, expected, 950, 100);
+        assertArrayEquals(expected, read(impl, "x"));
+    }
+
+    @Test
+    public void testCompactedFatSurvivesRestart() throws IOException {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("x"), data(100, 1));
+        impl.flushStorageCache();
+        assertFalse(storeExists("FATJ"));
+
+        impl = launch();
+        assertArrayEquals(data(100, 1), read(impl, "x"));
+    }
+
+    @Test
+    public void testJournalIsReplayed() throws Exception {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("x"), data(100, 1));
+        write(impl.createStorageOutputStream("y"), data(100, 2));
+        impl.flushStorageCache();
+        write(impl.createStorageOutputStream("z"), data(100, 3));
+        impl.deleteStorageFile("x");
+        flushJournal(impl);
+        assertTrue(storeExists("FATJ"));
+
+        impl = launch();
+        assertFalse(impl.storageFileExists("x"));
+        assertArrayEquals(data(100, 2), read(impl, "y"));
+        assertArrayEquals(data(100, 3), read(impl, "z"));
+
+        // the replayed journal is compacted into the FAT
+        assertFalse(storeExists("FATJ"));
+    }
+
+    @Test
+    public void testEntriesWhoseStoreIsGoneAreDropped() throws Exception {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("x"), data(100, 1));
+        impl.flushStorageCache();
+        String[] stores = RecordStore.listRecordStores();
+        for(int iter = 0 ; iter < stores.length ; iter++) {
+            if(stores[iter].startsWith("A")) {
+                RecordStore.deleteRecordStore(stores[iter]);
+            }
+        }
+
+        impl = launch();
+        assertFalse(impl.storageFileExists("x"));
+    }
+
+    @Test
+    public void testUnjournaledDeleteLeavesNoStore() throws Exception {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("x"), data(100, 1));
+        flushJournal(impl);
+
+        // the delete is lost with the application but the store is already gone
+        impl.deleteStorageFile("x");
+
+        impl = launch();
+        assertFalse(impl.storageFileExists("x"));
+        assertFalse(storeExists("A1"));
+    }
+
+    @Test
+    public void testUnjournaledEntryDoesNotLeakIntoNewEntries() throws Exception {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("lost"), data(5000, 1));
+        assertTrue(storeExists("A1"));
+
+        // the application exits before the journal is written so the FAT knows
+        // nothing about the store of the entry
+        impl = launch();
+        assertFalse(impl.storageFileExists("lost"));
+        write(impl.createStorageOutputStream("new", 0), data(3, 2));
+        assertArrayEquals(data(3, 2), read(impl, "new"));
+        assertEquals(3, impl.getStorageFileSize("new"));
+        assertTrue(storeExists("A1"));
+    }
+
+    @Test
+    public void testNewEntryDiscardsAStaleStoreWithItsKey() throws Exception {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("x"), data(10, 1));
+        impl.flushStorageCache();
+
+        // a store left behind by some earlier run with the key the next entry gets
+        RecordStore r = RecordStore.openRecordStore("A2", true);
+        r.addRecord(new byte[100], 0, 100);
+        r.closeRecordStore();
+        impl.deleteStorageFile("x");
+        write(impl.createStorageOutputStream("y", 0), data(3, 2));
+        assertEquals(3, impl.getStorageFileSize("y"));
+        assertArrayEquals(data(3, 2), read(impl, "y"));
+    }
+
+    @Test
+    public void testSingleByteReadsAcrossRecords() throws IOException {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        byte[] d = data(1050, 1);
+        write(impl.createStorageOutputStream("x"), d);
+        InputStream in = impl.createStorageInputStream("x");
+        for(int iter = 0 ; iter < d.length ; iter++) {
+            assertEquals(d[iter] & 0xff, in.read());
+        }
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void testSkipAcrossRecords() throws IOException {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        byte[] d = data(1050, 1);
+        write(impl.createStorageOutputStream("x"), d);
+        InputStream in = impl.createStorageInputStream("x");
+        assertEquals(10, in.skip(10));
+        assertEquals(d[10] & 0xff, in.read());
+        assertEquals(239, in.skip(239));
+        assertEquals(d[250] & 0xff, in.read());
+        assertEquals(799, in.skip(1000));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void testOnlyTheCurrentRecordIsBuffered() throws IOException {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(1050, 1));
+        InputStream in = impl.createStorageInputStream("x");
+        in.read();
+        assertEquals(99, in.available());
+        in.skip(99);
+        assertEquals(0, in.available());
+        in.read();
+        assertEquals(99, in.available());
+        in.close();
+    }
+
+    @Test
+    public void testEntryIsSplitIntoRecords() throws Exception {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(1050, 1));
+        int[] sizes = recordSizes("A1");
+        assertEquals(11, sizes.length);
+        assertEquals(100, sizes[0]);
+        assertEquals(50, sizes[10]);
+    }
+
+    @Test
+    public void testUpdateRewritesTheRecordsInPlace() throws Exception {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(1000, 1));
+        RecordStore r = RecordStore.openRecordStore("A1", false);
+        int nextId = r.getNextRecordID();
+        byte[] untouched = r.getRecord(1);
+        r.closeRecordStore();
+
+        write(impl.createStorageOutputStream("x", 450), data(10, 2));
+        r = RecordStore.openRecordStore("A1", false);
+        assertEquals(nextId, r.getNextRecordID());
+        assertEquals(10, r.getNumRecords());
+        assertArrayEquals(untouched, r.getRecord(1));
+        r.closeRecordStore();
+
+        byte[] expected = data(1000, 1);
+        System.arraycopy(data(10, 2), 0, expected, 450, 10);
+        assertArrayEquals(expected, read(impl, "x"));
+        assertEquals(1000, impl.getStorageFileSize("x"));
+    }
+
+    @Test
+    public void testAppendAddsRecords() throws Exception {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(150, 1));
+        write(impl.createStorageOutputStream("x", 150), data(100, 2));
+        byte[] expected = new byte[250];
+        System.arraycopy(data(150, 1), 0, expected, 0, 150);
+        System.arraycopy(data(100, 2), 0, expected, 150, 100);
+        assertArrayEquals(expected, read(impl, "x"));
+        assertEquals(3, recordSizes("A1").length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOffsetBeyondTheEndFails() throws IOException {
+        MIDPImpl impl = launch();
+        write(impl.createStorageOutputStream("x"), data(100, 1));
+        impl.createStorageOutputStream("x", 101);
+    }
+
+    @Test
+    public void testEntryKeepsItsRecordSize() throws Exception {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(1000, 1));
+        impl.setStorageRecordSize(300);
+        write(impl.createStorageOutputStream("x", 1000), data(100, 2));
+        int[] sizes = recordSizes("A1");
+        assertEquals(11, sizes.length);
+        for(int iter = 0 ; iter < sizes.length ; iter++) {
+            assertEquals(100, sizes[iter]);
+        }
+    }
+
+    @Test
+    public void testRewriteReusesTheStoreAndDropsTrailingRecords() throws Exception {
+        MIDPImpl impl = launch();
+        impl.setStorageRecordSize(100);
+        write(impl.createStorageOutputStream("x"), data(1000, 1));
+        write(impl.createStorageOutputStream("x"), data(250, 2));
+        assertEquals(3, recordSizes("A1").length);
+        assertArrayEquals(data(250, 2), read(impl, "x"));
+        assertFalse(storeExists("B1"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.sun.lwuit.io.services;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.nokia.lwuit.test.util.TestIOImplementation;
+import com.sun.lwuit.events.ActionEvent;
+import com.sun.lwuit.events.ActionListener;
+import com.sun.lwuit.io.NetworkManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Downloads of the same image by several components
+ */
+public class ImageDownloadServiceTest extends LWUITTest {
+    private static final byte[] PNG = {
+        -119, 80, 78, 71, 13, 10, 26, 10, 0, 0, 0, 13, 73, 72, 68, 82, 0, 0, 0, 1, 0, 0, 0, 1,
+        8, 2, 0, 0, 0, -112, 119, 83, -34, 0, 0, 0, 12, 73, 68, 65, 84, 120, -100, 99, -8, -49,
+        -64, 0, 0, 3, 1, 1, 0, -55, -2, -110, -17, 0, 0, 0, 0, 73, 69, 78, 68, -82, 66, 96, -126
+    };
+
+    private TestIOImplementation io;
+
+    public ImageDownloadServiceTest() {
+    }
+
+    @Before
+    public void startNetwork() {
+        io = new TestIOImplementation();
+        NetworkManager.getInstance().start();
+    }
+
+    @After
+    public void unblock() {
+        io.setBlocked(false);
+    }
+
+    private static void waitForResult(ImageDownloadService s) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while(s.getResult() == null && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+        assertNotNull(s.getResult());
+    }
+
+    @Test
+    public void testDownloadsOfTheSameUrlShareOneConnection() throws InterruptedException {
+        io.respond("http://example.com/icon.png").body(PNG);
+        io.setBlocked(true);
+        ActionListener listener = new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+            }
+        };
+
+        // e.g. two list cells showing the same icon
+        ImageDownloadService first = new ImageDownloadService("http://example.com/icon.png", listener);
+        NetworkManager.getInstance().addToQueue(first);
+        assertTrue(io.waitForConnections(1, 5000));
+        ImageDownloadService second = new ImageDownloadService("http://example.com/icon.png", listener);
+        NetworkManager.getInstance().addToQueue(second);
+        io.setBlocked(false);
+        waitForResult(first);
+        waitForResult(second);
+        assertEquals(1, io.getConnectionCount());
+        assertNotSame(first.getResult(), second.getResult());
+    }
+}
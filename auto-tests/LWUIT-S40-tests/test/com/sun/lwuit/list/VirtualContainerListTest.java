@@ -0,0 +1,195 @@
+package com.sun.lwuit.list;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Form;
+import com.sun.lwuit.geom.Dimension;
+import com.sun.lwuit.layouts.BorderLayout;
+import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.layouts.FlowLayout;
+import com.sun.lwuit.layouts.GridLayout;
+import com.sun.lwuit.layouts.Layout;
+import java.lang.reflect.Field;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Virtualized container lists only create entries for the visible rows and rebind
+ * them to other model offsets as the list scrolls
+ */
+public class VirtualContainerListTest extends LWUITTest {
+    private static final int SIZE = 1000;
+    private static final int CELL_HEIGHT = 20;
+
+    private DefaultListModel model;
+    private ContainerList list;
+
+    public VirtualContainerListTest() {
+    }
+
+    @Before
+    public void createList() {
+        model = new DefaultListModel();
+        for(int iter = 0 ; iter < SIZE ; iter++) {
+            model.addItem("item " + iter);
+        }
+        list = new ContainerList(new BoxLayout(BoxLayout.Y_AXIS), model);
+        list.getStyle().setPadding(0, 0, 0, 0);
+        list.getStyle().setMargin(0, 0, 0, 0);
+        list.setCellSize(new Dimension(30, CELL_HEIGHT));
+    }
+
+    private void layout(int width, int height) {
+        list.setWidth(width);
+        list.setHeight(height);
+        list.layoutContainer();
+    }
+
+    private static int getOffset(Component entry) throws Exception {
+        Field f = entry.getClass().getDeclaredField("offset");
+        f.setAccessible(true);
+        return f.getInt(entry);
+    }
+
+    /**
+     * Returns the entry bound to the given model offset or null
+     */
+    private Component findEntry(int offset) throws Exception {
+        for(int iter = 0 ; iter < list.getComponentCount() ; iter++) {
+            Component c = list.getComponentAt(iter);
+            if(getOffset(c) == offset) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testOnlyVisibleRowsHaveEntries() throws Exception {
+        list.setVirtualized(true);
+        layout(100, 10 * CELL_HEIGHT);
+
+        // the rows touching the view and one overscan row below them
+        assertEquals(12, list.getComponentCount());
+        Component first = findEntry(0);
+        assertEquals(0, first.getX());
+        assertEquals(0, first.getY());
+        assertEquals(findEntry(5).getWidth(), first.getWidth());
+        assertTrue(first.getWidth() > 30);
+        assertEquals(CELL_HEIGHT, first.getHeight());
+        assertEquals(9 * CELL_HEIGHT, findEntry(9).getY());
+        assertNull(findEntry(SIZE - 1));
+    }
+
+    @Test
+    public void testPreferredSizeCoversTheModel() {
+        list.setVirtualized(true);
+        assertEquals(SIZE * CELL_HEIGHT, list.getPreferredH());
+    }
+
+    @Test
+    public void testScrollingRebindsTheEntries() throws Exception {
+        list.setVirtualized(true);
+        layout(100, 10 * CELL_HEIGHT);
+        int count = list.getComponentCount();
+        list.setScrollY(500 * CELL_HEIGHT);
+
+        assertNull(findEntry(0));
+        for(int iter = 499 ; iter <= 510 ; iter++) {
+            Component c = findEntry(iter);
+            assertNotNull("offset " + iter, c);
+            assertEquals(iter * CELL_HEIGHT, c.getY());
+        }
+
+        // the overscan row above the view was added, the rest was reused
+        assertEquals(count + 1, list.getComponentCount());
+    }
+
+    @Test
+    public void testGridLayoutColumns() throws Exception {
+        list.setLayout(new GridLayout(1, 3));
+        list.setVirtualized(true);
+        layout(90, 5 * CELL_HEIGHT);
+        assertEquals((SIZE + 2) / 3 * CELL_HEIGHT, list.getPreferredH());
+
+        // the cells share the width of the list
+        Component c = findEntry(4);
+        assertEquals(c.getWidth(), c.getX());
+        assertEquals(CELL_HEIGHT, c.getY());
+        assertEquals(2 * c.getWidth(), findEntry(5).getX());
+        assertEquals(0, findEntry(6).getX());
+        assertEquals(7 * 3, list.getComponentCount());
+    }
+
+    @Test
+    public void testFlowLayoutFitsCellsInARow() throws Exception {
+        list.setLayout(new FlowLayout());
+        list.setVirtualized(true);
+        layout(100, 5 * CELL_HEIGHT);
+
+        // cells keep their width in a flow layout
+        Component c = findEntry(1);
+        assertEquals(30, c.getWidth());
+        assertEquals(30, c.getX());
+        assertEquals(0, findEntry(3).getX());
+        assertEquals(CELL_HEIGHT, findEntry(3).getY());
+    }
+
+    @Test
+    public void testTurningVirtualizationOffRestoresTheLayout() {
+        Layout grid = new GridLayout(1, 3);
+        list.setLayout(grid);
+        list.setVirtualized(true);
+        assertTrue(list.isVirtualized());
+        assertNotSame(grid, list.getLayout());
+
+        list.setVirtualized(false);
+        assertFalse(list.isVirtualized());
+        assertSame(grid, list.getLayout());
+        assertEquals(SIZE, list.getComponentCount());
+    }
+
+    @Test
+    public void testModelChangesUpdateTheEntries() throws Exception {
+        list.setVirtualized(true);
+        Form f = new Form();
+        f.setLayout(new BorderLayout());
+        f.setScrollable(false);
+        f.addComponent(BorderLayout.CENTER, list);
+        f.show();
+        waitEdt();
+
+        int height = list.getPreferredH();
+        model.addItem("added");
+        assertEquals(height + CELL_HEIGHT, list.getPreferredH());
+
+        // removing elements drops the entries bound to them
+        list.setScrollY(list.getPreferredH() - list.getHeight());
+        assertNotNull(findEntry(SIZE));
+        model.removeItem(SIZE);
+        assertNull(findEntry(SIZE));
+    }
+
+    @Test
+    public void testSelectionScrollsToTheEntry() throws Exception {
+        list.setVirtualized(true);
+        Form f = new Form();
+        f.setLayout(new BorderLayout());
+        f.setScrollable(false);
+        f.addComponent(BorderLayout.CENTER, list);
+        f.show();
+        waitEdt();
+
+        // the list jumps to the entry even when it scrolls smoothly
+        list.setSmoothScrolling(true);
+        assertNull(findEntry(700));
+        model.setSelectedIndex(700);
+        Component c = findEntry(700);
+        assertNotNull(c);
+        assertTrue(c.hasFocus());
+        assertTrue(list.getScrollY() <= 700 * CELL_HEIGHT);
+        assertTrue(list.getScrollY() + list.getHeight() >= 701 * CELL_HEIGHT);
+        assertTrue(list.isSmoothScrolling());
+    }
+}
@@ -0,0 +1,189 @@
+package com.sun.lwuit.plaf;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.Image;
+import com.sun.lwuit.Label;
+import java.util.Hashtable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Image borders rendered to the size of the component are cached when the cache
+ * has a budget and painted with a single image draw
+ */
+public class BorderImageCacheTest extends LWUITTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 12;
+    private static final int BYTES = WIDTH * HEIGHT * 4;
+
+    private int budget;
+
+    public BorderImageCacheTest() {
+    }
+
+    @Before
+    public void clearCache() {
+        budget = Border.getImageBorderCacheSize();
+        Border.clearImageBorderCache();
+        Border.resetImageBorderCacheStatistics();
+    }
+
+    @After
+    public void restoreBudget() {
+        Border.setImageBorderCacheSize(budget);
+        Border.clearImageBorderCache();
+    }
+
+    private static Image createImage(int color) {
+        int[] rgb = new int[4 * 4];
+        for(int iter = 0 ; iter < rgb.length ; iter++) {
+            rgb[iter] = color;
+        }
+        return Image.createImage(rgb, 4, 4);
+    }
+
+    /**
+     * Creates a border with a different color on every side and corner and no background
+     * so the middle of the component is left untouched
+     */
+    private static Border createBorder(boolean scaled) {
+        Image top = createImage(0xffff0000);
+        Image bottom = createImage(0xff00ff00);
+        Image left = createImage(0xff0000ff);
+        Image right = createImage(0xffffff00);
+        Image corner = createImage(0xff00ffff);
+        if(scaled) {
+            return Border.createImageScaledBorder(top, bottom, left, right, corner, corner, corner, corner, null);
+        }
+        return Border.createImageBorder(top, bottom, left, right, corner, corner, corner, corner, null);
+    }
+
+    private static Label createComponent(int x, int y, int width, int height) {
+        Label l = new Label();
+        l.setX(x);
+        l.setY(y);
+        l.setWidth(width);
+        l.setHeight(height);
+        return l;
+    }
+
+    private static int[] paint(Border b, int x, int y) {
+        Image img = Image.createImage(40, 30, 0xffffffff);
+        b.paintBorderBackground(img.getGraphics(), createComponent(x, y, WIDTH, HEIGHT));
+        return img.getRGB();
+    }
+
+    private void assertStatistics(int hits, int misses, int used) {
+        int[] stats = Border.getImageBorderCacheStatistics();
+        assertEquals(hits, stats[0]);
+        assertEquals(misses, stats[1]);
+        assertEquals(used, stats[2]);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertEquals(0, budget);
+        paint(createBorder(false), 0, 0);
+        assertStatistics(0, 0, 0);
+    }
+
+    @Test
+    public void testBorderIsRenderedOncePerSize() {
+        Border.setImageBorderCacheSize(10 * BYTES);
+        assertEquals(10 * BYTES, Border.getImageBorderCacheSize());
+        Border b = createBorder(false);
+        paint(b, 0, 0);
+        paint(b, 10, 8);
+        assertStatistics(1, 1, BYTES);
+
+        Image img = Image.createImage(40, 30);
+        b.paintBorderBackground(img.getGraphics(), createComponent(0, 0, WIDTH + 4, HEIGHT));
+        assertStatistics(1, 2, BYTES + (WIDTH + 4) * HEIGHT * 4);
+
+        // another border of the same size is rendered separately
+        paint(createBorder(false), 0, 0);
+        assertStatistics(1, 3, 2 * BYTES + (WIDTH + 4) * HEIGHT * 4);
+    }
+
+    @Test
+    public void testCachedBorderMatchesDirectPainting() {
+        int[] direct = paint(createBorder(false), 10, 8);
+        Border.setImageBorderCacheSize(10 * BYTES);
+        Border b = createBorder(false);
+        int[] rendered = paint(b, 10, 8);
+        int[] cached = paint(b, 10, 8);
+        assertEquals(1, Border.getImageBorderCacheStatistics()[0]);
+        assertArrayEquals(direct, rendered);
+        assertArrayEquals(direct, cached);
+
+        // the middle of the border is transparent
+        assertEquals(0xffffffff, cached[(8 + HEIGHT / 2) * 40 + 10 + WIDTH / 2]);
+    }
+
+    @Test
+    public void testCachedScaledBorderMatchesDirectPainting() {
+        int[] direct = paint(createBorder(true), 3, 5);
+        Border.setImageBorderCacheSize(10 * BYTES);
+        Border b = createBorder(true);
+        paint(b, 3, 5);
+        int[] cached = paint(b, 3, 5);
+        assertStatistics(1, 1, BYTES);
+        assertArrayEquals(direct, cached);
+    }
+
+    @Test
+    public void testBorderLargerThanTheBudgetIsPaintedDirectly() {
+        int[] direct = paint(createBorder(false), 0, 0);
+        Border.setImageBorderCacheSize(BYTES - 1);
+        int[] painted = paint(createBorder(false), 0, 0);
+        assertStatistics(0, 0, 0);
+        assertArrayEquals(direct, painted);
+    }
+
+    @Test
+    public void testBudgetEvictsTheLeastRecentlyUsedBorder() {
+        Border.setImageBorderCacheSize(2 * BYTES);
+        Border first = createBorder(false);
+        Border second = createBorder(false);
+        paint(first, 0, 0);
+        paint(second, 0, 0);
+        paint(first, 0, 0);
+        paint(createBorder(false), 0, 0);
+        assertStatistics(1, 3, 2 * BYTES);
+
+        // the second border was evicted, the first was used more recently
+        Border.resetImageBorderCacheStatistics();
+        paint(first, 0, 0);
+        paint(second, 0, 0);
+        assertStatistics(1, 1, 2 * BYTES);
+    }
+
+    @Test
+    public void testClear() {
+        Border.setImageBorderCacheSize(10 * BYTES);
+        Border b = createBorder(false);
+        paint(b, 0, 0);
+        Border.clearImageBorderCache();
+        assertEquals(0, Border.getImageBorderCacheStatistics()[2]);
+        paint(b, 0, 0);
+        assertStatistics(0, 2, BYTES);
+    }
+
+    @Test
+    public void testThemeChangeClearsTheCache() {
+        Hashtable previousTheme = UIManager.getInstance().getThemeProps();
+        Border.setImageBorderCacheSize(10 * BYTES);
+        paint(createBorder(false), 0, 0);
+        assertEquals(BYTES, Border.getImageBorderCacheStatistics()[2]);
+        try {
+            UIManager.getInstance().setThemeProps(new Hashtable());
+            assertEquals(0, Border.getImageBorderCacheStatistics()[2]);
+        } finally {
+            if(previousTheme != null) {
+                UIManager.getInstance().setThemeProps(previousTheme);
+            }
+        }
+    }
+}
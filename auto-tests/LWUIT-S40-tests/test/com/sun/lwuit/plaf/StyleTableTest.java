@@ -0,0 +1,175 @@
+package com.sun.lwuit.plaf;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.Component;
+import java.util.Hashtable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Styles created from the compiled theme table and copies of styles that share
+ * their arrays until they are modified
+ */
+public class StyleTableTest extends LWUITTest {
+    private Hashtable previousTheme;
+
+    public StyleTableTest() {
+    }
+
+    @Before
+    public void installTheme() {
+        previousTheme = UIManager.getInstance().getThemeProps();
+        Hashtable theme = new Hashtable();
+        theme.put("Btn.bgColor", "ff0000");
+        theme.put("Btn.fgColor", "00ff00");
+        theme.put("Btn.transparency", "128");
+        theme.put("Btn.margin", "1,2,3,4");
+        theme.put("Btn.padding", "5,6,7,8");
+        theme.put("Btn.sel#bgColor", "0000ff");
+        theme.put("Btn.press#bgColor", "ffff00");
+        theme.put("Derived.derive", "Btn");
+        theme.put("Derived.fgColor", "123456");
+        theme.put("Grad.bgGradient", new Object[] {new Integer(0xff), new Integer(0xff00), new Float(0.5f), new Float(0.5f)});
+        theme.put("Bad.bgColor", "not a color");
+        theme.put("Bad.fgColor", "00ff00");
+        UIManager.getInstance().setThemeProps(theme);
+    }
+
+    @After
+    public void restoreTheme() {
+        if(previousTheme != null) {
+            UIManager.getInstance().setThemeProps(previousTheme);
+        }
+    }
+
+    @Test
+    public void testThemeValuesAreParsed() {
+        Style s = UIManager.getInstance().getComponentStyle("Btn");
+        assertEquals(0xff0000, s.getBgColor());
+        assertEquals(0x00ff00, s.getFgColor());
+        assertEquals(128, s.getBgTransparency() & 0xff);
+        assertEquals(1, s.getMarginValue(false, Component.TOP));
+        assertEquals(2, s.getMarginValue(false, Component.BOTTOM));
+        assertEquals(3, s.getMarginValue(false, Component.LEFT));
+        assertEquals(4, s.getMarginValue(false, Component.RIGHT));
+        assertEquals(5, s.getPaddingValue(false, Component.TOP));
+        assertEquals(8, s.getPaddingValue(false, Component.RIGHT));
+    }
+
+    @Test
+    public void testSelectedStyle() {
+        Style s = UIManager.getInstance().getComponentSelectedStyle("Btn");
+        assertEquals(0x0000ff, s.getBgColor());
+
+        // the transparency of the unselected style applies
+        assertEquals(128, s.getBgTransparency() & 0xff);
+    }
+
+    @Test
+    public void testCustomStyleIsCachedButReturnedAsACopy() {
+        Style first = UIManager.getInstance().getComponentCustomStyle("Btn", "press");
+        assertEquals(0xffff00, first.getBgColor());
+        first.setBgColor(0x111111);
+        Style second = UIManager.getInstance().getComponentCustomStyle("Btn", "press");
+        assertNotSame(first, second);
+        assertEquals(0xffff00, second.getBgColor());
+    }
+
+    @Test
+    public void testDerivedStyle() {
+        Style s = UIManager.getInstance().getComponentStyle("Derived");
+        assertEquals(0xff0000, s.getBgColor());
+        assertEquals(0x123456, s.getFgColor());
+        assertEquals(3, s.getMarginValue(false, Component.LEFT));
+    }
+
+    @Test
+    public void testAddedPropertiesRecompileTheTable() {
+        // the table was compiled for the default style when the theme was set
+        Hashtable added = new Hashtable();
+        added.put("Btn.bgColor", "abcdef");
+        UIManager.getInstance().addThemeProps(added);
+        assertEquals(0xabcdef, UIManager.getInstance().getComponentStyle("Btn").getBgColor());
+        assertEquals(0x00ff00, UIManager.getInstance().getComponentStyle("Btn").getFgColor());
+    }
+
+    @Test
+    public void testIllegalValueFallsBackToTheDefaultStyle() {
+        Style bad = UIManager.getInstance().getComponentStyle("Bad");
+        Style missing = UIManager.getInstance().getComponentStyle("Missing");
+        assertEquals(missing.getBgColor(), bad.getBgColor());
+        assertEquals(missing.getFgColor(), bad.getFgColor());
+    }
+
+    @Test
+    public void testModifyingAReturnedStyleKeepsTheTheme() {
+        Style first = UIManager.getInstance().getComponentStyle("Btn");
+        first.setMargin(Component.TOP, 20);
+        first.setPadding(0, 0, 0, 0);
+        Style second = UIManager.getInstance().getComponentStyle("Btn");
+        assertEquals(1, second.getMarginValue(false, Component.TOP));
+        assertEquals(5, second.getPaddingValue(false, Component.TOP));
+        assertEquals(20, first.getMarginValue(false, Component.TOP));
+    }
+
+    @Test
+    public void testModifyingAThemeGradientKeepsTheTheme() {
+        Style first = UIManager.getInstance().getComponentStyle("Grad");
+        assertEquals(0xff, first.getBackgroundGradientStartColor());
+        assertEquals(1f, first.getBackgroundGradientRelativeSize(), 0);
+        first.setBackgroundGradientStartColor(0x123);
+        assertEquals(0x123, first.getBackgroundGradientStartColor());
+
+        Style second = UIManager.getInstance().getComponentStyle("Grad");
+        assertEquals(0xff, second.getBackgroundGradientStartColor());
+        second.setBackgroundGradientEndColor(0x456);
+        assertEquals(0xff00, UIManager.getInstance().getComponentStyle("Grad").getBackgroundGradientEndColor());
+        assertEquals(0xff00, first.getBackgroundGradientEndColor());
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        Style original = new Style();
+        original.setPadding(1, 2, 3, 4);
+        original.setMargin(5, 6, 7, 8);
+        Style copy = new Style(original);
+        Style copyOfCopy = new Style(copy);
+        assertEquals(1, copy.getPaddingValue(false, Component.TOP));
+        assertEquals(5, copyOfCopy.getMarginValue(false, Component.TOP));
+
+        copy.setPadding(Component.TOP, 10);
+        original.setMargin(Component.TOP, 11);
+        copyOfCopy.setPadding(Component.BOTTOM, 12);
+
+        assertEquals(1, original.getPaddingValue(false, Component.TOP));
+        assertEquals(10, copy.getPaddingValue(false, Component.TOP));
+        assertEquals(1, copyOfCopy.getPaddingValue(false, Component.TOP));
+        assertEquals(11, original.getMarginValue(false, Component.TOP));
+        assertEquals(5, copy.getMarginValue(false, Component.TOP));
+        assertEquals(5, copyOfCopy.getMarginValue(false, Component.TOP));
+        assertEquals(2, copy.getPaddingValue(false, Component.BOTTOM));
+        assertEquals(12, copyOfCopy.getPaddingValue(false, Component.BOTTOM));
+    }
+
+    @Test
+    public void testCopyKeepsTheAttributes() {
+        Style original = new Style();
+        original.setBgColor(0x102030);
+        original.setFgColor(0x405060);
+        original.setBgTransparency(77);
+        original.setAlignment(Component.CENTER);
+        original.setBackgroundGradientStartColor(0x111);
+        Style copy = new Style(original);
+        assertEquals(0x102030, copy.getBgColor());
+        assertEquals(0x405060, copy.getFgColor());
+        assertEquals(77, copy.getBgTransparency() & 0xff);
+        assertEquals(Component.CENTER, copy.getAlignment());
+        assertEquals(0x111, copy.getBackgroundGradientStartColor());
+        assertSame(original.getFont(), copy.getFont());
+
+        copy.setBackgroundGradientStartColor(0x222);
+        assertEquals(0x111, original.getBackgroundGradientStartColor());
+    }
+}
@@ -0,0 +1,143 @@
+package com.sun.lwuit.table;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.Component;
+import com.sun.lwuit.Container;
+import com.sun.lwuit.Form;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.animations.Animation;
+import com.sun.lwuit.layouts.BoxLayout;
+import java.lang.reflect.Field;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Virtualized tables only create the cells of the visible rows and rebind them as
+ * the table or its ancestors scroll
+ */
+public class VirtualTableTest extends LWUITTest {
+    private static final int ROWS = 1000;
+
+    private CountingModel model;
+    private Table table;
+    private ScrollingContainer ancestor;
+    private Form form;
+
+    public VirtualTableTest() {
+    }
+
+    @Before
+    public void createTable() throws InterruptedException {
+        Object[][] data = new Object[ROWS][3];
+        for(int r = 0 ; r < ROWS ; r++) {
+            for(int c = 0 ; c < 3 ; c++) {
+                data[r][c] = "r" + r + "c" + c;
+            }
+        }
+        model = new CountingModel(new String[] {"A", "B", "C"}, data);
+        table = new Table(model);
+        table.setVirtualized(true);
+        ancestor = new ScrollingContainer();
+        ancestor.addComponent(table);
+        form = new Form();
+        form.setScrollable(false);
+        form.setLayout(new BoxLayout(BoxLayout.Y_AXIS));
+        form.addComponent(ancestor);
+        form.show();
+        waitEdt();
+    }
+
+    private Animation getTracker() throws Exception {
+        Field f = Table.class.getDeclaredField("virtualWindowTracker");
+        f.setAccessible(true);
+        return (Animation)f.get(table);
+    }
+
+    private int getRowHeight() {
+        return ((TableLayout)table.getLayout()).getVirtualRowHeight();
+    }
+
+    /**
+     * Returns the cell bound to the given model row and column or null
+     */
+    private Label findCell(int row, int column) {
+        for(int iter = 0 ; iter < table.getComponentCount() ; iter++) {
+            Component c = table.getComponentAt(iter);
+            if(table.getCellRow(c) == row && table.getCellColumn(c) == column) {
+                return (Label)c;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testOnlyVisibleRowsHaveCells() {
+        assertTrue(table.getComponentCount() < 100);
+        assertEquals("r0c0", findCell(0, 0).getText());
+        assertNull(findCell(ROWS - 1, 0));
+    }
+
+    @Test
+    public void testTableHasTheHeightOfAllRows() {
+        assertTrue(table.getPreferredH() >= ROWS * getRowHeight());
+    }
+
+    @Test
+    public void testAncestorScrollRebindsTheCells() throws Exception {
+        int count = table.getComponentCount();
+        ancestor.scrollTo(500 * getRowHeight());
+        getTracker().animate();
+        Label cell = findCell(500, 1);
+        assertNotNull(cell);
+        assertEquals("r500c1", cell.getText());
+        assertNull(findCell(0, 0));
+
+        // the cells are reused
+        assertEquals(count, table.getComponentCount());
+    }
+
+    @Test
+    public void testTrackerIgnoresFramesWithoutMovement() throws Exception {
+        Animation tracker = getTracker();
+        tracker.animate();
+        model.rowCountCalls = 0;
+        tracker.animate();
+        tracker.animate();
+        assertEquals(0, model.rowCountCalls);
+
+        ancestor.scrollTo(10 * getRowHeight());
+        tracker.animate();
+        assertTrue(model.rowCountCalls > 0);
+    }
+
+    @Test
+    public void testModelChangeShowsTheNewValue() {
+        model.setValueAt(0, 0, "changed");
+        assertEquals("changed", findCell(0, 0).getText());
+    }
+
+    static class ScrollingContainer extends Container {
+        ScrollingContainer() {
+            super(new BoxLayout(BoxLayout.Y_AXIS));
+            setScrollableY(true);
+        }
+
+        void scrollTo(int y) {
+            setScrollY(y);
+        }
+    }
+
+    static class CountingModel extends DefaultTableModel {
+        int rowCountCalls;
+
+        CountingModel(String[] columns, Object[][] data) {
+            super(columns, data);
+        }
+
+        public int getRowCount() {
+            rowCountCalls++;
+            return super.getRowCount();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.sun.lwuit.util;
+
+import java.util.Vector;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Eviction order, the memory budget and the statistics of the LRU cache
+ */
+public class LRUCacheTest {
+
+    public LRUCacheTest() {
+    }
+
+    @Test
+    public void testLeastRecentlyUsedValueIsEvicted() {
+        LRUCache cache = new LRUCache(30);
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 10);
+        cache.put("c", "C", 10);
+        assertEquals("A", cache.get("a"));
+        cache.put("d", "D", 10);
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+        assertEquals(30, cache.getUsed());
+    }
+
+    @Test
+    public void testLargeValueEvictsSeveralValues() {
+        LRUCache cache = new LRUCache(30);
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 10);
+        cache.put("c", "C", 10);
+        cache.put("d", "D", 25);
+        assertEquals(1, cache.keys().size());
+        assertEquals(25, cache.getUsed());
+    }
+
+    @Test
+    public void testReplacingAValueUpdatesTheSize() {
+        LRUCache cache = new LRUCache(30);
+        cache.put("a", "A", 10);
+        cache.put("a", "AA", 20);
+        assertEquals(20, cache.getUsed());
+        assertEquals("AA", cache.get("a"));
+        cache.remove("a");
+        assertEquals(0, cache.getUsed());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testValueLargerThanTheBudgetIsNotCached() {
+        LRUCache cache = new LRUCache(30);
+        assertTrue(cache.fits(30));
+        assertFalse(cache.fits(31));
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 10);
+        cache.put("a", "big", 31);
+
+        // the previous value of the key is dropped while others are kept
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertEquals(10, cache.getUsed());
+    }
+
+    @Test
+    public void testKeysFromTheMostRecentlyUsed() {
+        LRUCache cache = new LRUCache(100);
+        cache.put("a", "A", 1);
+        cache.put("b", "B", 1);
+        cache.put("c", "C", 1);
+        cache.get("a");
+        Vector keys = cache.keys();
+        assertEquals(3, keys.size());
+        assertEquals("a", keys.elementAt(0));
+        assertEquals("c", keys.elementAt(1));
+        assertEquals("b", keys.elementAt(2));
+    }
+
+    @Test
+    public void testShrinkingTheBudgetEvicts() {
+        LRUCache cache = new LRUCache(30);
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 10);
+        cache.put("c", "C", 10);
+        cache.setBudget(15);
+        assertEquals(15, cache.getBudget());
+        assertEquals(10, cache.getUsed());
+        assertEquals("C", cache.get("c"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testClear() {
+        LRUCache cache = new LRUCache(30);
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 10);
+        cache.clear();
+        assertEquals(0, cache.getUsed());
+        assertEquals(0, cache.keys().size());
+        assertNull(cache.get("a"));
+
+        // the usage list is usable after clearing
+        cache.put("c", "C", 30);
+        cache.put("d", "D", 30);
+        assertEquals(1, cache.keys().size());
+        assertEquals("D", cache.get("d"));
+    }
+
+    @Test
+    public void testStatistics() {
+        LRUCache cache = new LRUCache(30);
+        cache.put("a", "A", 10);
+        cache.get("a");
+        cache.get("a");
+        cache.get("missing");
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+}
@@ -0,0 +1,189 @@
+package com.sun.lwuit.util;
+
+import com.nokia.lwuit.test.util.LWUITTest;
+import com.sun.lwuit.EncodedImage;
+import com.sun.lwuit.io.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Hashtable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Resource files opened by name with lazy loading only decode their images, data
+ * and UI entries when they are requested
+ */
+public class LazyResourcesTest extends LWUITTest {
+    private static final String NAME = "LazyResourcesTest.res";
+    private static final byte[] PNG = {1, 2, 3, 4, 5};
+    private static final byte[] DPI_LOW = {10, 11};
+    private static final byte[] DPI_HIGH = {20, 21, 22};
+    private static final byte[] DATA = {7, 8, 9};
+    private static final byte[] UI = {42};
+
+    private File file;
+    private String resourceName;
+
+    public LazyResourcesTest() {
+    }
+
+    @Before
+    public void writeResourceFile() throws Exception {
+        File dir = new File(LazyResourcesTest.class.getResource("LazyResourcesTest.class").toURI()).getParentFile();
+        file = new File(dir, NAME);
+        write(createResourceFile(DATA));
+        resourceName = "/com/sun/lwuit/util/" + NAME;
+        Resources.setLazyLoading(true);
+    }
+
+    @After
+    public void deleteResourceFile() {
+        Resources.setLazyLoading(false);
+        Resources.setLazyEviction(false);
+        file.delete();
+    }
+
+    private void write(byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+    }
+
+    /**
+     * Creates a resource file with a PNG, a multi DPI image, data and UI entries and
+     * the given payload for the data entry
+     */
+    private static byte[] createResourceFile(byte[] data) throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bo);
+        out.writeShort(5);
+
+        out.writeByte(Resources.MAGIC_HEADER);
+        out.writeUTF("");
+
+        // header size, version 1.1 and no meta data
+        out.writeShort(6);
+        out.writeShort(1);
+        out.writeShort(1);
+        out.writeShort(0);
+
+        out.writeByte(Resources.MAGIC_IMAGE);
+        out.writeUTF("png");
+        out.writeByte(0xf1);
+        out.writeInt(PNG.length);
+        out.write(PNG);
+
+        out.writeByte(Resources.MAGIC_IMAGE);
+        out.writeUTF("multi");
+        out.writeByte(0xf6);
+        out.writeInt(2);
+        out.writeInt(0);
+        out.writeInt(DPI_LOW.length);
+        out.writeInt(Integer.MAX_VALUE);
+        out.writeInt(DPI_HIGH.length);
+        out.write(DPI_LOW);
+        out.write(DPI_HIGH);
+
+        out.writeByte(Resources.MAGIC_DATA);
+        out.writeUTF("data");
+        out.writeInt(data.length);
+        out.write(data);
+
+        out.writeByte(Resources.MAGIC_UI);
+        out.writeUTF("ui");
+        out.writeInt(UI.length);
+        out.write(UI);
+        out.close();
+        return bo.toByteArray();
+    }
+
+    private static Hashtable getLazyEntries(Resources r) throws Exception {
+        Field f = Resources.class.getDeclaredField("lazyEntries");
+        f.setAccessible(true);
+        return (Hashtable)f.get(r);
+    }
+
+    private static byte[] read(Resources r, String id) throws IOException {
+        return Util.readInputStream(r.getData(id));
+    }
+
+    private static byte[] readImage(Resources r, String id) {
+        return ((EncodedImage)r.getImage(id)).getImageData();
+    }
+
+    @Test
+    public void testEntriesAreIndexedWhenOpened() throws Exception {
+        Resources r = new Resources(new ByteArrayInputStream(createResourceFile(DATA)), resourceName);
+        assertEquals(4, getLazyEntries(r).size());
+        assertEquals(4, r.getResourceNames().length);
+        assertTrue(r.isImage("png"));
+        assertTrue(r.isImage("multi"));
+        assertEquals("data", r.getDataResourceNames()[0]);
+        assertEquals(1, r.getMajorVersion());
+    }
+
+    @Test
+    public void testEntriesAreDecodedOnFirstAccess() throws Exception {
+        Resources r = new Resources(new ByteArrayInputStream(createResourceFile(DATA)), resourceName);
+        assertArrayEquals(DATA, read(r, "data"));
+        assertEquals(3, getLazyEntries(r).size());
+        assertArrayEquals(PNG, readImage(r, "png"));
+        assertArrayEquals(UI, Util.readInputStream(r.getUi("ui")));
+        assertEquals(1, getLazyEntries(r).size());
+
+        // decoded entries are held by the resources
+        assertSame(r.getImage("png"), r.getImage("png"));
+    }
+
+    @Test
+    public void testEntriesAreReadFromTheFile() throws Exception {
+        Resources r = new Resources(new ByteArrayInputStream(createResourceFile(DATA)), resourceName);
+
+        // the index was built from another payload of the same length
+        write(createResourceFile(new byte[] {1, 1, 1}));
+        assertArrayEquals(new byte[] {1, 1, 1}, read(r, "data"));
+    }
+
+    @Test
+    public void testMultiImageMatchesEagerLoading() throws Exception {
+        Resources eager = new Resources(new ByteArrayInputStream(createResourceFile(DATA)));
+        Resources lazy = new Resources(new ByteArrayInputStream(createResourceFile(DATA)), resourceName);
+        assertEquals(0, getLazyEntries(eager).size());
+        assertArrayEquals(readImage(eager, "multi"), readImage(lazy, "multi"));
+
+        // the entries following the multi image were indexed at the right offset
+        assertArrayEquals(DATA, read(lazy, "data"));
+        assertArrayEquals(UI, Util.readInputStream(lazy.getUi("ui")));
+    }
+
+    @Test
+    public void testOpenByName() throws Exception {
+        Resources r = Resources.open(resourceName);
+        assertEquals(4, getLazyEntries(r).size());
+        assertArrayEquals(DATA, read(r, "data"));
+    }
+
+    @Test
+    public void testEvictableEntriesStayIndexed() throws Exception {
+        Resources.setLazyEviction(true);
+        assertTrue(Resources.isLazyEviction());
+        Resources r = new Resources(new ByteArrayInputStream(createResourceFile(DATA)), resourceName);
+        assertArrayEquals(DATA, read(r, "data"));
+        assertEquals(4, getLazyEntries(r).size());
+        assertArrayEquals(DATA, read(r, "data"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingFileFailsOnAccess() throws Exception {
+        Resources r = new Resources(new ByteArrayInputStream(createResourceFile(DATA)), resourceName);
+        file.delete();
+        r.getData("data");
+    }
+}